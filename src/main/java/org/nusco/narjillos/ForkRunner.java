@@ -0,0 +1,85 @@
+package org.nusco.narjillos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.core.geometry.FastMath;
+import org.nusco.narjillos.core.utilities.Version;
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
+import org.nusco.narjillos.persistence.ExperimentLoader;
+import org.nusco.narjillos.persistence.Fork;
+
+/**
+ * The "fork" program. It branches a saved experiment into many experiments
+ * with different seeds, runs them in the same JVM, and prints a comparison of
+ * their final statistics as CSV. Like the "sweep" program, it can also vary
+ * some of the experiment's parameters, and run each seed with each
+ * combination of values.
+ */
+class ForkRunner {
+
+	private static final long DEFAULT_TICKS = 100_000;
+
+	public static void main(String[] args) {
+		Options options = new Options();
+		options.addOption("?", "help", false, "print this message");
+		options.addOption("e", "seeds", true, "seeds of the branches, as a comma-separated list or a range (e.g. 1..16)");
+		options.addOption("t", "ticks", true, "maximum number of ticks for each branch after the fork (default: " + DEFAULT_TICKS + ")");
+		options.addOption("p", "parallelism", true, "number of worker threads (default: number of cores)");
+		options.addOption("s", "save", false, "save each branch to its own experiment file");
+		options.addOption("v", "vary", true, "a parameter and its values, as a comma-separated list (e.g. ecosystem:food_density_per_block=0.5,1,2). Can be repeated");
+
+		try {
+			CommandLine commandLine;
+			try {
+				commandLine = new BasicParser().parse(options, args);
+			} catch (ParseException e) {
+				printHelpText(options);
+				return;
+			}
+
+			if (args.length == 0 || args[0].startsWith("-") || commandLine.hasOption("?") || !commandLine.hasOption("seeds")) {
+				printHelpText(options);
+				return;
+			}
+
+			Experiment experiment = ExperimentLoader.load(args[0], true);
+			List<Long> seeds = SweepRunner.parseSeeds(commandLine.getOptionValue("seeds"));
+			long ticks = commandLine.hasOption("ticks") ? Long.parseLong(commandLine.getOptionValue("ticks")) : DEFAULT_TICKS;
+			int parallelism = commandLine.hasOption("parallelism")
+				? Integer.parseInt(commandLine.getOptionValue("parallelism"))
+				: Runtime.getRuntime().availableProcessors();
+			List<String> parameters = new ArrayList<>();
+			List<Configuration> configurations = new ArrayList<>();
+			configurations.add(experiment.getEcosystem().getConfiguration());
+			String[] variations = commandLine.hasOption("vary") ? commandLine.getOptionValues("vary") : new String[0];
+			for (String variation : variations) {
+				parameters.add(SweepRunner.parseParameter(variation));
+				configurations = SweepRunner.vary(configurations, variation);
+			}
+
+			// pay up front for the setup of FastMath, once for all branches
+			FastMath.setUp();
+
+			Fork fork = new Fork(experiment, seeds, configurations, ticks, Version.read(), parallelism, commandLine.hasOption("save"));
+			List<Map<Long, ExperimentHistoryEntry>> results = fork.run();
+
+			System.out.print(fork.getReport(results, parameters));
+		} catch (RuntimeException e) {
+			System.out.println(e.getMessage());
+		}
+		System.exit(0);
+	}
+
+	private static void printHelpText(Options commandLineOptions) {
+		new HelpFormatter().printHelp("fork <experiment_file.exp> <options>", commandLineOptions);
+	}
+}
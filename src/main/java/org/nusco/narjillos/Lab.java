@@ -1,6 +1,9 @@
 package org.nusco.narjillos;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import org.apache.commons.cli.BasicParser;
@@ -14,28 +17,49 @@ import org.nusco.narjillos.experiment.Experiment;
 import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
 import org.nusco.narjillos.experiment.HistoryLog;
 import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.Phylogeny;
+import org.nusco.narjillos.persistence.EventJournal;
 import org.nusco.narjillos.persistence.ExperimentLoader;
+import org.nusco.narjillos.persistence.ExperimentReplica;
+import org.nusco.narjillos.persistence.JournalEvent;
 import org.nusco.narjillos.persistence.PersistentDNALog;
 import org.nusco.narjillos.persistence.PersistentHistoryLog;
+import org.nusco.narjillos.persistence.serialization.JSON;
 
 /**
  * The "lab" program. It reads data from an experiment and does analysis and
  * conversions.
+ * <p>
+ * It only reads the experiment, so it's safe to run while another program is
+ * running the same experiment. With the "watch" option, it repeats the command
+ * on an in-memory replica of the experiment's history and DNA (and reloads the
+ * experiment for the "json" option).
  */
 class Lab {
 
+	// The maximum SimHash distance for the "similar" option
+	private static final int SIMILAR_DNA_MAX_DISTANCE = 2;
+
 	public static void main(String[] args) throws IOException {
 		Options options = new Options();
 		options.addOption("?", "help", false, "print this message");
-		options.addOption("d", "dna", true, "print DNA (takes a DNA id)");
+		options.addOption("d", "dna", true, "print DNA (takes one or more comma-separated DNA ids)");
 		options.addOption("D", "dnastats", true, "print DNA stats (takes a DNA id)");
 		options.addOption("g", "germline", true, "print DNA germline (takes a DNA id)");
+		options.addOption("a", "ancestor", true, "print id of the youngest common ancestor of two DNAs (takes two comma-separated DNA ids)");
+		options.addOption("t", "subtree", true, "print number of descendants and live descendants of a DNA (takes a DNA id)");
+		options.addOption("S", "similar", true, "print ids of live DNA similar to a DNA (takes a DNA id)");
 		options.addOption("p", "primary", false, "print id of primary (most successful) DNA");
+		options.addOption("P", "primary-approx", false, "print id of approximated primary DNA (faster on large pools)");
 		options.addOption("s", "stats", false, "print current statistics");
 		options.addOption("h", "history", false, "output history as CSV");
 		options.addOption("G", "germlines-count", false, "print number of living germlines");
 		options.addOption("c", "csv", false, "output ancestry as CSV ('-Xmx' for memory)");
 		options.addOption("n", "nexus", false, "output ancestry as NEXUS ('-Xss' for deep stack)");
+		options.addOption("j", "json", false, "output the experiment as JSON");
+		options.addOption("e", "events", true, "output the events between two ticks as CSV (takes two comma-separated ticks)");
+		options.addOption("T", "at-tick", true, "rewind the experiment to a tick before running the other options (takes a tick)");
+		options.addOption("w", "watch", true, "repeat the command as the experiment goes on (takes an interval in seconds)");
 
 		try {
 			CommandLine commandLine;
@@ -52,35 +76,104 @@ class Lab {
 			}
 
 			String databaseFile = args[0];
-			Experiment experiment = ExperimentLoader.load(databaseFile, true);
-			HistoryLog historyLog = new PersistentHistoryLog(experiment.getId());
-			DNAAnalyzer dnaAnalyzer = new DNAAnalyzer(new PersistentDNALog(experiment.getId()));
-
-			if (commandLine.hasOption("dna"))
-				System.out.println(getDna(dnaAnalyzer, commandLine.getOptionValue("dna")));
-			else if (commandLine.hasOption("dnastats"))
-				System.out.println(getDNAStats(dnaAnalyzer, commandLine.getOptionValue("dnastats")));
-			else if (commandLine.hasOption("germline"))
-				dumpGermline(dnaAnalyzer, commandLine.getOptionValue("germline"));
-			else if (commandLine.hasOption("primary"))
-				System.out.println(getPrimaryDNAId(dnaAnalyzer));
-			else if (commandLine.hasOption("stats"))
-				System.out.println(historyLog.getLatestEntry());
-			else if (commandLine.hasOption("history"))
-				dumpHistory(historyLog);
-			else if (commandLine.hasOption("germlines-count"))
-				System.out.println(dnaAnalyzer.getNumberOfLivingGermlines());
-			else if (commandLine.hasOption("csv"))
-				System.out.print(new DNAExporter(dnaAnalyzer).toCSVFormat());
-			else if (commandLine.hasOption("nexus"))
-				System.out.println(new DNAExporter(dnaAnalyzer).toNEXUSFormat());
-			else
+			boolean isCommandValid;
+			if (commandLine.hasOption("watch")) {
+				if (commandLine.hasOption("at-tick"))
+					throw new RuntimeException("Cannot watch an experiment at a past tick");
+				isCommandValid = watch(commandLine, databaseFile, Long.parseLong(commandLine.getOptionValue("watch").trim()));
+			} else {
+				Experiment experiment;
+				if (commandLine.hasOption("at-tick"))
+					experiment = ExperimentLoader.loadAtTick(databaseFile, Long.parseLong(commandLine.getOptionValue("at-tick").trim()), true);
+				else
+					experiment = ExperimentLoader.load(databaseFile, true);
+				HistoryLog historyLog = new PersistentHistoryLog(experiment.getId(), true);
+				DNAAnalyzer dnaAnalyzer = new DNAAnalyzer(new PersistentDNALog(experiment.getId(), true));
+				isCommandValid = runCommand(commandLine, experiment, historyLog, dnaAnalyzer);
+			}
+			if (!isCommandValid)
 				printHelpText(options);
 		} catch (RuntimeException e) {
 			System.out.println(e.getMessage());
 		}
 	}
 
+	// Returns false if there is no command to run.
+	private static boolean runCommand(CommandLine commandLine, Experiment experiment, HistoryLog historyLog, DNAAnalyzer dnaAnalyzer) throws IOException {
+		if (commandLine.hasOption("dna"))
+			dumpDna(dnaAnalyzer, commandLine.getOptionValue("dna"));
+		else if (commandLine.hasOption("dnastats"))
+			System.out.println(getDNAStats(dnaAnalyzer, commandLine.getOptionValue("dnastats")));
+		else if (commandLine.hasOption("germline"))
+			dumpGermline(dnaAnalyzer, commandLine.getOptionValue("germline"));
+		else if (commandLine.hasOption("ancestor"))
+			System.out.println(getCommonAncestorId(dnaAnalyzer, commandLine.getOptionValue("ancestor")));
+		else if (commandLine.hasOption("subtree"))
+			System.out.println(getSubtreeStats(dnaAnalyzer, commandLine.getOptionValue("subtree")));
+		else if (commandLine.hasOption("similar"))
+			dumpSimilarDna(dnaAnalyzer, commandLine.getOptionValue("similar"));
+		else if (commandLine.hasOption("primary"))
+			System.out.println(getPrimaryDNAId(dnaAnalyzer.getMostSuccessfulDna()));
+		else if (commandLine.hasOption("primary-approx"))
+			System.out.println(getPrimaryDNAId(dnaAnalyzer.getMostSuccessfulDnaApproximately()));
+		else if (commandLine.hasOption("stats"))
+			System.out.println(historyLog.getLatestEntry());
+		else if (commandLine.hasOption("history"))
+			dumpHistory(historyLog);
+		else if (commandLine.hasOption("germlines-count"))
+			System.out.println(dnaAnalyzer.getNumberOfLivingGermlines());
+		else if (commandLine.hasOption("csv"))
+			System.out.print(new DNAExporter(dnaAnalyzer).toCSVFormat());
+		else if (commandLine.hasOption("nexus"))
+			System.out.println(new DNAExporter(dnaAnalyzer).toNEXUSFormat());
+		else if (commandLine.hasOption("json"))
+			dumpJson(experiment);
+		else if (commandLine.hasOption("events"))
+			dumpEvents(experiment, commandLine.getOptionValue("events"));
+		else
+			return false;
+		return true;
+	}
+
+	// Runs the command on a replica, and refreshes the replica between runs.
+	// The "json" option needs the whole experiment, so it reloads it instead.
+	// (The "events" option reads the journal, that is always up to date.)
+	// Stops when the program is killed.
+	private static boolean watch(CommandLine commandLine, String databaseFile, long intervalSeconds) throws IOException {
+		if (intervalSeconds <= 0)
+			throw new RuntimeException("The watch interval must be positive");
+		Experiment experiment = ExperimentLoader.load(databaseFile, true);
+		ExperimentReplica replica = new ExperimentReplica(experiment.getId());
+		HistoryLog historyLog = replica.getHistoryLog();
+		DNAAnalyzer dnaAnalyzer = new DNAAnalyzer(replica.getDnaLog());
+		try {
+			while (true) {
+				if (!runCommand(commandLine, experiment, historyLog, dnaAnalyzer))
+					return false;
+				Thread.sleep(intervalSeconds * 1000);
+				replica.refresh();
+				if (commandLine.hasOption("json"))
+					experiment = ExperimentLoader.load(databaseFile, false);
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} finally {
+			replica.close();
+		}
+	}
+
+	private static void dumpDna(DNAAnalyzer dnaAnalyzer, String dnaIds) {
+		String[] ids = dnaIds.split(",");
+		long[] parsedIds = new long[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			parsedIds[i] = Long.parseLong(ids[i].trim());
+		List<DNA> dnas = dnaAnalyzer.getDna(parsedIds);
+		if (dnas.size() != parsedIds.length)
+			throw new RuntimeException("DNA not found");
+		for (DNA dna : dnas)
+			System.out.println(dna);
+	}
+
 	private static String getDNAStats(DNAAnalyzer dnaAnalyzer, String dnaId) {
 		return dnaAnalyzer.getDNAStatistics(getDna(dnaAnalyzer, dnaId));
 	}
@@ -92,8 +185,29 @@ class Lab {
 			System.out.println(ancestor);
 	}
 
-	private static long getPrimaryDNAId(DNAAnalyzer dnaAnalyzer) {
-		DNA dna = dnaAnalyzer.getMostSuccessfulDna();
+	private static long getCommonAncestorId(DNAAnalyzer dnaAnalyzer, String dnaIds) {
+		String[] ids = dnaIds.split(",");
+		if (ids.length != 2)
+			throw new RuntimeException("Expected two comma-separated DNA ids");
+		Phylogeny phylogeny = dnaAnalyzer.getPhylogeny();
+		return phylogeny.getLowestCommonAncestor(Long.parseLong(ids[0].trim()), Long.parseLong(ids[1].trim()));
+	}
+
+	private static String getSubtreeStats(DNAAnalyzer dnaAnalyzer, String dnaId) {
+		Phylogeny phylogeny = dnaAnalyzer.getPhylogeny();
+		long id = Long.parseLong(dnaId);
+		return "Descendants      => " + phylogeny.getSubtreeSize(id) + "\n" +
+			"Live descendants => " + phylogeny.getNumberOfLiveDescendants(id) + "\n" +
+			"Ancestors        => " + phylogeny.getDepth(id);
+	}
+
+	private static void dumpSimilarDna(DNAAnalyzer dnaAnalyzer, String dnaId) {
+		DNA dna = getDna(dnaAnalyzer, dnaId);
+		for (DNA similarDna : dnaAnalyzer.getSimilarLiveDna(dna, SIMILAR_DNA_MAX_DISTANCE))
+			System.out.println(similarDna.getId());
+	}
+
+	private static long getPrimaryDNAId(DNA dna) {
 		validateDna(dna);
 		return dna.getId();
 	}
@@ -104,6 +218,24 @@ class Lab {
 			System.out.println(stat);
 	}
 
+	private static void dumpEvents(Experiment experiment, String ticks) {
+		String[] fromAndTo = ticks.split(",");
+		if (fromAndTo.length != 2)
+			throw new RuntimeException("Expected two comma-separated ticks");
+		long fromTick = Long.parseLong(fromAndTo[0].trim());
+		long toTick = Long.parseLong(fromAndTo[1].trim());
+		System.out.println(JournalEvent.toCsvHeader());
+		for (JournalEvent event : EventJournal.read(experiment.getId(), fromTick, toTick))
+			System.out.println(event);
+	}
+
+	private static void dumpJson(Experiment experiment) throws IOException {
+		Writer writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+		JSON.toJson(experiment, Experiment.class, writer);
+		writer.write("\n");
+		writer.flush();
+	}
+
 	private static DNA getDna(DNAAnalyzer dnaAnalyzer, String id) {
 		Long dnaId = Long.parseLong(id);
 		DNA dna = dnaAnalyzer.getDna(dnaId);
@@ -11,6 +11,10 @@ import org.nusco.narjillos.core.utilities.Version;
  */
 public class NarjillosRunner {
 
+	// Without graphics, there is no reason to stop between ticks -
+	// so tick in large batches.
+	private static final int TICKS_PER_BATCH = 1000;
+
 	public static void main(String... args) throws Exception {
 		CommandLineOptions options = CommandLineOptions.parse(false, args);
 		if (options == null)
@@ -28,7 +32,7 @@ public class NarjillosRunner {
 
 		Runtime.getRuntime().addShutdownHook(new Thread(dish::terminate));
 
-		while (dish.tick())
+		while (dish.tick(TICKS_PER_BATCH))
 			;
 		System.exit(0);
 	}
@@ -0,0 +1,127 @@
+package org.nusco.narjillos;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.core.geometry.FastMath;
+import org.nusco.narjillos.core.utilities.Version;
+import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
+import org.nusco.narjillos.experiment.Sweep;
+
+/**
+ * The "sweep" program. It runs many experiments with different seeds in the
+ * same JVM, and prints a summary table of their final statistics as CSV. It
+ * can also vary some of the parameters in config.yaml (see Configuration),
+ * and run each seed with each combination of values.
+ */
+class SweepRunner {
+
+	private static final long DEFAULT_TICKS = 100_000;
+
+	public static void main(String[] args) {
+		Options options = new Options();
+		options.addOption("?", "help", false, "print this message");
+		options.addOption("e", "seeds", true, "seeds to run, as a comma-separated list or a range (e.g. 1..16)");
+		options.addOption("t", "ticks", true, "maximum number of ticks for each experiment (default: " + DEFAULT_TICKS + ")");
+		options.addOption("p", "parallelism", true, "number of worker threads (default: number of cores)");
+		options.addOption("v", "vary", true, "a parameter and its values, as a comma-separated list (e.g. ecosystem:food_density_per_block=0.5,1,2). Can be repeated");
+
+		try {
+			CommandLine commandLine;
+			try {
+				commandLine = new BasicParser().parse(options, args);
+			} catch (ParseException e) {
+				printHelpText(options);
+				return;
+			}
+
+			if (commandLine.hasOption("?") || !commandLine.hasOption("seeds")) {
+				printHelpText(options);
+				return;
+			}
+
+			List<Long> seeds = parseSeeds(commandLine.getOptionValue("seeds"));
+			long ticks = commandLine.hasOption("ticks") ? Long.parseLong(commandLine.getOptionValue("ticks")) : DEFAULT_TICKS;
+			int parallelism = commandLine.hasOption("parallelism")
+				? Integer.parseInt(commandLine.getOptionValue("parallelism"))
+				: Runtime.getRuntime().availableProcessors();
+			List<String> parameters = new ArrayList<>();
+			List<Configuration> configurations = new ArrayList<>();
+			configurations.add(Configuration.DEFAULT);
+			String[] variations = commandLine.hasOption("vary") ? commandLine.getOptionValues("vary") : new String[0];
+			for (String variation : variations) {
+				parameters.add(parseParameter(variation));
+				configurations = vary(configurations, variation);
+			}
+
+			// pay up front for the setup of FastMath, once for all experiments
+			FastMath.setUp();
+
+			Sweep sweep = new Sweep(seeds, configurations, ticks, Version.read(), parallelism);
+			List<Map<Long, ExperimentHistoryEntry>> results = sweep.run();
+
+			System.out.println(Sweep.toCsvHeader(parameters));
+			for (int i = 0; i < configurations.size(); i++)
+				for (Map.Entry<Long, ExperimentHistoryEntry> result : results.get(i).entrySet())
+					System.out.println(Sweep.toCsvRow(result.getKey(), configurations.get(i), parameters, result.getValue()));
+		} catch (RuntimeException e) {
+			System.out.println(e.getMessage());
+		}
+		System.exit(0);
+	}
+
+	static List<Long> parseSeeds(String seeds) {
+		List<Long> result = new LinkedList<>();
+		try {
+			if (seeds.contains("..")) {
+				String[] limits = seeds.split("\\.\\.");
+				long first = Long.parseLong(limits[0].trim());
+				long last = Long.parseLong(limits[1].trim());
+				for (long seed = first; seed <= last; seed++)
+					result.add(seed);
+			} else {
+				for (String seed : seeds.split(","))
+					result.add(Long.parseLong(seed.trim()));
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new RuntimeException("Invalid seeds: " + seeds);
+		}
+		return result;
+	}
+
+	static String parseParameter(String variation) {
+		if (!variation.contains("="))
+			throw new RuntimeException("Invalid variation: " + variation);
+		return variation.substring(0, variation.indexOf('=')).trim();
+	}
+
+	/**
+	 * Returns a copy of each configuration for each of the values in the
+	 * variation (such as "ecosystem:catalyst_level=1000,2000").
+	 */
+	static List<Configuration> vary(List<Configuration> configurations, String variation) {
+		String parameter = parseParameter(variation);
+		String values = variation.substring(variation.indexOf('=') + 1);
+		List<Configuration> result = new ArrayList<>();
+		try {
+			for (Configuration configuration : configurations)
+				for (String value : values.split(","))
+					result.add(configuration.with(parameter, Double.parseDouble(value.trim())));
+		} catch (NumberFormatException e) {
+			throw new RuntimeException("Invalid variation: " + variation);
+		}
+		return result;
+	}
+
+	private static void printHelpText(Options commandLineOptions) {
+		new HelpFormatter().printHelp("sweep <options>", commandLineOptions);
+	}
+}
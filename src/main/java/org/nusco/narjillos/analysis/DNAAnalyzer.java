@@ -1,12 +1,11 @@
 package org.nusco.narjillos.analysis;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.nusco.narjillos.core.geometry.Vector;
 import org.nusco.narjillos.core.things.Energy;
@@ -14,9 +13,13 @@ import org.nusco.narjillos.core.utilities.NumberFormatter;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.genomics.DNA;
 import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.Phylogeny;
+import org.nusco.narjillos.genomics.SimHashIndex;
 
 public class DNAAnalyzer {
 
+	private static final int MIN_APPROXIMATION_CANDIDATES = 32;
+
 	private final DNALog dnaLog;
 
 	public DNAAnalyzer(DNALog dnaLog) {
@@ -27,6 +30,10 @@ public class DNAAnalyzer {
 		return dnaLog.getDna(id);
 	}
 
+	public List<DNA> getDna(long[] ids) {
+		return dnaLog.getDnaBatch(ids);
+	}
+
 	public List<DNA> getGermline(DNA dna) {
 		List<DNA> result = new LinkedList<>();
 
@@ -39,18 +46,34 @@ public class DNAAnalyzer {
 		return result;
 	}
 
+	/**
+	 * Returns the live DNA with the lowest total Levenshtein distance from the
+	 * rest of the pool.
+	 */
 	public DNA getMostSuccessfulDna() {
+		return new MedoidFinder().findMedoid(dnaLog.getLiveDna());
+	}
+
+	/**
+	 * Like getMostSuccessfulDna(), but much faster on large pools. The result
+	 * is not guaranteed to be the same.
+	 */
+	public DNA getMostSuccessfulDnaApproximately() {
 		List<DNA> liveDna = dnaLog.getLiveDna();
-		DNA result = null;
-		int lowestLevenshteinDistance = Integer.MAX_VALUE;
-		for (DNA dna : liveDna) {
-			int currentLevenshteinDistance = totalLevenshteinDistanceFromTheRestOfThePool(dna, liveDna);
-			if (currentLevenshteinDistance < lowestLevenshteinDistance) {
-				result = dna;
-				lowestLevenshteinDistance = currentLevenshteinDistance;
-			}
-		}
-		return result;
+		int numberOfCandidates = Math.max(MIN_APPROXIMATION_CANDIDATES, (int) Math.sqrt(liveDna.size()));
+		return new MedoidFinder().findApproximateMedoid(liveDna, numberOfCandidates);
+	}
+
+	/**
+	 * Returns the live DNAs (except the DNA itself) with a SimHash distance
+	 * from the DNA that is no larger than the given distance.
+	 */
+	public List<DNA> getSimilarLiveDna(DNA dna, int maxDistance) {
+		SimHashIndex index = new SimHashIndex(maxDistance);
+		for (DNA liveDna : dnaLog.getLiveDna())
+			index.add(liveDna);
+		index.remove(dna);
+		return index.findWithinDistance(dna, maxDistance);
 	}
 
 	public String getDNAStatistics(DNA dna) {
@@ -63,72 +86,38 @@ public class DNAAnalyzer {
 			"Egg velocity       => " + specimen.getBody().getEggVelocity() + "\n";
 	}
 
-	public int getNumberOfLivingGermlines() {
-		Set<DNA> originalAncestors = new LinkedHashSet<>();
-
-		// optimization: don't walk the same ancestry twice
-		// (this can have a big impact on performance)
-		Set<DNA> alreadyExplored = new LinkedHashSet<>();
-
-		for (DNA dna : dnaLog.getLiveDna()) {
-			DNA originalAncestor = findOriginalAncestor(dna, alreadyExplored);
-			if (originalAncestor != null)
-				originalAncestors.add(originalAncestor);
-		}
+	/**
+	 * Reads the family tree of the whole gene pool, without the genes.
+	 */
+	public Phylogeny getPhylogeny() {
+		return dnaLog.getPhylogeny();
+	}
 
-		return originalAncestors.size();
+	public int getNumberOfLivingGermlines() {
+		return getPhylogeny().getNumberOfLivingGermlines();
 	}
 
 	Map<Long, Long> getChildrenToParents() {
+		Phylogeny phylogeny = getPhylogeny();
 		Map<Long, Long> result = new LinkedHashMap<>();
-		for (DNA dna : getDnaById().values())
-			result.put(dna.getId(), dna.getParentId());
+		for (long id : phylogeny.getIds())
+			result.put(id, phylogeny.getSavedParentId(id));
 		return result;
 	}
 
 	Map<Long, List<Long>> getParentsToChildren() {
-		List<DNA> allDNA = dnaLog.getAllDna();
+		Phylogeny phylogeny = getPhylogeny();
 		Map<Long, List<Long>> result = new LinkedHashMap<>();
-		result.put(0L, new LinkedList<>());
-		for (DNA dna : allDNA)
-			result.put(dna.getId(), new LinkedList<>());
-		for (DNA dna : allDNA)
-			result.get(dna.getParentId()).add(dna.getId());
-		return result;
-	}
-
-	private int totalLevenshteinDistanceFromTheRestOfThePool(DNA dna, List<DNA> aliveDna) {
-		int result = 0;
-		for (DNA otherDna : aliveDna) {
-			if (!otherDna.equals(dna))
-				result += dna.getLevenshteinDistanceFrom(otherDna);
-		}
+		result.put(0L, toList(phylogeny.getChildrenIds(0)));
+		for (long id : phylogeny.getIds())
+			result.put(id, toList(phylogeny.getChildrenIds(id)));
 		return result;
 	}
 
-	private Map<Long, DNA> getDnaById() {
-		Map<Long, DNA> result = new LinkedHashMap<>();
-		for (DNA dna : dnaLog.getAllDna())
-			result.put(dna.getId(), dna);
+	private static List<Long> toList(long[] ids) {
+		List<Long> result = new ArrayList<>(ids.length);
+		for (long id : ids)
+			result.add(id);
 		return result;
 	}
-
-	/**
-	 * Returns the original ancestor, or null if the ancestry chain converges into
-	 * a chain that has already been explored.
-	 */
-	private DNA findOriginalAncestor(DNA dna, Set<DNA> alreadyExplored) {
-		DNA ancestor = dna;
-		while (true) {
-			if (alreadyExplored.contains(ancestor))
-				return null;
-
-			alreadyExplored.add(ancestor);
-
-			if (!ancestor.hasParent())
-				return ancestor;
-
-			ancestor = dnaLog.getDna(ancestor.getParentId());
-		}
-	}
 }
@@ -12,6 +12,11 @@ import java.util.Map.Entry;
  * caveat that the first level actually represents unrelated genotypes). The
  * reason for this trickery is that a singly-rooted tree is easier to analyze in
  * most tools that a bunch of separate unrelated trees.
+ * <p>
+ * If the log has gaps (for example, after a DNAPruner removed some DNA), the
+ * CSV format still has the parent ids that the DNAs were saved with, even if
+ * the parents are not in the log anymore. The NEXUS tree hangs the DNAs with
+ * a missing parent from the zero node.
  */
 public class DNAExporter {
 
@@ -0,0 +1,149 @@
+package org.nusco.narjillos.analysis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.LevenshteinDistance;
+
+/**
+ * Finds the medoid of a pool of DNA: the DNA with the lowest total Levenshtein
+ * distance from all the other DNAs in the pool. If many DNAs have the same
+ * total distance, the medoid is the first of them.
+ */
+class MedoidFinder {
+
+	private final ForkJoinPool pool;
+
+	MedoidFinder() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	MedoidFinder(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Calculates the distance between each pair of DNAs (only once per pair,
+	 * because the distance is symmetric), in parallel.
+	 */
+	DNA findMedoid(List<DNA> pool) {
+		if (pool.isEmpty())
+			return null;
+
+		DNA[] dnas = pool.toArray(new DNA[pool.size()]);
+		AtomicLongArray totalDistances = new AtomicLongArray(dnas.length);
+
+		// Row i compares DNA i with all the DNAs after it. Process the rows
+		// in pairs (a long one and a short one) to balance the work.
+		runInParallel(() -> IntStream.range(0, (dnas.length + 1) / 2).parallel().forEach(i -> {
+			addDistancesFromFollowingDnas(dnas, i, totalDistances);
+			int mirroredRow = dnas.length - 1 - i;
+			if (mirroredRow != i)
+				addDistancesFromFollowingDnas(dnas, mirroredRow, totalDistances);
+		}));
+
+		int result = 0;
+		for (int i = 1; i < dnas.length; i++)
+			if (totalDistances.get(i) < totalDistances.get(result))
+				result = i;
+		return dnas[result];
+	}
+
+	/**
+	 * Only calculates the exact total distance for the DNAs that look most
+	 * promising, judging by their total SimHash distance from the rest of
+	 * the pool (which is very cheap to calculate). Also stops calculating a
+	 * DNA's total distance as soon as it's larger than the best one found so
+	 * far. The result can be different from the exact medoid.
+	 */
+	DNA findApproximateMedoid(List<DNA> pool, int numberOfCandidates) {
+		if (pool.isEmpty())
+			return null;
+
+		DNA[] dnas = pool.toArray(new DNA[pool.size()]);
+		List<Integer> candidates = getMostCentralBySimHash(dnas, numberOfCandidates);
+
+		AtomicLong lowestTotalDistance = new AtomicLong(Long.MAX_VALUE);
+		long[] totalDistances = new long[candidates.size()];
+		runInParallel(() -> IntStream.range(0, candidates.size()).parallel().forEach(i -> {
+			long totalDistance = getTotalDistance(dnas, candidates.get(i), lowestTotalDistance);
+			totalDistances[i] = totalDistance;
+			lowestTotalDistance.accumulateAndGet(totalDistance, Math::min);
+		}));
+
+		int result = 0;
+		for (int i = 1; i < candidates.size(); i++) {
+			long total = totalDistances[i];
+			long bestTotal = totalDistances[result];
+			if (total < bestTotal || (total == bestTotal && candidates.get(i) < candidates.get(result)))
+				result = i;
+		}
+		return dnas[candidates.get(result)];
+	}
+
+	private void addDistancesFromFollowingDnas(DNA[] dnas, int row, AtomicLongArray totalDistances) {
+		LevenshteinDistance levenshteinDistance = new LevenshteinDistance(dnas[row]);
+		long rowTotal = 0;
+		for (int column = row + 1; column < dnas.length; column++) {
+			int distance = levenshteinDistance.from(dnas[column]);
+			rowTotal += distance;
+			totalDistances.addAndGet(column, distance);
+		}
+		totalDistances.addAndGet(row, rowTotal);
+	}
+
+	// Returns Long.MAX_VALUE if the total distance gets larger than the bound.
+	private long getTotalDistance(DNA[] dnas, int index, AtomicLong bound) {
+		LevenshteinDistance levenshteinDistance = new LevenshteinDistance(dnas[index]);
+		long result = 0;
+		for (int i = 0; i < dnas.length; i++) {
+			if (i == index)
+				continue;
+			result += levenshteinDistance.from(dnas[i]);
+			if (result > bound.get())
+				return Long.MAX_VALUE;
+		}
+		return result;
+	}
+
+	// Returns the indexes of the DNAs with the lowest total SimHash distance
+	// from the rest of the pool, in the same order as the pool.
+	private List<Integer> getMostCentralBySimHash(DNA[] dnas, int numberOfCandidates) {
+		// The total Hamming distance of a hash from all the others can be
+		// calculated from the number of ones in each bit position.
+		int[] onesPerBit = new int[DNA.SIMHASH_SIZE];
+		for (DNA dna : dnas)
+			for (int bit = 0; bit < DNA.SIMHASH_SIZE; bit++)
+				if ((dna.getSimHash() & (1 << bit)) != 0)
+					onesPerBit[bit]++;
+
+		long[] totalSimHashDistances = new long[dnas.length];
+		for (int i = 0; i < dnas.length; i++)
+			for (int bit = 0; bit < DNA.SIMHASH_SIZE; bit++)
+				totalSimHashDistances[i] += ((dnas[i].getSimHash() & (1 << bit)) != 0) ? dnas.length - onesPerBit[bit] : onesPerBit[bit];
+
+		List<Integer> result = new ArrayList<>();
+		for (int i = 0; i < dnas.length; i++)
+			result.add(i);
+		result.sort(Comparator.comparingLong((Integer i) -> totalSimHashDistances[i]).thenComparingInt(i -> i));
+		result = new ArrayList<>(result.subList(0, Math.min(numberOfCandidates, result.size())));
+		result.sort(Comparator.naturalOrder());
+		return result;
+	}
+
+	// The parallel streams in the task run in the same pool.
+	private void runInParallel(Runnable task) {
+		try {
+			pool.submit(task).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
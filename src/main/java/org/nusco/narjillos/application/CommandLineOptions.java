@@ -28,6 +28,8 @@ public class CommandLineOptions extends Options {
 
 	private boolean fast = false;
 
+	private boolean levelOfDetail = false;
+
 	private long seed = NO_SEED;
 
 	private String dna = null;
@@ -51,6 +53,7 @@ public class CommandLineOptions extends Options {
 		addOption("s", "save", false, "save experiment to file");
 		addOption("e", "seed", true, "start experiment with given seed");
 		addOption("d", "dna", true, "populate experiment with specific DNA (takes genes, or a file containing genes)");
+		addOption("l", "lod", false, "approximate isolated narjillos (faster, but results differ from a full simulation)");
 
 		CommandLineParser parser = new BasicParser();
 
@@ -69,6 +72,7 @@ public class CommandLineOptions extends Options {
 
 			setFast(line.hasOption("fast"));
 			setPersistent(line.hasOption("save"));
+			setLevelOfDetail(line.hasOption("lod"));
 
 			if (line.hasOption("seed")) {
 				if (line.hasOption("dna"))
@@ -112,6 +116,10 @@ public class CommandLineOptions extends Options {
 		return persistent;
 	}
 
+	public boolean isLevelOfDetail() {
+		return levelOfDetail;
+	}
+
 	public long getSeed() {
 		return seed;
 	}
@@ -142,6 +150,10 @@ public class CommandLineOptions extends Options {
 		this.persistent = persistent;
 	}
 
+	private void setLevelOfDetail(boolean levelOfDetail) {
+		this.levelOfDetail = levelOfDetail;
+	}
+
 	private void setSeed(String seed) {
 		String seedWithoutVersion = seed.split("-")[0];
 		this.seed = Long.parseLong(seedWithoutVersion);
@@ -14,8 +14,8 @@ import org.nusco.narjillos.core.geometry.Vector;
 import org.nusco.narjillos.core.utilities.NumGen;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.DNADocumentReader;
 
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -83,16 +83,13 @@ public class DNABrowserApplication extends NarjillosApplication {
 			 * per line) and returns a list of matching phenotypes.
 			 */
 			private List<DNA> readGenomes(String genomesFileName) {
-				try {
-					BufferedReader reader = new BufferedReader(new FileReader(genomesFileName));
-
+				try (DNADocumentReader reader = new DNADocumentReader(new FileReader(genomesFileName))) {
 					List<DNA> result = new ArrayList<>();
-					String nextLine = reader.readLine();
-					while (nextLine != null) {
-						result.add(new DNA(1, nextLine.trim()));
-						nextLine = reader.readLine();
+					byte[] genes = reader.readGenes();
+					while (genes != null) {
+						result.add(new DNA(1, genes, DNA.NO_PARENT));
+						genes = reader.readGenes();
 					}
-					reader.close();
 					System.out.println("Loaded genomes from " + genomesFileName);
 					return result;
 				} catch (Exception e) {
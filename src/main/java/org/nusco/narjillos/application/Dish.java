@@ -9,6 +9,12 @@ interface Dish {
 
 	boolean tick();
 
+	/**
+	 * Runs up to maxTicks ticks in a row. Returns false if the dish
+	 * doesn't want to be ticked anymore.
+	 */
+	boolean tick(int maxTicks);
+
 	Environment getEnvironment();
 
 	String getStatistics();
@@ -42,6 +42,13 @@ class IsolationDish implements Dish {
 		return true;
 	}
 
+	@Override
+	public synchronized boolean tick(int maxTicks) {
+		for (int i = 0; i < maxTicks; i++)
+			tick();
+		return true;
+	}
+
 	@Override
 	public void terminate() {
 	}
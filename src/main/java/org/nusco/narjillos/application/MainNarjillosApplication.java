@@ -65,10 +65,12 @@ public class MainNarjillosApplication extends NarjillosApplication {
 
 				while (!hasBeenAskedToStop()) {
 					long startTime = System.currentTimeMillis();
-					if (state.getSpeed() != Speed.PAUSED)
-						if (!tick())
+					Speed speed = state.getSpeed();
+					if (speed != Speed.PAUSED)
+						if (!tick(speed.getTicksPerBatch()))
 							Platform.exit();
-					waitFor(state.getSpeed().getTicksPeriod(), startTime);
+					if (speed.isThrottled())
+						waitFor(speed.getTicksPeriod(), startTime);
 				}
 			}
 		};
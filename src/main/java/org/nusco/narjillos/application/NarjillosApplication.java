@@ -153,6 +153,10 @@ abstract class NarjillosApplication extends Application {
 		return getDish().tick();
 	}
 
+	boolean tick(int maxTicks) {
+		return getDish().tick(maxTicks);
+	}
+
 	String getDishStatistics() {
 		return getDish().getStatistics();
 	}
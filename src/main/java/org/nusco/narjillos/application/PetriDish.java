@@ -12,7 +12,8 @@ import org.nusco.narjillos.experiment.environment.Ecosystem;
 import org.nusco.narjillos.experiment.environment.Environment;
 import org.nusco.narjillos.experiment.environment.FoodPellet;
 import org.nusco.narjillos.genomics.DNALog;
-import org.nusco.narjillos.genomics.VolatileDNALog;
+import org.nusco.narjillos.genomics.TieredDNALog;
+import org.nusco.narjillos.persistence.EventJournal;
 import org.nusco.narjillos.persistence.ExperimentLog;
 import org.nusco.narjillos.persistence.PersistentDNALog;
 import org.nusco.narjillos.persistence.PersistentHistoryLog;
@@ -28,23 +29,33 @@ public class PetriDish implements Dish {
 
 	private ExperimentLog experimentLog;
 
+	private EventJournal eventJournal;
+
 	private volatile boolean isSaving = false;
 
+	private Thread saveThread;
+
+	private volatile RuntimeException saveError;
+
 	private volatile boolean isTerminated = false;
 
 	private volatile long lastSaveTime = System.currentTimeMillis();
 
 	public PetriDish(String version, CommandLineOptions options, int size) {
 		experiment = createExperiment(version, options, size);
+		if (options.isLevelOfDetail())
+			experiment.getEcosystem().enableLevelOfDetail();
 		persistent = options.isPersistent();
 		if (persistent) {
-			experimentLog = new ExperimentLog(experiment.getId());
+			experimentLog = new ExperimentLog(experiment.getId(), Configuration.EXPERIMENT_CHECKPOINTS_TO_KEEP);
 			if (isNewExperiment(experiment))
 				experimentLog.save(experiment);
 		}
 		reportPersistenceOptions(options);
+		if (options.isLevelOfDetail())
+			System.out.println("Level of detail: isolated narjillos are approximated (results are not exact)");
 
-		System.out.println("Ticks:\tNarji:\tFood:");
+		System.out.println("Ticks:\tNarji:\tFood:\tTPS:");
 	}
 
 	private boolean isNewExperiment(Experiment experiment) {
@@ -56,11 +67,24 @@ public class PetriDish implements Dish {
 	}
 
 	public boolean tick() {
+		return tick(1);
+	}
+
+	/**
+	 * Runs a batch of ticks in a tight loop, without checking for periodic
+	 * operations (such as reporting and saving) at each tick. The batch stops
+	 * early when it gets to the next periodic operation.
+	 */
+	public boolean tick(int maxTicks) {
 		if (isTerminated)
 			return false;
 
 		executePeriodOperations();
-		experiment.tick();
+
+		long ticksToNextPeriodicOperation = Configuration.EXPERIMENT_SAMPLE_INTERVAL_TICKS - getTotalTicks() % Configuration.EXPERIMENT_SAMPLE_INTERVAL_TICKS;
+		long batchSize = Math.min(maxTicks, ticksToNextPeriodicOperation);
+		for (long i = 0; i < batchSize && !isTerminated; i++)
+			experiment.tick();
 		return true;
 	}
 
@@ -71,7 +95,10 @@ public class PetriDish implements Dish {
 	public void terminate() {
 		while (isBusy())
 			sleepAWhile();
+		checkForSaveErrors();
 		String finalReport = experiment.terminate();
+		if (eventJournal != null)
+			eventJournal.close();
 		System.out.println(finalReport);
 		isTerminated = true;
 	}
@@ -117,10 +144,12 @@ public class PetriDish implements Dish {
 	}
 
 	private void setPersistenceStrategies(Experiment experiment, CommandLineOptions options) {
-		if (options.isPersistent())
+		if (options.isPersistent()) {
 			setPersistenceStrategies(experiment, new PersistentDNALog(experiment.getId()), new PersistentHistoryLog(experiment.getId()));
-		else
-			setPersistenceStrategies(experiment, new VolatileDNALog(), new VolatileHistoryLog());
+			eventJournal = new EventJournal(experiment.getId(), experiment.getTicksChronometer());
+			experiment.getEcosystem().addEventListener(eventJournal);
+		} else
+			setPersistenceStrategies(experiment, new TieredDNALog(), new VolatileHistoryLog());
 	}
 
 	private void setPersistenceStrategies(Experiment result, DNALog dnaLog, HistoryLog historyLog) {
@@ -136,8 +165,7 @@ public class PetriDish implements Dish {
 	}
 
 	private void executePeriodOperations() {
-		long ticks = experiment.getTicksChronometer().getTotalTicks();
-		if (ticks % Configuration.EXPERIMENT_SAMPLE_INTERVAL_TICKS != 0)
+		if (getTotalTicks() % Configuration.EXPERIMENT_SAMPLE_INTERVAL_TICKS != 0)
 			return;
 
 		experiment.saveHistoryEntry();
@@ -146,9 +174,11 @@ public class PetriDish implements Dish {
 		if (experiment.lifeIsExtinct()) {
 			// extinction!
 			isTerminated = true;
-			if (persistent)
+			if (persistent) {
+				waitForSave();
 				save();
-		} else if (persistent) {
+			}
+		} else if (persistent && !isSaving) {
 			double secondsSinceLastSave = (System.currentTimeMillis() - lastSaveTime) / 1000.0;
 			if (secondsSinceLastSave > Configuration.EXPERIMENT_SAVE_INTERVAL_SECONDS) {
 				save();
@@ -160,15 +190,63 @@ public class PetriDish implements Dish {
 	private String getReport() {
 		return NumberFormatter.format(experiment.getTicksChronometer().getTotalTicks()) + "\t" +
 			experiment.getEcosystem().getCount(Narjillo.LABEL) + "\t" +
-			experiment.getEcosystem().getCount(FoodPellet.LABEL);
+			experiment.getEcosystem().getCount(FoodPellet.LABEL) + "\t" +
+			getTicksInLastSecond() +
+			getLevelOfDetailReport() +
+			getPruningReport();
 	}
 
+	private String getPruningReport() {
+		if (experiment.getNumberOfPrunedDna() == 0)
+			return "";
+		return "\tPruned DNA: " + NumberFormatter.format(experiment.getNumberOfPrunedDna());
+	}
+
+	private String getLevelOfDetailReport() {
+		if (!experiment.getEcosystem().isLevelOfDetailEnabled())
+			return "";
+		return "\tLOD: " + experiment.getEcosystem().getLevelOfDetailStatistics();
+	}
+
+	// Takes a snapshot of the experiment between two ticks, and then writes
+	// it to the database in the background while the experiment goes on.
 	private void save() {
+		checkForSaveErrors();
 		isSaving = true;
-		System.out.print("> Saving...");
-		experimentLog.save(experiment);
-		System.out.println(" Done.");
-		isSaving = false;
+		System.out.println("> Saving...");
+		// The DNA in the snapshot must be in the database before the snapshot
+		experiment.flushDnaLog();
+		// ...and so must the events that led to it
+		eventJournal.flush();
+		byte[] snapshot = experimentLog.takeSnapshot(experiment);
+		long ticks = getTotalTicks();
+		saveThread = new Thread(() -> {
+			try {
+				experimentLog.save(snapshot, ticks);
+				System.out.println("> Saved.");
+			} catch (RuntimeException e) {
+				saveError = e;
+			} finally {
+				isSaving = false;
+			}
+		}, "Experiment saver");
+		saveThread.setDaemon(true);
+		saveThread.start();
+	}
+
+	private void waitForSave() {
+		if (saveThread == null)
+			return;
+		try {
+			saveThread.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void checkForSaveErrors() {
+		if (saveError != null)
+			throw new RuntimeException("Error while saving the experiment", saveError);
 	}
 
 	private long generateRandomSeed() {
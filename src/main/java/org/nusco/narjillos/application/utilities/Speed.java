@@ -8,6 +8,10 @@ public enum Speed {
 
 	private static final int TICKS_PER_SECOND = 30;
 
+	// At high speed, the model runs this many ticks in a row
+	// before it checks whether the speed changed.
+	private static final int FAST_TICKS_PER_BATCH = 100;
+
 	private final String description;
 
 	Speed(String description) {
@@ -19,7 +23,7 @@ public enum Speed {
 		case REALTIME:
 			return 1000 / TICKS_PER_SECOND;
 		case FAST:
-			return 1 / Integer.MAX_VALUE;
+			return 0;
 		case SLOW:
 			return 10_000 / TICKS_PER_SECOND;
 		case PAUSED:
@@ -29,6 +33,19 @@ public enum Speed {
 		}
 	}
 
+	public int getTicksPerBatch() {
+		if (this == FAST)
+			return FAST_TICKS_PER_BATCH;
+		return 1;
+	}
+
+	/**
+	 * At high speed, the model doesn't wait at all between ticks.
+	 */
+	public boolean isThrottled() {
+		return this != FAST;
+	}
+
 	public Speed up() {
 		switch (this) {
 		case PAUSED:
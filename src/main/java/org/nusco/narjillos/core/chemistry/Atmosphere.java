@@ -27,6 +27,20 @@ public class Atmosphere {
 		this.catalystLevel = catalystLevel;
 	}
 
+	private Atmosphere(Atmosphere atmosphere, int catalystLevel) {
+		this.saturationElementLevels = atmosphere.saturationElementLevels;
+		levels.putAll(atmosphere.levels);
+		this.catalystLevel = catalystLevel;
+	}
+
+	/**
+	 * Returns a copy of this atmosphere, with the same element levels and a
+	 * different catalyst level.
+	 */
+	public synchronized Atmosphere withCatalystLevel(int catalystLevel) {
+		return new Atmosphere(this, catalystLevel);
+	}
+
 	public synchronized double getAmountOf(Element element) {
 		if (element == ZERO)
 			return 0;
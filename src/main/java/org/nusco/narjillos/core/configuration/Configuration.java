@@ -3,10 +3,23 @@ package org.nusco.narjillos.core.configuration;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.yaml.snakeyaml.Yaml;
 
+/**
+ * The values in config.yaml, as constants.
+ * <p>
+ * The parameters that can change from experiment to experiment (for example,
+ * in a Sweep) are also in Configuration instances, that get passed to the
+ * objects that use them. Configuration.DEFAULT has the values in config.yaml.
+ * So far, these are the ecosystem parameters and the collision distance.
+ */
 public class Configuration {
 
 	private static final Map<String, Map<String, Object>> data = loadConfigurationData();
@@ -92,6 +105,8 @@ public class Configuration {
 
 	public static final int DNA_NUMBER_OF_CHROMOSOMES = getInt("dna", "number_of_chromosomes");
 
+	public static final int DNA_SPECIES_MAX_DISTANCE = getInt("dna", "species_max_distance");
+
 	// creatures
 	public static final double CREATURE_MAX_LIFESPAN = getDouble("creature", "max_lifespan");
 
@@ -153,8 +168,112 @@ public class Configuration {
 
 	public static final int ECOSYSTEM_CATALYST_LEVEL = getInt("ecosystem", "catalyst_level");
 
+	public static final int ECOSYSTEM_LOD_ISOLATION_RADIUS = getInt("ecosystem", "lod_isolation_radius");
+
+	public static final int ECOSYSTEM_LOD_REDUCED_TICK_INTERVAL = getInt("ecosystem", "lod_reduced_tick_interval");
+
 	// experiment
 	public static final int EXPERIMENT_SAMPLE_INTERVAL_TICKS = getInt("experiment", "sample_interval_ticks");
 
 	public static final int EXPERIMENT_SAVE_INTERVAL_SECONDS = getInt("experiment", "save_interval_seconds");
+
+	public static final int EXPERIMENT_CHECKPOINTS_TO_KEEP = getInt("experiment", "checkpoints_to_keep");
+
+	public static final int EXPERIMENT_DNA_PRUNING_INTERVAL_TICKS = getInt("experiment", "dna_pruning_interval_ticks");
+
+	public static final Configuration DEFAULT = new Configuration(loadParameters());
+
+	private static final List<String> INTEGER_PARAMETERS = Arrays.asList(
+		"ecosystem:food_respawn_average_interval_per_block",
+		"ecosystem:update_food_targets_interval",
+		"ecosystem:catalyst_level");
+
+	private static Map<String, Double> loadParameters() {
+		Map<String, Double> result = new LinkedHashMap<>();
+		result.put("physics:collision_distance", PHYSICS_COLLISION_DISTANCE);
+		result.put("ecosystem:eggs_density_per_block", ECOSYSTEM_EGGS_DENSITY_PER_BLOCK);
+		result.put("ecosystem:food_density_per_block", ECOSYSTEM_FOOD_DENSITY_PER_BLOCK);
+		result.put("ecosystem:max_food_density_per_1000_blocks", ECOSYSTEM_MAX_FOOD_DENSITY_PER_1000_BLOCK);
+		result.put("ecosystem:food_respawn_average_interval_per_block", (double) ECOSYSTEM_FOOD_RESPAWN_AVERAGE_INTERVAL_PER_BLOCK);
+		result.put("ecosystem:update_food_targets_interval", (double) ECOSYSTEM_UPDATE_FOOD_TARGETS_INTERVAL);
+		result.put("ecosystem:initial_element_level", ECOSYSTEM_INITIAL_ELEMENT_LEVEL);
+		result.put("ecosystem:catalyst_level", (double) ECOSYSTEM_CATALYST_LEVEL);
+		return Collections.unmodifiableMap(result);
+	}
+
+	// Keyed by "section:key", like in config.yaml.
+	private final Map<String, Double> parameters;
+
+	private Configuration(Map<String, Double> parameters) {
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Returns a copy of this configuration with a different value for a
+	 * parameter, such as "ecosystem:food_density_per_block".
+	 */
+	public Configuration with(String parameter, double value) {
+		if (!parameters.containsKey(parameter))
+			throw new RuntimeException("Unknown parameter \"" + parameter + "\" (parameters: " + String.join(", ", getParameterNames()) + ")");
+		if (INTEGER_PARAMETERS.contains(parameter) && value != Math.rint(value))
+			throw new RuntimeException("\"" + parameter + "\" is not an integer number");
+
+		Map<String, Double> result = new LinkedHashMap<>(parameters);
+		result.put(parameter, value);
+		return new Configuration(Collections.unmodifiableMap(result));
+	}
+
+	public List<String> getParameterNames() {
+		return new ArrayList<>(parameters.keySet());
+	}
+
+	public double getParameter(String parameter) {
+		if (!parameters.containsKey(parameter))
+			throw new RuntimeException("Unknown parameter \"" + parameter + "\"");
+		return parameters.get(parameter);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Configuration))
+			return false;
+		return parameters.equals(((Configuration) obj).parameters);
+	}
+
+	@Override
+	public int hashCode() {
+		return parameters.hashCode();
+	}
+
+	public double getCollisionDistance() {
+		return parameters.get("physics:collision_distance");
+	}
+
+	public double getEggsDensityPerBlock() {
+		return parameters.get("ecosystem:eggs_density_per_block");
+	}
+
+	public double getFoodDensityPerBlock() {
+		return parameters.get("ecosystem:food_density_per_block");
+	}
+
+	public double getMaxFoodDensityPer1000Blocks() {
+		return parameters.get("ecosystem:max_food_density_per_1000_blocks");
+	}
+
+	public int getFoodRespawnAverageIntervalPerBlock() {
+		return parameters.get("ecosystem:food_respawn_average_interval_per_block").intValue();
+	}
+
+	public int getUpdateFoodTargetsInterval() {
+		return parameters.get("ecosystem:update_food_targets_interval").intValue();
+	}
+
+	public double getInitialElementLevel() {
+		return parameters.get("ecosystem:initial_element_level");
+	}
+
+	public int getCatalystLevel() {
+		return parameters.get("ecosystem:catalyst_level").intValue();
+	}
 }
@@ -5,7 +5,10 @@ import org.nusco.narjillos.core.geometry.BoundingBox;
 import org.nusco.narjillos.core.geometry.Segment;
 import org.nusco.narjillos.core.geometry.Vector;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -22,9 +25,26 @@ import static org.nusco.narjillos.core.things.HashedLocation.dec;
  */
 public class Space {
 
+	public static final long AREA_SIZE = HashedLocation.GRID_SIZE;
+
 	private final Map<String, Map<Thing, Set<HashedLocation>>> labelsToThingsToLocations = new LinkedHashMap<>();
 	private final Map<HashedLocation, List<Thing>> locationsToThings = new LinkedHashMap<>();
-	private final List<Thing> allThings = new LinkedList<>();
+
+	// Dense lists of things, in insertion order: one for all things, and one per label.
+	private final List<Thing> allThings = new ArrayList<>();
+	private final List<Thing> readOnlyAllThings = Collections.unmodifiableList(allThings);
+	private final Map<String, List<Thing>> labelsToThings = new LinkedHashMap<>();
+	private final Map<String, List<Thing>> labelsToReadOnlyThings = new LinkedHashMap<>();
+
+	private final double collisionDistanceSquared;
+
+	public Space() {
+		this(Configuration.PHYSICS_COLLISION_DISTANCE);
+	}
+
+	public Space(double collisionDistance) {
+		collisionDistanceSquared = collisionDistance * collisionDistance;
+	}
 
 	public synchronized void add(Thing thing) {
 		validateMaximumSize(thing);
@@ -33,15 +53,42 @@ public class Space {
 
 		getThingsToLocations(thing.getLabel()).put(thing, locations);
 		locations.stream().forEach(location -> addThingToLocation(location, thing));
+		getThingsList(thing.getLabel()).add(thing);
 		allThings.add(thing);
 	}
 
+	/**
+	 * Adds many things in one go, in order.
+	 */
+	public synchronized void addAll(Collection<? extends Thing> things) {
+		for (Thing thing : things)
+			add(thing);
+	}
+
 	public synchronized void remove(Thing thing) {
-		final Set<HashedLocation> locations = getThingsToLocations(thing.getLabel()).get(thing);
+		removeAll(Collections.singletonList(thing));
+	}
 
-		getThingsToLocations(thing.getLabel()).remove(thing);
-		locations.stream().forEach(location -> locationsToThings.get(location).remove(thing));
-		allThings.remove(thing);
+	/**
+	 * Removes many things in one go. The remaining things stay in insertion
+	 * order, no matter the order of the removed things.
+	 */
+	public synchronized void removeAll(Collection<? extends Thing> things) {
+		if (things.isEmpty())
+			return;
+
+		Set<Thing> removedThings = Collections.newSetFromMap(new IdentityHashMap<>());
+		Set<String> labels = new LinkedHashSet<>();
+		for (Thing thing : things) {
+			final Set<HashedLocation> locations = getThingsToLocations(thing.getLabel()).remove(thing);
+			locations.stream().forEach(location -> locationsToThings.get(location).remove(thing));
+			removedThings.add(thing);
+			labels.add(thing.getLabel());
+		}
+
+		for (String label : labels)
+			getThingsList(label).removeIf(removedThings::contains);
+		allThings.removeIf(removedThings::contains);
 	}
 
 	public synchronized void update(Thing thing) {
@@ -63,7 +110,7 @@ public class Space {
 		if (!nearbyNeighbors.isEmpty())
 			return findClosestTo_Amongst(thing.getPosition(), nearbyNeighbors);
 
-		return findClosestTo_Amongst(thing.getPosition(), getAll(label));
+		return findClosestTo_Amongst(thing.getPosition(), getThingsList(label));
 	}
 
 	/**
@@ -77,23 +124,74 @@ public class Space {
 	public synchronized Set<Thing> detectCollisions(Segment movement, String label) {
 		Set<Thing> collidedFoodPellets = new LinkedHashSet<>();
 
-		final double COLLISION_DISTANCE_SQUARED = Configuration.PHYSICS_COLLISION_DISTANCE * Configuration.PHYSICS_COLLISION_DISTANCE;
-
 		getNearbyNeighbors(movement.getStartPoint(), label).stream()
 			.filter(
 				(neighbor) -> {
-					return (movement.getMinimumDistanceFromPointSquared(neighbor.getPosition()) <= COLLISION_DISTANCE_SQUARED);
+					return (movement.getMinimumDistanceFromPointSquared(neighbor.getPosition()) <= collisionDistanceSquared);
 				})
 			.forEach(collidedFoodPellets::add);
 
 		return collidedFoodPellets;
 	}
 
-	public synchronized Set<Thing> getAll(String label) {
+	/**
+	 * Returns true if there is at least one thing with the given label in the
+	 * square of areas that extends by radiusInAreas around the position.
+	 */
+	public synchronized boolean isAnyThingAround(Vector position, String label, int radiusInAreas) {
+		HashedLocation location = HashedLocation.ofCoordinates(position.x, position.y);
+
+		long x = location.lx;
+		for (int i = 0; i < radiusInAreas; i++)
+			x = dec(x);
+		for (int i = -radiusInAreas; i <= radiusInAreas; i++) {
+			long y = location.ly;
+			for (int j = 0; j < radiusInAreas; j++)
+				y = dec(y);
+			for (int j = -radiusInAreas; j <= radiusInAreas; j++) {
+				List<Thing> things = locationsToThings.get(HashedLocation.at(x, y));
+				if (things != null)
+					for (Thing thing : things)
+						if (thing.getLabel().contains(label))
+							return true;
+				y = inc(y);
+			}
+			x = inc(x);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a copy of the things with the given label (or all the things, if
+	 * the label is empty), in insertion order.
+	 */
+	public synchronized List<Thing> getAll(String label) {
+		if (label.equals(""))
+			return new ArrayList<>(allThings);
+
+		return new ArrayList<>(getThingsList(label));
+	}
+
+	/**
+	 * Returns a read-only, live list of the things with the given label (or all
+	 * the things, if the label is empty), in insertion order. Unlike getAll(),
+	 * this doesn't copy anything - so only use it from the thread that adds and
+	 * removes things.
+	 */
+	public synchronized List<Thing> getThings(String label) {
 		if (label.equals(""))
-			return new LinkedHashSet<>(allThings);
+			return readOnlyAllThings;
+
+		getThingsList(label);
+		return labelsToReadOnlyThings.get(label);
+	}
 
-		return new LinkedHashSet<>(getThingsToLocations(label).keySet());
+	private List<Thing> getThingsList(String label) {
+		return labelsToThings.computeIfAbsent(label, k -> {
+			List<Thing> result = new ArrayList<>();
+			labelsToReadOnlyThings.put(k, Collections.unmodifiableList(result));
+			return result;
+		});
 	}
 
 	private Map<Thing, Set<HashedLocation>> getThingsToLocations(String label) {
@@ -174,7 +272,7 @@ public class Space {
 			.forEach(collector::add);
 	}
 
-	private Thing findClosestTo_Amongst(Vector position, Set<Thing> things) {
+	private Thing findClosestTo_Amongst(Vector position, Collection<Thing> things) {
 		final double[] minDistance = { Double.MAX_VALUE };
 		final Thing[] result = { null };
 
@@ -2,32 +2,53 @@ package org.nusco.narjillos.core.utilities;
 
 /**
  * Counts ticks.
+ * <p>
+ * Ticking is lock-free and doesn't read the clock, so it's cheap enough to
+ * call in a tight loop. Only one thread is supposed to tick a chronometer,
+ * but any thread can read it. The ticks per second are calculated when they
+ * are read, against a monotonic clock.
  */
 public class Chronometer {
 
-	private int totalTicks = 0;
+	private static final long ONE_SECOND_IN_NANOS = 1_000_000_000L;
 
-	private transient int ticks = 0;
+	private static final long NO_SAMPLE = -1;
 
-	private transient long lastSecondStartTime = 0;
+	private volatile long totalTicks = 0;
+
+	private transient long lastSampleTime = 0;
+
+	private transient long lastSampleTicks = NO_SAMPLE;
 
 	private transient int ticksInLastSecond = 0;
 
-	public synchronized void tick() {
-		if (System.currentTimeMillis() - lastSecondStartTime > 1000) {
-			lastSecondStartTime = System.currentTimeMillis();
-			ticksInLastSecond = ticks;
-			ticks = 0;
-		}
-		ticks++;
+	public void tick() {
+		// Only one thread writes this field, so there is no need
+		// for an atomic increment.
 		totalTicks++;
 	}
 
-	public synchronized long getTotalTicks() {
+	public long getTotalTicks() {
 		return totalTicks;
 	}
 
 	public synchronized int getTicksInLastSecond() {
+		long now = System.nanoTime();
+		long ticks = getTotalTicks();
+		if (lastSampleTicks == NO_SAMPLE) {
+			// First reading (possibly after the chronometer has been
+			// deserialized with a lot of ticks already on it)
+			lastSampleTicks = ticks;
+			lastSampleTime = now;
+			return ticksInLastSecond;
+		}
+
+		long elapsedTime = now - lastSampleTime;
+		if (elapsedTime >= ONE_SECOND_IN_NANOS) {
+			ticksInLastSecond = (int) ((ticks - lastSampleTicks) * ONE_SECOND_IN_NANOS / elapsedTime);
+			lastSampleTicks = ticks;
+			lastSampleTime = now;
+		}
 		return ticksInLastSecond;
 	}
 }
@@ -50,6 +50,17 @@ public class NumGen {
 		return ++serial;
 	}
 
+	/**
+	 * Returns a generator with a different seed, that goes on with this
+	 * generator's serials (so that the serials from the two generators don't
+	 * overlap until they diverge).
+	 */
+	public NumGen branch(long seed) {
+		NumGen result = new NumGen(seed);
+		result.serial = serial;
+		return result;
+	}
+
 	public long getSeed() {
 		return random.getSeed();
 	}
@@ -40,6 +40,10 @@ public class Narjillo implements Thing {
 
 	private transient boolean isInPain = false;
 
+	private transient Vector lastMovement = null;
+
+	private transient double lastEnergyRequiredToMove = 0;
+
 	public Narjillo(DNA dna, Vector position, double angle, Energy energy) {
 		this.body = new Embryo(dna).develop();
 		body.forcePosition(position, angle);
@@ -63,7 +67,33 @@ public class Narjillo implements Thing {
 		double energyRequiredToMove = body.tick(getMouth().getDirection());
 		getEnergy().tick(-energyRequiredToMove);
 
-		return new Segment(startingPosition, body.getStartPoint().minus(startingPosition));
+		lastMovement = body.getStartPoint().minus(startingPosition);
+		lastEnergyRequiredToMove = energyRequiredToMove;
+		return new Segment(startingPosition, lastMovement);
+	}
+
+	/**
+	 * A cheap approximation of tick(). Instead of running the body's physics,
+	 * it repeats the movement and the energy consumption of the last full tick.
+	 * The body's shape doesn't change, and the narjillo doesn't steer.
+	 */
+	public Segment tickApproximately() {
+		if (lastMovement == null)
+			return tick(); // no full tick to extrapolate from yet
+
+		forgetPain();
+
+		growOlder();
+
+		Vector startingPosition = body.getStartPoint();
+
+		if (isDead())
+			return new Segment(startingPosition, Vector.ZERO);
+
+		body.translateBy(lastMovement);
+		getEnergy().tick(-lastEnergyRequiredToMove);
+
+		return new Segment(startingPosition, lastMovement);
 	}
 
 	@Override
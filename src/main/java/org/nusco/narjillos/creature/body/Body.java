@@ -148,6 +148,14 @@ public class Body {
 		resetCaches();
 	}
 
+	/**
+	 * Moves the whole body rigidly, without any physics.
+	 */
+	public void translateBy(Vector translation) {
+		getHead().translateBy(translation);
+		resetCaches();
+	}
+
 	/**
 	 * Contains the core movement algorithm:
 	 * <p>
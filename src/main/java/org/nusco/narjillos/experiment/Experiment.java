@@ -7,14 +7,19 @@ import org.nusco.narjillos.creature.Egg;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.experiment.environment.Ecosystem;
 import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.DNAPruner;
+import org.nusco.narjillos.genomics.SpeciesTracker;
+import org.nusco.narjillos.genomics.SpeciesTrackingDNALog;
 
 public class Experiment {
 
+	private static final int DNA_PRUNING_BATCH_SIZE = 1000;
+
 	private final String id;
 
 	private final Ecosystem ecosystem;
 
-	private final Chronometer ticksChronometer = new Chronometer();
+	private final Chronometer ticksChronometer;
 
 	private final NumGen numGen;
 
@@ -22,6 +27,12 @@ public class Experiment {
 
 	private transient DNALog dnaLog;
 
+	// Saved with the experiment, because the species depend on the order in
+	// which the DNAs were born (see SpeciesTracker).
+	private SpeciesTracker speciesTracker;
+
+	private transient DNAPruner dnaPruner;
+
 	private transient HistoryLog historyLog;
 
 	private transient long lastRegisteredRunningTime;
@@ -31,10 +42,35 @@ public class Experiment {
 	}
 
 	private Experiment(long seed, String version, Ecosystem ecosystem) {
+		this(seed, version, ecosystem, new Chronometer(), new NumGen(seed));
+	}
+
+	private Experiment(long seed, String version, Ecosystem ecosystem, Chronometer ticksChronometer, NumGen numGen) {
 		id = "" + seed + "-" + version;
 		timeStamp();
-		numGen = new NumGen(seed);
+		this.numGen = numGen;
 		this.ecosystem = ecosystem;
+		this.ticksChronometer = ticksChronometer;
+	}
+
+	/**
+	 * Returns a new experiment that goes on from the current state of this
+	 * one, with its own seed. The new experiment takes over this experiment's
+	 * ecosystem, so you should only call this on a copy (see Fork). Call it
+	 * from the thread that is going to tick the new experiment.
+	 */
+	public Experiment branch(long seed, String version) {
+		return new Experiment(seed, version, ecosystem, ticksChronometer, numGen.branch(seed));
+	}
+
+	/**
+	 * Like branch(seed, version), but the new experiment's ecosystem has
+	 * different parameters (see Ecosystem.reconfigure()).
+	 */
+	public Experiment branch(long seed, String version, Configuration configuration) {
+		if (configuration.equals(ecosystem.getConfiguration()))
+			return branch(seed, version);
+		return new Experiment(seed, version, ecosystem.reconfigure(configuration), ticksChronometer, numGen.branch(seed));
 	}
 
 	public final void timeStamp() {
@@ -46,11 +82,12 @@ public class Experiment {
 	}
 
 	public void tick() {
-		if (ticksChronometer.getTotalTicks() % Configuration.ECOSYSTEM_UPDATE_FOOD_TARGETS_INTERVAL == 0)
+		if (ticksChronometer.getTotalTicks() % ecosystem.getConfiguration().getUpdateFoodTargetsInterval() == 0)
 			ecosystem.resetFoodTargets();
 
 		ecosystem.tick(dnaLog, numGen);
 		ticksChronometer.tick();
+		pruneDna();
 	}
 
 	public Ecosystem getEcosystem() {
@@ -67,6 +104,9 @@ public class Experiment {
 
 	public String terminate() {
 		ecosystem.terminate();
+		if (dnaPruner != null)
+			dnaPruner.stop();
+		flushDnaLog();
 
 		updateTotalRunningTime();
 		String result = toString() + " interrupted at " + getTotalRunningTimeInSeconds() + " seconds, "
@@ -92,7 +132,33 @@ public class Experiment {
 	}
 
 	public final void setDnaLog(DNALog dnaLog) {
-		this.dnaLog = dnaLog;
+		if (dnaPruner != null)
+			dnaPruner.stop();
+		if (speciesTracker == null || speciesTracker.getMaxDistance() != Configuration.DNA_SPECIES_MAX_DISTANCE)
+			speciesTracker = new SpeciesTracker(Configuration.DNA_SPECIES_MAX_DISTANCE);
+		this.dnaLog = new SpeciesTrackingDNALog(dnaLog, speciesTracker);
+		dnaPruner = new DNAPruner(this.dnaLog, DNA_PRUNING_BATCH_SIZE);
+	}
+
+	public int getNumberOfSpecies() {
+		if (speciesTracker == null)
+			return 0;
+		return speciesTracker.getNumberOfSpecies();
+	}
+
+	/**
+	 * Call this before saving the experiment, so that the saved experiment
+	 * doesn't refer to DNA that is not stored yet.
+	 */
+	public void flushDnaLog() {
+		if (dnaLog != null)
+			dnaLog.flush();
+	}
+
+	public long getNumberOfPrunedDna() {
+		if (dnaPruner == null)
+			return 0;
+		return dnaPruner.getNumberOfPrunedDna();
 	}
 
 	public final void populate(String dna) {
@@ -112,6 +178,14 @@ public class Experiment {
 		return "Experiment " + getId();
 	}
 
+	private void pruneDna() {
+		if (dnaPruner == null || Configuration.EXPERIMENT_DNA_PRUNING_INTERVAL_TICKS <= 0)
+			return;
+		// The pruner works in the background
+		if (ticksChronometer.getTotalTicks() % Configuration.EXPERIMENT_DNA_PRUNING_INTERVAL_TICKS == 0)
+			dnaPruner.start();
+	}
+
 	private void updateTotalRunningTime() {
 		long updateTime = System.currentTimeMillis();
 		totalRunningTime = totalRunningTime + (updateTime - lastRegisteredRunningTime);
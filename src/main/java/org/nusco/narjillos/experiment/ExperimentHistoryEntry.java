@@ -4,11 +4,7 @@ import static org.nusco.narjillos.core.chemistry.Element.HYDROGEN;
 import static org.nusco.narjillos.core.chemistry.Element.NITROGEN;
 import static org.nusco.narjillos.core.chemistry.Element.OXYGEN;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
 import org.nusco.narjillos.core.chemistry.Atmosphere;
-import org.nusco.narjillos.core.chemistry.Element;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.experiment.environment.Ecosystem;
 import org.nusco.narjillos.experiment.environment.FoodPellet;
@@ -47,10 +43,13 @@ public class ExperimentHistoryEntry {
 
 	public final int z2n;
 
+	public final int numberOfSpecies;
+
 	public ExperimentHistoryEntry(long ticks, long runningTime,
 		int numberOfNarjillos, int numberOfFoodPellets,
 		double oxygen, double hydrogen, double nitrogen,
-		int o2h, int o2n, int h2o, int h2n, int n2o, int n2h, int z2o, int z2h, int z2n) {
+		int o2h, int o2n, int h2o, int h2n, int n2o, int n2h, int z2o, int z2h, int z2n,
+		int numberOfSpecies) {
 		this.ticks = ticks;
 		this.runningTime = runningTime;
 		this.numberOfNarjillos = numberOfNarjillos;
@@ -67,6 +66,7 @@ public class ExperimentHistoryEntry {
 		this.z2o = z2o;
 		this.z2h = z2h;
 		this.z2n = z2n;
+		this.numberOfSpecies = numberOfSpecies;
 	}
 
 	public ExperimentHistoryEntry(Experiment experiment) {
@@ -82,16 +82,17 @@ public class ExperimentHistoryEntry {
 		this.hydrogen = atmosphere.getDensityOf(HYDROGEN);
 		this.nitrogen = atmosphere.getDensityOf(NITROGEN);
 
-		Map<String, Integer> chemicalCycles = getChemicalCycles(ecosystem);
-		this.o2h = chemicalCycles.get("O2H");
-		this.o2n = chemicalCycles.get("O2N");
-		this.h2o = chemicalCycles.get("H2O");
-		this.h2n = chemicalCycles.get("H2N");
-		this.n2o = chemicalCycles.get("N2O");
-		this.n2h = chemicalCycles.get("N2H");
-		this.z2o = chemicalCycles.get("Z2O");
-		this.z2h = chemicalCycles.get("Z2H");
-		this.z2n = chemicalCycles.get("Z2N");
+		this.o2h = (int) ecosystem.getCountOfChemicalCycle("O2H");
+		this.o2n = (int) ecosystem.getCountOfChemicalCycle("O2N");
+		this.h2o = (int) ecosystem.getCountOfChemicalCycle("H2O");
+		this.h2n = (int) ecosystem.getCountOfChemicalCycle("H2N");
+		this.n2o = (int) ecosystem.getCountOfChemicalCycle("N2O");
+		this.n2h = (int) ecosystem.getCountOfChemicalCycle("N2H");
+		this.z2o = (int) ecosystem.getCountOfChemicalCycle("Z2O");
+		this.z2h = (int) ecosystem.getCountOfChemicalCycle("Z2H");
+		this.z2n = (int) ecosystem.getCountOfChemicalCycle("Z2N");
+
+		this.numberOfSpecies = experiment.getNumberOfSpecies();
 	}
 
 	@Override
@@ -114,7 +115,7 @@ public class ExperimentHistoryEntry {
 		if (Double.doubleToLongBits(nitrogen) != Double.doubleToLongBits(other.nitrogen))
 			return false;
 		return !(h2n != other.h2n || h2o != other.h2o || n2h != other.n2h || n2o != other.n2o || o2h != other.o2h || o2n != other.o2n
-			|| z2h != other.z2h || z2n != other.z2n || z2o != other.z2o);
+			|| z2h != other.z2h || z2n != other.z2n || z2o != other.z2o || numberOfSpecies != other.numberOfSpecies);
 	}
 
 	@Override
@@ -135,28 +136,15 @@ public class ExperimentHistoryEntry {
 			n2h + "," +
 			z2o + "," +
 			z2h + "," +
-			z2n;
+			z2n + "," +
+			numberOfSpecies;
 	}
 
 	public static String toCsvHeader() {
 		return "Ticks,RunningTime," +
 			"NumberOfNarjillos,NumberOfFoodPellets," +
 			"Oxygen,Hydrogen,Nitrogen," +
-			"O2H,O2N,H2O,H2N,N2O,N2H,Z2O,Z2H,Z2N";
-	}
-
-	private Map<String, Integer> getChemicalCycles(Ecosystem ecosystem) {
-		Map<String, Integer> result = new LinkedHashMap<>();
-
-		for (String chemicalCycle : Element.CYCLES)
-			result.put(chemicalCycle, 0);
-
-		ecosystem.getAll(Narjillo.LABEL).forEach(thing -> {
-			Narjillo narjillo = (Narjillo) thing;
-			String cycle = "" + narjillo.getBreathedElement() + "2" + narjillo.getByproduct();
-			result.put(cycle, result.get(cycle) + 1);
-		});
-
-		return result;
+			"O2H,O2N,H2O,H2N,N2O,N2H,Z2O,Z2H,Z2N," +
+			"NumberOfSpecies";
 	}
 }
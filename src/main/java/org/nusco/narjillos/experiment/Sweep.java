@@ -0,0 +1,127 @@
+package org.nusco.narjillos.experiment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.experiment.environment.Ecosystem;
+import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.TieredDNALog;
+
+/**
+ * Runs many non-persistent experiments side by side in the same JVM, and
+ * collects their final statistics. It runs each seed with each of the given
+ * configurations (see Configuration).
+ * <p>
+ * All the experiments share a single work-stealing pool: each experiment is
+ * ticked by one task from start to end (so that its NumGen is only ever
+ * accessed from one thread), and the narjillos in the experiment are ticked
+ * in parallel by tasks on the same pool. Experiments stay deterministic, so
+ * running a seed in a sweep gives the same results as running it on its own.
+ */
+public class Sweep {
+
+	private final List<Long> seeds;
+
+	private final List<Configuration> configurations;
+
+	private final long ticks;
+
+	private final String version;
+
+	private final ForkJoinPool pool;
+
+	public Sweep(List<Long> seeds, long ticks, String version, int parallelism) {
+		this(seeds, Collections.singletonList(Configuration.DEFAULT), ticks, version, parallelism);
+	}
+
+	public Sweep(List<Long> seeds, List<Configuration> configurations, long ticks, String version, int parallelism) {
+		this.seeds = seeds;
+		this.configurations = configurations;
+		this.ticks = ticks;
+		this.version = version;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Returns the final statistics of each experiment: one map per
+	 * configuration, in the same order as the configurations, from the seeds
+	 * to the statistics, in the same order as the seeds. Experiments that go
+	 * extinct stop early.
+	 */
+	public List<Map<Long, ExperimentHistoryEntry>> run() {
+		List<Map<Long, Future<ExperimentHistoryEntry>>> futures = new ArrayList<>();
+		for (Configuration configuration : configurations) {
+			Map<Long, Future<ExperimentHistoryEntry>> configurationFutures = new LinkedHashMap<>();
+			for (long seed : seeds)
+				configurationFutures.put(seed, pool.submit(() -> runExperiment(seed, configuration)));
+			futures.add(configurationFutures);
+		}
+
+		List<Map<Long, ExperimentHistoryEntry>> result = new ArrayList<>();
+		try {
+			for (Map<Long, Future<ExperimentHistoryEntry>> configurationFutures : futures) {
+				Map<Long, ExperimentHistoryEntry> configurationResult = new LinkedHashMap<>();
+				for (Map.Entry<Long, Future<ExperimentHistoryEntry>> entry : configurationFutures.entrySet())
+					configurationResult.put(entry.getKey(), entry.getValue().get());
+				result.add(configurationResult);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+		return result;
+	}
+
+	public static String toCsvHeader() {
+		return toCsvHeader(Collections.emptyList());
+	}
+
+	/**
+	 * Like toCsvHeader(), with a column for each of the given parameters
+	 * after the seed.
+	 */
+	public static String toCsvHeader(List<String> parameters) {
+		StringBuilder result = new StringBuilder("Seed,");
+		for (String parameter : parameters)
+			result.append(parameter + ",");
+		return result + ExperimentHistoryEntry.toCsvHeader();
+	}
+
+	public static String toCsvRow(long seed, ExperimentHistoryEntry entry) {
+		return seed + "," + entry;
+	}
+
+	public static String toCsvRow(long seed, Configuration configuration, List<String> parameters, ExperimentHistoryEntry entry) {
+		StringBuilder result = new StringBuilder(seed + ",");
+		for (String parameter : parameters)
+			result.append(configuration.getParameter(parameter) + ",");
+		return result + entry.toString();
+	}
+
+	private ExperimentHistoryEntry runExperiment(long seed, Configuration configuration) {
+		// Create the experiment inside the task, so that its
+		// NumGen is bound to the thread that ticks it.
+		Ecosystem ecosystem = new Ecosystem(Configuration.ECOSYSTEM_BLOCKS_PER_EDGE_IN_EXPERIMENT * 1000, true, pool, configuration);
+		Experiment experiment = new Experiment(seed, ecosystem, version);
+		DNALog dnaLog = new TieredDNALog();
+		experiment.setDnaLog(dnaLog);
+		experiment.setHistoryLog(new VolatileHistoryLog());
+		experiment.populate();
+
+		while (experiment.getTicksChronometer().getTotalTicks() < ticks && !experiment.lifeIsExtinct())
+			experiment.tick();
+
+		experiment.terminate();
+		ExperimentHistoryEntry result = new ExperimentHistoryEntry(experiment);
+		dnaLog.delete();
+		return result;
+	}
+}
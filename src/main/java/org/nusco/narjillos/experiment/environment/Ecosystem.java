@@ -13,8 +13,8 @@ import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.genomics.DNA;
 import org.nusco.narjillos.genomics.DNALog;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,7 +25,6 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
 /**
  * A complex environment populated with narjillos, eggs and food.
@@ -34,7 +33,11 @@ public class Ecosystem extends Environment {
 
 	public static int numberOfBackgroundThreads = Runtime.getRuntime().availableProcessors();
 
-	private final ExecutorService executorService;
+	private ExecutorService executorService;
+
+	private boolean ownsExecutorService;
+
+	private volatile boolean isTerminated = false;
 
 	/**
 	 * Counter used by the ThreadFactory to name threads.
@@ -42,27 +45,74 @@ public class Ecosystem extends Environment {
 	// TODO: can probably be put more locally to the closure that uses it
 	private final AtomicInteger tickWorkerCounter = new AtomicInteger(1);
 
-	private final Space space = new Space();
+	private final Configuration configuration;
+
+	private final Space space;
 
-	private Atmosphere atmosphere = new Atmosphere();
+	private Atmosphere atmosphere;
 
 	private final ThingsCounter thingsCounter = new ThingsCounter();
 
+	// Counts narjillos by chemical cycle, updated as they are born and die.
+	private final ThingsCounter chemicalCyclesCounter = new ThingsCounter();
+
+	private final LevelOfDetail levelOfDetail = new LevelOfDetail();
+
+	// Reused from tick to tick, to avoid allocating new lists.
+	private final List<Narjillo> tickedNarjillos = new ArrayList<>();
+
+	// The things that died since they were last removed, in the order they
+	// died. Things are recorded as they die (see recordDeath()), so the tick
+	// doesn't look for them. Guarded by itself.
+	private final List<Thing> deadThings = new ArrayList<>();
+
+	// Saved ecosystems can have things that died in the tick before they
+	// were saved, so the first tick after insertAll() looks for them.
+	private volatile boolean mayHaveUnrecordedDeaths = false;
+
 	private final Vector center;
 
 	private final FoodClock foodClock;
 
 	public Ecosystem(final long size, boolean sizeCheck) {
-		super(size);
+		this(size, sizeCheck, null);
+	}
+
+	/**
+	 * Creates an ecosystem that ticks its narjillos on an executor that is shared
+	 * with other ecosystems (for example, when running many experiments in the same
+	 * JVM). Terminating the ecosystem doesn't shut down a shared executor. Pass null
+	 * to have the ecosystem create its own thread pool.
+	 */
+	public Ecosystem(final long size, boolean sizeCheck, ExecutorService sharedExecutorService) {
+		this(size, sizeCheck, sharedExecutorService, Configuration.DEFAULT);
+	}
 
-		ThreadFactory tickWorkerFactory = (Runnable r) -> {
-			Thread result = new Thread(r, "tick-worker-" + tickWorkerCounter.getAndIncrement());
-			result.setPriority(Thread.currentThread().getPriority());
-			return result;
-		};
-		executorService = Executors.newFixedThreadPool(numberOfBackgroundThreads, tickWorkerFactory);
+	/**
+	 * Creates an ecosystem with its own parameters, instead of the ones in
+	 * config.yaml. The parameters that differ from config.yaml are saved with
+	 * the ecosystem, so a loaded ecosystem gets the same parameters.
+	 */
+	public Ecosystem(final long size, boolean sizeCheck, ExecutorService sharedExecutorService, Configuration configuration) {
+		super(size);
+		this.configuration = configuration;
+		space = new Space(configuration.getCollisionDistance());
+		atmosphere = new Atmosphere(configuration.getInitialElementLevel(), configuration.getCatalystLevel());
+
+		if (sharedExecutorService != null) {
+			executorService = sharedExecutorService;
+			ownsExecutorService = false;
+		} else {
+			ThreadFactory tickWorkerFactory = (Runnable r) -> {
+				Thread result = new Thread(r, "tick-worker-" + tickWorkerCounter.getAndIncrement());
+				result.setPriority(Thread.currentThread().getPriority());
+				return result;
+			};
+			executorService = Executors.newFixedThreadPool(numberOfBackgroundThreads, tickWorkerFactory);
+			ownsExecutorService = true;
+		}
 
-		foodClock = new FoodClock(getNumberOf1000SquarePointsBlocks());
+		foodClock = new FoodClock(getNumberOf1000SquarePointsBlocks(), configuration);
 		this.center = Vector.cartesian(size, size).by(0.5);
 
 		// TODO: fix magic number
@@ -72,6 +122,30 @@ public class Ecosystem extends Environment {
 			throw new RuntimeException("Bug: Area size smaller than max velocity");
 	}
 
+	public Configuration getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Returns an ecosystem with the same things and atmosphere as this one, but
+	 * different parameters. The new ecosystem takes over this one's things and
+	 * executor, so you should only call this on a copy (see Fork). The
+	 * atmosphere keeps its element levels, so the initial element level only
+	 * matters to new ecosystems.
+	 */
+	public synchronized Ecosystem reconfigure(Configuration configuration) {
+		Ecosystem result = new Ecosystem(getSize(), false, executorService, configuration);
+		result.ownsExecutorService = ownsExecutorService;
+		ownsExecutorService = false;
+		result.setAtmosphere(atmosphere.withCatalystLevel(configuration.getCatalystLevel()));
+		result.insertAll(getAll(FoodPellet.LABEL));
+		result.insertAll(getAll(Egg.LABEL));
+		result.insertAll(getAll(Narjillo.LABEL));
+		if (isLevelOfDetailEnabled())
+			result.enableLevelOfDetail();
+		return result;
+	}
+
 	public Atmosphere getAtmosphere() {
 		return atmosphere;
 	}
@@ -82,7 +156,7 @@ public class Ecosystem extends Environment {
 
 	@Override
 	public List<Thing> getAll(String label) {
-		return new LinkedList<>(space.getAll(label));
+		return space.getAll(label);
 	}
 
 	public final FoodPellet spawnFood(Vector position) {
@@ -93,8 +167,21 @@ public class Ecosystem extends Environment {
 
 	public void insert(Thing thing) {
 		space.add(thing);
-		thingsCounter.add(thing.getLabel());
+		count(thing);
 		notifyThingAdded(thing);
+		if (thing.isDead())
+			recordDeath(thing);
+	}
+
+	/**
+	 * Inserts many things in one go, without notifying the listeners. This is
+	 * for ecosystems that are being loaded, and don't have listeners yet.
+	 */
+	public void insertAll(List<? extends Thing> things) {
+		space.addAll(things);
+		for (Thing thing : things)
+			count(thing);
+		mayHaveUnrecordedDeaths = true;
 	}
 
 	public final Egg spawnEgg(DNA genes, Vector position, NumGen numGen) {
@@ -108,21 +195,34 @@ public class Ecosystem extends Environment {
 		return thingsCounter.count(label);
 	}
 
+	/**
+	 * Returns the number of narjillos with a chemical cycle, such as "O2H"
+	 * (see Element.CYCLES). Costs the same no matter how many narjillos there
+	 * are.
+	 */
+	public long getCountOfChemicalCycle(String chemicalCycle) {
+		return chemicalCyclesCounter.count(chemicalCycle);
+	}
+
 	public void populate(String dna, DNALog dnaLog, NumGen numGen) {
 		spawnFood(numGen);
 
-		for (int i = 0; i < getNumberOf1000SquarePointsBlocks() * Configuration.ECOSYSTEM_EGGS_DENSITY_PER_BLOCK; i++)
+		for (int i = 0; i < getNumberOf1000SquarePointsBlocks() * configuration.getEggsDensityPerBlock(); i++)
 			spawnEgg(createDna(dna, dnaLog, numGen), randomPosition(getSize(), numGen), numGen);
 	}
 
 	public void populate(DNALog dnaLog, NumGen numGen) {
 		spawnFood(numGen);
 
-		for (int i = 0; i < getNumberOf1000SquarePointsBlocks() * Configuration.ECOSYSTEM_EGGS_DENSITY_PER_BLOCK; i++)
+		for (int i = 0; i < getNumberOf1000SquarePointsBlocks() * configuration.getEggsDensityPerBlock(); i++)
 			spawnEgg(createRandomDna(dnaLog, numGen), randomPosition(getSize(), numGen), numGen);
 	}
 
 	public synchronized void terminate() {
+		isTerminated = true;
+		if (!ownsExecutorService)
+			return;
+
 		executorService.shutdown();
 		try {
 			executorService.awaitTermination(10, TimeUnit.SECONDS);
@@ -131,11 +231,40 @@ public class Ecosystem extends Environment {
 		}
 	}
 
+	/**
+	 * Moves the ticking of this ecosystem to an executor that is shared with
+	 * other ecosystems (see the constructor), and shuts down its own thread
+	 * pool. For ecosystems that are loaded rather than created. Call it before
+	 * the first tick.
+	 */
+	public synchronized void shareExecutorService(ExecutorService sharedExecutorService) {
+		if (ownsExecutorService)
+			executorService.shutdown();
+		executorService = sharedExecutorService;
+		ownsExecutorService = false;
+	}
+
+	/**
+	 * Switches to an approximated simulation of isolated narjillos. See
+	 * LevelOfDetail for details.
+	 */
+	public void enableLevelOfDetail() {
+		levelOfDetail.enable();
+	}
+
+	public boolean isLevelOfDetailEnabled() {
+		return levelOfDetail.isEnabled();
+	}
+
+	public String getLevelOfDetailStatistics() {
+		return "full " + levelOfDetail.getPercentOfFullDetail() + "% / reduced " + levelOfDetail.getPercentOfReducedDetail() + "%";
+	}
+
 	public void resetFoodTargets() {
-		space.getAll(Narjillo.LABEL).forEach(narjillo -> {
+		for (Thing narjillo : space.getThings(Narjillo.LABEL)) {
 			Vector closestTarget = findClosestFoodTo(narjillo);
 			((Narjillo) narjillo).setTarget(closestTarget);
-		});
+		}
 	}
 
 	Vector findClosestFoodTo(Thing thing) {
@@ -154,9 +283,12 @@ public class Ecosystem extends Environment {
 
 		removeDeadThings(dnaLog);
 
-		List<Narjillo> narjillos = space.getAll(Narjillo.LABEL).stream()
-			.map(narjillo -> (Narjillo) narjillo)
-			.collect(Collectors.toList());
+		// Take a snapshot of the narjillos, because eggs can hatch new ones
+		// during the tick.
+		List<Narjillo> narjillos = tickedNarjillos;
+		narjillos.clear();
+		for (Thing narjillo : space.getThings(Narjillo.LABEL))
+			narjillos.add((Narjillo) narjillo);
 
 		// The next operations happen in a predictable order, to avoid
 		// non-deterministic behavior or race conditions - for example, when
@@ -172,32 +304,75 @@ public class Ecosystem extends Environment {
 			resetFoodTargets();
 		}
 
-		space.getAll(Egg.LABEL).forEach(thing -> tickEgg((Egg) thing, numGen));
+		List<Thing> eggs = space.getThings(Egg.LABEL);
+		for (int i = 0; i < eggs.size(); i++)
+			tickEgg((Egg) eggs.get(i), numGen);
 
 		if (foodClock.shouldSpawnFood(getCount(FoodPellet.LABEL), numGen)) {
 			spawnFood(randomPosition(getSize(), numGen));
 			resetFoodTargets();
 		}
 
-		narjillos.forEach(narjillo -> maybeLayEgg(narjillo, dnaLog, numGen));
+		// This is the last thing that can change a narjillo's energy in a
+		// tick, and a narjillo's energy never comes back from zero.
+		narjillos.forEach(narjillo -> {
+			maybeLayEgg(narjillo, dnaLog, numGen);
+			if (narjillo.isDead())
+				recordDeath(narjillo);
+		});
 	}
 
 	private void consume(Narjillo narjillo, Set<Thing> collidedFood) {
-		collidedFood.stream()
-			.map(foodPellet -> (FoodPellet) foodPellet)
-			.forEach(foodPellet -> foodPellet.getEaten(narjillo));
+		// Many narjillos can collide with the same food pellet
+		for (Thing foodPellet : collidedFood) {
+			boolean wasDead = foodPellet.isDead();
+			((FoodPellet) foodPellet).getEaten(narjillo);
+			if (!wasDead && foodPellet.isDead())
+				recordDeath(foodPellet);
+		}
+	}
+
+	private void recordDeath(Thing thing) {
+		synchronized (deadThings) {
+			deadThings.add(thing);
+		}
 	}
 
 	private void removeDeadThings(DNALog dnaLog) {
-		space.getAll("").stream()
-			.filter(Thing::isDead)
-			.forEach(thing -> {
-				remove(thing);
+		synchronized (deadThings) {
+			if (mayHaveUnrecordedDeaths) {
+				mayHaveUnrecordedDeaths = false;
+				for (Thing thing : space.getThings(""))
+					if (thing.isDead() && !deadThings.contains(thing))
+						deadThings.add(thing);
+			}
+
+			if (deadThings.isEmpty())
+				return;
+
+			for (Thing thing : deadThings) {
+				notifyThingRemoved(thing);
+				thingsCounter.remove(thing.getLabel());
 
 				// TODO: fix this ugliness
-				if (thing instanceof Narjillo)
+				if (thing instanceof Narjillo) {
+					chemicalCyclesCounter.remove(getChemicalCycle((Narjillo) thing));
 					dnaLog.markAsDead(((Narjillo) thing).getDNA().getId());
-			});
+				}
+			}
+			space.removeAll(deadThings);
+			deadThings.clear();
+		}
+	}
+
+	private void count(Thing thing) {
+		thingsCounter.add(thing.getLabel());
+		if (thing instanceof Narjillo)
+			chemicalCyclesCounter.add(getChemicalCycle((Narjillo) thing));
+	}
+
+	private String getChemicalCycle(Narjillo narjillo) {
+		return "" + narjillo.getBreathedElement() + "2" + narjillo.getByproduct();
 	}
 
 	private DNA createDna(String dna, DNALog dnaLog, NumGen numGen) {
@@ -207,7 +382,7 @@ public class Ecosystem extends Environment {
 	}
 
 	private boolean isShuttingDown() {
-		return executorService.isShutdown();
+		return isTerminated;
 	}
 
 	private DNA createRandomDna(DNALog dnaLog, NumGen numGen) {
@@ -217,7 +392,7 @@ public class Ecosystem extends Environment {
 	}
 
 	private void spawnFood(NumGen numGen) {
-		for (int i = 0; i < getNumberOf1000SquarePointsBlocks() * Configuration.ECOSYSTEM_FOOD_DENSITY_PER_BLOCK; i++)
+		for (int i = 0; i < getNumberOf1000SquarePointsBlocks() * configuration.getFoodDensityPerBlock(); i++)
 			spawnFood(randomPosition(getSize(), numGen));
 	}
 
@@ -225,6 +400,8 @@ public class Ecosystem extends Environment {
 		egg.tick();
 		if (egg.hatch(numGen))
 			insert(egg.getHatchedNarjillo().get());
+		if (egg.isDead())
+			recordDeath(egg);
 	}
 
 	private void breathe(List<Narjillo> narjillos) {
@@ -247,11 +424,13 @@ public class Ecosystem extends Environment {
 	}
 
 	private Map<Narjillo, Set<Thing>> tick(List<Narjillo> narjillos) {
+		levelOfDetail.update(narjillos, space);
+
 		// Calculate collisions in parallel...
 		Map<Narjillo, Future<Set<Thing>>> collisionFutures = new LinkedHashMap<>();
 		narjillos.forEach(narjillo -> {
 			collisionFutures.put(narjillo, executorService.submit(() -> {
-				Segment movement = narjillo.tick();
+				Segment movement = levelOfDetail.tick(narjillo);
 				return space.detectCollisions(movement, FoodPellet.LABEL);
 			}));
 		});
@@ -272,12 +451,6 @@ public class Ecosystem extends Environment {
 		return Vector.cartesian(numGen.nextDouble() * size, numGen.nextDouble() * size);
 	}
 
-	private void remove(Thing thing) {
-		notifyThingRemoved(thing);
-		space.remove(thing);
-		thingsCounter.remove(thing.getLabel());
-	}
-
 	private void maybeLayEgg(Narjillo narjillo, DNALog dnaLog, NumGen numGen) {
 		Egg egg = narjillo.layEgg(dnaLog, numGen);
 		if (egg == null)
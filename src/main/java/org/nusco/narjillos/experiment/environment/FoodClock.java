@@ -8,18 +8,19 @@ import org.nusco.narjillos.core.utilities.NumGen;
  */
 class FoodClock {
 
-	private final double numberOf1000PointBlocks;
+	private final double maxFoodPellets;
 
-	public FoodClock(double numberOf1000PointBlocks) {
-		this.numberOf1000PointBlocks = numberOf1000PointBlocks;
+	private final double foodRespawnAverageInterval;
+
+	public FoodClock(double numberOf1000PointBlocks, Configuration configuration) {
+		maxFoodPellets = numberOf1000PointBlocks * configuration.getMaxFoodDensityPer1000Blocks();
+		foodRespawnAverageInterval = configuration.getFoodRespawnAverageIntervalPerBlock() / numberOf1000PointBlocks;
 	}
 
 	public boolean shouldSpawnFood(long numberOfFoodPellets, NumGen numGen) {
-		double maxFoodPellets = numberOf1000PointBlocks * Configuration.ECOSYSTEM_MAX_FOOD_DENSITY_PER_1000_BLOCK;
 		if (numberOfFoodPellets >= maxFoodPellets)
 			return false;
 
-		double foodRespawnAverageInterval = Configuration.ECOSYSTEM_FOOD_RESPAWN_AVERAGE_INTERVAL_PER_BLOCK / numberOf1000PointBlocks;
 		return numGen.nextDouble() < 1.0 / foodRespawnAverageInterval;
 	}
 }
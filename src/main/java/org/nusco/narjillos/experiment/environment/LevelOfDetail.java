@@ -0,0 +1,106 @@
+package org.nusco.narjillos.experiment.environment;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.core.geometry.Segment;
+import org.nusco.narjillos.core.geometry.Vector;
+import org.nusco.narjillos.core.things.Space;
+import org.nusco.narjillos.creature.Narjillo;
+
+/**
+ * Decides how accurately each narjillo is simulated.
+ * <p>
+ * A narjillo that has no food and no other narjillos in the areas around it
+ * is "isolated". An isolated narjillo only gets a full tick once every few
+ * ticks. In the ticks in between, it just repeats its last movement and
+ * energy consumption. As soon as something gets close, the narjillo goes
+ * back to full ticks.
+ * <p>
+ * This is an approximation, so an experiment that uses it doesn't reproduce
+ * the results of a fully simulated experiment with the same seed. It's meant
+ * for long evolutionary runs, where exact trajectories don't matter.
+ */
+class LevelOfDetail {
+
+	private final Set<Narjillo> isolatedNarjillos = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private boolean enabled = false;
+
+	private long numberOfNarjillos = 0;
+
+	public void enable() {
+		enabled = true;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Reclassifies the narjillos. Call it once per tick, before ticking them.
+	 */
+	public void update(List<Narjillo> narjillos, Space space) {
+		isolatedNarjillos.clear();
+		numberOfNarjillos = narjillos.size();
+
+		if (!enabled)
+			return;
+
+		final int radius = Configuration.ECOSYSTEM_LOD_ISOLATION_RADIUS;
+
+		// The narjillos in Space are not updated as they move,
+		// so count their current positions area by area.
+		Map<Long, Integer> narjillosPerArea = new HashMap<>();
+		for (Narjillo narjillo : narjillos)
+			narjillosPerArea.merge(toAreaKey(narjillo.getPosition(), 0, 0), 1, Integer::sum);
+
+		for (Narjillo narjillo : narjillos) {
+			Vector position = narjillo.getPosition();
+			if (countNarjillosAround(position, narjillosPerArea, radius) > 1)
+				continue;
+			if (space.isAnyThingAround(position, FoodPellet.LABEL, radius))
+				continue;
+			isolatedNarjillos.add(narjillo);
+		}
+	}
+
+	/**
+	 * Ticks the narjillo, either fully or approximately. Can be called from
+	 * multiple threads at once.
+	 */
+	public Segment tick(Narjillo narjillo) {
+		if (isolatedNarjillos.contains(narjillo) && narjillo.getAge() % Configuration.ECOSYSTEM_LOD_REDUCED_TICK_INTERVAL != 0)
+			return narjillo.tickApproximately();
+		return narjillo.tick();
+	}
+
+	public long getPercentOfFullDetail() {
+		return 100 - getPercentOfReducedDetail();
+	}
+
+	public long getPercentOfReducedDetail() {
+		if (numberOfNarjillos == 0)
+			return 0;
+		return Math.round(100.0 * isolatedNarjillos.size() / numberOfNarjillos);
+	}
+
+	private int countNarjillosAround(Vector position, Map<Long, Integer> narjillosPerArea, int radius) {
+		int result = 0;
+		for (int dx = -radius; dx <= radius; dx++)
+			for (int dy = -radius; dy <= radius; dy++)
+				result += narjillosPerArea.getOrDefault(toAreaKey(position, dx, dy), 0);
+		return result;
+	}
+
+	private long toAreaKey(Vector position, int dx, int dy) {
+		long x = (long) Math.floor(position.x / Space.AREA_SIZE) + dx;
+		long y = (long) Math.floor(position.y / Space.AREA_SIZE) + dy;
+		return (x << 32) ^ (y & 0xFFFFFFFFL);
+	}
+}
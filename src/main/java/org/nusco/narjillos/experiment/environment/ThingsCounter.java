@@ -1,27 +1,32 @@
 package org.nusco.narjillos.experiment.environment;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Counts things by key. Counting is lock-free, so any thread can read the
+ * counts while the simulation is updating them.
+ */
 class ThingsCounter {
 
-	private final Map<String, Long> countsByLabel = new HashMap<>();
+	private final ConcurrentMap<String, LongAdder> countsByLabel = new ConcurrentHashMap<>();
 
-	public synchronized void add(String label) {
-		if (countsByLabel.containsKey(label))
-			countsByLabel.put(label, countsByLabel.get(label) + 1);
-		else
-			countsByLabel.put(label, 1L);
+	public void add(String label) {
+		countsByLabel.computeIfAbsent(label, k -> new LongAdder()).increment();
 	}
 
-	public synchronized void remove(String label) {
-		countsByLabel.put(label, countsByLabel.get(label) - 1);
+	public void remove(String label) {
+		LongAdder counter = countsByLabel.get(label);
+		if (counter == null || counter.sum() <= 0)
+			throw new RuntimeException("Cannot count less than zero things labeled " + label);
+		counter.decrement();
 	}
 
-	public synchronized long count(String label) {
-		Long result = countsByLabel.get(label);
-		if (result == null)
+	public long count(String label) {
+		LongAdder counter = countsByLabel.get(label);
+		if (counter == null)
 			return 0L;
-		return result;
+		return counter.sum();
 	}
 }
@@ -1,46 +1,63 @@
 package org.nusco.narjillos.genomics;
 
-import java.text.DecimalFormat;
-import java.util.Arrays;
-
 /**
  * A short sequence of genes in a long chain of DNA.
+ * <p>
+ * A chromosome that comes from a DNA is a view over the DNA's genes, so it
+ * doesn't copy them. If the DNA ends before the chromosome, the missing genes
+ * are zeroes.
  */
 public class Chromosome {
 
 	static final int SIZE = 14;
 
-	private final int[] genes = new int[SIZE];
+	private final byte[] genes;
+
+	private final int offset;
 
 	public Chromosome(int... genes) {
+		this.genes = new byte[SIZE];
+		this.offset = 0;
 		for (int i = 0; i < genes.length; i++)
 			if (genes[i] < 0 || genes[i] > 255)
 				throw new RuntimeException("Invalid gene: " + genes[i]);
 			else
-				this.genes[i] = genes[i];
+				this.genes[i] = (byte) genes[i];
+	}
+
+	Chromosome(byte[] genes, int offset) {
+		this.genes = genes;
+		this.offset = offset;
 	}
 
 	public int getGene(int index) {
-		return genes[index];
+		if (index < 0 || index >= SIZE)
+			throw new ArrayIndexOutOfBoundsException(index);
+		int position = offset + index;
+		if (position >= genes.length)
+			return 0;
+		return genes[position] & 0xFF;
 	}
 
 	@Override
 	public String toString() {
-		final DecimalFormat threeDigits = new DecimalFormat("000");
-		StringBuilder result = new StringBuilder("{");
-		for (int i = 0; i < genes.length - 1; i++)
-			result.append(threeDigits.format(genes[i]) + "_");
-		result.append(threeDigits.format(genes[genes.length - 1]) + "}");
-		return result.toString();
+		return DNADocument.toString(genes, offset);
 	}
 
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(genes);
+		int result = 1;
+		for (int i = 0; i < SIZE; i++)
+			result = 31 * result + getGene(i);
+		return result;
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		return Arrays.equals(genes, ((Chromosome) obj).genes);
+		Chromosome other = (Chromosome) obj;
+		for (int i = 0; i < SIZE; i++)
+			if (getGene(i) != other.getGene(i))
+				return false;
+		return true;
 	}
 }
@@ -1,39 +1,55 @@
 package org.nusco.narjillos.genomics;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 
 import org.nusco.narjillos.core.configuration.Configuration;
 import org.nusco.narjillos.core.utilities.NumGen;
 
 /**
  * A sequence of genes.
+ * <p>
+ * Genes are numbers between 0 and 255, so they're stored as bytes.
  */
 public class DNA implements Iterable<Chromosome> {
 
 	public static final long NO_PARENT = 0;
 
+	/**
+	 * The number of bits in a SimHash (see getSimHash()).
+	 */
+	public static final int SIMHASH_SIZE = Codon.HASH_SIZE;
+
+	private static final int NO_SIMHASH = -1;
+
 	private final long id;
 
-	private final Integer[] genes;
+	private final byte[] genes;
 
 	private final long parentId;
 
+	// Calculated lazily. Calculating it twice from different threads is
+	// harmless, so there is no need to synchronize.
+	private int simHash = NO_SIMHASH;
+
 	public DNA(long id, String dnaDocument) {
 		this(id, dnaDocument, NO_PARENT);
 	}
 
 	public DNA(long id, String dnaDocument, long parentId) {
-		this.id = id;
-		this.genes = clipGenes(new DNADocument(dnaDocument).toGenes());
-		this.parentId = parentId;
+		this(id, new DNADocument(dnaDocument).toGeneBytes(), parentId);
 	}
 
-	public DNA(long id, Integer[] genes, long parentId) {
+	public DNA(long id, int[] genes, long parentId) {
+		this(id, toBytes(genes), parentId);
+	}
+
+	/**
+	 * Takes ownership of the genes, without copying them.
+	 */
+	public DNA(long id, byte[] genes, long parentId) {
 		this.id = id;
-		this.genes = clipGenes(genes);
+		this.genes = (genes.length > 0) ? genes : new byte[] { 0 };
 		this.parentId = parentId;
 	}
 
@@ -53,55 +69,68 @@ public class DNA implements Iterable<Chromosome> {
 		return parentId != NO_PARENT;
 	}
 
-	public Integer[] getGenes() {
+	public int getLength() {
+		return genes.length;
+	}
+
+	public int getGene(int index) {
+		return genes[index] & 0xFF;
+	}
+
+	/**
+	 * Returns a copy of the genes. Use getGene() to avoid the copy.
+	 */
+	public int[] getGenes() {
+		int[] result = new int[genes.length];
+		for (int i = 0; i < result.length; i++)
+			result[i] = getGene(i);
+		return result;
+	}
+
+	// For the algorithms in this package that need to be fast. Don't
+	// modify the result.
+	byte[] getGenesWithoutCopying() {
 		return genes;
 	}
 
+	/**
+	 * Returns a copy of the genes in their compact form, one byte per gene.
+	 */
+	public byte[] getGenesAsBytes() {
+		return Arrays.copyOf(genes, genes.length);
+	}
+
 	public DNA mutate(long id, NumGen numGen) {
-		List<Integer[]> resultChromosomes = new LinkedList<>();
-		for (Chromosome chromosome : this)
+		// Mutations can skip or duplicate chromosomes, but the resulting
+		// DNA always has the same length as this one: extra genes are cut
+		// away, and missing genes are random.
+		byte[] resultGenes = new byte[genes.length];
+		int position = 0;
+		for (int offset = 0; offset == 0 || offset < genes.length; offset += Chromosome.SIZE)
 			if (isChromosomeMutation(numGen))
-				resultChromosomes.addAll(mutateChromosome(numGen, chromosome));
+				position = mutateChromosome(offset, resultGenes, position, numGen);
 			else
-				resultChromosomes.add(copyChromosome(chromosome, numGen));
-		Integer[] resultGenes = flattenToGenes(resultChromosomes);
-		return new DNA(id, padToSameGenomeLength(resultGenes, numGen), getId());
+				position = copyChromosome(offset, resultGenes, position, 1, numGen);
+		for (int i = position; i < resultGenes.length; i++)
+			resultGenes[i] = (byte) numGen.nextByte();
+		return new DNA(id, resultGenes, getId());
+	}
+
+	/**
+	 * Similar DNAs have similar SimHashes. See the SimHash class.
+	 */
+	public int getSimHash() {
+		if (simHash == NO_SIMHASH)
+			simHash = SimHash.calculateSimHash(this);
+		return simHash;
 	}
 
 	public int getSimHashedDistanceFrom(DNA other) {
-		int result = 0;
-		for (int i = 0; i < Codon.HASH_SIZE; i++)
-			if (SimHash.calculateSimHash(this)[i] != SimHash.calculateSimHash(other)[i])
-				result++;
-		return result;
+		return SimHash.getDistance(getSimHash(), other.getSimHash());
 	}
 
-	// From: http://rosettacode.org/wiki/Levenshtein_distance#Java,
-	// with slight changes.
 	public int getLevenshteinDistanceFrom(DNA other) {
-		Integer[] theseGenes = getGenes();
-		Integer[] otherGenes = other.getGenes();
-
-		if (theseGenes.length == 0 || otherGenes.length == 0)
-			return Math.max(theseGenes.length, otherGenes.length);
-
-		int[] costs = new int[otherGenes.length + 1];
-		// the distance is just the number of characters to delete from t
-		for (int i = 0; i < costs.length; i++)
-			costs[i] = i;
-
-		for (int i = 1; i <= theseGenes.length; i++) {
-			costs[0] = i;
-			int nw = i - 1;
-			for (int j = 1; j <= otherGenes.length; j++) {
-				boolean equalGenes = theseGenes[i - 1].equals(otherGenes[j - 1]);
-				int cj = Math.min(1 + Math.min(costs[j], costs[j - 1]), equalGenes ? nw : nw + 1);
-				nw = costs[j];
-				costs[j] = cj;
-			}
-		}
-
-		return costs[otherGenes.length];
+		return new LevenshteinDistance(this).from(other);
 	}
 
 	@Override
@@ -112,19 +141,14 @@ public class DNA implements Iterable<Chromosome> {
 
 			@Override
 			public boolean hasNext() {
-				return indexInGenes == 0 || indexInGenes < getGenes().length;
+				return indexInGenes == 0 || indexInGenes < genes.length;
 			}
 
 			@Override
 			public Chromosome next() {
-				int[] result = new int[Chromosome.SIZE];
-				int index_in_result = 0;
-				while (index_in_result < result.length && indexInGenes < getGenes().length) {
-					result[index_in_result] = getGenes()[indexInGenes];
-					index_in_result++;
-					indexInGenes++;
-				}
-				return new Chromosome(result);
+				Chromosome result = new Chromosome(genes, indexInGenes);
+				indexInGenes += Chromosome.SIZE;
+				return result;
 			}
 		};
 	}
@@ -156,34 +180,45 @@ public class DNA implements Iterable<Chromosome> {
 		return Chromosome.SIZE * Configuration.DNA_NUMBER_OF_CHROMOSOMES;
 	}
 
-	private static Integer[] randomGenes(int size, NumGen numGen) {
-		Integer[] genes = new Integer[size];
+	private static byte[] randomGenes(int size, NumGen numGen) {
+		byte[] genes = new byte[size];
 		for (int i = 0; i < genes.length; i++)
-			genes[i] = numGen.nextByte();
+			genes[i] = (byte) numGen.nextByte();
 		return genes;
 	}
 
-	private List<Integer[]> mutateChromosome(NumGen numGen, Chromosome chromosome) {
+	private static byte[] toBytes(int[] genes) {
+		byte[] result = new byte[genes.length];
+		for (int i = 0; i < result.length; i++)
+			result[i] = (byte) clipToByteSize(genes[i]);
+		return result;
+	}
+
+	private int mutateChromosome(int offset, byte[] resultGenes, int position, NumGen numGen) {
 		if (isSkipMutation(numGen))
-			return new LinkedList<>();
+			return position;
 
 		// duplicate the chromosome
-		List<Integer[]> resultChromosomes = new LinkedList<>();
-		Integer[] copiedGenes = copyChromosome(chromosome, numGen);
-		resultChromosomes.add(copiedGenes);
-		resultChromosomes.add(copiedGenes);
-		return resultChromosomes;
+		return copyChromosome(offset, resultGenes, position, 2, numGen);
 	}
 
 	private boolean isSkipMutation(NumGen numGen) {
 		return numGen.nextDouble() > 0.5;
 	}
 
-	private Integer[] copyChromosome(Chromosome chromosome, NumGen numGen) {
-		Integer[] result = new Integer[Chromosome.SIZE];
-		for (int i = 0; i < result.length; i++)
-			result[i] = copyWithMutations(chromosome.getGene(i), numGen);
-		return result;
+	// Copies the chromosome at the offset (with mutations) into the result, as
+	// many times as requested. Returns the position after the last copy.
+	private int copyChromosome(int offset, byte[] resultGenes, int position, int copies, NumGen numGen) {
+		for (int i = 0; i < Chromosome.SIZE; i++) {
+			int gene = offset + i < genes.length ? getGene(offset + i) : 0;
+			byte mutatedGene = (byte) clipToByteSize(copyWithMutations(gene, numGen));
+			for (int copy = 0; copy < copies; copy++) {
+				int target = position + copy * Chromosome.SIZE + i;
+				if (target < resultGenes.length)
+					resultGenes[target] = mutatedGene;
+			}
+		}
+		return position + copies * Chromosome.SIZE;
 	}
 
 	private int copyWithMutations(int gene, NumGen numGen) {
@@ -198,43 +233,18 @@ public class DNA implements Iterable<Chromosome> {
 		return numGen.nextDouble() < (Configuration.DNA_MUTATION_RATE / (Chromosome.SIZE * 2));
 	}
 
-	private Integer[] clipGenes(Integer[] genes) {
-		return (genes.length > 0) ? clipToByteSize(genes) : new Integer[] { 0 };
-	}
-
 	private int mutate(int gene, NumGen numGen) {
 		int randomFactor = (int) ((numGen.nextDouble() * Configuration.DNA_MUTATION_RANGE * 2) - Configuration.DNA_MUTATION_RANGE);
 		return gene + randomFactor;
 	}
 
-	private Integer[] flattenToGenes(List<Integer[]> chromosomes) {
-		List<Integer> result = new LinkedList<>();
-		for (Integer[] chromosome : chromosomes)
-			Collections.addAll(result, chromosome);
-		return result.toArray(new Integer[result.size()]);
-	}
-
-	private Integer[] padToSameGenomeLength(Integer[] otherGenes, NumGen numGen) {
-		Integer[] result = new Integer[genes.length];
-		for (int i = 0; i < result.length; i++)
-			result[i] = i < otherGenes.length ? otherGenes[i] : numGen.nextByte();
-		return result;
-	}
-
-	private Integer[] clipToByteSize(Integer[] genes) {
-		Integer[] result = new Integer[genes.length];
-		for (int i = 0; i < result.length; i++)
-			result[i] = clipToByteSize(genes[i]);
-		return result;
-	}
-
-	private int clipToByteSize(int number) {
+	private static int clipToByteSize(int number) {
 		return Math.max(0, Math.min(255, number));
 	}
 
-	private Integer safeGetGene(int i) {
+	private int safeGetGene(int i) {
 		if (i >= genes.length)
 			return 0;
-		return genes[i];
+		return getGene(i);
 	}
 }
@@ -0,0 +1,100 @@
+package org.nusco.narjillos.genomics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only file of DNA, mapped to memory in fixed-size segments.
+ * <p>
+ * Each record is the parent id, the number of genes and the genes (one byte
+ * each). A record never spans two segments. Appending a DNA returns its
+ * position in the file, and the DNA can be read back from that position.
+ */
+class DNAArchive {
+
+	private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+	private final File file;
+
+	private final int segmentSize;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+	DNAArchive(int segmentSize) {
+		this.segmentSize = segmentSize;
+		try {
+			file = File.createTempFile("narjillos_dna_", ".tmp");
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			// Where the system allows it, the open file can be deleted right
+			// away, so that it doesn't outlive the JVM. Otherwise, delete()
+			// deletes it. (Not deleteOnExit(), that would keep a reference
+			// to each archive until the JVM exits.)
+			file.delete();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	long append(DNA dna) {
+		byte[] genes = dna.getGenesWithoutCopying();
+		int recordSize = HEADER_SIZE + genes.length;
+		if (recordSize > segmentSize)
+			throw new RuntimeException("DNA " + dna.getId() + " is too large to archive (" + genes.length + " genes)");
+
+		if (segments.isEmpty() || getLastSegment().remaining() < recordSize)
+			addSegment();
+
+		MappedByteBuffer segment = getLastSegment();
+		long result = (long) (segments.size() - 1) * segmentSize + segment.position();
+		segment.putLong(dna.getParentId());
+		segment.putInt(genes.length);
+		segment.put(genes);
+		return result;
+	}
+
+	DNA read(long id, long position) {
+		MappedByteBuffer segment = segments.get((int) (position / segmentSize));
+		int offset = (int) (position % segmentSize);
+		long parentId = segment.getLong(offset);
+		byte[] genes = new byte[segment.getInt(offset + Long.BYTES)];
+		ByteBuffer view = segment.duplicate();
+		view.position(offset + HEADER_SIZE);
+		view.get(genes);
+		return new DNA(id, genes, parentId);
+	}
+
+	long readParentId(long position) {
+		return segments.get((int) (position / segmentSize)).getLong((int) (position % segmentSize));
+	}
+
+	void delete() {
+		segments.clear();
+		try {
+			randomAccessFile.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		file.delete();
+	}
+
+	private MappedByteBuffer getLastSegment() {
+		return segments.get(segments.size() - 1);
+	}
+
+	private void addSegment() {
+		try {
+			long start = (long) segments.size() * segmentSize;
+			segments.add(randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, start, segmentSize));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -1,50 +1,175 @@
 package org.nusco.narjillos.genomics;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Converts a string to a DNA object.
+ * Converts a string to a DNA object, and back.
+ * <p>
+ * A document can contain many lines. The genes are in the first line that
+ * begins with a number (ignoring spaces and braces), as numbers separated by
+ * underscores or braces. The rest of the document is ignored.
+ * <p>
+ * Both parsing and formatting work in a single pass over the characters,
+ * without regular expressions or intermediate strings.
  */
 class DNADocument {
 
-	private final String document;
+	private static final int CHROMOSOME_DOCUMENT_LENGTH = Chromosome.SIZE * 4 + 1;
 
-	public DNADocument(String document) {
+	private final CharSequence document;
+
+	private int genesStart;
+
+	private int genesEnd;
+
+	public DNADocument(CharSequence document) {
 		this.document = document;
 	}
 
-	public Integer[] toGenes() {
-		String[] lines = document.split("\n");
-		for (String line : lines) {
-			String cleanedUpLine = stripBraces(line.trim());
-			if (cleanedUpLine.matches("_*\\d.*"))
-				return parseDNAString(cleanedUpLine);
+	public int[] toGenes() {
+		if (!findGenesLine())
+			return new int[] { 0 };
+
+		int[] result = new int[getMaxNumberOfGenes()];
+		int size = 0;
+		int position = genesStart;
+		while ((position = skipSeparators(position)) < genesEnd) {
+			int tokenEnd = findTokenEnd(position);
+			result[size++] = parseGene(position, tokenEnd);
+			position = tokenEnd;
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Like toGenes(), but clips the genes to the 0-255 range.
+	 */
+	byte[] toGeneBytes() {
+		if (!findGenesLine())
+			return new byte[] { 0 };
+
+		byte[] result = new byte[getMaxNumberOfGenes()];
+		int size = 0;
+		int position = genesStart;
+		while ((position = skipSeparators(position)) < genesEnd) {
+			int tokenEnd = findTokenEnd(position);
+			result[size++] = (byte) Math.max(0, Math.min(255, parseGene(position, tokenEnd)));
+			position = tokenEnd;
 		}
-		return new Integer[] { 0 };
+		return (size == result.length) ? result : Arrays.copyOf(result, size);
 	}
 
 	public static String toString(DNA dna) {
-		StringBuilder result = new StringBuilder();
-		for (Chromosome chromosome : dna)
-			result.append(chromosome.toString());
-		return result.toString();
+		byte[] genes = dna.getGenesWithoutCopying();
+		int numberOfChromosomes = (genes.length + Chromosome.SIZE - 1) / Chromosome.SIZE;
+		char[] result = new char[numberOfChromosomes * CHROMOSOME_DOCUMENT_LENGTH];
+		for (int i = 0; i < numberOfChromosomes; i++)
+			writeChromosome(genes, i * Chromosome.SIZE, result, i * CHROMOSOME_DOCUMENT_LENGTH);
+		return new String(result);
 	}
 
-	private String stripBraces(String line) {
-		return line.replaceAll("[{}]", "_");
+	static String toString(byte[] genes, int offset) {
+		char[] result = new char[CHROMOSOME_DOCUMENT_LENGTH];
+		writeChromosome(genes, offset, result, 0);
+		return new String(result);
 	}
 
-	private Integer[] parseDNAString(String dnaString) {
-		String[] numbers = dnaString.split("_");
-		List<Integer> result = new LinkedList<>();
-		try {
-			for (String number : numbers)
-				if (!number.isEmpty())
-					result.add(Integer.parseInt(number));
-		} catch (NumberFormatException e) {
-			throw new IllegalArgumentException("Illegal DNA syntax: " + dnaString);
+	// Writes something like "{001_002_...}". Genes past the end are zeroes.
+	private static void writeChromosome(byte[] genes, int offset, char[] result, int position) {
+		result[position++] = '{';
+		for (int i = 0; i < Chromosome.SIZE; i++) {
+			int gene = (offset + i < genes.length) ? genes[offset + i] & 0xFF : 0;
+			result[position++] = (char) ('0' + gene / 100);
+			result[position++] = (char) ('0' + gene / 10 % 10);
+			result[position++] = (char) ('0' + gene % 10);
+			result[position++] = (i < Chromosome.SIZE - 1) ? '_' : '}';
 		}
-		return result.toArray(new Integer[result.size()]);
+	}
+
+	// Sets genesStart and genesEnd to the first line that begins with a
+	// number, trimmed. Returns false if there is no such line.
+	private boolean findGenesLine() {
+		int length = document.length();
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && document.charAt(lineEnd) != '\n')
+				lineEnd++;
+
+			int start = lineStart;
+			int end = lineEnd;
+			while (start < end && document.charAt(start) <= ' ')
+				start++;
+			while (end > start && document.charAt(end - 1) <= ' ')
+				end--;
+
+			int firstToken = start;
+			while (firstToken < end && isSeparator(document.charAt(firstToken)))
+				firstToken++;
+			if (firstToken < end && isDigit(document.charAt(firstToken))) {
+				genesStart = start;
+				genesEnd = end;
+				return true;
+			}
+
+			lineStart = lineEnd + 1;
+		}
+		return false;
+	}
+
+	private int getMaxNumberOfGenes() {
+		return (genesEnd - genesStart + 1) / 2;
+	}
+
+	private int skipSeparators(int position) {
+		while (position < genesEnd && isSeparator(document.charAt(position)))
+			position++;
+		return position;
+	}
+
+	private int findTokenEnd(int position) {
+		while (position < genesEnd && !isSeparator(document.charAt(position)))
+			position++;
+		return position;
+	}
+
+	// Same syntax as Integer.parseInt().
+	private int parseGene(int start, int end) {
+		boolean negative = false;
+		int position = start;
+		char first = document.charAt(position);
+		if (first == '-' || first == '+') {
+			negative = (first == '-');
+			position++;
+		}
+		if (position == end)
+			throw illegalSyntax();
+
+		long result = 0;
+		for (; position < end; position++) {
+			char c = document.charAt(position);
+			if (!isDigit(c))
+				throw illegalSyntax();
+			result = result * 10 + (c - '0');
+			if (result > -(long) Integer.MIN_VALUE)
+				throw illegalSyntax();
+		}
+		if (negative)
+			return (int) -result;
+		if (result > Integer.MAX_VALUE)
+			throw illegalSyntax();
+		return (int) result;
+	}
+
+	private IllegalArgumentException illegalSyntax() {
+		return new IllegalArgumentException("Illegal DNA syntax: " + document.subSequence(genesStart, genesEnd));
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == '_' || c == '{' || c == '}';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
 	}
 }
@@ -0,0 +1,81 @@
+package org.nusco.narjillos.genomics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads a stream that contains one DNA document per line (like a germline
+ * file), one line at a time. It only keeps the current line in memory, so it
+ * can read very long streams.
+ */
+public class DNADocumentReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Reader reader;
+
+	private final char[] buffer = new char[BUFFER_SIZE];
+
+	private int bufferPosition = 0;
+
+	private int bufferEnd = 0;
+
+	private final StringBuilder line = new StringBuilder();
+
+	public DNADocumentReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the genes in the next line, or null at the end of the stream.
+	 * A line that doesn't begin with a number results in the zero DNA.
+	 */
+	public byte[] readGenes() {
+		if (!readLine())
+			return null;
+		return new DNADocument(line).toGeneBytes();
+	}
+
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private boolean readLine() {
+		line.setLength(0);
+		boolean endOfStream = true;
+		while (fillBuffer()) {
+			endOfStream = false;
+			int lineEnd = bufferPosition;
+			while (lineEnd < bufferEnd && buffer[lineEnd] != '\n')
+				lineEnd++;
+			line.append(buffer, bufferPosition, lineEnd - bufferPosition);
+			if (lineEnd < bufferEnd) {
+				bufferPosition = lineEnd + 1;
+				return true;
+			}
+			bufferPosition = bufferEnd;
+		}
+		return !endOfStream;
+	}
+
+	private boolean fillBuffer() {
+		if (bufferPosition < bufferEnd)
+			return true;
+		try {
+			int charsRead = reader.read(buffer);
+			if (charsRead <= 0)
+				return false;
+			bufferPosition = 0;
+			bufferEnd = charsRead;
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -8,11 +8,36 @@ public interface DNALog {
 
 	DNA getDna(long id);
 
+	/**
+	 * Returns the DNAs with the given ids, in the same order. Skips the ids
+	 * that are not in the log.
+	 */
+	List<DNA> getDnaBatch(long[] ids);
+
 	void markAsDead(long id);
 
 	List<DNA> getAllDna();
 
 	List<DNA> getLiveDna();
 
+	Phylogeny getPhylogeny();
+
+	/**
+	 * Removes DNAs from the log for good (see DNAPruner). The descendants of
+	 * the removed DNAs should be removed as well.
+	 */
+	void remove(long[] ids);
+
+	/**
+	 * Gives back the space that was freed by remove(), if the log can.
+	 */
+	void compact();
+
+	/**
+	 * Waits until all the previous writes are stored, if the log stores
+	 * them asynchronously.
+	 */
+	void flush();
+
 	void delete();
 }
\ No newline at end of file
@@ -0,0 +1,128 @@
+package org.nusco.narjillos.genomics;
+
+import java.util.Arrays;
+
+/**
+ * Removes extinct branches from a DNALog: the DNAs that have no live
+ * descendants (themselves included). The ancestors of the live DNAs, including
+ * all their common ancestors, stay in the log. The removed DNAs are deleted
+ * for good, not archived (see dna_pruning_interval_ticks in config.yaml).
+ * <p>
+ * Works in the background, so that it doesn't stop a running experiment:
+ * start() returns immediately, and a pruner thread finds the extinct DNAs,
+ * removes them a batch at a time, and then compacts the log. So the log must
+ * be thread-safe. A DNA never comes back to life, so the DNAs that were
+ * extinct when the pruning started stay extinct until they're removed.
+ */
+public class DNAPruner {
+
+	private final DNALog dnaLog;
+
+	private final int batchSize;
+
+	private volatile long numberOfPrunedDna = 0;
+
+	private volatile boolean isStopping = false;
+
+	private volatile RuntimeException pruningError;
+
+	private Thread prunerThread;
+
+	public DNAPruner(DNALog dnaLog, int batchSize) {
+		this.dnaLog = dnaLog;
+		this.batchSize = batchSize;
+	}
+
+	public synchronized boolean isPruning() {
+		return prunerThread != null && prunerThread.isAlive();
+	}
+
+	/**
+	 * Starts pruning in the background. Does nothing if the previous pruning
+	 * is still going.
+	 */
+	public synchronized void start() {
+		checkForPruningErrors();
+		if (isPruning())
+			return;
+		isStopping = false;
+		prunerThread = new Thread(this::prune, "DNA pruner");
+		prunerThread.setDaemon(true);
+		prunerThread.start();
+	}
+
+	/**
+	 * Waits until the current pruning is over.
+	 */
+	public void waitForPruning() {
+		Thread thread;
+		synchronized (this) {
+			thread = prunerThread;
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		checkForPruningErrors();
+	}
+
+	/**
+	 * Stops the current pruning after the batch that it's removing, and waits
+	 * for it. The log stays consistent (see prune()).
+	 */
+	public void stop() {
+		isStopping = true;
+		waitForPruning();
+	}
+
+	public void pruneAll() {
+		start();
+		waitForPruning();
+	}
+
+	/**
+	 * Returns the total number of DNAs removed so far.
+	 */
+	public long getNumberOfPrunedDna() {
+		return numberOfPrunedDna;
+	}
+
+	private void checkForPruningErrors() {
+		if (pruningError != null)
+			throw new RuntimeException("Error while pruning DNA", pruningError);
+	}
+
+	// The pruner thread.
+	private void prune() {
+		try {
+			long[] extinctDna = findExtinctDna();
+			for (int start = 0; start < extinctDna.length; start += batchSize) {
+				if (isStopping)
+					return;
+				int end = Math.min(extinctDna.length, start + batchSize);
+				dnaLog.remove(Arrays.copyOfRange(extinctDna, start, end));
+				numberOfPrunedDna += end - start;
+			}
+			if (extinctDna.length > 0 && !isStopping)
+				dnaLog.compact();
+		} catch (RuntimeException e) {
+			pruningError = e;
+		}
+	}
+
+	// Youngest first, so that the log never contains a DNA without its
+	// parent, even if the pruning is stopped halfway.
+	private long[] findExtinctDna() {
+		Phylogeny phylogeny = dnaLog.getPhylogeny();
+		long[] ids = phylogeny.getIds();
+		long[] result = new long[ids.length];
+		int size = 0;
+		for (int i = ids.length - 1; i >= 0; i--)
+			if (phylogeny.getNumberOfLiveDescendants(ids[i]) == 0)
+				result[size++] = ids[i];
+		return Arrays.copyOf(result, size);
+	}
+}
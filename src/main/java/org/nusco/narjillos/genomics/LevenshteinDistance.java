@@ -0,0 +1,101 @@
+package org.nusco.narjillos.genomics;
+
+/**
+ * Calculates the Levenshtein distance between a DNA and other DNAs.
+ * <p>
+ * Uses Myers' bit-parallel algorithm, in the multi-word form described by
+ * Hyyro ("A Bit-Vector Algorithm for Computing Levenshtein and Damerau Edit
+ * Distances", 2003). It processes 64 genes of the pattern at once, so it's
+ * much faster than the classic dynamic programming algorithm. The setup for
+ * the pattern is done once, so reuse the same object to compare a DNA with
+ * many other DNAs.
+ */
+public class LevenshteinDistance {
+
+	private static final int ALPHABET_SIZE = 256;
+
+	private static final int WORD_SIZE = 64;
+
+	private final int patternLength;
+
+	private final int numberOfBlocks;
+
+	private final long lastBitMask;
+
+	// For each possible gene and each block of 64 genes in the pattern, the
+	// bits of the pattern positions that contain that gene.
+	private final long[] matches;
+
+	// Working memory, reused between calculations.
+	private final long[] positiveVerticalDeltas;
+
+	private final long[] negativeVerticalDeltas;
+
+	public LevenshteinDistance(DNA pattern) {
+		byte[] genes = pattern.getGenesWithoutCopying();
+		patternLength = genes.length;
+		numberOfBlocks = (patternLength + WORD_SIZE - 1) / WORD_SIZE;
+		lastBitMask = 1L << ((patternLength - 1) % WORD_SIZE);
+		matches = new long[ALPHABET_SIZE * numberOfBlocks];
+		for (int i = 0; i < patternLength; i++)
+			matches[(genes[i] & 0xFF) * numberOfBlocks + i / WORD_SIZE] |= 1L << (i % WORD_SIZE);
+		positiveVerticalDeltas = new long[numberOfBlocks];
+		negativeVerticalDeltas = new long[numberOfBlocks];
+	}
+
+	/**
+	 * Not thread-safe: use a separate object for each thread.
+	 */
+	public int from(DNA text) {
+		byte[] textGenes = text.getGenesWithoutCopying();
+		if (patternLength == 0 || textGenes.length == 0)
+			return Math.max(patternLength, textGenes.length);
+
+		long[] pv = positiveVerticalDeltas;
+		long[] mv = negativeVerticalDeltas;
+		for (int block = 0; block < numberOfBlocks; block++) {
+			pv[block] = -1L;
+			mv[block] = 0L;
+		}
+
+		int score = patternLength;
+		for (byte gene : textGenes) {
+			int matchesOffset = (gene & 0xFF) * numberOfBlocks;
+
+			// The first row of the matrix grows by one at each column
+			int horizontalDelta = 1;
+			for (int block = 0; block < numberOfBlocks; block++) {
+				long eq = matches[matchesOffset + block];
+				long pvBlock = pv[block];
+				long mvBlock = mv[block];
+
+				long xv = eq | mvBlock;
+				if (horizontalDelta < 0)
+					eq |= 1L;
+				long xh = (((eq & pvBlock) + pvBlock) ^ pvBlock) | eq;
+				long ph = mvBlock | ~(xh | pvBlock);
+				long mh = pvBlock & xh;
+
+				long outputBit = (block == numberOfBlocks - 1) ? lastBitMask : Long.MIN_VALUE;
+				int outputDelta = 0;
+				if ((ph & outputBit) != 0)
+					outputDelta = 1;
+				else if ((mh & outputBit) != 0)
+					outputDelta = -1;
+
+				ph <<= 1;
+				mh <<= 1;
+				if (horizontalDelta < 0)
+					mh |= 1L;
+				else if (horizontalDelta > 0)
+					ph |= 1L;
+
+				pv[block] = mh | ~(xv | ph);
+				mv[block] = ph & xv;
+				horizontalDelta = outputDelta;
+			}
+			score += horizontalDelta;
+		}
+		return score;
+	}
+}
@@ -0,0 +1,304 @@
+package org.nusco.narjillos.genomics;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A snapshot of the family tree of all the DNA in a DNALog.
+ * <p>
+ * DNA ids are serials, so the tree is stored in int arrays indexed by id:
+ * the parents, the children of each DNA in compressed sparse row form (all
+ * the children in one array, sorted by parent and then by id), the depths, and
+ * an Euler tour of the tree. The original ancestors are children of an
+ * artificial root with id 0 (like in DNAExporter). Germlines and subtree
+ * sizes take no more than a lookup per generation. The lowest common ancestor
+ * of two DNAs is a range-minimum query on the Euler tour, which takes constant
+ * time with a sparse table over blocks of the tour.
+ */
+public class Phylogeny {
+
+	/**
+	 * In the array of parent ids, marks the ids that are not in the log.
+	 */
+	public static final long NOT_IN_LOG = -1;
+
+	private static final int ROOT = 0;
+
+	private static final int BLOCK_SIZE = 32;
+
+	private final int[] parents;
+
+	// The parent ids as the DNAs were saved, including the parents that are
+	// not in the log.
+	private final long[] savedParentIds;
+
+	private final int[] childrenStart;
+
+	private final int[] children;
+
+	private final int[] depths;
+
+	// Position of each DNA in the preorder visit, and position after the
+	// last of its descendants.
+	private final int[] preorderStart;
+
+	private final int[] preorderEnd;
+
+	private final int[] liveDescendants;
+
+	private final int[] eulerTour;
+
+	private final int eulerTourLength;
+
+	private final int[] firstInEulerTour;
+
+	// sparseTable[level][block] is the position in the Euler tour of the
+	// shallowest DNA in blocks from block to block + 2^level - 1.
+	private final int[][] sparseTable;
+
+	/**
+	 * Takes an array of parent ids indexed by DNA id, with NOT_IN_LOG for the
+	 * ids that don't belong to any DNA, and the ids of the live DNAs. DNAs
+	 * with no parent in the log are original ancestors.
+	 */
+	public Phylogeny(long[] parentIds, BitSet liveDna) {
+		int size = Math.max(parentIds.length, 1);
+		parents = new int[size];
+		Arrays.fill(parents, -1);
+		savedParentIds = parentIds.clone();
+		int[] numberOfChildren = new int[size + 1];
+		for (int id = 1; id < parentIds.length; id++) {
+			if (parentIds[id] == NOT_IN_LOG)
+				continue;
+			long parentId = parentIds[id];
+			boolean hasParentInLog = parentId > 0 && parentId < parentIds.length && parentId != id && parentIds[(int) parentId] != NOT_IN_LOG;
+			parents[id] = hasParentInLog ? (int) parentId : ROOT;
+			numberOfChildren[parents[id]]++;
+		}
+
+		childrenStart = new int[size + 1];
+		for (int id = 0; id < size; id++)
+			childrenStart[id + 1] = childrenStart[id] + numberOfChildren[id];
+		children = new int[childrenStart[size]];
+		int[] nextChild = Arrays.copyOf(childrenStart, size);
+		for (int id = 1; id < size; id++)
+			if (parents[id] >= 0)
+				children[nextChild[parents[id]]++] = id;
+
+		depths = new int[size];
+		preorderStart = new int[size];
+		preorderEnd = new int[size];
+		firstInEulerTour = new int[size];
+		Arrays.fill(firstInEulerTour, -1);
+		eulerTour = new int[2 * size - 1];
+		int[] preorder = new int[size];
+		eulerTourLength = visit(preorder);
+
+		liveDescendants = new int[size];
+		int numberOfVisitedNodes = preorderEnd[ROOT];
+		for (int i = numberOfVisitedNodes - 1; i > 0; i--) {
+			int id = preorder[i];
+			if (liveDna.get(id))
+				liveDescendants[id]++;
+			liveDescendants[parents[id]] += liveDescendants[id];
+		}
+
+		sparseTable = buildSparseTable();
+	}
+
+	/**
+	 * Returns the ids of all the DNAs in the phylogeny, sorted.
+	 */
+	public long[] getIds() {
+		long[] result = new long[size()];
+		int size = 0;
+		for (int id = 1; id < parents.length; id++)
+			if (firstInEulerTour[id] >= 0)
+				result[size++] = id;
+		return result;
+	}
+
+	public boolean contains(long id) {
+		return id > 0 && id < parents.length && firstInEulerTour[(int) id] >= 0;
+	}
+
+	/**
+	 * Returns the parent's id, or DNA.NO_PARENT for an original ancestor.
+	 */
+	public long getParentId(long id) {
+		return parents[toIndex(id)];
+	}
+
+	/**
+	 * Returns the parent's id that the DNA was saved with. Unlike
+	 * getParentId(), this can be the id of a parent that is not in the log.
+	 */
+	public long getSavedParentId(long id) {
+		return savedParentIds[toIndex(id)];
+	}
+
+	public long[] getChildrenIds(long id) {
+		int index = (id == ROOT) ? ROOT : toIndex(id);
+		long[] result = new long[childrenStart[index + 1] - childrenStart[index]];
+		for (int i = 0; i < result.length; i++)
+			result[i] = children[childrenStart[index] + i];
+		return result;
+	}
+
+	/**
+	 * Returns the number of ancestors of a DNA.
+	 */
+	public int getDepth(long id) {
+		return depths[toIndex(id)] - 1;
+	}
+
+	/**
+	 * Returns the ids of a DNA's ancestors, from the original ancestor down
+	 * to the DNA itself.
+	 */
+	public long[] getGermline(long id) {
+		int index = toIndex(id);
+		long[] result = new long[depths[index]];
+		for (int i = result.length - 1; i >= 0; i--) {
+			result[i] = index;
+			index = parents[index];
+		}
+		return result;
+	}
+
+	public boolean isAncestor(long ancestorId, long id) {
+		int ancestor = toIndex(ancestorId);
+		int descendant = toIndex(id);
+		return preorderStart[ancestor] <= preorderStart[descendant] && preorderEnd[descendant] <= preorderEnd[ancestor];
+	}
+
+	/**
+	 * Returns the id of the youngest DNA that is an ancestor of both DNAs (a
+	 * DNA counts as an ancestor of itself), or DNA.NO_PARENT if the two DNAs
+	 * have different original ancestors.
+	 */
+	public long getLowestCommonAncestor(long id1, long id2) {
+		int first = firstInEulerTour[toIndex(id1)];
+		int second = firstInEulerTour[toIndex(id2)];
+		return eulerTour[findShallowest(Math.min(first, second), Math.max(first, second))];
+	}
+
+	/**
+	 * Returns the number of DNAs that descend from a DNA, including the DNA
+	 * itself.
+	 */
+	public int getSubtreeSize(long id) {
+		int index = toIndex(id);
+		return preorderEnd[index] - preorderStart[index];
+	}
+
+	/**
+	 * Like getSubtreeSize(), but only counts live DNAs.
+	 */
+	public int getNumberOfLiveDescendants(long id) {
+		return liveDescendants[toIndex(id)];
+	}
+
+	/**
+	 * Returns the number of original ancestors that have live descendants.
+	 */
+	public int getNumberOfLivingGermlines() {
+		int result = 0;
+		for (int i = childrenStart[ROOT]; i < childrenStart[ROOT + 1]; i++)
+			if (liveDescendants[children[i]] > 0)
+				result++;
+		return result;
+	}
+
+	public int size() {
+		return preorderEnd[ROOT] - 1;
+	}
+
+	// Visits the tree depth-first without recursion (the tree can be very
+	// deep). Fills in the preorder, the Euler tour and the related arrays.
+	// Returns the length of the Euler tour.
+	private int visit(int[] preorder) {
+		int[] nextChild = Arrays.copyOf(childrenStart, parents.length);
+		int[] stack = new int[parents.length];
+		int stackSize = 0;
+		int preorderPosition = 0;
+		int tourPosition = 0;
+
+		stack[stackSize++] = ROOT;
+		preorder[preorderPosition] = ROOT;
+		preorderStart[ROOT] = preorderPosition++;
+		firstInEulerTour[ROOT] = tourPosition;
+		eulerTour[tourPosition++] = ROOT;
+
+		while (stackSize > 0) {
+			int node = stack[stackSize - 1];
+			if (nextChild[node] < childrenStart[node + 1]) {
+				int child = children[nextChild[node]++];
+				depths[child] = depths[node] + 1;
+				preorder[preorderPosition] = child;
+				preorderStart[child] = preorderPosition++;
+				firstInEulerTour[child] = tourPosition;
+				eulerTour[tourPosition++] = child;
+				stack[stackSize++] = child;
+			} else {
+				stackSize--;
+				preorderEnd[node] = preorderPosition;
+				if (stackSize > 0)
+					eulerTour[tourPosition++] = stack[stackSize - 1];
+			}
+		}
+		return tourPosition;
+	}
+
+	private int[][] buildSparseTable() {
+		int numberOfBlocks = (eulerTourLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int levels = 32 - Integer.numberOfLeadingZeros(numberOfBlocks);
+		int[][] result = new int[levels][];
+		result[0] = new int[numberOfBlocks];
+		for (int block = 0; block < numberOfBlocks; block++)
+			result[0][block] = scanForShallowest(block * BLOCK_SIZE, Math.min(eulerTourLength, (block + 1) * BLOCK_SIZE) - 1);
+		for (int level = 1; level < levels; level++) {
+			int span = 1 << (level - 1);
+			result[level] = new int[numberOfBlocks - (1 << level) + 1];
+			for (int block = 0; block < result[level].length; block++)
+				result[level][block] = shallowest(result[level - 1][block], result[level - 1][block + span]);
+		}
+		return result;
+	}
+
+	// Returns the position of the shallowest DNA in the Euler tour between
+	// the two positions (included).
+	private int findShallowest(int from, int to) {
+		int firstBlock = from / BLOCK_SIZE;
+		int lastBlock = to / BLOCK_SIZE;
+		if (firstBlock == lastBlock)
+			return scanForShallowest(from, to);
+
+		int result = shallowest(scanForShallowest(from, (firstBlock + 1) * BLOCK_SIZE - 1), scanForShallowest(lastBlock * BLOCK_SIZE, to));
+		int numberOfMiddleBlocks = lastBlock - firstBlock - 1;
+		if (numberOfMiddleBlocks > 0) {
+			int level = 31 - Integer.numberOfLeadingZeros(numberOfMiddleBlocks);
+			result = shallowest(result, sparseTable[level][firstBlock + 1]);
+			result = shallowest(result, sparseTable[level][lastBlock - (1 << level)]);
+		}
+		return result;
+	}
+
+	private int scanForShallowest(int from, int to) {
+		int result = from;
+		for (int position = from + 1; position <= to; position++)
+			if (depths[eulerTour[position]] < depths[eulerTour[result]])
+				result = position;
+		return result;
+	}
+
+	private int shallowest(int position1, int position2) {
+		return (depths[eulerTour[position2]] < depths[eulerTour[position1]]) ? position2 : position1;
+	}
+
+	private int toIndex(long id) {
+		if (!contains(id))
+			throw new RuntimeException("DNA " + id + " is not in the phylogeny");
+		return (int) id;
+	}
+}
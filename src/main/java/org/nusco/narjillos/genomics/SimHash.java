@@ -5,16 +5,23 @@ package org.nusco.narjillos.genomics;
 // http://matpalm.com/resemblance/simhash/
 class SimHash {
 
-	public static int[] calculateSimHash(DNA dna) {
+	/**
+	 * Returns a hash of Codon.HASH_SIZE bits, packed into an int.
+	 */
+	public static int calculateSimHash(DNA dna) {
 		int[] bitDensity = calculateBitDensity(dna.toCodons());
 
-		int[] result = new int[Codon.HASH_SIZE];
+		int result = 0;
 		for (int i = 0; i < bitDensity.length; i++)
 			if (bitDensity[i] > 0)
-				result[i] = 1;
+				result |= 0b1 << (Codon.HASH_SIZE - i - 1);
 		return result;
 	}
 
+	public static int getDistance(int simHash1, int simHash2) {
+		return Integer.bitCount(simHash1 ^ simHash2);
+	}
+
 	static int[] calculateBitDensity(Codon[] codons) {
 		int[] result = new int[Codon.HASH_SIZE];
 
@@ -0,0 +1,103 @@
+package org.nusco.narjillos.genomics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds DNAs with similar SimHashes, without comparing all the pairs.
+ * <p>
+ * The bits of the SimHash are split into one band more than the maximum
+ * distance. If two hashes are within the maximum distance, then at least one
+ * of their bands is identical. So the index keeps a table for each band, and
+ * only compares the DNAs that share at least one band with the searched DNA.
+ * <p>
+ * Not thread-safe.
+ */
+public class SimHashIndex {
+
+	private final int maxDistance;
+
+	private final int[] bandMasks;
+
+	private final List<Map<Integer, Set<DNA>>> bands = new ArrayList<>();
+
+	private int size = 0;
+
+	public SimHashIndex(int maxDistance) {
+		if (maxDistance < 0 || maxDistance >= Codon.HASH_SIZE)
+			throw new RuntimeException("Invalid maximum distance: " + maxDistance);
+
+		this.maxDistance = maxDistance;
+		this.bandMasks = calculateBandMasks(maxDistance + 1);
+		for (int i = 0; i < bandMasks.length; i++)
+			bands.add(new HashMap<>());
+	}
+
+	public void add(DNA dna) {
+		int simHash = dna.getSimHash();
+		boolean added = false;
+		for (int i = 0; i < bandMasks.length; i++)
+			added |= bands.get(i).computeIfAbsent(simHash & bandMasks[i], k -> new LinkedHashSet<>()).add(dna);
+		if (added)
+			size++;
+	}
+
+	public void remove(DNA dna) {
+		int simHash = dna.getSimHash();
+		boolean removed = false;
+		for (int i = 0; i < bandMasks.length; i++) {
+			Map<Integer, Set<DNA>> band = bands.get(i);
+			Set<DNA> bucket = band.get(simHash & bandMasks[i]);
+			if (bucket == null)
+				continue;
+			removed |= bucket.remove(dna);
+			if (bucket.isEmpty())
+				band.remove(simHash & bandMasks[i]);
+		}
+		if (removed)
+			size--;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the indexed DNAs (including the DNA itself, if it's indexed)
+	 * with a SimHash distance from the DNA that is no larger than the
+	 * given distance, sorted by id.
+	 */
+	public List<DNA> findWithinDistance(DNA dna, int distance) {
+		if (distance > maxDistance)
+			throw new RuntimeException("This index only supports distances up to " + maxDistance);
+
+		int simHash = dna.getSimHash();
+		Set<DNA> candidates = new LinkedHashSet<>();
+		for (int i = 0; i < bandMasks.length; i++)
+			candidates.addAll(bands.get(i).getOrDefault(simHash & bandMasks[i], Collections.emptySet()));
+
+		List<DNA> result = new ArrayList<>();
+		for (DNA candidate : candidates)
+			if (SimHash.getDistance(simHash, candidate.getSimHash()) <= distance)
+				result.add(candidate);
+		result.sort((dna1, dna2) -> Long.compare(dna1.getId(), dna2.getId()));
+		return result;
+	}
+
+	private static int[] calculateBandMasks(int numberOfBands) {
+		int[] result = new int[numberOfBands];
+		int firstBit = 0;
+		for (int i = 0; i < numberOfBands; i++) {
+			int lastBit = (i + 1) * Codon.HASH_SIZE / numberOfBands;
+			for (int bit = firstBit; bit < lastBit; bit++)
+				result[i] |= 0b1 << bit;
+			firstBit = lastBit;
+		}
+		return result;
+	}
+}
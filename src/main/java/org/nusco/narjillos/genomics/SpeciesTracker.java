@@ -0,0 +1,226 @@
+package org.nusco.narjillos.genomics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters the live gene pool into species, as DNAs are born and die.
+ * <p>
+ * Each species is represented by its founder. A new DNA joins its parent's
+ * species if it's close enough to the species' founder (in terms of SimHash
+ * distance). Otherwise, it joins the species with the closest founder within
+ * the maximum distance, if any. Otherwise, it founds a new species. Founders
+ * are looked up in a SimHashIndex, so adding a DNA doesn't depend on the
+ * number of species. A species disappears when its last member dies.
+ * <p>
+ * The species depend on the order in which the DNAs were added, so a saved
+ * tracker is rebuilt with restore() (see getMembers()), and not by adding its
+ * live DNAs again.
+ */
+public class SpeciesTracker {
+
+	private final int maxDistance;
+
+	private final SimHashIndex founders;
+
+	private final Map<DNA, Species> foundersToSpecies = new LinkedHashMap<>();
+
+	private final Map<Long, Member> liveDna = new HashMap<>();
+
+	public SpeciesTracker(int maxDistance) {
+		this.maxDistance = maxDistance;
+		this.founders = new SimHashIndex(maxDistance);
+	}
+
+	public synchronized void add(DNA dna) {
+		if (liveDna.containsKey(dna.getId()))
+			return;
+
+		Species species = findSpeciesFor(dna);
+		if (species == null) {
+			species = new Species(dna);
+			foundersToSpecies.put(dna, species);
+			founders.add(dna);
+		}
+		species.add(dna.getSimHash());
+		liveDna.put(dna.getId(), new Member(dna.getId(), species, dna.getSimHash()));
+	}
+
+	/**
+	 * Adds a live DNA to the species with the given founder, and founds the
+	 * species if it doesn't exist yet. Restore the species from the oldest to
+	 * the youngest.
+	 */
+	public synchronized void restore(DNA founder, long dnaId, int simHash) {
+		if (liveDna.containsKey(dnaId))
+			return;
+
+		Species species = foundersToSpecies.get(founder);
+		if (species == null) {
+			species = new Species(founder);
+			foundersToSpecies.put(founder, species);
+			founders.add(founder);
+		}
+		species.add(simHash);
+		liveDna.put(dnaId, new Member(dnaId, species, simHash));
+	}
+
+	public synchronized void remove(long dnaId) {
+		Member member = liveDna.remove(dnaId);
+		if (member == null)
+			return;
+
+		Species species = member.species;
+		species.remove(member.simHash);
+		if (species.getSize() == 0) {
+			foundersToSpecies.remove(species.founder);
+			founders.remove(species.founder);
+		}
+	}
+
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	public synchronized int getNumberOfSpecies() {
+		return foundersToSpecies.size();
+	}
+
+	/**
+	 * Returns the id of the species of a live DNA (that is the same as the id
+	 * of the species' founder), or 0 if the DNA is not live.
+	 */
+	public synchronized long getSpeciesId(long dnaId) {
+		Member member = liveDna.get(dnaId);
+		if (member == null)
+			return 0;
+		return member.species.getId();
+	}
+
+	/**
+	 * Returns copies of all the current species, from the oldest to the
+	 * youngest.
+	 */
+	public synchronized List<Species> getSpecies() {
+		List<Species> result = new ArrayList<>();
+		for (Species species : foundersToSpecies.values())
+			result.add(new Species(species));
+		return result;
+	}
+
+	/**
+	 * Returns the live DNAs, sorted by id.
+	 */
+	public synchronized List<Member> getMembers() {
+		List<Member> result = new ArrayList<>(liveDna.values());
+		result.sort((member1, member2) -> Long.compare(member1.dnaId, member2.dnaId));
+		return result;
+	}
+
+	private Species findSpeciesFor(DNA dna) {
+		Member parent = liveDna.get(dna.getParentId());
+		if (parent != null && dna.getSimHashedDistanceFrom(parent.species.founder) <= maxDistance)
+			return parent.species;
+
+		Species result = null;
+		int shortestDistance = Integer.MAX_VALUE;
+		for (DNA founder : founders.findWithinDistance(dna, maxDistance)) {
+			int distance = dna.getSimHashedDistanceFrom(founder);
+			if (distance < shortestDistance) {
+				result = foundersToSpecies.get(founder);
+				shortestDistance = distance;
+			}
+		}
+		return result;
+	}
+
+	public static class Species {
+
+		private final DNA founder;
+
+		// For each bit of the SimHash, the number of members with that bit
+		// set. Used to calculate the centroid.
+		private final int[] onesPerBit;
+
+		private int size = 0;
+
+		Species(DNA founder) {
+			this.founder = founder;
+			this.onesPerBit = new int[Codon.HASH_SIZE];
+		}
+
+		Species(Species original) {
+			this.founder = original.founder;
+			this.onesPerBit = original.onesPerBit.clone();
+			this.size = original.size;
+		}
+
+		public long getId() {
+			return founder.getId();
+		}
+
+		public DNA getFounder() {
+			return founder;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * Returns the SimHash that has each bit set if most of the members
+		 * have that bit set.
+		 */
+		public int getCentroid() {
+			int result = 0;
+			for (int bit = 0; bit < onesPerBit.length; bit++)
+				if (onesPerBit[bit] * 2 > size)
+					result |= 1 << bit;
+			return result;
+		}
+
+		void add(int simHash) {
+			for (int bit = 0; bit < onesPerBit.length; bit++)
+				if ((simHash & (1 << bit)) != 0)
+					onesPerBit[bit]++;
+			size++;
+		}
+
+		void remove(int simHash) {
+			for (int bit = 0; bit < onesPerBit.length; bit++)
+				if ((simHash & (1 << bit)) != 0)
+					onesPerBit[bit]--;
+			size--;
+		}
+	}
+
+	public static class Member {
+
+		private final long dnaId;
+
+		private final Species species;
+
+		private final int simHash;
+
+		Member(long dnaId, Species species, int simHash) {
+			this.dnaId = dnaId;
+			this.species = species;
+			this.simHash = simHash;
+		}
+
+		public long getDnaId() {
+			return dnaId;
+		}
+
+		public long getSpeciesId() {
+			return species.getId();
+		}
+
+		public int getSimHash() {
+			return simHash;
+		}
+	}
+}
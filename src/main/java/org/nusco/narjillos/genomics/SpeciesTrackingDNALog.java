@@ -0,0 +1,86 @@
+package org.nusco.narjillos.genomics;
+
+import java.util.List;
+
+/**
+ * Wraps another DNALog, and keeps a SpeciesTracker up to date with the DNAs
+ * that are saved and marked as dead. When it's created, it also tracks the
+ * DNAs that are already live in the wrapped log (unless the tracker already
+ * tracks them).
+ */
+public class SpeciesTrackingDNALog implements DNALog {
+
+	private final DNALog dnaLog;
+
+	private final SpeciesTracker speciesTracker;
+
+	public SpeciesTrackingDNALog(DNALog dnaLog, SpeciesTracker speciesTracker) {
+		this.dnaLog = dnaLog;
+		this.speciesTracker = speciesTracker;
+		for (DNA dna : dnaLog.getLiveDna())
+			speciesTracker.add(dna);
+	}
+
+	public SpeciesTracker getSpeciesTracker() {
+		return speciesTracker;
+	}
+
+	@Override
+	public void save(DNA dna) {
+		dnaLog.save(dna);
+		speciesTracker.add(dna);
+	}
+
+	@Override
+	public DNA getDna(long id) {
+		return dnaLog.getDna(id);
+	}
+
+	@Override
+	public List<DNA> getDnaBatch(long[] ids) {
+		return dnaLog.getDnaBatch(ids);
+	}
+
+	@Override
+	public void markAsDead(long id) {
+		dnaLog.markAsDead(id);
+		speciesTracker.remove(id);
+	}
+
+	@Override
+	public List<DNA> getAllDna() {
+		return dnaLog.getAllDna();
+	}
+
+	@Override
+	public List<DNA> getLiveDna() {
+		return dnaLog.getLiveDna();
+	}
+
+	@Override
+	public Phylogeny getPhylogeny() {
+		return dnaLog.getPhylogeny();
+	}
+
+	@Override
+	public void remove(long[] ids) {
+		dnaLog.remove(ids);
+		for (long id : ids)
+			speciesTracker.remove(id);
+	}
+
+	@Override
+	public void compact() {
+		dnaLog.compact();
+	}
+
+	@Override
+	public void flush() {
+		dnaLog.flush();
+	}
+
+	@Override
+	public void delete() {
+		dnaLog.delete();
+	}
+}
@@ -0,0 +1,265 @@
+package org.nusco.narjillos.genomics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps live DNA in memory, and moves dead DNA to a temporary file.
+ * <p>
+ * Dead DNA is rarely needed (mostly to walk germlines), so it's appended to a
+ * memory-mapped DNAArchive when it dies. The heap only holds the live DNA, the
+ * id and position of each dead DNA in the archive (twelve bytes per DNA), and
+ * a small cache of recently read dead DNA. Long experiments don't fill up the
+ * heap with their whole history, like they do with a VolatileDNALog. If the
+ * log is pruned (see DNAPruner), compact() also shrinks the positions to the
+ * DNA that is left in the archive.
+ */
+public class TieredDNALog implements DNALog {
+
+	private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final int MAX_ID = Integer.MAX_VALUE - 8;
+
+	// Positions in the archive are stored plus one, so that zero means "not
+	// archived" (or removed).
+	private static final long NOT_ARCHIVED = 0;
+
+	private final int segmentSize;
+
+	private final TreeMap<Long, DNA> liveDna = new TreeMap<>();
+
+	// The ids of the archived DNA, sorted, and their positions in the
+	// archive. DNA usually dies in about the same order as it's born, so new
+	// ids are mostly appended at the end. Removed DNA stays here, with a
+	// NOT_ARCHIVED position, until compact().
+	private int[] archivedIds = new int[INITIAL_CAPACITY];
+
+	private long[] archivePositions = new long[INITIAL_CAPACITY];
+
+	private int numberOfArchivedIds = 0;
+
+	private int numberOfDeadDna = 0;
+
+	private int numberOfRemovedArchivedDna = 0;
+
+	private final Map<Long, DNA> cache;
+
+	private DNAArchive archive;
+
+	public TieredDNALog() {
+		this(DEFAULT_SEGMENT_SIZE, DEFAULT_CACHE_SIZE);
+	}
+
+	TieredDNALog(int segmentSize, int cacheSize) {
+		this.segmentSize = segmentSize;
+		this.cache = new LinkedHashMap<Long, DNA>(cacheSize, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, DNA> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	@Override
+	public synchronized void save(DNA dna) {
+		if (liveDna.containsKey(dna.getId()) || isArchived(dna.getId()))
+			return;
+		toIndex(dna.getId());
+		liveDna.put(dna.getId(), dna);
+	}
+
+	@Override
+	public synchronized DNA getDna(long id) {
+		DNA result = liveDna.get(id);
+		if (result != null)
+			return result;
+		if (!isArchived(id))
+			return null;
+
+		result = cache.get(id);
+		if (result == null) {
+			result = readFromArchive(id);
+			cache.put(id, result);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized List<DNA> getDnaBatch(long[] ids) {
+		List<DNA> result = new ArrayList<>(ids.length);
+		for (long id : ids) {
+			DNA dna = getDna(id);
+			if (dna != null)
+				result.add(dna);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void markAsDead(long id) {
+		DNA dna = liveDna.remove(id);
+		if (dna == null)
+			return;
+
+		if (archive == null)
+			archive = new DNAArchive(segmentSize);
+		long position = archive.append(dna) + 1;
+		int index = findArchivedId(id);
+		if (index >= 0)
+			archivePositions[index] = position; // it was removed
+		else
+			insertArchivedId(-index - 1, toIndex(id), position);
+		numberOfDeadDna++;
+	}
+
+	/**
+	 * Reads all the dead DNA back from the archive, so it's expensive.
+	 */
+	@Override
+	public synchronized List<DNA> getAllDna() {
+		List<DNA> result = new ArrayList<>(liveDna.size() + numberOfDeadDna);
+		for (int index = 0; index < numberOfArchivedIds; index++)
+			if (archivePositions[index] != NOT_ARCHIVED)
+				result.add(archive.read(archivedIds[index], archivePositions[index] - 1));
+		result.addAll(liveDna.values());
+		result.sort((dna1, dna2) -> Long.compare(dna1.getId(), dna2.getId()));
+		return result;
+	}
+
+	@Override
+	public synchronized List<DNA> getLiveDna() {
+		return new ArrayList<>(liveDna.values());
+	}
+
+	@Override
+	public synchronized Phylogeny getPhylogeny() {
+		long maxLiveId = liveDna.isEmpty() ? 0 : liveDna.lastKey();
+		long maxArchivedId = numberOfArchivedIds == 0 ? 0 : archivedIds[numberOfArchivedIds - 1];
+		long[] parentIds = new long[(int) Math.max(maxArchivedId, maxLiveId) + 1];
+		Arrays.fill(parentIds, Phylogeny.NOT_IN_LOG);
+		for (int index = 0; index < numberOfArchivedIds; index++)
+			if (archivePositions[index] != NOT_ARCHIVED)
+				parentIds[archivedIds[index]] = archive.readParentId(archivePositions[index] - 1);
+		BitSet liveIds = new BitSet();
+		for (DNA dna : liveDna.values()) {
+			parentIds[(int) dna.getId()] = dna.getParentId();
+			liveIds.set((int) dna.getId());
+		}
+		return new Phylogeny(parentIds, liveIds);
+	}
+
+	@Override
+	public synchronized void remove(long[] ids) {
+		for (long id : ids) {
+			if (liveDna.remove(id) != null)
+				continue;
+			int index = findArchivedId(id);
+			if (index < 0 || archivePositions[index] == NOT_ARCHIVED)
+				continue;
+			archivePositions[index] = NOT_ARCHIVED;
+			numberOfDeadDna--;
+			numberOfRemovedArchivedDna++;
+			cache.remove(id);
+		}
+	}
+
+	/**
+	 * Rewrites the archive and the positions without the DNA that was
+	 * removed.
+	 */
+	@Override
+	public synchronized void compact() {
+		if (numberOfRemovedArchivedDna == 0)
+			return;
+
+		DNAArchive compactedArchive = new DNAArchive(segmentSize);
+		int capacity = Math.max(INITIAL_CAPACITY, numberOfDeadDna);
+		int[] compactedIds = new int[capacity];
+		long[] compactedPositions = new long[capacity];
+		int size = 0;
+		for (int index = 0; index < numberOfArchivedIds; index++) {
+			if (archivePositions[index] == NOT_ARCHIVED)
+				continue;
+			DNA dna = archive.read(archivedIds[index], archivePositions[index] - 1);
+			compactedIds[size] = archivedIds[index];
+			compactedPositions[size] = compactedArchive.append(dna) + 1;
+			size++;
+		}
+		archive.delete();
+		archive = compactedArchive;
+		archivedIds = compactedIds;
+		archivePositions = compactedPositions;
+		numberOfArchivedIds = size;
+		numberOfRemovedArchivedDna = 0;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public synchronized void delete() {
+		if (archive != null)
+			archive.delete();
+		archive = null;
+		liveDna.clear();
+		archivedIds = new int[INITIAL_CAPACITY];
+		archivePositions = new long[INITIAL_CAPACITY];
+		numberOfArchivedIds = 0;
+		numberOfDeadDna = 0;
+		numberOfRemovedArchivedDna = 0;
+		cache.clear();
+	}
+
+	private boolean isArchived(long id) {
+		int index = findArchivedId(id);
+		return index >= 0 && archivePositions[index] != NOT_ARCHIVED;
+	}
+
+	private DNA readFromArchive(long id) {
+		return archive.read(id, archivePositions[findArchivedId(id)] - 1);
+	}
+
+	// Like Arrays.binarySearch(): returns -(insertion point) - 1 if the id is
+	// not there.
+	private int findArchivedId(long id) {
+		if (id < 0 || id > MAX_ID)
+			return -1;
+		if (numberOfArchivedIds > 0 && id > archivedIds[numberOfArchivedIds - 1])
+			return -numberOfArchivedIds - 1;
+		return Arrays.binarySearch(archivedIds, 0, numberOfArchivedIds, (int) id);
+	}
+
+	private void insertArchivedId(int index, int id, long position) {
+		ensureCapacity(numberOfArchivedIds + 1);
+		System.arraycopy(archivedIds, index, archivedIds, index + 1, numberOfArchivedIds - index);
+		System.arraycopy(archivePositions, index, archivePositions, index + 1, numberOfArchivedIds - index);
+		archivedIds[index] = id;
+		archivePositions[index] = position;
+		numberOfArchivedIds++;
+	}
+
+	private int toIndex(long id) {
+		if (id < 0 || id > MAX_ID)
+			throw new RuntimeException("DNA id out of range: " + id);
+		return (int) id;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= archivedIds.length)
+			return;
+		int newCapacity = (int) Math.min(MAX_ID + 1L, Math.max(capacity, archivedIds.length * 2L));
+		archivedIds = Arrays.copyOf(archivedIds, newCapacity);
+		archivePositions = Arrays.copyOf(archivePositions, newCapacity);
+	}
+}
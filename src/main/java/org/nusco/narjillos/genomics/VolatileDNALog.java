@@ -1,48 +1,128 @@
 package org.nusco.narjillos.genomics;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Keeps DNA in memory.
+ * <p>
+ * DNA ids are serials (see NumGen.nextSerial()), so the DNAs are stored in an
+ * array indexed by id, and liveness is a bit per id. All operations except
+ * listing are constant-time and don't allocate, and lists are already sorted
+ * by id. It's synchronized, so that a DNAPruner can work on it in the
+ * background.
+ */
 public class VolatileDNALog implements DNALog {
 
-	private final Map<Long, DNA> idToDna = new LinkedHashMap<>();
+	private static final int INITIAL_CAPACITY = 1024;
 
-	private final List<DNA> liveDna = new LinkedList<>();
+	private static final int MAX_ID = Integer.MAX_VALUE - 8;
+
+	private DNA[] idToDna = new DNA[INITIAL_CAPACITY];
+
+	private final BitSet liveDna = new BitSet();
+
+	private int size = 0;
+
+	@Override
+	public synchronized void save(DNA dna) {
+		int index = toIndex(dna.getId());
+		ensureCapacity(index + 1);
+		if (idToDna[index] != null)
+			return;
+		idToDna[index] = dna;
+		liveDna.set(index);
+		size++;
+	}
 
 	@Override
-	public void save(DNA dna) {
-		idToDna.put(dna.getId(), dna);
-		liveDna.add(dna);
+	public synchronized DNA getDna(long id) {
+		if (id < 0 || id >= idToDna.length)
+			return null;
+		return idToDna[(int) id];
 	}
 
 	@Override
-	public DNA getDna(long id) {
-		return idToDna.get(id);
+	public synchronized List<DNA> getDnaBatch(long[] ids) {
+		List<DNA> result = new ArrayList<>(ids.length);
+		for (long id : ids) {
+			DNA dna = getDna(id);
+			if (dna != null)
+				result.add(dna);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void markAsDead(long id) {
+		if (id < 0 || id >= idToDna.length)
+			return;
+		liveDna.clear((int) id);
 	}
 
 	@Override
-	public void markAsDead(long id) {
-		liveDna.remove(getDna(id));
+	public synchronized List<DNA> getAllDna() {
+		List<DNA> result = new ArrayList<>(size);
+		for (DNA dna : idToDna)
+			if (dna != null)
+				result.add(dna);
+		return result;
 	}
 
 	@Override
-	public List<DNA> getAllDna() {
-		LinkedList<DNA> result = new LinkedList<>(idToDna.values());
-		result.sort((dna1, dna2) -> (int) (dna1.getId() - dna2.getId()));
+	public synchronized List<DNA> getLiveDna() {
+		List<DNA> result = new ArrayList<>(liveDna.cardinality());
+		for (int index = liveDna.nextSetBit(0); index >= 0; index = liveDna.nextSetBit(index + 1))
+			result.add(idToDna[index]);
 		return result;
 	}
 
 	@Override
-	public List<DNA> getLiveDna() {
-		liveDna.sort((dna1, dna2) -> (int) (dna1.getId() - dna2.getId()));
-		return liveDna;
+	public synchronized Phylogeny getPhylogeny() {
+		long[] parentIds = new long[idToDna.length];
+		for (int index = 0; index < idToDna.length; index++)
+			parentIds[index] = (idToDna[index] == null) ? Phylogeny.NOT_IN_LOG : idToDna[index].getParentId();
+		return new Phylogeny(parentIds, (BitSet) liveDna.clone());
+	}
+
+	@Override
+	public synchronized void remove(long[] ids) {
+		for (long id : ids) {
+			if (id < 0 || id >= idToDna.length || idToDna[(int) id] == null)
+				continue;
+			idToDna[(int) id] = null;
+			liveDna.clear((int) id);
+			size--;
+		}
+	}
+
+	@Override
+	public void compact() {
+	}
+
+	@Override
+	public void flush() {
 	}
 
 	@Override
-	public void delete() {
-		idToDna.clear();
+	public synchronized void delete() {
+		idToDna = new DNA[INITIAL_CAPACITY];
 		liveDna.clear();
+		size = 0;
+	}
+
+	private int toIndex(long id) {
+		if (id < 0 || id > MAX_ID)
+			throw new RuntimeException("DNA id out of range: " + id);
+		return (int) id;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= idToDna.length)
+			return;
+		int newCapacity = (int) Math.min(MAX_ID + 1L, Math.max(capacity, idToDna.length * 2L));
+		idToDna = Arrays.copyOf(idToDna, newCapacity);
 	}
 }
@@ -0,0 +1,395 @@
+package org.nusco.narjillos.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nusco.narjillos.core.things.Thing;
+import org.nusco.narjillos.core.utilities.Chronometer;
+import org.nusco.narjillos.creature.Egg;
+import org.nusco.narjillos.creature.Narjillo;
+import org.nusco.narjillos.experiment.environment.EnvironmentEventListener;
+import org.nusco.narjillos.experiment.environment.FoodPellet;
+import org.nusco.narjillos.persistence.JournalEvent.Type;
+
+/**
+ * An append-only journal of the events in an ecosystem (food, eggs, births
+ * and deaths), in a memory-mapped file next to the experiment's database.
+ * <p>
+ * The simulation only queues the events, and a background thread writes
+ * them. Queueing doesn't take any lock, and it only waits for the writer when
+ * the queue is full. The writer syncs the file to disk without holding any
+ * lock. The events are fixed-size records in tick order, so finding the
+ * events around a tick is a binary search. When an experiment is resumed,
+ * the events that happened after its last save are dropped, because the
+ * simulation is going to repeat them.
+ */
+public class EventJournal implements EnvironmentEventListener {
+
+	// tick (long), type (int), id (long), x and y (doubles). The first
+	// record in the file is the header.
+	static final int RECORD_SIZE = 36;
+
+	private static final int TYPE_OFFSET = 8;
+
+	private static final int NO_TYPE = 0;
+
+	private static final int MAGIC = 0x4E4A4A31; // "NJJ1"
+
+	private static final int DEFAULT_RECORDS_PER_REGION = 128 * 1024;
+
+	private static final int QUEUE_CAPACITY = 64 * 1024;
+
+	private final FileChannel channel;
+
+	private final boolean isWritable;
+
+	private final long regionSize;
+
+	private MappedByteBuffer region;
+
+	private long regionStart = -1;
+
+	private long numberOfEvents;
+
+	private final Chronometer ticksChronometer;
+
+	private final BlockingQueue<JournalEvent> writeQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	private final Object writeProgress = new Object();
+
+	private final AtomicLong numberOfQueuedWrites = new AtomicLong();
+
+	// Guarded by writeProgress
+	private long numberOfCompletedWrites = 0;
+
+	private volatile RuntimeException writeError;
+
+	// Like in PersistentDNALog, queueing an event only checks this field, and
+	// it synchronizes on writerLock to start the writer.
+	private volatile Thread writerThread;
+
+	private final Object writerLock = new Object();
+
+	/**
+	 * Opens the journal to record the events from the current tick on.
+	 */
+	public EventJournal(String name, Chronometer ticksChronometer) {
+		this(name, ticksChronometer, DEFAULT_RECORDS_PER_REGION);
+	}
+
+	EventJournal(String name, Chronometer ticksChronometer, int recordsPerRegion) {
+		this(name, ticksChronometer, recordsPerRegion, true);
+		dropEventsFrom(ticksChronometer.getTotalTicks());
+	}
+
+	private EventJournal(String name, Chronometer ticksChronometer, int recordsPerRegion, boolean isWritable) {
+		this.ticksChronometer = ticksChronometer;
+		this.isWritable = isWritable;
+		this.regionSize = (long) recordsPerRegion * RECORD_SIZE;
+		try {
+			if (isWritable)
+				channel = FileChannel.open(new File(getFileName(name)).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+			else
+				channel = FileChannel.open(new File(getFileName(name)).toPath(), StandardOpenOption.READ);
+			openHeader();
+			numberOfEvents = countEvents();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Reads the events between two ticks (both included), without running
+	 * the simulation.
+	 */
+	public static List<JournalEvent> read(String name, long fromTick, long toTick) {
+		if (!new File(getFileName(name)).exists())
+			throw new RuntimeException("No event journal for experiment " + name);
+		EventJournal journal = new EventJournal(name, null, DEFAULT_RECORDS_PER_REGION, false);
+		try {
+			List<JournalEvent> result = new ArrayList<>();
+			for (long i = journal.findFirstEventAt(fromTick); i < journal.numberOfEvents; i++) {
+				JournalEvent event = journal.readEvent(i);
+				if (event.tick > toTick)
+					break;
+				result.add(event);
+			}
+			return result;
+		} finally {
+			journal.close();
+		}
+	}
+
+	public static void delete(String name) {
+		new File(getFileName(name)).delete();
+	}
+
+	@Override
+	public void added(Thing thing) {
+		if (thing instanceof FoodPellet)
+			enqueue(Type.FOOD_SPAWNED, 0, thing);
+		else if (thing instanceof Egg)
+			enqueue(Type.EGG_LAID, ((Egg) thing).getDNA().getId(), thing);
+		else if (thing instanceof Narjillo)
+			enqueue(Type.NARJILLO_BORN, ((Narjillo) thing).getDNA().getId(), thing);
+	}
+
+	@Override
+	public void removed(Thing thing) {
+		if (thing instanceof FoodPellet)
+			enqueue(Type.FOOD_EATEN, 0, thing);
+		else if (thing instanceof Egg)
+			enqueue(Type.EGG_REMOVED, ((Egg) thing).getDNA().getId(), thing);
+		else if (thing instanceof Narjillo)
+			enqueue(Type.NARJILLO_DIED, ((Narjillo) thing).getDNA().getId(), thing);
+	}
+
+	/**
+	 * Waits until all the queued events are written, and syncs them to disk.
+	 */
+	public void flush() {
+		synchronized (writeProgress) {
+			long target = numberOfQueuedWrites.get();
+			while (numberOfCompletedWrites < target && writeError == null) {
+				try {
+					writeProgress.wait();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		checkForWriteErrors();
+		MappedByteBuffer currentRegion;
+		synchronized (this) {
+			currentRegion = region;
+		}
+		if (currentRegion != null)
+			currentRegion.force();
+	}
+
+	/**
+	 * Writes all the queued events before closing.
+	 */
+	public void close() {
+		stopWriter();
+		try {
+			synchronized (this) {
+				if (isWritable && region != null)
+					region.force();
+				region = null;
+			}
+			channel.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	long getNumberOfEvents() {
+		return numberOfEvents;
+	}
+
+	private static String getFileName(String name) {
+		return name + ".journal";
+	}
+
+	private void openHeader() throws IOException {
+		if (channel.size() == 0) {
+			if (!isWritable)
+				throw new RuntimeException("Empty event journal");
+			regionAt(0).putInt(0, MAGIC);
+			return;
+		}
+		if (regionAt(0).getInt(0) != MAGIC)
+			throw new RuntimeException("Unknown event journal format");
+	}
+
+	// The events are contiguous, and the slots after them are empty (the
+	// file can be longer than the events, because it grows a region at a
+	// time). So the first empty slot is a binary search away.
+	private long countEvents() throws IOException {
+		long low = 0;
+		long high = channel.size() / RECORD_SIZE - 1;
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if (typeAt(middle) == NO_TYPE)
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		return low;
+	}
+
+	// Returns the index of the first event at or after the given tick.
+	private long findFirstEventAt(long tick) {
+		long low = 0;
+		long high = numberOfEvents;
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if (readEvent(middle).tick < tick)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private void dropEventsFrom(long tick) {
+		long firstDroppedEvent = findFirstEventAt(tick);
+		for (long i = firstDroppedEvent; i < numberOfEvents; i++) {
+			long offset = getOffset(i);
+			MappedByteBuffer previousRegion = region;
+			MappedByteBuffer buffer = regionAt(offset);
+			if (previousRegion != null && previousRegion != buffer)
+				previousRegion.force();
+			int position = (int) (offset - regionStart);
+			for (int j = 0; j < RECORD_SIZE; j++)
+				buffer.put(position + j, (byte) 0);
+		}
+		numberOfEvents = firstDroppedEvent;
+	}
+
+	private void enqueue(Type type, long id, Thing thing) {
+		checkForWriteErrors();
+		startWriter();
+		numberOfQueuedWrites.incrementAndGet();
+		JournalEvent event = new JournalEvent(ticksChronometer.getTotalTicks(), type, id, thing.getPosition().x, thing.getPosition().y);
+		try {
+			writeQueue.put(event);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void startWriter() {
+		if (writerThread != null)
+			return;
+		synchronized (writerLock) {
+			if (writerThread != null)
+				return;
+			Thread thread = new Thread(this::writeQueuedEvents, "Event journal writer");
+			thread.setDaemon(true);
+			thread.start();
+			writerThread = thread;
+		}
+	}
+
+	private void stopWriter() {
+		Thread thread;
+		synchronized (writerLock) {
+			thread = writerThread;
+			writerThread = null;
+		}
+		if (thread == null)
+			return;
+		try {
+			flush();
+		} finally {
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private void checkForWriteErrors() {
+		if (writeError != null)
+			throw new RuntimeException("Error while writing the event journal", writeError);
+	}
+
+	// The writer thread's loop. It stops when it's interrupted, which only
+	// happens after flush() has emptied the queue.
+	private void writeQueuedEvents() {
+		while (true) {
+			JournalEvent event;
+			try {
+				event = writeQueue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				writeEvent(event);
+			} catch (RuntimeException e) {
+				writeError = e;
+			} catch (Throwable e) {
+				// Such as an OutOfMemoryError. Keep the writer alive, so
+				// that flush() and the queue don't wait for it forever.
+				writeError = new RuntimeException(e);
+			} finally {
+				synchronized (writeProgress) {
+					numberOfCompletedWrites++;
+					writeProgress.notifyAll();
+				}
+			}
+		}
+	}
+
+	// Only called by the writer thread. When the event starts a new region,
+	// the writer syncs the previous region after it releases the lock.
+	private void writeEvent(JournalEvent event) {
+		MappedByteBuffer previousRegion;
+		MappedByteBuffer buffer;
+		synchronized (this) {
+			previousRegion = region;
+			long offset = getOffset(numberOfEvents);
+			buffer = regionAt(offset);
+			int position = (int) (offset - regionStart);
+			buffer.putLong(position, event.tick);
+			buffer.putLong(position + 12, event.id);
+			buffer.putDouble(position + 20, event.x);
+			buffer.putDouble(position + 28, event.y);
+			// The type goes last, because a non-empty type marks a complete event
+			buffer.putInt(position + TYPE_OFFSET, event.type.ordinal() + 1);
+			numberOfEvents++;
+		}
+		if (previousRegion != null && previousRegion != buffer)
+			previousRegion.force();
+	}
+
+	private synchronized JournalEvent readEvent(long index) {
+		long offset = getOffset(index);
+		MappedByteBuffer buffer = regionAt(offset);
+		int position = (int) (offset - regionStart);
+		Type type = Type.values()[buffer.getInt(position + TYPE_OFFSET) - 1];
+		return new JournalEvent(buffer.getLong(position), type, buffer.getLong(position + 12), buffer.getDouble(position + 20), buffer.getDouble(position + 28));
+	}
+
+	private int typeAt(long index) {
+		long offset = getOffset(index);
+		return regionAt(offset).getInt((int) (offset - regionStart) + TYPE_OFFSET);
+	}
+
+	private static long getOffset(long eventIndex) {
+		return (eventIndex + 1) * RECORD_SIZE;
+	}
+
+	// Maps the region that contains the given offset. Writable regions grow
+	// the file as needed. It doesn't sync the previous region: that's up to
+	// the caller.
+	private synchronized MappedByteBuffer regionAt(long offset) {
+		long start = offset - offset % regionSize;
+		if (start == regionStart)
+			return region;
+		try {
+			if (isWritable) {
+				region = channel.map(MapMode.READ_WRITE, start, regionSize);
+			} else {
+				region = channel.map(MapMode.READ_ONLY, start, Math.min(regionSize, channel.size() - start));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		regionStart = start;
+		return region;
+	}
+}
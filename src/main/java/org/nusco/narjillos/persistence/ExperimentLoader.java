@@ -5,6 +5,8 @@ import java.nio.file.Files;
 
 import org.nusco.narjillos.core.utilities.Version;
 import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.VolatileHistoryLog;
+import org.nusco.narjillos.genomics.TieredDNALog;
 
 public class ExperimentLoader {
 
@@ -12,9 +14,44 @@ public class ExperimentLoader {
 		checkFile(fileName);
 		if (printWarnings)
 			printVersionWarnings(fileName);
-		ExperimentLog experimentLog = new ExperimentLog(stripExtension(fileName));
-		Experiment result = experimentLog.load();
+		ExperimentLog experimentLog = new ExperimentLog(stripExtension(fileName), true);
+		Experiment result;
+		try {
+			result = experimentLog.load();
+		} finally {
+			experimentLog.close();
+		}
+		result.timeStamp();
+		return result;
+	}
+
+	/**
+	 * Rewinds the experiment to the given tick: it loads the latest checkpoint
+	 * before that tick, and then simulates the ticks in between (exactly,
+	 * unless the experiment ran with level of detail). The simulation doesn't
+	 * touch the experiment's database, and the returned experiment is
+	 * terminated, so it's only good for analysis.
+	 */
+	public static Experiment loadAtTick(String fileName, long ticks, boolean printWarnings) {
+		checkFile(fileName);
+		if (printWarnings)
+			printVersionWarnings(fileName);
+		ExperimentLog experimentLog = new ExperimentLog(stripExtension(fileName), true);
+		Experiment result;
+		try {
+			result = experimentLog.loadCheckpoint(ticks);
+		} finally {
+			experimentLog.close();
+		}
 		result.timeStamp();
+		result.setDnaLog(new TieredDNALog());
+		result.setHistoryLog(new VolatileHistoryLog());
+		try {
+			while (result.getTicksChronometer().getTotalTicks() < ticks)
+				result.tick();
+		} finally {
+			result.getEcosystem().terminate();
+		}
 		return result;
 	}
 
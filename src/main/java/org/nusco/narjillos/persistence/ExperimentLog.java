@@ -1,42 +1,199 @@
 package org.nusco.narjillos.persistence;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.nusco.narjillos.experiment.Experiment;
 import org.nusco.narjillos.persistence.serialization.JSON;
+import org.nusco.narjillos.persistence.serialization.Snapshot;
+import org.nusco.narjillos.persistence.serialization.SnapshotFormat;
 
+/**
+ * Stores the experiment as a snapshot (compressed binary by default). The
+ * snapshot is streamed to the database in fixed-size chunks. Loading
+ * recognizes the format by itself. (Older databases store the experiment as
+ * JSON in the EXPERIMENT table.)
+ * <p>
+ * The log can keep a few of the latest snapshots as checkpoints, each tagged
+ * with its tick, to restart the experiment from an earlier point.
+ */
 public class ExperimentLog extends PersistentInformation {
 
+	private static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	private static final SnapshotFormat DEFAULT_FORMAT = SnapshotFormat.COMPRESSED_BINARY;
+
+	private final SnapshotFormat format;
+
+	private final int checkpointsToKeep;
+
+	private final int chunkSize;
+
 	public ExperimentLog(String name) {
+		this(name, DEFAULT_FORMAT);
+	}
+
+	public ExperimentLog(String name, SnapshotFormat format) {
+		this(name, format, 1, DEFAULT_CHUNK_SIZE, false);
+	}
+
+	public ExperimentLog(String name, int checkpointsToKeep) {
+		this(name, DEFAULT_FORMAT, checkpointsToKeep, DEFAULT_CHUNK_SIZE, false);
+	}
+
+	/**
+	 * A read-only log can load the experiment while another program is
+	 * saving it.
+	 */
+	public ExperimentLog(String name, boolean readOnly) {
+		this(name, DEFAULT_FORMAT, 1, DEFAULT_CHUNK_SIZE, readOnly);
+	}
+
+	ExperimentLog(String name, SnapshotFormat format, int checkpointsToKeep, int chunkSize) {
+		this(name, format, checkpointsToKeep, chunkSize, false);
+	}
+
+	private ExperimentLog(String name, SnapshotFormat format, int checkpointsToKeep, int chunkSize, boolean readOnly) {
 		super(name);
-		createExperimentTable();
+		if (checkpointsToKeep < 1)
+			throw new IllegalArgumentException("Need to keep at least one checkpoint");
+		this.format = format;
+		this.checkpointsToKeep = checkpointsToKeep;
+		this.chunkSize = chunkSize;
+		createExperimentTables();
+		if (readOnly)
+			makeReadOnly();
 	}
 
+	/**
+	 * Replaces the stored experiment in a single transaction.
+	 */
 	public void save(Experiment experiment) {
-		Statement statement = createStatement();
+		long ticks = experiment.getTicksChronometer().getTotalTicks();
+		replaceExperiment(ticks, out -> Snapshot.write(experiment, Experiment.class, out, format));
+	}
+
+	/**
+	 * Captures the experiment in memory. This is the only part of a save that
+	 * needs the experiment to stand still. The snapshot can then be saved on
+	 * another thread. (The snapshot is always uncompressed, to keep this step
+	 * fast. It gets converted to the log's format when it's saved.)
+	 */
+	public byte[] takeSnapshot(Experiment experiment) {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
 		try {
-			String sql = "INSERT INTO EXPERIMENT (JSON) VALUES ('" + JSON.toJson(experiment, Experiment.class) + "');";
-			statement.executeUpdate(sql);
-		} catch (SQLException e) {
+			Snapshot.write(experiment, Experiment.class, result, SnapshotFormat.BINARY);
+		} catch (IOException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
-		cleanOldExperiments();
+		return result.toByteArray();
 	}
 
+	/**
+	 * Replaces the stored experiment with a snapshot from takeSnapshot(), in
+	 * a single transaction. If the program dies halfway, the previous
+	 * experiment is still there. The ticks are the experiment's ticks at the
+	 * time of the snapshot.
+	 */
+	public void save(byte[] snapshot, long ticks) {
+		replaceExperiment(ticks, out -> Snapshot.convert(snapshot, Experiment.class, out, format));
+	}
+
+	/**
+	 * Loads the latest checkpoint.
+	 */
 	public Experiment load() {
-		return JSON.fromJson(getBlob(), Experiment.class);
+		return load(getCachedStatement("SELECT ID, JSON FROM EXPERIMENT ORDER BY ID DESC LIMIT 1;"));
 	}
 
-	private void createExperimentTable() {
+	/**
+	 * Loads the latest checkpoint taken at or before the given tick.
+	 */
+	public Experiment loadCheckpoint(long ticks) {
+		PreparedStatement statement = getCachedStatement("SELECT ID, JSON FROM EXPERIMENT WHERE TICKS <= ? ORDER BY TICKS DESC, ID DESC LIMIT 1;");
+		try {
+			statement.setLong(1, ticks);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		return load(statement);
+	}
+
+	/**
+	 * Returns the ticks of the stored checkpoints, oldest first.
+	 */
+	public List<Long> getCheckpoints() {
+		List<Long> result = new ArrayList<>();
+		try (ResultSet rs = getCachedStatement("SELECT TICKS FROM EXPERIMENT ORDER BY ID;").executeQuery()) {
+			while (rs.next())
+				result.add(rs.getLong("TICKS"));
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+
+	// Reads the checkpoint in a single read transaction, so that another
+	// program can't delete its chunks halfway.
+	private Experiment load(PreparedStatement query) {
+		return executeInReadTransaction(() -> {
+			long id;
+			String json;
+			try (ResultSet rs = query.executeQuery()) {
+				if (!rs.next())
+					throw new RuntimeException("No checkpoint found");
+				id = rs.getLong("ID");
+				json = rs.getString("JSON");
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+			if (!json.isEmpty())
+				return JSON.fromJson(json, Experiment.class);
+
+			try (InputStream in = new ChunkInputStream(id)) {
+				return Snapshot.read(in, Experiment.class);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	private void replaceExperiment(long ticks, SnapshotSource snapshotSource) {
+		executeInTransaction(() -> {
+			long id = insertExperiment(ticks);
+			try (OutputStream out = new ChunkOutputStream(id)) {
+				snapshotSource.writeTo(out);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			cleanOldExperiments();
+		});
+	}
+
+	private void createExperimentTables() {
 		Statement statement = createStatement();
 		try {
 			String sql = "CREATE TABLE IF NOT EXISTS EXPERIMENT "
 				+ "(ID        INTEGER	PRIMARY KEY AUTOINCREMENT,"
-				+ " JSON      BLOB      NOT NULL)";
+				+ " JSON      BLOB      NOT NULL,"
+				+ " TICKS     INT       NOT NULL DEFAULT 0)";
+			statement.executeUpdate(sql);
+			if (!hasTicksColumn(statement))
+				statement.executeUpdate("ALTER TABLE EXPERIMENT ADD COLUMN TICKS INT NOT NULL DEFAULT 0;");
+			sql = "CREATE TABLE IF NOT EXISTS EXPERIMENT_CHUNKS "
+				+ "(EXPERIMENT_ID  INT       NOT NULL,"
+				+ " CHUNK          INT       NOT NULL,"
+				+ " DATA           BLOB      NOT NULL,"
+				+ " PRIMARY KEY (EXPERIMENT_ID, CHUNK))";
 			statement.executeUpdate(sql);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
@@ -45,44 +202,158 @@ public class ExperimentLog extends PersistentInformation {
 		}
 	}
 
-	private String getBlob() {
-		Statement statement = createStatement();
+	// Databases from older versions don't have the TICKS column.
+	private boolean hasTicksColumn(Statement statement) throws SQLException {
+		try (ResultSet rs = statement.executeQuery("PRAGMA table_info(EXPERIMENT);")) {
+			while (rs.next())
+				if (rs.getString("name").equalsIgnoreCase("TICKS"))
+					return true;
+		}
+		return false;
+	}
+
+	// Inserts an experiment with empty JSON (the snapshot goes in the
+	// chunks), and returns its id.
+	private long insertExperiment(long ticks) {
 		try {
-			// If there is more than one experiment, then some save
-			// operation failed before completing (because save() cleans
-			// up old experiments on exit). So load the oldest one first,
-			// which should always be valid.
-			ResultSet rs = statement.executeQuery("SELECT * FROM EXPERIMENT ORDER BY ID;");
-			rs.next();
-			return rs.getString("JSON");
+			PreparedStatement statement = getCachedStatement("INSERT INTO EXPERIMENT (JSON, TICKS) VALUES ('', ?);");
+			statement.setLong(1, ticks);
+			statement.executeUpdate();
+			try (ResultSet rs = getCachedStatement("SELECT last_insert_rowid();").executeQuery()) {
+				rs.next();
+				return rs.getLong(1);
+			}
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
 	}
 
+	// Keeps the latest checkpoints.
 	private void cleanOldExperiments() {
-		Statement statement = createStatement();
 		try {
-			statement.executeUpdate("DELETE FROM EXPERIMENT WHERE ID < " + getLatestId() + ";");
+			PreparedStatement deleteChunks = getCachedStatement("DELETE FROM EXPERIMENT_CHUNKS WHERE EXPERIMENT_ID NOT IN (SELECT ID FROM EXPERIMENT ORDER BY ID DESC LIMIT ?);");
+			deleteChunks.setInt(1, checkpointsToKeep);
+			deleteChunks.executeUpdate();
+			PreparedStatement deleteExperiments = getCachedStatement("DELETE FROM EXPERIMENT WHERE ID NOT IN (SELECT ID FROM EXPERIMENT ORDER BY ID DESC LIMIT ?);");
+			deleteExperiments.setInt(1, checkpointsToKeep);
+			deleteExperiments.executeUpdate();
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
 	}
 
-	private long getLatestId() {
-		Statement statement = createStatement();
-		try {
-			ResultSet rs = statement.executeQuery("SELECT * FROM EXPERIMENT ORDER BY ID DESC;");
-			rs.next();
-			return rs.getLong("ID");
-		} catch (SQLException e) {
-			throw new RuntimeException(e);
-		} finally {
-			close(statement);
+	private interface SnapshotSource {
+
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	// Writes each chunk of bytes as a row in EXPERIMENT_CHUNKS.
+	private class ChunkOutputStream extends OutputStream {
+
+		private final long experimentId;
+
+		private final byte[] buffer = new byte[chunkSize];
+
+		private int bufferSize = 0;
+
+		private int chunk = 0;
+
+		ChunkOutputStream(long experimentId) {
+			this.experimentId = experimentId;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (bufferSize == buffer.length)
+				writeChunk();
+			buffer[bufferSize++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (bufferSize == buffer.length)
+					writeChunk();
+				int bytesToCopy = Math.min(length, buffer.length - bufferSize);
+				System.arraycopy(bytes, offset, buffer, bufferSize, bytesToCopy);
+				bufferSize += bytesToCopy;
+				offset += bytesToCopy;
+				length -= bytesToCopy;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (bufferSize > 0)
+				writeChunk();
+		}
+
+		private void writeChunk() throws IOException {
+			PreparedStatement statement = getCachedStatement("INSERT INTO EXPERIMENT_CHUNKS (EXPERIMENT_ID, CHUNK, DATA) VALUES (?, ?, ?);");
+			try {
+				statement.setLong(1, experimentId);
+				statement.setInt(2, chunk++);
+				statement.setBytes(3, (bufferSize == buffer.length) ? buffer : Arrays.copyOf(buffer, bufferSize));
+				statement.executeUpdate();
+			} catch (SQLException e) {
+				throw new IOException(e);
+			}
+			bufferSize = 0;
+		}
+	}
+
+	// Reads the chunks in EXPERIMENT_CHUNKS one at a time.
+	private class ChunkInputStream extends InputStream {
+
+		private final long experimentId;
+
+		private byte[] data = new byte[0];
+
+		private int position = 0;
+
+		private int chunk = 0;
+
+		ChunkInputStream(long experimentId) {
+			this.experimentId = experimentId;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!hasData())
+				return -1;
+			return data[position++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (!hasData())
+				return -1;
+			int bytesToCopy = Math.min(length, data.length - position);
+			System.arraycopy(data, position, bytes, offset, bytesToCopy);
+			position += bytesToCopy;
+			return bytesToCopy;
+		}
+
+		private boolean hasData() throws IOException {
+			if (position < data.length)
+				return true;
+			PreparedStatement statement = getCachedStatement("SELECT DATA FROM EXPERIMENT_CHUNKS WHERE EXPERIMENT_ID = ? AND CHUNK = ?;");
+			try {
+				statement.setLong(1, experimentId);
+				statement.setInt(2, chunk);
+				try (ResultSet rs = statement.executeQuery()) {
+					if (!rs.next())
+						return false;
+					data = rs.getBytes("DATA");
+				}
+			} catch (SQLException e) {
+				throw new IOException(e);
+			}
+			chunk++;
+			position = 0;
+			return data.length > 0;
 		}
 	}
 }
@@ -0,0 +1,173 @@
+package org.nusco.narjillos.persistence;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
+import org.nusco.narjillos.experiment.HistoryLog;
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.Phylogeny;
+import org.nusco.narjillos.genomics.TieredDNALog;
+
+/**
+ * An in-memory copy of the history and the DNA of an experiment, for
+ * programs that query the experiment over and over while another program is
+ * running it (like "lab --watch"). Queries never touch the database, so they
+ * don't slow down the program that writes it.
+ * <p>
+ * The copy reads the database through read-only connections. Each call to
+ * refresh() only reads the entries and DNAs that are newer than the ones in
+ * the copy, plus the ids of the live DNAs (from their index). The copy
+ * doesn't notice the DNAs that the experiment removes from its log (see
+ * DNAPruner).
+ * <p>
+ * The logs returned by getHistoryLog() and getDnaLog() are read-only, and
+ * safe to use while another thread calls refresh().
+ */
+public class ExperimentReplica {
+
+	private final PersistentHistoryLog persistentHistoryLog;
+
+	private final PersistentDNALog persistentDnaLog;
+
+	// Guarded by this
+	private final List<ExperimentHistoryEntry> entries = new ArrayList<>();
+
+	private final TieredDNALog dnaLog = new TieredDNALog();
+
+	private final Object refreshLock = new Object();
+
+	// Both guarded by refreshLock
+	private long lastTicks = -1;
+
+	private long lastDnaId = 0;
+
+	public ExperimentReplica(String name) {
+		persistentHistoryLog = new PersistentHistoryLog(name, true);
+		persistentDnaLog = new PersistentDNALog(name, true);
+		refresh();
+	}
+
+	/**
+	 * Copies the changes since the last refresh.
+	 */
+	public void refresh() {
+		synchronized (refreshLock) {
+			List<ExperimentHistoryEntry> newEntries = persistentHistoryLog.getEntriesAfter(lastTicks);
+			List<DNA> newDna = persistentDnaLog.getDnaAfter(lastDnaId);
+			// Read after the new DNAs, so that it covers all of them. (A
+			// DNA never comes back to life.)
+			BitSet liveDnaIds = persistentDnaLog.getLiveDnaIds();
+
+			synchronized (this) {
+				entries.addAll(newEntries);
+			}
+			for (DNA dna : newDna)
+				dnaLog.save(dna);
+			for (DNA dna : dnaLog.getLiveDna())
+				if (!liveDnaIds.get((int) dna.getId()))
+					dnaLog.markAsDead(dna.getId());
+
+			if (!newEntries.isEmpty())
+				lastTicks = newEntries.get(newEntries.size() - 1).ticks;
+			if (!newDna.isEmpty())
+				lastDnaId = newDna.get(newDna.size() - 1).getId();
+		}
+	}
+
+	public HistoryLog getHistoryLog() {
+		return new ReplicaHistoryLog();
+	}
+
+	public DNALog getDnaLog() {
+		return new ReplicaDNALog();
+	}
+
+	public void close() {
+		persistentHistoryLog.close();
+		persistentDnaLog.close();
+		dnaLog.delete();
+	}
+
+	private class ReplicaHistoryLog implements HistoryLog {
+
+		@Override
+		public List<ExperimentHistoryEntry> getEntries() {
+			synchronized (ExperimentReplica.this) {
+				return new ArrayList<>(entries);
+			}
+		}
+
+		@Override
+		public ExperimentHistoryEntry getLatestEntry() {
+			synchronized (ExperimentReplica.this) {
+				return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+			}
+		}
+
+		@Override
+		public void saveEntry(Experiment experiment) {
+			throw new RuntimeException("Cannot write to a replica");
+		}
+	}
+
+	// TieredDNALog is synchronized, so the reads don't need more locking.
+	private class ReplicaDNALog implements DNALog {
+
+		@Override
+		public void save(DNA dna) {
+			throw new RuntimeException("Cannot write to a replica");
+		}
+
+		@Override
+		public DNA getDna(long id) {
+			return dnaLog.getDna(id);
+		}
+
+		@Override
+		public List<DNA> getDnaBatch(long[] ids) {
+			return dnaLog.getDnaBatch(ids);
+		}
+
+		@Override
+		public void markAsDead(long id) {
+			throw new RuntimeException("Cannot write to a replica");
+		}
+
+		@Override
+		public List<DNA> getAllDna() {
+			return dnaLog.getAllDna();
+		}
+
+		@Override
+		public List<DNA> getLiveDna() {
+			return dnaLog.getLiveDna();
+		}
+
+		@Override
+		public Phylogeny getPhylogeny() {
+			return dnaLog.getPhylogeny();
+		}
+
+		@Override
+		public void remove(long[] ids) {
+			throw new RuntimeException("Cannot write to a replica");
+		}
+
+		@Override
+		public void compact() {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void delete() {
+			throw new RuntimeException("Cannot write to a replica");
+		}
+	}
+}
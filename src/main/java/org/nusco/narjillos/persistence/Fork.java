@@ -0,0 +1,207 @@
+package org.nusco.narjillos.persistence;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.core.things.Thing;
+import org.nusco.narjillos.creature.Egg;
+import org.nusco.narjillos.creature.Narjillo;
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
+import org.nusco.narjillos.experiment.HistoryLog;
+import org.nusco.narjillos.experiment.Sweep;
+import org.nusco.narjillos.experiment.VolatileHistoryLog;
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.TieredDNALog;
+import org.nusco.narjillos.persistence.serialization.SnapshotCopier;
+
+/**
+ * Branches an experiment into many experiments that go on from the same state
+ * with different seeds, side by side in the same JVM. As in a Sweep, the
+ * branches can also have different configurations (see Configuration). By
+ * default, they keep the experiment's configuration.
+ * <p>
+ * Each branch starts from an in-memory copy of the experiment, which shares
+ * the experiment's DNA and fibers. As in a Sweep, the branches share a single
+ * work-stealing pool, and each branch is ticked by one task from start to end.
+ * A branch with a given seed and configuration always gives the same results.
+ * Persistent branches are saved to their own experiment files, named after
+ * their ids. (Their DNA logs only contain the DNA from the fork on.)
+ */
+public class Fork {
+
+	private final SnapshotCopier<Experiment> copier;
+
+	private final ExperimentHistoryEntry startingEntry;
+
+	private final Configuration startingConfiguration;
+
+	private final List<Long> seeds;
+
+	private final List<Configuration> configurations;
+
+	private final long ticks;
+
+	private final String version;
+
+	private final boolean persistent;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * The branches run for the given number of ticks after the fork.
+	 */
+	public Fork(Experiment experiment, List<Long> seeds, long ticks, String version, int parallelism, boolean persistent) {
+		this(experiment, seeds, Collections.singletonList(experiment.getEcosystem().getConfiguration()), ticks, version, parallelism, persistent);
+	}
+
+	/**
+	 * Persistent branches are named after their seeds, so they must all have
+	 * the same configuration.
+	 */
+	public Fork(Experiment experiment, List<Long> seeds, List<Configuration> configurations, long ticks, String version, int parallelism,
+		boolean persistent) {
+		this.copier = new SnapshotCopier<>(experiment, Experiment.class);
+		this.startingEntry = new ExperimentHistoryEntry(experiment);
+		this.startingConfiguration = experiment.getEcosystem().getConfiguration();
+		this.seeds = seeds;
+		this.configurations = configurations;
+		this.ticks = ticks;
+		this.version = version;
+		this.persistent = persistent;
+		if (persistent) {
+			if (configurations.size() > 1)
+				throw new RuntimeException("Cannot save branches with different configurations");
+			checkBranchesDontExist();
+		}
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Returns the final statistics of the branches with each configuration,
+	 * in the same order as the configurations, from the seeds to the
+	 * statistics (in the same order as the seeds). Branches that go extinct
+	 * stop early.
+	 */
+	public List<Map<Long, ExperimentHistoryEntry>> run() {
+		List<Map<Long, Future<ExperimentHistoryEntry>>> futures = new ArrayList<>();
+		for (Configuration configuration : configurations) {
+			Map<Long, Future<ExperimentHistoryEntry>> configurationFutures = new LinkedHashMap<>();
+			for (long seed : seeds)
+				configurationFutures.put(seed, pool.submit(() -> runBranch(seed, configuration)));
+			futures.add(configurationFutures);
+		}
+
+		List<Map<Long, ExperimentHistoryEntry>> result = new ArrayList<>();
+		try {
+			for (Map<Long, Future<ExperimentHistoryEntry>> configurationFutures : futures) {
+				Map<Long, ExperimentHistoryEntry> configurationResult = new LinkedHashMap<>();
+				for (Map.Entry<Long, Future<ExperimentHistoryEntry>> entry : configurationFutures.entrySet())
+					configurationResult.put(entry.getKey(), entry.getValue().get());
+				result.add(configurationResult);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+		return result;
+	}
+
+	public String getReport(List<Map<Long, ExperimentHistoryEntry>> results) {
+		return getReport(results, Collections.emptyList());
+	}
+
+	/**
+	 * Compares the branches as CSV, with a column for each of the given
+	 * parameters. The first row is the experiment at the time of the fork.
+	 */
+	public String getReport(List<Map<Long, ExperimentHistoryEntry>> results, List<String> parameters) {
+		StringBuilder result = new StringBuilder();
+		result.append(Sweep.toCsvHeader(parameters)).append("\n");
+		result.append("fork,");
+		for (String parameter : parameters)
+			result.append(startingConfiguration.getParameter(parameter)).append(",");
+		result.append(startingEntry).append("\n");
+		for (int i = 0; i < configurations.size(); i++)
+			for (Map.Entry<Long, ExperimentHistoryEntry> entry : results.get(i).entrySet())
+				result.append(Sweep.toCsvRow(entry.getKey(), configurations.get(i), parameters, entry.getValue())).append("\n");
+		return result.toString();
+	}
+
+	private ExperimentHistoryEntry runBranch(long seed, Configuration configuration) {
+		// Branch the experiment inside the task, so that its
+		// NumGen is bound to the thread that ticks it.
+		Experiment branch = copier.copy().branch(seed, version, configuration);
+		branch.getEcosystem().shareExecutorService(pool);
+		if (persistent)
+			return runPersistentBranch(branch);
+
+		DNALog dnaLog = new TieredDNALog();
+		ExperimentHistoryEntry result = runBranch(branch, dnaLog, new VolatileHistoryLog());
+		dnaLog.delete();
+		return result;
+	}
+
+	private ExperimentHistoryEntry runPersistentBranch(Experiment branch) {
+		PersistentDNALog dnaLog = new PersistentDNALog(branch.getId());
+		PersistentHistoryLog historyLog = new PersistentHistoryLog(branch.getId());
+		ExperimentLog experimentLog = new ExperimentLog(branch.getId());
+		try {
+			ExperimentHistoryEntry result = runBranch(branch, dnaLog, historyLog);
+			experimentLog.save(branch);
+			return result;
+		} finally {
+			experimentLog.close();
+			historyLog.close();
+			dnaLog.close();
+		}
+	}
+
+	private ExperimentHistoryEntry runBranch(Experiment branch, DNALog dnaLog, HistoryLog historyLog) {
+		saveLiveDna(branch, dnaLog);
+		branch.setDnaLog(dnaLog);
+		branch.setHistoryLog(historyLog);
+
+		long lastTick = branch.getTicksChronometer().getTotalTicks() + ticks;
+		while (branch.getTicksChronometer().getTotalTicks() < lastTick && !branch.lifeIsExtinct()) {
+			branch.tick();
+			if (branch.getTicksChronometer().getTotalTicks() % Configuration.EXPERIMENT_SAMPLE_INTERVAL_TICKS == 0)
+				branch.saveHistoryEntry();
+		}
+
+		branch.terminate();
+		return new ExperimentHistoryEntry(branch);
+	}
+
+	// The branch's log needs the DNA of the branch's creatures, so that their
+	// descendants have parents.
+	private void saveLiveDna(Experiment branch, DNALog dnaLog) {
+		Set<DNA> liveDna = new LinkedHashSet<>();
+		for (Thing egg : branch.getEcosystem().getAll(Egg.LABEL))
+			liveDna.add(((Egg) egg).getDNA());
+		for (Thing narjillo : branch.getEcosystem().getAll(Narjillo.LABEL))
+			liveDna.add(((Narjillo) narjillo).getDNA());
+		for (DNA dna : liveDna)
+			dnaLog.save(dna);
+	}
+
+	private void checkBranchesDontExist() {
+		for (long seed : seeds) {
+			String fileName = seed + "-" + version + ".exp";
+			if (new File(fileName).exists())
+				throw new RuntimeException("Experiment " + fileName + " already exists");
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package org.nusco.narjillos.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * The binary format of the genes in the DNA log.
+ * <p>
+ * Genes are encoded either as a "keyframe" (the full list of genes), or as a
+ * "delta" (the genes that differ from the parent's genes). A child is usually
+ * very similar to its parent, so deltas are much smaller than keyframes. To
+ * keep the chains of deltas short, there is a keyframe every few generations.
+ * <p>
+ * Keyframe: [KEYFRAME] [genes...]
+ * <p>
+ * Delta: [DELTA] [depth] [length] [number of edits] [gap, gene]...
+ * <p>
+ * "depth" is the number of deltas between this one and the closest keyframe
+ * (1 if the parent is a keyframe). "gap" is the distance from the previous
+ * edit. All numbers except the genes are variable-length integers.
+ */
+class GenesEncoding {
+
+	static final int KEYFRAME_INTERVAL = 16;
+
+	private static final byte KEYFRAME = 0;
+
+	private static final byte DELTA = 1;
+
+	static byte[] encodeKeyframe(byte[] genes) {
+		byte[] result = new byte[genes.length + 1];
+		result[0] = KEYFRAME;
+		System.arraycopy(genes, 0, result, 1, genes.length);
+		return result;
+	}
+
+	/**
+	 * Encodes the genes as a delta from the parent's genes, or as a keyframe
+	 * if the delta is too deep or not worth it.
+	 */
+	static byte[] encode(byte[] genes, byte[] parentGenes, int parentDepth) {
+		int depth = parentDepth + 1;
+		if (depth >= KEYFRAME_INTERVAL)
+			return encodeKeyframe(genes);
+
+		int numberOfEdits = 0;
+		for (int i = 0; i < genes.length; i++)
+			if (genes[i] != getGene(parentGenes, i))
+				numberOfEdits++;
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		result.write(DELTA);
+		writeVarInt(result, depth);
+		writeVarInt(result, genes.length);
+		writeVarInt(result, numberOfEdits);
+		int lastEdit = 0;
+		for (int i = 0; i < genes.length; i++) {
+			if (genes[i] == getGene(parentGenes, i))
+				continue;
+			writeVarInt(result, i - lastEdit);
+			result.write(genes[i]);
+			lastEdit = i;
+		}
+
+		if (result.size() >= genes.length + 1)
+			return encodeKeyframe(genes);
+		return result.toByteArray();
+	}
+
+	static boolean isKeyframe(byte[] encoding) {
+		return encoding[0] == KEYFRAME;
+	}
+
+	static int getDepth(byte[] encoding) {
+		if (isKeyframe(encoding))
+			return 0;
+		return new Reader(encoding).readVarInt();
+	}
+
+	static byte[] decodeKeyframe(byte[] encoding) {
+		return Arrays.copyOfRange(encoding, 1, encoding.length);
+	}
+
+	static byte[] decodeDelta(byte[] encoding, byte[] parentGenes) {
+		Reader reader = new Reader(encoding);
+		reader.readVarInt(); // depth
+		byte[] result = new byte[reader.readVarInt()];
+		System.arraycopy(parentGenes, 0, result, 0, Math.min(parentGenes.length, result.length));
+
+		int numberOfEdits = reader.readVarInt();
+		int position = 0;
+		for (int i = 0; i < numberOfEdits; i++) {
+			position += reader.readVarInt();
+			result[position] = reader.readByte();
+		}
+		return result;
+	}
+
+	private static byte getGene(byte[] genes, int index) {
+		return index < genes.length ? genes[index] : 0;
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static class Reader {
+
+		private final byte[] encoding;
+
+		private int position = 1; // skip the type
+
+		Reader(byte[] encoding) {
+			this.encoding = encoding;
+		}
+
+		byte readByte() {
+			return encoding[position++];
+		}
+
+		int readVarInt() {
+			int result = 0;
+			int shift = 0;
+			byte next;
+			do {
+				next = readByte();
+				result |= (next & 0x7F) << shift;
+				shift += 7;
+			} while ((next & 0x80) != 0);
+			return result;
+		}
+	}
+}
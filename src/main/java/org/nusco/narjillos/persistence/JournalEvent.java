@@ -0,0 +1,60 @@
+package org.nusco.narjillos.persistence;
+
+import java.util.Locale;
+
+/**
+ * Something that happened in the ecosystem during a tick. The id is the DNA
+ * id of the creature or egg (food pellets don't have ids).
+ */
+public class JournalEvent {
+
+	public enum Type {
+		FOOD_SPAWNED,
+		FOOD_EATEN,
+		EGG_LAID,
+		EGG_REMOVED,
+		NARJILLO_BORN,
+		NARJILLO_DIED
+	}
+
+	public final long tick;
+
+	public final Type type;
+
+	public final long id;
+
+	public final double x;
+
+	public final double y;
+
+	public JournalEvent(long tick, Type type, long id, double x, double y) {
+		this.tick = tick;
+		this.type = type;
+		this.id = id;
+		this.x = x;
+		this.y = y;
+	}
+
+	public static String toCsvHeader() {
+		return "tick, event, id, x, y";
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US, "%d, %s, %d, %.2f, %.2f", tick, type, id, x, y);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (tick ^ (id << 8) ^ type.ordinal());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof JournalEvent))
+			return false;
+		JournalEvent other = (JournalEvent) obj;
+		return tick == other.tick && type == other.type && id == other.id
+			&& Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0;
+	}
+}
@@ -1,32 +1,288 @@
 package org.nusco.narjillos.persistence;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.nusco.narjillos.genomics.DNA;
 import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.Phylogeny;
 
+/**
+ * Stores genes as deltas from their parents' genes (see GenesEncoding). Keeps
+ * the most recently used genes in a cache, so that rebuilding a DNA from its
+ * chain of deltas doesn't usually need to hit the database.
+ * <p>
+ * Writes are asynchronous: save() and markAsDead() put the write in a queue
+ * and return immediately. A writer thread takes the writes from the queue and
+ * stores them in batches, each batch in a single transaction. The DNA that is
+ * still in the queue is also kept in memory, so getDna() sees it. Operations
+ * that read many DNAs, such as getAllDna(), wait for the queue to empty first.
+ * Call flush() to wait until all the previous writes are stored.
+ * <p>
+ * A partial index on the live DNA makes getLiveDna() read only the live rows.
+ * <p>
+ * Operations that run more than one query run them in a single read
+ * transaction, so that they're consistent even if another program is
+ * writing to the log.
+ */
 public class PersistentDNALog extends PersistentInformation implements DNALog {
 
+	private static final int CACHE_SIZE = 4096;
+
+	private static final int QUEUE_CAPACITY = 16 * 1024;
+
+	private static final int MAX_BATCH_SIZE = 1024;
+
+	private static final int MAX_IDS_PER_QUERY = 256;
+
+	private static final int INCREMENTAL_AUTO_VACUUM = 2;
+
+	// 1 MB per transaction with 4 KB pages
+	private static final int PAGES_PER_COMPACTION = 256;
+
+	private static final String SELECT_BATCH = "SELECT * FROM DNA WHERE ID IN (" + String.join(", ", Collections.nCopies(MAX_IDS_PER_QUERY, "?")) + ") ORDER BY ID;";
+
+	private final Map<Long, Genome> cache = new LinkedHashMap<Long, Genome>(CACHE_SIZE, 0.75f, true) {
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Genome> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final BlockingQueue<Write> writeQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	private final Map<Long, DNA> unwrittenDna = new ConcurrentHashMap<>();
+
+	private final Object writeProgress = new Object();
+
+	// Both guarded by writeProgress
+	private long numberOfQueuedWrites = 0;
+
+	private long numberOfCompletedWrites = 0;
+
+	private volatile RuntimeException writeError;
+
+	// The writer thread holds this log's monitor while it writes a batch, so
+	// save() and markAsDead() must never take it. They only check this field,
+	// and they synchronize on writerLock to start the writer.
+	private volatile Thread writerThread;
+
+	private final Object writerLock = new Object();
+
 	public PersistentDNALog(String name) {
+		this(name, false);
+	}
+
+	/**
+	 * A read-only log can read the DNA while another program is writing it.
+	 */
+	public PersistentDNALog(String name, boolean readOnly) {
 		super(name);
 		createDnaTable();
+		if (readOnly)
+			makeReadOnly();
 	}
 
 	@Override
 	public void save(DNA dna) {
-		if (contains(dna))
+		if (unwrittenDna.putIfAbsent(dna.getId(), dna) != null)
 			return;
+		enqueue(new Write(dna, dna.getId()));
+	}
+
+	@Override
+	public DNA getDna(long id) {
+		DNA unwritten = unwrittenDna.get(id);
+		if (unwritten != null)
+			return unwritten;
+
+		synchronized (this) {
+			PreparedStatement statement = getCachedStatement("SELECT * FROM DNA WHERE ID = ?;");
+			try {
+				statement.setLong(1, id);
+				try (ResultSet rs = statement.executeQuery()) {
+					if (!rs.next())
+						return null;
+					return toDNA(rs);
+				}
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the DNAs in a few large queries, rather than one query per DNA.
+	 */
+	@Override
+	public List<DNA> getDnaBatch(long[] ids) {
+		flush();
+		Map<Long, DNA> idsToDna = new HashMap<>();
+		synchronized (this) {
+			executeInReadTransaction(() -> {
+				PreparedStatement statement = getCachedStatement(SELECT_BATCH);
+				try {
+					for (int start = 0; start < ids.length; start += MAX_IDS_PER_QUERY) {
+						// Pad the last query with ids that are never used
+						for (int i = 0; i < MAX_IDS_PER_QUERY; i++)
+							statement.setLong(i + 1, (start + i < ids.length) ? ids[start + i] : DNA.NO_PARENT);
+						try (ResultSet rs = statement.executeQuery()) {
+							while (rs.next()) {
+								DNA dna = toDNA(rs);
+								idsToDna.put(dna.getId(), dna);
+							}
+						}
+					}
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+				return null;
+			});
+		}
+		List<DNA> result = new ArrayList<>(ids.length);
+		for (long id : ids) {
+			DNA dna = idsToDna.get(id);
+			if (dna != null)
+				result.add(dna);
+		}
+		return result;
+	}
+
+	@Override
+	public void markAsDead(long id) {
+		enqueue(new Write(null, id));
+	}
+
+	@Override
+	public List<DNA> getAllDna() {
+		return readDna("SELECT * FROM DNA ORDER BY ID;");
+	}
+
+	@Override
+	public List<DNA> getLiveDna() {
+		return readDna("SELECT * FROM DNA WHERE IS_DEAD = 0 ORDER BY ID;");
+	}
+
+	/**
+	 * Only reads the ids and parent ids, not the genes.
+	 */
+	@Override
+	public Phylogeny getPhylogeny() {
+		flush();
+		synchronized (this) {
+			return executeInReadTransaction(this::readPhylogeny);
+		}
+	}
+
+	@Override
+	public void remove(long[] ids) {
+		flush();
+		synchronized (this) {
+			executeInTransaction(() -> {
+				PreparedStatement statement = getCachedStatement("DELETE FROM DNA WHERE ID = ?;");
+				try {
+					for (long id : ids) {
+						statement.setLong(1, id);
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+		synchronized (cache) {
+			for (long id : ids)
+				cache.remove(id);
+		}
+	}
+
+	/**
+	 * Gives the free pages back to the file system a few at a time, each
+	 * batch in a short transaction of its own, so that the other writers
+	 * don't wait for long. (Databases that were created without incremental
+	 * vacuuming don't shrink.)
+	 */
+	@Override
+	public void compact() {
+		flush();
+		if (readPragma("auto_vacuum") != INCREMENTAL_AUTO_VACUUM)
+			return;
+		long freePages = readPragma("freelist_count");
+		while (freePages > 0) {
+			synchronized (this) {
+				executeInTransaction(() -> vacuumPages(PAGES_PER_COMPACTION));
+			}
+			long remainingFreePages = readPragma("freelist_count");
+			if (remainingFreePages >= freePages)
+				return;
+			freePages = remainingFreePages;
+		}
+	}
+
+	@Override
+	public void flush() {
+		synchronized (writeProgress) {
+			long target = numberOfQueuedWrites;
+			while (numberOfCompletedWrites < target && writeError == null) {
+				try {
+					writeProgress.wait();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		checkForWriteErrors();
+	}
+
+	/**
+	 * Stores all the queued writes before closing.
+	 */
+	@Override
+	public void close() {
+		try {
+			stopWriter();
+		} finally {
+			super.close();
+		}
+	}
+
+	@Override
+	public void delete() {
+		stopWriter();
+		unwrittenDna.clear();
+		synchronized (cache) {
+			cache.clear();
+		}
+		super.delete();
+	}
+
+	private void createDnaTable() {
 		Statement statement = createStatement();
 		try {
-			String sql = "INSERT INTO DNA (ID, GENES, PARENT_ID, IS_DEAD) VALUES (" +
-				dna.getId() + ", " +
-				"'" + dna.toString() + "', " +
-				dna.getParentId() + ", 0);";
+			String sql = "CREATE TABLE IF NOT EXISTS DNA "
+				+ "(ID                   INT PRIMARY KEY     NOT NULL,"
+				+ " GENES                BLOB                NOT NULL,"
+				+ " PARENT_ID            INT                 NOT NULL,"
+				+ " IS_DEAD              INT                 NOT NULL)";
 			statement.executeUpdate(sql);
+			// Older databases don't have this index
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS DNA_LIVE_ID ON DNA (ID) WHERE IS_DEAD = 0;");
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		} finally {
@@ -34,26 +290,70 @@ public class PersistentDNALog extends PersistentInformation implements DNALog {
 		}
 	}
 
-	@Override
-	public DNA getDna(long id) {
-		Statement statement = createStatement();
+	/**
+	 * Returns the DNAs with ids greater than the given id, sorted by id.
+	 */
+	List<DNA> getDnaAfter(long id) {
+		flush();
+		synchronized (this) {
+			return executeInReadTransaction(() -> {
+				PreparedStatement statement = getCachedStatement("SELECT * FROM DNA WHERE ID > ? ORDER BY ID;");
+				try {
+					statement.setLong(1, id);
+					return toDNAs(statement);
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Only reads the ids, from the index on the live DNA.
+	 */
+	BitSet getLiveDnaIds() {
+		flush();
+		synchronized (this) {
+			// Without the ORDER BY, SQLite scans the whole table
+			try (ResultSet rs = getCachedStatement("SELECT ID FROM DNA WHERE IS_DEAD = 0 ORDER BY ID;").executeQuery()) {
+				BitSet result = new BitSet();
+				while (rs.next())
+					result.set(toIndex(rs.getLong("ID")));
+				return result;
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private Phylogeny readPhylogeny() {
 		try {
-			ResultSet rs = statement.executeQuery("SELECT * FROM DNA WHERE ID = " + id + ";");
-			if (!rs.next())
-				return null;
-			return toDNA(rs);
+			long maxId;
+			try (ResultSet rs = getCachedStatement("SELECT MAX(ID) FROM DNA;").executeQuery()) {
+				maxId = rs.next() ? rs.getLong(1) : 0;
+			}
+			long[] parentIds = new long[toIndex(maxId) + 1];
+			Arrays.fill(parentIds, Phylogeny.NOT_IN_LOG);
+			BitSet liveDna = new BitSet();
+			try (ResultSet rs = getCachedStatement("SELECT ID, PARENT_ID, IS_DEAD FROM DNA;").executeQuery()) {
+				while (rs.next()) {
+					int id = (int) rs.getLong("ID");
+					parentIds[id] = rs.getLong("PARENT_ID");
+					if (rs.getInt("IS_DEAD") == 0)
+						liveDna.set(id);
+				}
+			}
+			return new Phylogeny(parentIds, liveDna);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
 	}
 
-	@Override
-	public void markAsDead(long id) {
+	private synchronized long readPragma(String pragma) {
 		Statement statement = createStatement();
-		try {
-			statement.executeUpdate("UPDATE DNA SET IS_DEAD = 1 WHERE ID = " + id + ";");
+		try (ResultSet rs = statement.executeQuery("PRAGMA " + pragma + ";")) {
+			rs.next();
+			return rs.getLong(1);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		} finally {
@@ -61,15 +361,13 @@ public class PersistentDNALog extends PersistentInformation implements DNALog {
 		}
 	}
 
-	@Override
-	public List<DNA> getAllDna() {
+	// Each run of incremental_vacuum frees one page. The statement must be
+	// closed before the transaction commits.
+	private void vacuumPages(int pages) {
 		Statement statement = createStatement();
 		try {
-			List<DNA> result = new LinkedList<>();
-			ResultSet rs = statement.executeQuery("SELECT * FROM DNA ORDER BY ID;");
-			while (rs.next())
-				result.add(toDNA(rs));
-			return result;
+			for (int i = 0; i < pages; i++)
+				statement.execute("PRAGMA incremental_vacuum;");
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		} finally {
@@ -77,45 +375,239 @@ public class PersistentDNALog extends PersistentInformation implements DNALog {
 		}
 	}
 
-	@Override
-	public List<DNA> getLiveDna() {
-		Statement statement = createStatement();
-		try {
+	private List<DNA> readDna(String query) {
+		flush();
+		synchronized (this) {
+			return executeInReadTransaction(() -> {
+				try {
+					return toDNAs(getCachedStatement(query));
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+	}
+
+	private List<DNA> toDNAs(PreparedStatement query) throws SQLException {
+		try (ResultSet rs = query.executeQuery()) {
 			List<DNA> result = new LinkedList<>();
-			ResultSet rs = statement.executeQuery("SELECT * FROM DNA WHERE IS_DEAD = 0 ORDER BY ID;");
 			while (rs.next())
 				result.add(toDNA(rs));
 			return result;
-		} catch (SQLException e) {
+		}
+	}
+
+	private static int toIndex(long id) {
+		if (id >= Integer.MAX_VALUE)
+			throw new RuntimeException("DNA id out of range: " + id);
+		return (int) id;
+	}
+
+	private void enqueue(Write write) {
+		if (isReadOnly())
+			throw new RuntimeException("Cannot write to a read-only DNA log");
+		checkForWriteErrors();
+		startWriter();
+		synchronized (writeProgress) {
+			numberOfQueuedWrites++;
+		}
+		try {
+			writeQueue.put(write);
+		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
+		}
+	}
+
+	private void startWriter() {
+		if (writerThread != null)
+			return;
+		synchronized (writerLock) {
+			if (writerThread != null)
+				return;
+			Thread thread = new Thread(this::writeQueuedDna, "DNA writer");
+			thread.setDaemon(true);
+			thread.start();
+			writerThread = thread;
+		}
+	}
+
+	private void stopWriter() {
+		Thread thread;
+		synchronized (writerLock) {
+			thread = writerThread;
+			writerThread = null;
+		}
+		if (thread == null)
+			return;
+		try {
+			flush();
 		} finally {
-			close(statement);
+			thread.interrupt();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
-	private void createDnaTable() {
-		Statement statement = createStatement();
+	private void checkForWriteErrors() {
+		if (writeError != null)
+			throw new RuntimeException("Error while writing DNA", writeError);
+	}
+
+	// The writer thread's loop. It stops when it's interrupted, which only
+	// happens after flush() has emptied the queue.
+	private void writeQueuedDna() {
+		List<Write> batch = new ArrayList<>();
+		while (true) {
+			try {
+				batch.add(writeQueue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			writeQueue.drainTo(batch, MAX_BATCH_SIZE - 1);
+			try {
+				synchronized (this) {
+					executeInTransaction(() -> writeBatch(batch));
+				}
+				for (Write write : batch)
+					if (write.dna != null)
+						unwrittenDna.remove(write.id, write.dna);
+			} catch (RuntimeException e) {
+				writeError = e;
+			} catch (Throwable e) {
+				// Such as an OutOfMemoryError. Keep the writer alive, so
+				// that flush() and the queue don't wait for it forever.
+				writeError = new RuntimeException(e);
+			} finally {
+				synchronized (writeProgress) {
+					numberOfCompletedWrites += batch.size();
+					writeProgress.notifyAll();
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	private void writeBatch(List<Write> batch) {
+		PreparedStatement insert = getCachedStatement("INSERT OR IGNORE INTO DNA (ID, GENES, PARENT_ID, IS_DEAD) VALUES (?, ?, ?, 0);");
+		PreparedStatement markAsDead = getCachedStatement("UPDATE DNA SET IS_DEAD = 1 WHERE ID = ?;");
 		try {
-			String sql = "CREATE TABLE IF NOT EXISTS DNA "
-				+ "(ID                   INT PRIMARY KEY     NOT NULL,"
-				+ " GENES                STRING              NOT NULL,"
-				+ " PARENT_ID            INT                 NOT NULL,"
-				+ " IS_DEAD              INT                 NOT NULL)";
-			statement.executeUpdate(sql);
+			for (Write write : batch) {
+				if (write.dna != null) {
+					insert.setLong(1, write.id);
+					insert.setBytes(2, encode(write.dna));
+					insert.setLong(3, write.dna.getParentId());
+					insert.addBatch();
+				} else {
+					markAsDead.setLong(1, write.id);
+					markAsDead.addBatch();
+				}
+			}
+			// All the inserts go before all the updates, so that the DNAs
+			// that are born and die in the same batch are marked as dead.
+			insert.executeBatch();
+			markAsDead.executeBatch();
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
 	}
 
-	private boolean contains(DNA dna) {
-		return getDna(dna.getId()) != null;
+	// Encodes the genes as a delta from the parent's genes, and caches them.
+	// If the parent is in the same batch, then it's not in the database yet,
+	// but it's usually in the cache. If it's not, the genes become a keyframe.
+	private byte[] encode(DNA dna) {
+		byte[] genes = dna.getGenesAsBytes();
+		Genome parent = dna.hasParent() ? getGenome(dna.getParentId()) : null;
+		byte[] result = (parent == null)
+			? GenesEncoding.encodeKeyframe(genes)
+			: GenesEncoding.encode(genes, parent.genes, parent.depth);
+		cache(dna.getId(), new Genome(genes, GenesEncoding.getDepth(result)));
+		return result;
 	}
 
 	private DNA toDNA(ResultSet rs) throws SQLException {
-		return new DNA(rs.getLong("ID"),
-			rs.getString("GENES"),
-			rs.getInt("PARENT_ID"));
+		long id = rs.getLong("ID");
+		long parentId = rs.getLong("PARENT_ID");
+		Genome genome = toGenome(id, rs.getObject("GENES"), parentId);
+		return new DNA(id, genome.genes, parentId);
+	}
+
+	private Genome getGenome(long id) {
+		synchronized (cache) {
+			Genome cachedGenome = cache.get(id);
+			if (cachedGenome != null)
+				return cachedGenome;
+		}
+
+		// Read the row before decoding it, because decoding can run this
+		// same statement again for the parent.
+		Object encodedGenes;
+		long parentId;
+		PreparedStatement statement = getCachedStatement("SELECT GENES, PARENT_ID FROM DNA WHERE ID = ?;");
+		try {
+			statement.setLong(1, id);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (!rs.next())
+					return null;
+				encodedGenes = rs.getObject("GENES");
+				parentId = rs.getLong("PARENT_ID");
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		return toGenome(id, encodedGenes, parentId);
+	}
+
+	private Genome toGenome(long id, Object encodedGenes, long parentId) {
+		Genome result;
+		if (!(encodedGenes instanceof byte[])) {
+			// Older databases store genes as strings
+			result = new Genome(new DNA(id, encodedGenes.toString()).getGenesAsBytes(), 0);
+		} else {
+			byte[] encoding = (byte[]) encodedGenes;
+			if (GenesEncoding.isKeyframe(encoding)) {
+				result = new Genome(GenesEncoding.decodeKeyframe(encoding), 0);
+			} else {
+				Genome parent = getGenome(parentId);
+				if (parent == null)
+					throw new RuntimeException("Missing parent DNA " + parentId + " for DNA " + id);
+				result = new Genome(GenesEncoding.decodeDelta(encoding, parent.genes), GenesEncoding.getDepth(encoding));
+			}
+		}
+		cache(id, result);
+		return result;
+	}
+
+	private void cache(long id, Genome genome) {
+		synchronized (cache) {
+			cache.put(id, genome);
+		}
+	}
+
+	private static class Genome {
+
+		final byte[] genes;
+
+		final int depth;
+
+		Genome(byte[] genes, int depth) {
+			this.genes = genes;
+			this.depth = depth;
+		}
+	}
+
+	// A DNA to insert, or (if the DNA is null) the id of a DNA to mark as dead.
+	private static class Write {
+
+		final DNA dna;
+
+		final long id;
+
+		Write(DNA dna, long id) {
+			this.dna = dna;
+			this.id = id;
+		}
 	}
 }
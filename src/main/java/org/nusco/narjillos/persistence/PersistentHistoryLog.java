@@ -1,5 +1,6 @@
 package org.nusco.narjillos.persistence;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -13,73 +14,92 @@ import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
 public class PersistentHistoryLog extends PersistentInformation implements HistoryLog {
 
 	public PersistentHistoryLog(String name) {
+		this(name, false);
+	}
+
+	/**
+	 * A read-only log can read the history while another program is
+	 * writing it.
+	 */
+	public PersistentHistoryLog(String name, boolean readOnly) {
 		super(name);
 		createEntriesTable();
+		if (readOnly)
+			makeReadOnly();
 	}
 
 	@Override
 	public void saveEntry(Experiment experiment) {
 		ExperimentHistoryEntry entry = new ExperimentHistoryEntry(experiment);
-		if (contains(entry))
-			return;
-		Statement statement = createStatement();
+		PreparedStatement statement = getCachedStatement("INSERT OR IGNORE INTO HISTORY_ENTRIES (TICKS, RUNNING_TIME, " +
+			"NUMBER_OF_NARJILLOS, NUMBER_OF_FOOD_PELLETS, " +
+			"OXYGEN, HYDROGEN, NITROGEN, " +
+			"O2H, O2N, H2O, H2N, N2O, N2H, Z2O, Z2H, Z2N, NUMBER_OF_SPECIES) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);");
 		try {
-			String sql = "INSERT INTO HISTORY_ENTRIES (TICKS, RUNNING_TIME, " +
-				"NUMBER_OF_NARJILLOS, NUMBER_OF_FOOD_PELLETS, " +
-				"OXYGEN, HYDROGEN, NITROGEN, " +
-				"O2H, O2N, H2O, H2N, N2O, N2H, Z2O, Z2H, Z2N) VALUES (" +
-				entry.ticks + ", " +
-				entry.runningTime + ", " +
-				entry.numberOfNarjillos + ", " +
-				entry.numberOfFoodPellets + ", " +
-				entry.oxygen + ", " +
-				entry.hydrogen + ", " +
-				entry.nitrogen + ", " +
-				entry.o2h + ", " +
-				entry.o2n + ", " +
-				entry.h2o + ", " +
-				entry.h2n + ", " +
-				entry.n2o + ", " +
-				entry.n2h + ", " +
-				entry.z2o + ", " +
-				entry.z2h + ", " +
-				entry.z2n + ");";
-			statement.executeUpdate(sql);
+			statement.setLong(1, entry.ticks);
+			statement.setLong(2, entry.runningTime);
+			statement.setLong(3, entry.numberOfNarjillos);
+			statement.setLong(4, entry.numberOfFoodPellets);
+			statement.setDouble(5, entry.oxygen);
+			statement.setDouble(6, entry.hydrogen);
+			statement.setDouble(7, entry.nitrogen);
+			statement.setInt(8, entry.o2h);
+			statement.setInt(9, entry.o2n);
+			statement.setInt(10, entry.h2o);
+			statement.setInt(11, entry.h2n);
+			statement.setInt(12, entry.n2o);
+			statement.setInt(13, entry.n2h);
+			statement.setInt(14, entry.z2o);
+			statement.setInt(15, entry.z2h);
+			statement.setInt(16, entry.z2n);
+			statement.setInt(17, entry.numberOfSpecies);
+			statement.executeUpdate();
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
 	}
 
 	@Override
 	public ExperimentHistoryEntry getLatestEntry() {
-		Statement statement = createStatement();
-		try {
-			ResultSet rs = statement.executeQuery("SELECT * FROM HISTORY_ENTRIES WHERE TICKS = (SELECT MAX(TICKS) FROM HISTORY_ENTRIES);");
+		// TICKS is the primary key, so this reads the last entry in the
+		// index instead of scanning the table
+		try (ResultSet rs = getCachedStatement("SELECT * FROM HISTORY_ENTRIES ORDER BY TICKS DESC LIMIT 1;").executeQuery()) {
 			if (!rs.next())
 				return null;
 			return toHistoryEntry(rs);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
 		}
 	}
 
 	@Override
 	public List<ExperimentHistoryEntry> getEntries() {
-		Statement statement = createStatement();
-		try {
+		try (ResultSet rs = getCachedStatement("SELECT * FROM HISTORY_ENTRIES ORDER BY TICKS;").executeQuery()) {
 			List<ExperimentHistoryEntry> result = new LinkedList<>();
-			ResultSet rs = statement.executeQuery("SELECT * FROM HISTORY_ENTRIES ORDER BY TICKS;");
 			while (rs.next())
 				result.add(toHistoryEntry(rs));
 			return result;
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
-		} finally {
-			close(statement);
+		}
+	}
+
+	/**
+	 * Returns the entries after the given ticks, oldest first.
+	 */
+	List<ExperimentHistoryEntry> getEntriesAfter(long ticks) {
+		PreparedStatement statement = getCachedStatement("SELECT * FROM HISTORY_ENTRIES WHERE TICKS > ? ORDER BY TICKS;");
+		try {
+			statement.setLong(1, ticks);
+			try (ResultSet rs = statement.executeQuery()) {
+				List<ExperimentHistoryEntry> result = new LinkedList<>();
+				while (rs.next())
+					result.add(toHistoryEntry(rs));
+				return result;
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -102,20 +122,26 @@ public class PersistentHistoryLog extends PersistentInformation implements Histo
 				+ " N2H                     INT                 NOT NULL,"
 				+ " Z2O                     INT                 NOT NULL,"
 				+ " Z2H                     INT                 NOT NULL,"
-				+ " Z2N                     INT                 NOT NULL)";
+				+ " Z2N                     INT                 NOT NULL,"
+				+ " NUMBER_OF_SPECIES       INT                 NOT NULL DEFAULT 0)";
 			statement.executeUpdate(sql);
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		} finally {
 			close(statement);
 		}
+		addSpeciesColumnIfMissing();
 	}
 
-	private boolean contains(ExperimentHistoryEntry entry) {
+	// Older databases don't track species.
+	private void addSpeciesColumnIfMissing() {
 		Statement statement = createStatement();
 		try {
-			ResultSet rs = statement.executeQuery("SELECT * FROM HISTORY_ENTRIES WHERE TICKS = " + entry.ticks + ";");
-			return rs.next();
+			ResultSet rs = statement.executeQuery("PRAGMA table_info(HISTORY_ENTRIES);");
+			while (rs.next())
+				if (rs.getString("name").equals("NUMBER_OF_SPECIES"))
+					return;
+			statement.executeUpdate("ALTER TABLE HISTORY_ENTRIES ADD COLUMN NUMBER_OF_SPECIES INT NOT NULL DEFAULT 0;");
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		} finally {
@@ -139,6 +165,7 @@ public class PersistentHistoryLog extends PersistentInformation implements Histo
 			rs.getInt("N2H"),
 			rs.getInt("Z2O"),
 			rs.getInt("Z2H"),
-			rs.getInt("Z2N"));
+			rs.getInt("Z2N"),
+			rs.getInt("NUMBER_OF_SPECIES"));
 	}
 }
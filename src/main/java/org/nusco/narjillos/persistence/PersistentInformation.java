@@ -4,11 +4,37 @@ import java.io.File;
 import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
+/**
+ * A connection to an experiment's database.
+ * <p>
+ * The database uses a write-ahead log, so that reads don't block writes (and
+ * vice versa), and it only syncs to disk at checkpoints. New databases are
+ * vacuumed incrementally, so that they can shrink a bit at a time.
+ * Subclasses should use getCachedStatement(), that compiles each SQL
+ * statement only once per connection.
+ * <p>
+ * Programs that analyze an experiment while another program is running it
+ * should use read-only connections (see makeReadOnly()), and read related
+ * data in a single read transaction (see executeInReadTransaction()).
+ */
 public abstract class PersistentInformation {
 
+	private static final String[] CONNECTION_SETUP = {
+		"PRAGMA page_size = 4096;", // only has an effect on new databases
+		"PRAGMA auto_vacuum = INCREMENTAL;", // same
+		"PRAGMA journal_mode = WAL;",
+		"PRAGMA synchronous = NORMAL;",
+		"PRAGMA cache_size = -16384;", // in KB
+		"PRAGMA busy_timeout = 10000;" // in milliseconds
+	};
+
 	static {
 		try {
 			Class.forName("org.sqlite.JDBC");
@@ -21,6 +47,10 @@ public abstract class PersistentInformation {
 
 	private Connection connection;
 
+	private boolean isReadOnly = false;
+
+	private final Map<String, PreparedStatement> cachedStatements = new HashMap<>();
+
 	PersistentInformation(String name) {
 		this.name = name + ".exp";
 		open();
@@ -28,6 +58,7 @@ public abstract class PersistentInformation {
 
 	public void close() {
 		try {
+			closeCachedStatements();
 			if (!connection.isClosed())
 				connection.close();
 		} catch (SQLException e) {
@@ -40,15 +71,47 @@ public abstract class PersistentInformation {
 			if (connection != null && !connection.isClosed())
 				return;
 			connection = DriverManager.getConnection("jdbc:sqlite:" + getName());
+			try (Statement statement = connection.createStatement()) {
+				for (String sql : CONNECTION_SETUP)
+					statement.execute(sql);
+				if (isReadOnly)
+					statement.execute("PRAGMA query_only = 1;");
+			}
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Closes the connection and deletes the database files.
+	 */
 	public void delete() {
-		File databaseFile = new File(getName());
-		if (Files.exists(databaseFile.toPath()))
-			databaseFile.delete();
+		close();
+		for (String suffix : new String[] { "", "-wal", "-shm" }) {
+			File file = new File(getName() + suffix);
+			if (Files.exists(file.toPath()))
+				file.delete();
+		}
+	}
+
+	public boolean isReadOnly() {
+		return isReadOnly;
+	}
+
+	/**
+	 * Rejects all writes from now on. Subclasses call this at the end of their
+	 * constructors, after they created (or upgraded) their tables.
+	 */
+	final void makeReadOnly() {
+		isReadOnly = true;
+		Statement statement = createStatement();
+		try {
+			statement.execute("PRAGMA query_only = 1;");
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		} finally {
+			close(statement);
+		}
 	}
 
 	Statement createStatement() {
@@ -59,6 +122,63 @@ public abstract class PersistentInformation {
 		}
 	}
 
+	/**
+	 * Returns a statement that stays open as long as the connection. Don't
+	 * close it.
+	 */
+	synchronized PreparedStatement getCachedStatement(String sql) {
+		PreparedStatement result = cachedStatements.get(sql);
+		if (result != null)
+			return result;
+		try {
+			result = connection.prepareStatement(sql);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		cachedStatements.put(sql, result);
+		return result;
+	}
+
+	/**
+	 * Runs the operations in a single transaction, and rolls them back if
+	 * they throw an exception.
+	 */
+	void executeInTransaction(Runnable operations) {
+		try {
+			connection.setAutoCommit(false);
+			try {
+				operations.run();
+				connection.commit();
+			} catch (RuntimeException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Runs the queries in a single transaction, so that they all see the
+	 * same snapshot of the database, even if another connection writes to it
+	 * in the meantime.
+	 */
+	<T> T executeInReadTransaction(Supplier<T> queries) {
+		try {
+			connection.setAutoCommit(false);
+			try {
+				return queries.get();
+			} finally {
+				connection.commit();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	void close(Statement stmt) {
 		try {
 			stmt.close();
@@ -67,6 +187,12 @@ public abstract class PersistentInformation {
 		}
 	}
 
+	private synchronized void closeCachedStatements() throws SQLException {
+		for (PreparedStatement statement : cachedStatements.values())
+			statement.close();
+		cachedStatements.clear();
+	}
+
 	private String getName() {
 		return name;
 	}
@@ -0,0 +1,425 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import static org.nusco.narjillos.persistence.serialization.BinarySnapshotWriter.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads the tokens written by a BinarySnapshotWriter.
+ */
+class BinarySnapshotReader extends JsonReader {
+
+	private static final int NOT_PEEKED = -1;
+
+	private static final int END_OF_STREAM = -2;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final Reader UNREADABLE_READER = new Reader() {
+
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	private static final InputStream EMPTY_STREAM = new ByteArrayInputStream(new byte[0]);
+
+	private final InputStream in;
+
+	// Buffers the input here rather than in a (synchronized) BufferedInputStream.
+	private final byte[] buffer;
+
+	private int bufferPosition = 0;
+
+	private int bufferSize = 0;
+
+	private final List<String> names;
+
+	private final List<String> sharedStrings;
+
+	private final List<Object> sharedObjects;
+
+	private int peekedTag = NOT_PEEKED;
+
+	BinarySnapshotReader(InputStream in) {
+		this(in, null);
+	}
+
+	/**
+	 * Creates a reader for snapshots that reference the objects in the given
+	 * list (see BinarySnapshotWriter.sharedValue()).
+	 */
+	BinarySnapshotReader(InputStream in, List<Object> sharedObjects) {
+		this(in, new byte[BUFFER_SIZE], 0, new ArrayList<>(), new ArrayList<>(), sharedObjects);
+	}
+
+	private BinarySnapshotReader(InputStream in, byte[] buffer, int bufferSize, List<String> names, List<String> sharedStrings, List<Object> sharedObjects) {
+		super(UNREADABLE_READER);
+		this.in = in;
+		this.buffer = buffer;
+		this.bufferSize = bufferSize;
+		this.names = names;
+		this.sharedStrings = sharedStrings;
+		this.sharedObjects = sharedObjects;
+	}
+
+	/**
+	 * Returns a reader for a segment written by a segment writer, with the
+	 * names and shared strings that were written with the segments (see
+	 * BinarySnapshotWriter.newSegmentWriter()). Segment readers don't change
+	 * anything they share, so you can read many segments in parallel.
+	 */
+	BinarySnapshotReader newSegmentReader(byte[] segment, List<String> segmentNames, List<String> segmentSharedStrings) {
+		return new BinarySnapshotReader(EMPTY_STREAM, segment, segment.length,
+			Collections.unmodifiableList(segmentNames), Collections.unmodifiableList(segmentSharedStrings), sharedObjects);
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		consume(BEGIN_OBJECT, JsonToken.BEGIN_OBJECT);
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		consume(END_OBJECT, JsonToken.END_OBJECT);
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		consume(BEGIN_ARRAY, JsonToken.BEGIN_ARRAY);
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		consume(END_ARRAY, JsonToken.END_ARRAY);
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		JsonToken token = peek();
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+	}
+
+	@Override
+	public JsonToken peek() throws IOException {
+		if (peekedTag == NOT_PEEKED) {
+			peekedTag = (hasBufferedBytes()) ? buffer[bufferPosition++] & 0xFF : END_OF_STREAM;
+		}
+		return toToken(peekedTag);
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		peek();
+		int tag = peekedTag;
+		if (tag >= SHORT_NAME) {
+			peekedTag = NOT_PEEKED;
+			return names.get(tag - SHORT_NAME);
+		}
+		if (tag == NAME) {
+			peekedTag = NOT_PEEKED;
+			return names.get((int) readVarint());
+		}
+		consume(NEW_NAME, JsonToken.NAME);
+		String result = readString();
+		names.add(result);
+		return result;
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		peek();
+		switch (peekedTag) {
+		case STRING:
+			peekedTag = NOT_PEEKED;
+			return readString();
+		case NEW_SHARED_STRING:
+			peekedTag = NOT_PEEKED;
+			String result = readString();
+			sharedStrings.add(result);
+			return result;
+		case SHARED_STRING:
+			peekedTag = NOT_PEEKED;
+			return sharedStrings.get((int) readVarint());
+		case INTEGER:
+			return Long.toString(nextLong());
+		case DOUBLE:
+		case INTEGRAL_DOUBLE:
+			return Double.toString(nextDouble());
+		default:
+			throw unexpected(JsonToken.STRING);
+		}
+	}
+
+	byte[] nextBytes() throws IOException {
+		consume(BYTES, JsonToken.STRING);
+		byte[] result = new byte[(int) readVarint()];
+		readFully(result);
+		return result;
+	}
+
+	boolean hasSharedObject() throws IOException {
+		peek();
+		return peekedTag == SHARED_OBJECT;
+	}
+
+	Object nextSharedObject() throws IOException {
+		consume(SHARED_OBJECT, JsonToken.STRING);
+		if (sharedObjects == null)
+			throw new IllegalStateException("Shared object in a snapshot that doesn't share objects");
+		return sharedObjects.get((int) readVarint());
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		peek();
+		if (peekedTag == TRUE || peekedTag == FALSE) {
+			boolean result = (peekedTag == TRUE);
+			peekedTag = NOT_PEEKED;
+			return result;
+		}
+		throw unexpected(JsonToken.BOOLEAN);
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		consume(NULL, JsonToken.NULL);
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		peek();
+		switch (peekedTag) {
+		case DOUBLE:
+			peekedTag = NOT_PEEKED;
+			long bits = 0;
+			if (bufferSize - bufferPosition >= 8) {
+				for (int i = 0; i < 8; i++)
+					bits = (bits << 8) | (buffer[bufferPosition++] & 0xFF);
+			} else {
+				for (int i = 0; i < 8; i++)
+					bits = (bits << 8) | readByte();
+			}
+			return Double.longBitsToDouble(bits);
+		case INTEGRAL_DOUBLE:
+		case INTEGER:
+			peekedTag = NOT_PEEKED;
+			return readZigzagVarint();
+		case STRING:
+		case NEW_SHARED_STRING:
+		case SHARED_STRING:
+			return Double.parseDouble(nextString());
+		default:
+			throw unexpected(JsonToken.NUMBER);
+		}
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		peek();
+		switch (peekedTag) {
+		case INTEGER:
+		case INTEGRAL_DOUBLE:
+			peekedTag = NOT_PEEKED;
+			return readZigzagVarint();
+		case DOUBLE:
+			double value = nextDouble();
+			if (value != (long) value)
+				throw new NumberFormatException("Expected a long but was " + value);
+			return (long) value;
+		case STRING:
+		case NEW_SHARED_STRING:
+		case SHARED_STRING:
+			return Long.parseLong(nextString());
+		default:
+			throw unexpected(JsonToken.NUMBER);
+		}
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		long result = nextLong();
+		if (result != (int) result)
+			throw new NumberFormatException("Expected an int but was " + result);
+		return (int) result;
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			switch (peek()) {
+			case BEGIN_OBJECT:
+				beginObject();
+				depth++;
+				break;
+			case BEGIN_ARRAY:
+				beginArray();
+				depth++;
+				break;
+			case END_OBJECT:
+				endObject();
+				depth--;
+				break;
+			case END_ARRAY:
+				endArray();
+				depth--;
+				break;
+			case NAME:
+				nextName();
+				break;
+			case STRING:
+				if (peekedTag == BYTES)
+					nextBytes();
+				else if (peekedTag == SHARED_OBJECT)
+					nextSharedObject();
+				else
+					nextString();
+				break;
+			case NUMBER:
+				nextDouble();
+				break;
+			case BOOLEAN:
+				nextBoolean();
+				break;
+			case NULL:
+				nextNull();
+				break;
+			default:
+				throw new EOFException("End of snapshot while skipping a value");
+			}
+		} while (depth > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+
+	private void consume(int tag, JsonToken token) throws IOException {
+		peek();
+		if (peekedTag != tag)
+			throw unexpected(token);
+		peekedTag = NOT_PEEKED;
+	}
+
+	private IllegalStateException unexpected(JsonToken expected) throws IOException {
+		return new IllegalStateException("Expected " + expected + " but was " + peek() + " in binary snapshot");
+	}
+
+	private static JsonToken toToken(int tag) {
+		if (tag >= SHORT_NAME)
+			return JsonToken.NAME;
+		switch (tag) {
+		case BEGIN_OBJECT:
+			return JsonToken.BEGIN_OBJECT;
+		case END_OBJECT:
+			return JsonToken.END_OBJECT;
+		case BEGIN_ARRAY:
+			return JsonToken.BEGIN_ARRAY;
+		case END_ARRAY:
+			return JsonToken.END_ARRAY;
+		case NEW_NAME:
+		case NAME:
+			return JsonToken.NAME;
+		case STRING:
+		case NEW_SHARED_STRING:
+		case SHARED_STRING:
+		case BYTES:
+		case SHARED_OBJECT:
+			return JsonToken.STRING;
+		case INTEGER:
+		case DOUBLE:
+		case INTEGRAL_DOUBLE:
+			return JsonToken.NUMBER;
+		case TRUE:
+		case FALSE:
+			return JsonToken.BOOLEAN;
+		case NULL:
+			return JsonToken.NULL;
+		case END_OF_STREAM:
+			return JsonToken.END_DOCUMENT;
+		default:
+			throw new IllegalStateException("Corrupted binary snapshot (unknown tag " + tag + ")");
+		}
+	}
+
+	private String readString() throws IOException {
+		int length = (int) readVarint();
+		if (bufferSize - bufferPosition >= length) {
+			String result = new String(buffer, bufferPosition, length, StandardCharsets.UTF_8);
+			bufferPosition += length;
+			return result;
+		}
+		byte[] bytes = new byte[length];
+		readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void readFully(byte[] bytes) throws IOException {
+		int position = 0;
+		while (position < bytes.length) {
+			if (!hasBufferedBytes())
+				throw new EOFException("Unexpected end of snapshot");
+			int bytesToCopy = Math.min(bytes.length - position, bufferSize - bufferPosition);
+			System.arraycopy(buffer, bufferPosition, bytes, position, bytesToCopy);
+			bufferPosition += bytesToCopy;
+			position += bytesToCopy;
+		}
+	}
+
+	private long readZigzagVarint() throws IOException {
+		long zigzag = readVarint();
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	private long readVarint() throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+		throw new IOException("Corrupted binary snapshot (varint too long)");
+	}
+
+	private int readByte() throws IOException {
+		if (!hasBufferedBytes())
+			throw new EOFException("Unexpected end of snapshot");
+		return buffer[bufferPosition++] & 0xFF;
+	}
+
+	private boolean hasBufferedBytes() throws IOException {
+		while (bufferPosition == bufferSize) {
+			int bytesRead = in.read(buffer, 0, buffer.length);
+			if (bytesRead < 0)
+				return false;
+			bufferPosition = 0;
+			bufferSize = bytesRead;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,399 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the same stream of tokens as a JsonWriter, but in binary form.
+ * <p>
+ * Each token starts with a tag byte. Integers are zigzag varints, and
+ * floating point numbers are raw IEEE 754 doubles. Names and short strings
+ * are only written the first time, and then referenced by index.
+ */
+class BinarySnapshotWriter extends JsonWriter {
+
+	static final int BEGIN_OBJECT = 1;
+
+	static final int END_OBJECT = 2;
+
+	static final int BEGIN_ARRAY = 3;
+
+	static final int END_ARRAY = 4;
+
+	static final int NEW_NAME = 5;
+
+	static final int NAME = 6;
+
+	static final int STRING = 7;
+
+	static final int NEW_SHARED_STRING = 8;
+
+	static final int SHARED_STRING = 9;
+
+	static final int INTEGER = 10;
+
+	static final int DOUBLE = 11;
+
+	static final int TRUE = 12;
+
+	static final int FALSE = 13;
+
+	static final int NULL = 14;
+
+	static final int INTEGRAL_DOUBLE = 15;
+
+	static final int BYTES = 16;
+
+	static final int SHARED_OBJECT = 17;
+
+	// Tags from this value up are references to the first names.
+	static final int SHORT_NAME = 0x80;
+
+	static final int MAX_SHARED_STRING_LENGTH = 32;
+
+	static final int MAX_SHARED_STRINGS = 4096;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+	private static final Writer UNWRITABLE_WRITER = new Writer() {
+
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void flush() {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	private final OutputStream out;
+
+	// Buffers the output here rather than in a (synchronized) BufferedOutputStream.
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	private int bufferSize = 0;
+
+	private final Map<String, Integer> names = new HashMap<>();
+
+	private final Map<String, Integer> sharedStrings = new HashMap<>();
+
+	// Segment writers don't declare names and shared strings in the
+	// stream (see newSegmentWriter())
+	private final boolean isSegmentWriter;
+
+	private final ByteArrayOutputStream segmentOut;
+
+	// Only used by in-memory copies (see SnapshotCopier)
+	private final List<Object> sharedObjects;
+
+	private final Map<Object, Integer> sharedObjectIndexes;
+
+	private String deferredName;
+
+	BinarySnapshotWriter(OutputStream out) {
+		this(out, null);
+	}
+
+	/**
+	 * Creates a writer that writes immutable objects (see
+	 * sharedValue()) as references to the given list.
+	 */
+	BinarySnapshotWriter(OutputStream out, List<Object> sharedObjects) {
+		this(out, sharedObjects, new IdentityHashMap<>(), null);
+	}
+
+	private BinarySnapshotWriter(OutputStream out, List<Object> sharedObjects, Map<Object, Integer> sharedObjectIndexes, ByteArrayOutputStream segmentOut) {
+		super(UNWRITABLE_WRITER);
+		this.out = out;
+		this.sharedObjects = sharedObjects;
+		this.sharedObjectIndexes = sharedObjectIndexes;
+		this.segmentOut = segmentOut;
+		this.isSegmentWriter = (segmentOut != null);
+	}
+
+	/**
+	 * Returns a writer for segments: values that can be read independently of
+	 * each other, and of the rest of the snapshot. Write each segment, and then
+	 * take it with takeSegment(). The segments share the names and strings in
+	 * getNames() and getSharedStrings(), which must be written before the
+	 * segments (see BinarySnapshotReader.newSegmentReader()). They also share
+	 * this writer's shared objects.
+	 */
+	BinarySnapshotWriter newSegmentWriter() {
+		ByteArrayOutputStream segmentOut = new ByteArrayOutputStream();
+		BinarySnapshotWriter result = new BinarySnapshotWriter(segmentOut, sharedObjects, sharedObjectIndexes, segmentOut);
+		result.setSerializeNulls(getSerializeNulls());
+		return result;
+	}
+
+	/**
+	 * Returns the segment written since the last call, for a segment writer.
+	 */
+	byte[] takeSegment() throws IOException {
+		flushBuffer();
+		byte[] result = segmentOut.toByteArray();
+		segmentOut.reset();
+		return result;
+	}
+
+	List<String> getNames() {
+		return toList(names);
+	}
+
+	List<String> getSharedStrings() {
+		return toList(sharedStrings);
+	}
+
+	@Override
+	public JsonWriter beginObject() throws IOException {
+		writeDeferredName();
+		write(BEGIN_OBJECT);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() throws IOException {
+		write(END_OBJECT);
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginArray() throws IOException {
+		writeDeferredName();
+		write(BEGIN_ARRAY);
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() throws IOException {
+		write(END_ARRAY);
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) {
+		if (name == null)
+			throw new NullPointerException("name == null");
+		deferredName = name;
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) throws IOException {
+		if (value == null)
+			return nullValue();
+		writeDeferredName();
+		if (value.length() > MAX_SHARED_STRING_LENGTH) {
+			write(STRING);
+			writeString(value);
+			return this;
+		}
+		Integer index = sharedStrings.get(value);
+		if (index == null && isSegmentWriter && sharedStrings.size() < MAX_SHARED_STRINGS) {
+			index = sharedStrings.size();
+			sharedStrings.put(value, index);
+		}
+		if (index != null) {
+			write(SHARED_STRING);
+			writeVarint(index);
+		} else if (sharedStrings.size() < MAX_SHARED_STRINGS) {
+			sharedStrings.put(value, sharedStrings.size());
+			write(NEW_SHARED_STRING);
+			writeString(value);
+		} else {
+			write(STRING);
+			writeString(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes raw bytes. This is not a JSON value, so it can only be read
+	 * back with BinarySnapshotReader.nextBytes().
+	 */
+	JsonWriter value(byte[] value) throws IOException {
+		writeDeferredName();
+		write(BYTES);
+		writeVarint(value.length);
+		write(value);
+		return this;
+	}
+
+	boolean isSharingObjects() {
+		return sharedObjects != null;
+	}
+
+	/**
+	 * Writes a reference to an immutable object, so that the copies of the
+	 * snapshot share the object instead of copying it. Only for writers that
+	 * are sharing objects.
+	 */
+	JsonWriter sharedValue(Object value) throws IOException {
+		writeDeferredName();
+		Integer index = sharedObjectIndexes.get(value);
+		if (index == null) {
+			index = sharedObjects.size();
+			sharedObjects.add(value);
+			sharedObjectIndexes.put(value, index);
+		}
+		write(SHARED_OBJECT);
+		writeVarint(index);
+		return this;
+	}
+
+	@Override
+	public JsonWriter nullValue() throws IOException {
+		if (deferredName != null && !getSerializeNulls()) {
+			// Like JsonWriter, skip the whole name/value pair
+			deferredName = null;
+			return this;
+		}
+		writeDeferredName();
+		write(NULL);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) throws IOException {
+		writeDeferredName();
+		write(value ? TRUE : FALSE);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(double value) throws IOException {
+		writeDeferredName();
+		// Many doubles (like sizes and angles at rest) are whole numbers
+		if (value == (int) value && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+			write(INTEGRAL_DOUBLE);
+			writeVarint(zigzag((int) value));
+			return this;
+		}
+		if (buffer.length - bufferSize < 9)
+			flushBuffer();
+		buffer[bufferSize++] = DOUBLE;
+		long bits = Double.doubleToRawLongBits(value);
+		for (int shift = 56; shift >= 0; shift -= 8)
+			buffer[bufferSize++] = (byte) (bits >>> shift);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) throws IOException {
+		writeDeferredName();
+		write(INTEGER);
+		writeVarint(zigzag(value));
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) throws IOException {
+		if (value == null)
+			return nullValue();
+		if (value instanceof Double || value instanceof Float)
+			return value(value.doubleValue());
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+			return value(value.longValue());
+		return value(value.toString());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flushBuffer();
+		out.close();
+	}
+
+	private void write(int b) throws IOException {
+		if (bufferSize == buffer.length)
+			flushBuffer();
+		buffer[bufferSize++] = (byte) b;
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		if (bytes.length > buffer.length - bufferSize) {
+			flushBuffer();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, bufferSize, bytes.length);
+		bufferSize += bytes.length;
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, bufferSize);
+		bufferSize = 0;
+	}
+
+	private void writeDeferredName() throws IOException {
+		if (deferredName == null)
+			return;
+		Integer index = names.get(deferredName);
+		if (index == null && isSegmentWriter) {
+			index = names.size();
+			names.put(deferredName, index);
+		}
+		if (index == null) {
+			names.put(deferredName, names.size());
+			write(NEW_NAME);
+			writeString(deferredName);
+		} else if (index < 0x100 - SHORT_NAME) {
+			write(SHORT_NAME + index);
+		} else {
+			write(NAME);
+			writeVarint(index);
+		}
+		deferredName = null;
+	}
+
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		write(bytes);
+	}
+
+	private static List<String> toList(Map<String, Integer> indexes) {
+		String[] result = new String[indexes.size()];
+		for (Map.Entry<String, Integer> entry : indexes.entrySet())
+			result[entry.getValue()] = entry.getKey();
+		return Arrays.asList(result);
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private void writeVarint(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		write((int) value);
+	}
+}
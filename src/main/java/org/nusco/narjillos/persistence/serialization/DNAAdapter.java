@@ -1,34 +1,69 @@
 package org.nusco.narjillos.persistence.serialization;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
 import org.nusco.narjillos.genomics.DNA;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
-class DNAAdapter implements JsonSerializer<DNA>, JsonDeserializer<DNA> {
+/**
+ * Writes the genes as a DNA document in JSON, and as one byte per gene in
+ * binary snapshots. DNA is immutable, so in-memory copies share it.
+ */
+class DNAAdapter extends TypeAdapter<DNA> {
 
 	@Override
-	public JsonElement serialize(DNA dna, Type type, JsonSerializationContext context) {
-		JsonObject jsonObject = new JsonObject();
-		jsonObject.addProperty("genes", dna.toString());
-		jsonObject.addProperty("id", dna.getId());
-		jsonObject.addProperty("parentId", dna.getParentId());
-		return jsonObject;
+	public void write(JsonWriter out, DNA dna) throws IOException {
+		if (out instanceof BinarySnapshotWriter && ((BinarySnapshotWriter) out).isSharingObjects()) {
+			((BinarySnapshotWriter) out).sharedValue(dna);
+			return;
+		}
+		out.beginObject();
+		out.name("genes");
+		if (out instanceof BinarySnapshotWriter)
+			((BinarySnapshotWriter) out).value(dna.getGenesAsBytes());
+		else
+			out.value(dna.toString());
+		out.name("id").value(dna.getId());
+		out.name("parentId").value(dna.getParentId());
+		out.endObject();
 	}
 
 	@Override
-	public DNA deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
-		JsonObject jsonObject = json.getAsJsonObject();
-		String genes = jsonObject.get("genes").getAsString();
-		long id = jsonObject.get("id").getAsLong();
-		long parentId = jsonObject.get("parentId").getAsLong();
-		return new DNA(id, genes, parentId);
+	public DNA read(JsonReader in) throws IOException {
+		if (in instanceof BinarySnapshotReader && ((BinarySnapshotReader) in).hasSharedObject())
+			return (DNA) ((BinarySnapshotReader) in).nextSharedObject();
+		String document = null;
+		byte[] genes = null;
+		Long id = null;
+		Long parentId = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "genes":
+				if (in instanceof BinarySnapshotReader)
+					genes = ((BinarySnapshotReader) in).nextBytes();
+				else
+					document = in.nextString();
+				break;
+			case "id":
+				id = in.nextLong();
+				break;
+			case "parentId":
+				parentId = in.nextLong();
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		if ((document == null && genes == null) || id == null || parentId == null)
+			throw new JsonParseException("Incomplete DNA");
+		if (genes != null)
+			return new DNA(id, genes, parentId);
+		return new DNA(id, document, parentId);
 	}
 }
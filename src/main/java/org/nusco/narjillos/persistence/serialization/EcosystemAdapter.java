@@ -1,76 +1,248 @@
 package org.nusco.narjillos.persistence.serialization;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import org.nusco.narjillos.core.chemistry.Atmosphere;
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.core.things.Thing;
 import org.nusco.narjillos.experiment.environment.FoodPellet;
 import org.nusco.narjillos.creature.Egg;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.experiment.environment.Ecosystem;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-
-class EcosystemAdapter implements JsonSerializer<Ecosystem>, JsonDeserializer<Ecosystem> {
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streams the ecosystem one thing at a time, so that it never builds the JSON
+ * tree of the whole ecosystem in memory. The "size" always comes first, after
+ * the "configuration" (the parameters that differ from config.yaml, if any).
+ * <p>
+ * Narjillos are the bulk of the ecosystem, and the slowest part to load. In
+ * binary snapshots, each narjillo is an independent segment, so that loading
+ * can build the narjillos in parallel (and then insert them in their original
+ * order). The segments come after the names and strings they share.
+ */
+class EcosystemAdapter implements TypeAdapterFactory {
 
 	@Override
-	public JsonElement serialize(Ecosystem ecosystem, Type type, JsonSerializationContext context) {
-		JsonObject jsonObject = new JsonObject();
-		jsonObject.addProperty("size", ecosystem.getSize());
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (type.getRawType() != Ecosystem.class)
+			return null;
+		return (TypeAdapter<T>) new EcosystemTypeAdapter(gson);
+	}
 
-		final JsonElement foodPellets = context.serialize(ecosystem.getAll(FoodPellet.LABEL));
-		jsonObject.add("foodPellets", foodPellets);
+	private static class EcosystemTypeAdapter extends TypeAdapter<Ecosystem> {
 
-		final JsonElement eggs = context.serialize(ecosystem.getAll(Egg.LABEL));
-		jsonObject.add("eggs", eggs);
+		private final Gson gson;
 
-		final JsonElement narjillos = context.serialize(ecosystem.getAll(Narjillo.LABEL));
-		jsonObject.add("narjillos", narjillos);
+		EcosystemTypeAdapter(Gson gson) {
+			this.gson = gson;
+		}
 
-		final JsonElement atmosphere = context.serialize(ecosystem.getAtmosphere());
-		jsonObject.add("atmosphere", atmosphere);
+		@Override
+		public void write(JsonWriter out, Ecosystem ecosystem) throws IOException {
+			if (ecosystem == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeConfiguration(out, ecosystem.getConfiguration());
+			out.name("size").value(ecosystem.getSize());
+			out.name("foodPellets");
+			writeThings(out, ecosystem.getAll(FoodPellet.LABEL));
+			out.name("eggs");
+			writeThings(out, ecosystem.getAll(Egg.LABEL));
+			out.name("narjillos");
+			if (out instanceof BinarySnapshotWriter)
+				writeSegments((BinarySnapshotWriter) out, ecosystem.getAll(Narjillo.LABEL));
+			else
+				writeThings(out, ecosystem.getAll(Narjillo.LABEL));
+			out.name("atmosphere");
+			gson.getAdapter(Atmosphere.class).write(out, ecosystem.getAtmosphere());
+			out.endObject();
+		}
 
-		return jsonObject;
-	}
+		@Override
+		public Ecosystem read(JsonReader in) throws IOException {
+			Configuration configuration = Configuration.DEFAULT;
+			Ecosystem result = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				if (name.equals("configuration") && result == null) {
+					configuration = readConfiguration(in);
+					continue;
+				}
+				if (name.equals("size")) {
+					result = new Ecosystem(in.nextLong(), false, null, configuration);
+					continue;
+				}
+				if (result == null)
+					throw new JsonParseException("Expected the ecosystem's size before its " + name);
+				switch (name) {
+				case "foodPellets":
+					readThings(in, FoodPellet.class, result);
+					break;
+				case "eggs":
+					readThings(in, Egg.class, result);
+					break;
+				case "narjillos":
+					if (in instanceof BinarySnapshotReader)
+						readSegments((BinarySnapshotReader) in, Narjillo.class, result);
+					else
+						readThings(in, Narjillo.class, result);
+					break;
+				case "atmosphere":
+					result.setAtmosphere(gson.getAdapter(Atmosphere.class).read(in));
+					break;
+				case "configuration":
+					throw new JsonParseException("Expected the ecosystem's configuration before its size");
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return result;
+		}
 
-	@Override
-	public Ecosystem deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
-		JsonObject jsonObject = json.getAsJsonObject();
+		// Ecosystems with the parameters in config.yaml don't have a
+		// configuration at all.
+		private void writeConfiguration(JsonWriter out, Configuration configuration) throws IOException {
+			List<String> parameters = new ArrayList<>();
+			for (String parameter : configuration.getParameterNames())
+				if (configuration.getParameter(parameter) != Configuration.DEFAULT.getParameter(parameter))
+					parameters.add(parameter);
+			if (parameters.isEmpty())
+				return;
+
+			out.name("configuration");
+			out.beginObject();
+			for (String parameter : parameters)
+				out.name(parameter).value(configuration.getParameter(parameter));
+			out.endObject();
+		}
 
-		long size = jsonObject.get("size").getAsLong();
-		Ecosystem result = new Ecosystem(size, false);
+		private Configuration readConfiguration(JsonReader in) throws IOException {
+			Configuration result = Configuration.DEFAULT;
+			in.beginObject();
+			while (in.hasNext())
+				result = result.with(in.nextName(), in.nextDouble());
+			in.endObject();
+			return result;
+		}
+
+		// Serializes each thing as its own class (not as a Thing, which would
+		// add a type tag).
+		@SuppressWarnings("unchecked")
+		private void writeThings(JsonWriter out, List<Thing> things) throws IOException {
+			out.beginArray();
+			for (Thing thing : things)
+				((TypeAdapter<Thing>) gson.getAdapter(thing.getClass())).write(out, thing);
+			out.endArray();
+		}
 
-		JsonArray foodPellets = jsonObject.get("foodPellets").getAsJsonArray();
-		for (int i = 0; i < foodPellets.size(); i++) {
-			JsonElement jsonFoodPellet = foodPellets.get(i);
-			FoodPellet foodPellet = context.deserialize(jsonFoodPellet, FoodPellet.class);
-			result.insert(foodPellet);
+		@SuppressWarnings("unchecked")
+		private void writeSegments(BinarySnapshotWriter out, List<Thing> things) throws IOException {
+			BinarySnapshotWriter segmentWriter = out.newSegmentWriter();
+			List<byte[]> segments = new ArrayList<>();
+			for (Thing thing : things) {
+				((TypeAdapter<Thing>) gson.getAdapter(thing.getClass())).write(segmentWriter, thing);
+				segments.add(segmentWriter.takeSegment());
+			}
+
+			out.beginObject();
+			out.name("names");
+			writeStrings(out, segmentWriter.getNames());
+			out.name("strings");
+			writeStrings(out, segmentWriter.getSharedStrings());
+			out.name("segments");
+			out.beginArray();
+			for (byte[] segment : segments)
+				out.value(segment);
+			out.endArray();
+			out.endObject();
 		}
 
-		JsonArray eggs = jsonObject.get("eggs").getAsJsonArray();
-		for (int i = 0; i < eggs.size(); i++) {
-			JsonElement jsonEgg = eggs.get(i);
-			Egg egg = context.deserialize(jsonEgg, Egg.class);
-			result.insert(egg);
+		private void writeStrings(JsonWriter out, List<String> strings) throws IOException {
+			out.beginArray();
+			for (String string : strings)
+				out.value(string);
+			out.endArray();
 		}
 
-		JsonArray narjillos = jsonObject.get("narjillos").getAsJsonArray();
-		for (int i = 0; i < narjillos.size(); i++) {
-			JsonElement jsonNarjllo = narjillos.get(i);
-			Narjillo narjillo = context.deserialize(jsonNarjllo, Narjillo.class);
-			result.insert(narjillo);
+		private void readThings(JsonReader in, Class<? extends Thing> thingClass, Ecosystem ecosystem) throws IOException {
+			TypeAdapter<? extends Thing> adapter = gson.getAdapter(thingClass);
+			List<Thing> things = new ArrayList<>();
+			in.beginArray();
+			while (in.hasNext())
+				things.add(adapter.read(in));
+			in.endArray();
+			ecosystem.insertAll(things);
 		}
 
-		JsonElement jsonAtmosphere = jsonObject.get("atmosphere");
-		Atmosphere atmosphere = context.deserialize(jsonAtmosphere, Atmosphere.class);
-		result.setAtmosphere(atmosphere);
+		// Reads the segments first, and then builds the things in parallel.
+		// (Older snapshots don't have segments.)
+		private void readSegments(BinarySnapshotReader in, Class<? extends Thing> thingClass, Ecosystem ecosystem) throws IOException {
+			if (in.peek() == JsonToken.BEGIN_ARRAY) {
+				readThings(in, thingClass, ecosystem);
+				return;
+			}
+
+			List<String> names = new ArrayList<>();
+			List<String> strings = new ArrayList<>();
+			List<byte[]> segments = new ArrayList<>();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "names":
+					readStrings(in, names);
+					break;
+				case "strings":
+					readStrings(in, strings);
+					break;
+				case "segments":
+					in.beginArray();
+					while (in.hasNext())
+						segments.add(in.nextBytes());
+					in.endArray();
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+
+			TypeAdapter<? extends Thing> adapter = gson.getAdapter(thingClass);
+			List<Thing> things = segments.parallelStream()
+				.map(segment -> readSegment(in.newSegmentReader(segment, names, strings), adapter))
+				.collect(Collectors.toList());
+			ecosystem.insertAll(things);
+		}
 
-		return result;
+		private void readStrings(JsonReader in, List<String> result) throws IOException {
+			in.beginArray();
+			while (in.hasNext())
+				result.add(in.nextString());
+			in.endArray();
+		}
+
+		private Thing readSegment(BinarySnapshotReader segmentReader, TypeAdapter<? extends Thing> adapter) {
+			try {
+				return adapter.read(segmentReader);
+			} catch (IOException e) {
+				throw new JsonParseException(e);
+			}
+		}
 	}
 }
@@ -0,0 +1,37 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.nusco.narjillos.core.chemistry.Element;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes the atmosphere's levels the same way as Gson's own map adapter. Gson
+ * reads maps through an internal hook that only works with its own
+ * JsonReader, so this adapter is needed for binary snapshots.
+ */
+class ElementLevelsAdapter extends TypeAdapter<Map<Element, Double>> {
+
+	@Override
+	public void write(JsonWriter out, Map<Element, Double> levels) throws IOException {
+		out.beginObject();
+		for (Map.Entry<Element, Double> entry : levels.entrySet())
+			out.name(entry.getKey().name()).value(entry.getValue());
+		out.endObject();
+	}
+
+	@Override
+	public Map<Element, Double> read(JsonReader in) throws IOException {
+		Map<Element, Double> result = new LinkedHashMap<>();
+		in.beginObject();
+		while (in.hasNext())
+			result.put(Element.valueOf(in.nextName()), in.nextDouble());
+		in.endObject();
+		return result;
+	}
+}
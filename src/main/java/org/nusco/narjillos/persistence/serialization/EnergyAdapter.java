@@ -7,6 +7,10 @@ import com.google.gson.JsonParseException;
 
 class EnergyAdapter extends HierarchyAdapter<Energy> {
 
+	EnergyAdapter() {
+		super(Energy.class);
+	}
+
 	@Override
 	protected String getTypeTag(Energy obj) {
 		if (obj instanceof LifeFormEnergy)
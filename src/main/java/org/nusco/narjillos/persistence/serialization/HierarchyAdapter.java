@@ -1,16 +1,30 @@
 package org.nusco.narjillos.persistence.serialization;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
-abstract class HierarchyAdapter<T> implements JsonSerializer<T>, JsonDeserializer<T> {
+/**
+ * Writes an object of one of the base types as {"type": ..., "data": ...},
+ * where "data" is the object serialized as its concrete class. Streams the
+ * data instead of building it as a JSON tree, so that deeply nested objects
+ * (like the organs in a body) are only visited once.
+ */
+abstract class HierarchyAdapter<T> implements TypeAdapterFactory {
+
+	private final List<Class<?>> baseTypes;
+
+	protected HierarchyAdapter(Class<?>... baseTypes) {
+		this.baseTypes = Arrays.asList(baseTypes);
+	}
 
 	protected abstract String getTypeTag(T obj);
 
@@ -23,21 +37,11 @@ abstract class HierarchyAdapter<T> implements JsonSerializer<T>, JsonDeserialize
 	}
 
 	@Override
-	public JsonElement serialize(T obj, Type type, JsonSerializationContext context) {
-		preSerialize(obj);
-		JsonObject result = new JsonObject();
-		result.addProperty("type", getTypeTag(obj));
-		result.add("data", context.serialize(obj));
-		return result;
-	}
-
-	@Override
-	public T deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
-		JsonObject jsonObject = json.getAsJsonObject();
-		String specificType = jsonObject.get("type").getAsString();
-		T result = context.deserialize(jsonObject.get("data"), getClass(specificType));
-		postDeserialize(result);
-		return result;
+	@SuppressWarnings("unchecked")
+	public <U> TypeAdapter<U> create(Gson gson, TypeToken<U> type) {
+		if (!baseTypes.contains(type.getRawType()))
+			return null;
+		return (TypeAdapter<U>) new HierarchyTypeAdapter(gson).nullSafe();
 	}
 
 	protected Class<?> getClassForName(String className) throws JsonParseException {
@@ -47,4 +51,49 @@ abstract class HierarchyAdapter<T> implements JsonSerializer<T>, JsonDeserialize
 			throw new JsonParseException(e.getMessage());
 		}
 	}
-}
\ No newline at end of file
+
+	private class HierarchyTypeAdapter extends TypeAdapter<T> {
+
+		private final Gson gson;
+
+		HierarchyTypeAdapter(Gson gson) {
+			this.gson = gson;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void write(JsonWriter out, T obj) throws IOException {
+			preSerialize(obj);
+			out.beginObject();
+			out.name("type").value(getTypeTag(obj));
+			out.name("data");
+			((TypeAdapter<T>) gson.getAdapter(obj.getClass())).write(out, obj);
+			out.endObject();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T read(JsonReader in) throws IOException {
+			T result = null;
+			Class<?> specificClass = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "type":
+					specificClass = HierarchyAdapter.this.getClass(in.nextString());
+					break;
+				case "data":
+					if (specificClass == null)
+						throw new JsonParseException("Expected the type before the data");
+					result = (T) gson.getAdapter(specificClass).read(in);
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			postDeserialize(result);
+			return result;
+		}
+	}
+}
@@ -1,32 +1,34 @@
 package org.nusco.narjillos.persistence.serialization;
 
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+
+import org.nusco.narjillos.core.chemistry.Element;
 import org.nusco.narjillos.core.geometry.Vector;
-import org.nusco.narjillos.core.things.Energy;
-import org.nusco.narjillos.core.things.Thing;
-import org.nusco.narjillos.creature.body.ConnectedOrgan;
 import org.nusco.narjillos.creature.body.Fiber;
-import org.nusco.narjillos.creature.body.MovingOrgan;
-import org.nusco.narjillos.creature.body.Organ;
-import org.nusco.narjillos.creature.body.pns.Nerve;
-import org.nusco.narjillos.experiment.environment.Ecosystem;
 import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.SpeciesTracker;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 public class JSON {
 
 	private static final Gson gson = new GsonBuilder()
-		.registerTypeAdapter(Vector.class, new VectorAdapter())
-		.registerTypeAdapter(DNA.class, new DNAAdapter())
-		.registerTypeAdapter(Nerve.class, new NerveAdapter())
-		.registerTypeAdapter(Fiber.class, new FiberAdapter())
-		.registerTypeAdapter(Energy.class, new EnergyAdapter())
-		.registerTypeAdapter(Organ.class, new OrganAdapter())
-		.registerTypeAdapter(ConnectedOrgan.class, new OrganAdapter())
-		.registerTypeAdapter(MovingOrgan.class, new OrganAdapter())
-		.registerTypeAdapter(Thing.class, new ThingAdapter())
-		.registerTypeAdapter(Ecosystem.class, new EcosystemAdapter())
+		.registerTypeAdapter(Vector.class, new VectorAdapter().nullSafe())
+		.registerTypeAdapter(DNA.class, new DNAAdapter().nullSafe())
+		.registerTypeAdapter(Fiber.class, new FiberAdapter().nullSafe())
+		.registerTypeAdapter(SpeciesTracker.class, new SpeciesTrackerAdapter().nullSafe())
+		.registerTypeAdapter(new TypeToken<Map<Element, Double>>() {}.getType(), new ElementLevelsAdapter().nullSafe())
+		.registerTypeAdapterFactory(new NerveAdapter())
+		.registerTypeAdapterFactory(new EnergyAdapter())
+		.registerTypeAdapterFactory(new OrganAdapter())
+		.registerTypeAdapterFactory(new ThingAdapter())
+		.registerTypeAdapterFactory(new EcosystemAdapter())
 		.enableComplexMapKeySerialization()
 		.create();
 
@@ -37,4 +39,24 @@ public class JSON {
 	public static <T> T fromJson(String json, Class<T> clazz) {
 		return gson.fromJson(json, clazz);
 	}
+
+	/**
+	 * Like toJson(), but writes the JSON as it goes, instead of building it
+	 * all in memory.
+	 */
+	public static void toJson(Object obj, Class<?> clazz, Writer writer) {
+		gson.toJson(obj, clazz, writer);
+	}
+
+	public static <T> T fromJson(Reader reader, Class<T> clazz) {
+		return gson.fromJson(reader, clazz);
+	}
+
+	static void toJson(Object obj, Class<?> clazz, JsonWriter writer) {
+		gson.toJson(obj, clazz, writer);
+	}
+
+	static <T> T fromJson(JsonReader reader, Class<T> clazz) {
+		return gson.fromJson(reader, clazz);
+	}
 }
@@ -8,6 +8,10 @@ class NerveAdapter extends HierarchyAdapter<Nerve> {
 
 	private static final String NERVE_PACKAGE = Nerve.class.getPackage().getName();
 
+	NerveAdapter() {
+		super(Nerve.class);
+	}
+
 	@Override
 	protected String getTypeTag(Nerve nerve) {
 		return nerve.getClass().getSimpleName().split("Nerve")[0];
@@ -11,6 +11,10 @@ class OrganAdapter extends HierarchyAdapter<MovingOrgan> {
 
 	private static final String BODY_PACKAGE = Organ.class.getPackage().getName();
 
+	OrganAdapter() {
+		super(Organ.class, ConnectedOrgan.class, MovingOrgan.class);
+	}
+
 	@Override
 	protected String getTypeTag(MovingOrgan obj) {
 		if (obj instanceof Head)
@@ -0,0 +1,144 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Writes and reads objects as JSON or binary snapshots. A binary snapshot
+ * starts with a header: the magic bytes "NJB", a version byte and a flags
+ * byte. The rest is the stream of tokens written by BinarySnapshotWriter,
+ * optionally deflated.
+ */
+public class Snapshot {
+
+	private static final byte[] MAGIC = { 'N', 'J', 'B' };
+
+	// Version 2 writes narjillos as segments (see EcosystemAdapter)
+	private static final int VERSION = 2;
+
+	private static final int OLDEST_READABLE_VERSION = 1;
+
+	private static final int COMPRESSED = 1;
+
+	private static final int HEADER_SIZE = MAGIC.length + 2;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Writes the object to the stream. Doesn't close the stream.
+	 */
+	public static void write(Object obj, Class<?> clazz, OutputStream out, SnapshotFormat format) throws IOException {
+		if (format == SnapshotFormat.JSON) {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			JSON.toJson(obj, clazz, writer);
+			writer.flush();
+			return;
+		}
+
+		boolean compressed = (format == SnapshotFormat.COMPRESSED_BINARY);
+		writeHeader(out, compressed);
+		if (!compressed) {
+			writeBinary(obj, clazz, out);
+			return;
+		}
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+			writeBinary(obj, clazz, deflaterOut);
+			deflaterOut.finish();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Writes a snapshot in the given format. The conversion from an
+	 * uncompressed binary snapshot to any binary format is fast, because it
+	 * doesn't need to deserialize the snapshot.
+	 */
+	public static void convert(byte[] snapshot, Class<?> clazz, OutputStream out, SnapshotFormat format) throws IOException {
+		if (!isUncompressedBinary(snapshot) || format == SnapshotFormat.JSON) {
+			write(read(new ByteArrayInputStream(snapshot), clazz), clazz, out, format);
+			return;
+		}
+		if (format == SnapshotFormat.BINARY) {
+			out.write(snapshot);
+			return;
+		}
+		writeHeader(out, true);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+			deflaterOut.write(snapshot, HEADER_SIZE, snapshot.length - HEADER_SIZE);
+			deflaterOut.finish();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Reads an object in any format from the stream. Doesn't close the
+	 * stream.
+	 */
+	public static <T> T read(InputStream in, Class<T> clazz) throws IOException {
+		BufferedInputStream bufferedIn = new BufferedInputStream(in, BUFFER_SIZE);
+		bufferedIn.mark(MAGIC.length);
+		if (!hasMagic(bufferedIn)) {
+			bufferedIn.reset();
+			return JSON.fromJson(new InputStreamReader(bufferedIn, StandardCharsets.UTF_8), clazz);
+		}
+
+		int version = bufferedIn.read();
+		if (version < OLDEST_READABLE_VERSION || version > VERSION)
+			throw new IOException("Unsupported binary snapshot version: " + version);
+		int flags = bufferedIn.read();
+		if ((flags & COMPRESSED) != 0) {
+			Inflater inflater = new Inflater();
+			try {
+				return JSON.fromJson(new BinarySnapshotReader(new InflaterInputStream(bufferedIn, inflater, BUFFER_SIZE)), clazz);
+			} finally {
+				inflater.end();
+			}
+		}
+		return JSON.fromJson(new BinarySnapshotReader(bufferedIn), clazz);
+	}
+
+	private static void writeHeader(OutputStream out, boolean compressed) throws IOException {
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.write(compressed ? COMPRESSED : 0);
+	}
+
+	private static boolean isUncompressedBinary(byte[] snapshot) {
+		if (snapshot.length < HEADER_SIZE)
+			return false;
+		for (int i = 0; i < MAGIC.length; i++)
+			if (snapshot[i] != MAGIC[i])
+				return false;
+		return snapshot[MAGIC.length] == VERSION && (snapshot[MAGIC.length + 1] & COMPRESSED) == 0;
+	}
+
+	private static void writeBinary(Object obj, Class<?> clazz, OutputStream out) throws IOException {
+		BinarySnapshotWriter writer = new BinarySnapshotWriter(out);
+		JSON.toJson(obj, clazz, writer);
+		writer.flush();
+	}
+
+	private static boolean hasMagic(InputStream in) throws IOException {
+		for (byte b : MAGIC)
+			if (in.read() != b)
+				return false;
+		return true;
+	}
+}
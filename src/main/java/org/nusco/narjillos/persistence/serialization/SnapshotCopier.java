@@ -0,0 +1,44 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Makes copies of an object through an in-memory binary snapshot. The copies
+ * share the immutable parts of the original (DNA and fibers) instead of
+ * copying them. You can make copies from many threads at once.
+ */
+public class SnapshotCopier<T> {
+
+	private final Class<T> clazz;
+
+	private final byte[] snapshot;
+
+	private final List<Object> sharedObjects;
+
+	/**
+	 * Takes the snapshot, so the original can change afterwards.
+	 */
+	public SnapshotCopier(T original, Class<T> clazz) {
+		this.clazz = clazz;
+		List<Object> sharedObjects = new ArrayList<>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			BinarySnapshotWriter writer = new BinarySnapshotWriter(out, sharedObjects);
+			JSON.toJson(original, clazz, writer);
+			writer.flush();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		this.snapshot = out.toByteArray();
+		this.sharedObjects = Collections.unmodifiableList(sharedObjects);
+	}
+
+	public T copy() {
+		return JSON.fromJson(new BinarySnapshotReader(new ByteArrayInputStream(snapshot), sharedObjects), clazz);
+	}
+}
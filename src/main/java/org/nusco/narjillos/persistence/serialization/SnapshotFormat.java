@@ -0,0 +1,10 @@
+package org.nusco.narjillos.persistence.serialization;
+
+/**
+ * The ways to write a snapshot. Snapshots are read in any format.
+ */
+public enum SnapshotFormat {
+	JSON,
+	BINARY,
+	COMPRESSED_BINARY
+}
@@ -0,0 +1,117 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.SpeciesTracker;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes each species as its founder and the ids and SimHashes of its live
+ * members, from the oldest species to the youngest. The founders can be
+ * dead (and even pruned from the DNA log), so they're written in full.
+ */
+class SpeciesTrackerAdapter extends TypeAdapter<SpeciesTracker> {
+
+	private final DNAAdapter dnaAdapter = new DNAAdapter();
+
+	@Override
+	public void write(JsonWriter out, SpeciesTracker speciesTracker) throws IOException {
+		Map<Long, List<SpeciesTracker.Member>> speciesToMembers = new LinkedHashMap<>();
+		List<SpeciesTracker.Species> species = speciesTracker.getSpecies();
+		for (SpeciesTracker.Species oneSpecies : species)
+			speciesToMembers.put(oneSpecies.getId(), new ArrayList<>());
+		for (SpeciesTracker.Member member : speciesTracker.getMembers())
+			speciesToMembers.get(member.getSpeciesId()).add(member);
+
+		out.beginObject();
+		out.name("maxDistance").value(speciesTracker.getMaxDistance());
+		out.name("species");
+		out.beginArray();
+		for (SpeciesTracker.Species oneSpecies : species) {
+			List<SpeciesTracker.Member> members = speciesToMembers.get(oneSpecies.getId());
+			out.beginObject();
+			out.name("founder");
+			dnaAdapter.write(out, oneSpecies.getFounder());
+			out.name("members");
+			out.beginArray();
+			for (SpeciesTracker.Member member : members)
+				out.value(member.getDnaId());
+			out.endArray();
+			out.name("simHashes");
+			out.beginArray();
+			for (SpeciesTracker.Member member : members)
+				out.value(member.getSimHash());
+			out.endArray();
+			out.endObject();
+		}
+		out.endArray();
+		out.endObject();
+	}
+
+	@Override
+	public SpeciesTracker read(JsonReader in) throws IOException {
+		SpeciesTracker result = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (name.equals("maxDistance")) {
+				result = new SpeciesTracker(in.nextInt());
+				continue;
+			}
+			if (result == null)
+				throw new JsonParseException("Expected the species tracker's maxDistance before its " + name);
+			if (name.equals("species")) {
+				in.beginArray();
+				while (in.hasNext())
+					readSpecies(in, result);
+				in.endArray();
+			} else {
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		return result;
+	}
+
+	private void readSpecies(JsonReader in, SpeciesTracker speciesTracker) throws IOException {
+		DNA founder = null;
+		List<Long> members = new ArrayList<>();
+		List<Integer> simHashes = new ArrayList<>();
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "founder":
+				founder = dnaAdapter.read(in);
+				break;
+			case "members":
+				in.beginArray();
+				while (in.hasNext())
+					members.add(in.nextLong());
+				in.endArray();
+				break;
+			case "simHashes":
+				in.beginArray();
+				while (in.hasNext())
+					simHashes.add(in.nextInt());
+				in.endArray();
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		if (founder == null || members.size() != simHashes.size())
+			throw new JsonParseException("Incomplete species");
+		for (int i = 0; i < members.size(); i++)
+			speciesTracker.restore(founder, members.get(i), simHashes.get(i));
+	}
+}
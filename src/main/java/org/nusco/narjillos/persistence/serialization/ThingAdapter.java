@@ -9,6 +9,10 @@ import com.google.gson.JsonParseException;
 
 class ThingAdapter extends HierarchyAdapter<Thing> {
 
+	ThingAdapter() {
+		super(Thing.class);
+	}
+
 	@Override
 	protected String getTypeTag(Thing obj) {
 		return obj.getLabel();
@@ -1,26 +1,42 @@
 package org.nusco.narjillos.persistence.serialization;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 
 import org.nusco.narjillos.core.geometry.Vector;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
-class VectorAdapter implements JsonSerializer<Vector>, JsonDeserializer<Vector> {
+/**
+ * Writes vectors as "(x, y)" strings in JSON, and as pairs of raw doubles in
+ * binary snapshots. Reads both.
+ */
+class VectorAdapter extends TypeAdapter<Vector> {
 
 	@Override
-	public JsonElement serialize(Vector vector, Type type, JsonSerializationContext context) {
-		return context.serialize("(" + vector.x + ", " + vector.y + ")", String.class);
+	public void write(JsonWriter out, Vector vector) throws IOException {
+		if (out instanceof BinarySnapshotWriter) {
+			out.beginArray();
+			out.value(vector.x);
+			out.value(vector.y);
+			out.endArray();
+			return;
+		}
+		out.value("(" + vector.x + ", " + vector.y + ")");
 	}
 
 	@Override
-	public Vector deserialize(JsonElement json, Type type, JsonDeserializationContext context) throws JsonParseException {
-		String vectorDescription = context.deserialize(json, String.class);
+	public Vector read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.BEGIN_ARRAY) {
+			in.beginArray();
+			double x = in.nextDouble();
+			double y = in.nextDouble();
+			in.endArray();
+			return Vector.cartesian(x, y);
+		}
+		String vectorDescription = in.nextString();
 		String[] cartesianCoordinates = vectorDescription.replace("(", "").replace(")", "").split(", ");
 		Double x = Double.parseDouble(cartesianCoordinates[0]);
 		Double y = Double.parseDouble(cartesianCoordinates[1]);
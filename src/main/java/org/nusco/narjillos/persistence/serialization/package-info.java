@@ -1,5 +1,5 @@
 /**
- * Serialization/deserialization to JSON.
+ * Serialization/deserialization to JSON and binary snapshots.
  */
 package org.nusco.narjillos.persistence.serialization;
 
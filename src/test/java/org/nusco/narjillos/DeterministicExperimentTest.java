@@ -146,6 +146,7 @@ public class DeterministicExperimentTest {
 
 		// Did it work?
 		assertEquals(json1, json2);
+		assertEquals(experiment1.getNumberOfSpecies(), experiment2.getNumberOfSpecies());
 	}
 
 	private static void maybeShowProgress(boolean showProgress, int cycle, int totalCycles) {
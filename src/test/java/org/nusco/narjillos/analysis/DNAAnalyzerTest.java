@@ -3,6 +3,7 @@ package org.nusco.narjillos.analysis;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -35,6 +36,18 @@ public class DNAAnalyzerTest {
 		assertNull(dnaAnalyzer.getMostSuccessfulDna());
 	}
 
+	@Test
+	public void getsSimilarLiveDNA() {
+		DNA dna1 = new DNA(1, "{0_0_0}");
+		DNA dna2 = new DNA(2, "{0_0_1}");
+		DNA dna3 = new DNA(3, "{255_255_255}");
+		dnaLog.save(dna1);
+		dnaLog.save(dna2);
+		dnaLog.save(dna3);
+
+		assertEquals(Arrays.asList(dna2), dnaAnalyzer.getSimilarLiveDna(dna1, 2));
+	}
+
 	@Test
 	public void getsAGermline() {
 		NumGen numGen = new NumGen(123);
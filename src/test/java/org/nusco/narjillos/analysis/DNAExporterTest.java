@@ -58,4 +58,28 @@ public class DNAExporterTest {
 			"end;";
 		assertEquals(expected, dnaExporter.toNEXUSFormat());
 	}
+
+	@Test
+	public void keepsTheSavedParentsOfDnaWithMissingParentsInCSVTrees() {
+		dnaLog.remove(new long[] { 1 });
+		DNAExporter dnaExporter = new DNAExporter(new DNAAnalyzer(dnaLog));
+
+		String expected = "1;2\n"
+			+ "1;3\n"
+			+ "2;4\n"
+			+ "0;5\n"
+			+ "5;6\n";
+		assertEquals(expected, dnaExporter.toCSVFormat());
+	}
+
+	@Test
+	public void hangsDnaWithMissingParentsFromTheRootInNEXUSTrees() {
+		dnaLog.remove(new long[] { 1 });
+		DNAExporter dnaExporter = new DNAExporter(new DNAAnalyzer(dnaLog));
+
+		String expected = "begin trees;\n" +
+			"tree genotypes = ((4)2,3,(6)5)0;\n" +
+			"end;";
+		assertEquals(expected, dnaExporter.toNEXUSFormat());
+	}
 }
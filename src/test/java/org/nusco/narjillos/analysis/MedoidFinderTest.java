@@ -0,0 +1,83 @@
+package org.nusco.narjillos.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.genomics.DNA;
+
+public class MedoidFinderTest {
+
+	private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+	private final MedoidFinder medoidFinder = new MedoidFinder(pool);
+
+	@AfterClass
+	public static void shutDownPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void findsTheSameMedoidAsAFullScan() {
+		List<DNA> pool = createPool(60);
+
+		assertEquals(findMedoidByFullScan(pool), medoidFinder.findMedoid(pool));
+	}
+
+	@Test
+	public void findsTheFirstMedoidIfThereAreMany() {
+		List<DNA> pool = new ArrayList<>();
+		pool.add(new DNA(1, "{1_2_3}"));
+		pool.add(new DNA(2, "{1_2_3}"));
+
+		assertEquals(1, medoidFinder.findMedoid(pool).getId());
+		assertEquals(1, medoidFinder.findApproximateMedoid(pool, 2).getId());
+	}
+
+	@Test
+	public void findsTheExactMedoidIfAllDNAsAreCandidates() {
+		List<DNA> pool = createPool(60);
+
+		assertEquals(findMedoidByFullScan(pool), medoidFinder.findApproximateMedoid(pool, pool.size()));
+	}
+
+	@Test
+	public void returnsNullForAnEmptyPool() {
+		assertNull(medoidFinder.findMedoid(Collections.emptyList()));
+		assertNull(medoidFinder.findApproximateMedoid(Collections.emptyList(), 10));
+	}
+
+	private List<DNA> createPool(int size) {
+		NumGen numGen = new NumGen(1234);
+		List<DNA> result = new ArrayList<>();
+		result.add(DNA.random(1, numGen));
+		for (int i = 1; i < size; i++) {
+			DNA parent = result.get(Math.abs(numGen.nextInt()) % result.size());
+			result.add(parent.mutate(i + 1, numGen));
+		}
+		return result;
+	}
+
+	private DNA findMedoidByFullScan(List<DNA> pool) {
+		DNA result = null;
+		int lowestTotalDistance = Integer.MAX_VALUE;
+		for (DNA dna : pool) {
+			int totalDistance = 0;
+			for (DNA other : pool)
+				if (!other.equals(dna))
+					totalDistance += dna.getLevenshteinDistanceFrom(other);
+			if (totalDistance < lowestTotalDistance) {
+				result = dna;
+				lowestTotalDistance = totalDistance;
+			}
+		}
+		return result;
+	}
+}
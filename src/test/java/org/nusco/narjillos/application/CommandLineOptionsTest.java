@@ -50,6 +50,13 @@ public class CommandLineOptionsTest {
 		assertTrue(new CommandLineOptions("--save").isPersistent());
 	}
 
+	@Test
+	public void acceptsALevelOfDetailOption() {
+		assertFalse(new CommandLineOptions().isLevelOfDetail());
+		assertTrue(new CommandLineOptions("-l").isLevelOfDetail());
+		assertTrue(new CommandLineOptions("--lod").isLevelOfDetail());
+	}
+
 	@Test
 	public void acceptsAnExperimentSeed() {
 		CommandLineOptions options = new CommandLineOptions("--seed", "1234");
@@ -0,0 +1,34 @@
+package org.nusco.narjillos.core.configuration;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ConfigurationTest {
+
+	@Test
+	public void hasTheValuesInConfigYamlByDefault() {
+		assertEquals(Configuration.ECOSYSTEM_FOOD_DENSITY_PER_BLOCK, Configuration.DEFAULT.getFoodDensityPerBlock(), 0.0);
+		assertEquals(Configuration.ECOSYSTEM_CATALYST_LEVEL, Configuration.DEFAULT.getCatalystLevel());
+		assertEquals(Configuration.PHYSICS_COLLISION_DISTANCE, Configuration.DEFAULT.getCollisionDistance(), 0.0);
+	}
+
+	@Test
+	public void returnsACopyWithADifferentValue() {
+		Configuration configuration = Configuration.DEFAULT.with("ecosystem:catalyst_level", 42);
+
+		assertEquals(42, configuration.getCatalystLevel());
+		assertEquals(42, configuration.getParameter("ecosystem:catalyst_level"), 0.0);
+		assertEquals(Configuration.ECOSYSTEM_CATALYST_LEVEL, Configuration.DEFAULT.getCatalystLevel());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void throwsAnExceptionOnUnknownParameters() {
+		Configuration.DEFAULT.with("ecosystem:no_such_parameter", 1);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void throwsAnExceptionOnFractionalValuesForIntegerParameters() {
+		Configuration.DEFAULT.with("ecosystem:catalyst_level", 1.5);
+	}
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 import org.nusco.narjillos.core.geometry.BoundingBox;
 import org.nusco.narjillos.core.geometry.Vector;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.contains;
@@ -79,6 +81,38 @@ public class SpaceGridTest {
 		assertThat(space.getThingsAtHashedLocation(1, 1), is(emptyCollectionOf(Thing.class)));
 	}
 
+	@Test
+	public void removesManyThingsAtOnceWithoutChangingTheOrderOfTheOthers() {
+		Thing thing1 = new TestThing(Vector.cartesian(1, 1));
+		Thing thing2 = new TestThing(Vector.cartesian(2, 2));
+		Thing thing3 = new TestThing(Vector.cartesian(1000, 1000));
+		Thing thing4 = new TestThing(Vector.cartesian(3, 3));
+
+		space.add(thing1);
+		space.add(thing2);
+		space.add(thing3);
+		space.add(thing4);
+		space.removeAll(Arrays.asList(thing3, thing1));
+
+		assertThat(space.getAll("thing"), contains(thing2, thing4));
+		assertThat(space.getAll(""), contains(thing2, thing4));
+		assertThat(space.getHashedLocationsOf(thing1).isPresent(), is(false));
+	}
+
+	@Test
+	public void returnsLiveViewsOfTheThings() {
+		List<Thing> things = space.getThings("thing");
+		Thing thing1 = new TestThing(Vector.cartesian(1, 1));
+		Thing thing2 = new TestThing(Vector.cartesian(2, 2));
+
+		space.add(thing1);
+		space.add(thing2);
+		space.remove(thing1);
+
+		assertThat(things, contains(thing2));
+		assertThat(space.getThings(""), contains(thing2));
+	}
+
 	@Test
 	public void thingsHaveHashedLocations() {
 		Thing punctiformThing = new TestThing(Vector.cartesian(-1000, 4000));
@@ -0,0 +1,39 @@
+package org.nusco.narjillos.core.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ChronometerTest {
+
+	private final Chronometer chronometer = new Chronometer();
+
+	@Test
+	public void countsTicks() {
+		for (int i = 0; i < 10; i++)
+			chronometer.tick();
+
+		assertEquals(10, chronometer.getTotalTicks());
+	}
+
+	@Test
+	public void hasNoTicksPerSecondBeforeTheFirstSecond() {
+		chronometer.tick();
+
+		assertEquals(0, chronometer.getTicksInLastSecond());
+	}
+
+	@Test
+	public void measuresTicksPerSecond() throws InterruptedException {
+		chronometer.getTicksInLastSecond();
+		for (int i = 0; i < 1000; i++)
+			chronometer.tick();
+		Thread.sleep(1100);
+
+		int ticksInLastSecond = chronometer.getTicksInLastSecond();
+
+		assertTrue(ticksInLastSecond > 0);
+		assertTrue(ticksInLastSecond <= 1000);
+	}
+}
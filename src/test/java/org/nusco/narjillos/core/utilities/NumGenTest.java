@@ -64,6 +64,19 @@ public class NumGenTest {
 		assertTrue(results.peek().startsWith("RanGen accessed from multiple threads"));
 	}
 
+	@Test
+	public void branchesWithADifferentSeedAndTheSameSerials() {
+		NumGen numGen = new NumGen(123);
+		numGen.nextSerial();
+		numGen.nextSerial();
+
+		NumGen branch = numGen.branch(456);
+
+		assertEquals(3, branch.nextSerial());
+		assertEquals(3, numGen.nextSerial());
+		assertAreInSynch(new NumGen(456), branch);
+	}
+
 	private void assertAreInSynch(NumGen numGen1, NumGen numGen2) {
 		for (int i = 0; i < 100; i++) {
 			assertEquals(numGen2.nextDouble(), numGen1.nextDouble(), 0.0);
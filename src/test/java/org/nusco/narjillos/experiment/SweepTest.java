@@ -0,0 +1,71 @@
+package org.nusco.narjillos.experiment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nusco.narjillos.core.configuration.Configuration;
+
+public class SweepTest {
+
+	@Test
+	public void runsOneExperimentPerSeed() {
+		Sweep sweep = new Sweep(Arrays.asList(1L, 2L, 3L), 50, "sweep_test", 2);
+
+		Map<Long, ExperimentHistoryEntry> results = sweep.run().get(0);
+
+		assertEquals(Arrays.asList(1L, 2L, 3L), Arrays.asList(results.keySet().toArray()));
+		for (ExperimentHistoryEntry entry : results.values())
+			assertEquals(50, entry.ticks);
+	}
+
+	@Test
+	public void experimentsWithTheSameSeedGiveTheSameResults() {
+		Sweep sweep = new Sweep(Arrays.asList(42L, 43L), 600, "sweep_test", 2);
+		Sweep otherSweep = new Sweep(Arrays.asList(42L), 600, "sweep_test", 1);
+
+		ExperimentHistoryEntry entry = sweep.run().get(0).get(42L);
+		ExperimentHistoryEntry otherEntry = otherSweep.run().get(0).get(42L);
+
+		assertEquals(entry.numberOfNarjillos, otherEntry.numberOfNarjillos);
+		assertEquals(entry.numberOfFoodPellets, otherEntry.numberOfFoodPellets);
+		assertEquals(entry.oxygen, otherEntry.oxygen, 0.0);
+		assertEquals(entry.hydrogen, otherEntry.hydrogen, 0.0);
+		assertEquals(entry.nitrogen, otherEntry.nitrogen, 0.0);
+	}
+
+	@Test
+	public void runsEachSeedWithEachConfiguration() {
+		Configuration moreFood = Configuration.DEFAULT.with("ecosystem:food_density_per_block", Configuration.ECOSYSTEM_FOOD_DENSITY_PER_BLOCK + 1);
+		Sweep sweep = new Sweep(Arrays.asList(1L, 2L), Arrays.asList(Configuration.DEFAULT, moreFood), 1, "sweep_test", 2);
+
+		List<Map<Long, ExperimentHistoryEntry>> results = sweep.run();
+
+		assertEquals(2, results.size());
+		assertEquals(Arrays.asList(1L, 2L), Arrays.asList(results.get(1).keySet().toArray()));
+		for (long seed : new long[] { 1, 2 })
+			assertTrue(results.get(1).get(seed).numberOfFoodPellets > results.get(0).get(seed).numberOfFoodPellets);
+	}
+
+	@Test
+	public void formatsResultsAsCsv() {
+		ExperimentHistoryEntry entry = new ExperimentHistoryEntry(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17);
+
+		assertTrue(Sweep.toCsvHeader().startsWith("Seed,Ticks,"));
+		assertEquals("99,1,2,3,4,5.0,6.0,7.0,8,9,10,11,12,13,14,15,16,17", Sweep.toCsvRow(99, entry));
+	}
+
+	@Test
+	public void formatsTheVariedParametersAsCsv() {
+		ExperimentHistoryEntry entry = new ExperimentHistoryEntry(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17);
+		Configuration configuration = Configuration.DEFAULT.with("ecosystem:catalyst_level", 42);
+		List<String> parameters = Arrays.asList("ecosystem:catalyst_level");
+
+		assertTrue(Sweep.toCsvHeader(parameters).startsWith("Seed,ecosystem:catalyst_level,Ticks,"));
+		assertEquals("99,42.0,1,2,3,4,5.0,6.0,7.0,8,9,10,11,12,13,14,15,16,17", Sweep.toCsvRow(99, configuration, parameters, entry));
+	}
+}
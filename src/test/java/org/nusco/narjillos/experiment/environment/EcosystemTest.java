@@ -1,18 +1,23 @@
 package org.nusco.narjillos.experiment.environment;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.nusco.narjillos.core.chemistry.Element;
+import org.nusco.narjillos.core.configuration.Configuration;
 import org.nusco.narjillos.core.geometry.Vector;
 import org.nusco.narjillos.core.things.Energy;
 import org.nusco.narjillos.core.things.Thing;
 import org.nusco.narjillos.core.utilities.NumGen;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.VolatileDNALog;
 
 public class EcosystemTest {
 
@@ -60,6 +65,16 @@ public class EcosystemTest {
 		assertEquals(2, ecosystem.getCount(Narjillo.LABEL));
 	}
 
+	@Test
+	public void countsNarjillosByChemicalCycle() {
+		long total = 0;
+		for (String chemicalCycle : Element.CYCLES)
+			total += ecosystem.getCountOfChemicalCycle(chemicalCycle);
+
+		assertEquals(2, total);
+		assertEquals(0, ecosystem.getCountOfChemicalCycle("unknown"));
+	}
+
 	@Test
 	public void returnsASubsetOfTheThings() {
 		List<Thing> things = ecosystem.getAll(FoodPellet.LABEL);
@@ -87,6 +102,74 @@ public class EcosystemTest {
 		assertTrue(eventFired[0]);
 	}
 
+	@Test
+	public void insertsManyThingsAtOnceWithoutSendingEvents() {
+		final boolean[] eventFired = { false };
+		ecosystem.addEventListener(new EnvironmentEventListener() {
+
+			@Override
+			public void added(Thing thing) {
+				eventFired[0] = true;
+			}
+
+			@Override
+			public void removed(Thing thing) {
+			}
+		});
+		FoodPellet food = new FoodPellet(Vector.cartesian(200, 200));
+		Narjillo narjillo = new Narjillo(DNA.random(2, numGen), Vector.cartesian(300, 300), 90, Energy.INFINITE);
+
+		ecosystem.insertAll(Arrays.asList(food, narjillo));
+
+		assertFalse(eventFired[0]);
+		assertEquals(4, ecosystem.getCount(FoodPellet.LABEL));
+		assertEquals(3, ecosystem.getCount(Narjillo.LABEL));
+		List<Thing> things = ecosystem.getAll("");
+		assertEquals(food, things.get(5));
+		assertEquals(narjillo, things.get(6));
+	}
+
+	@Test
+	public void removesEatenFoodOnTheNextTick() {
+		FoodPellet food = ecosystem.spawnFood(narjillo1.getPosition());
+		VolatileDNALog dnaLog = new VolatileDNALog();
+
+		ecosystem.tick(dnaLog, numGen);
+
+		assertTrue(food.isDead());
+		assertTrue(ecosystem.getAll("").contains(food));
+
+		ecosystem.tick(dnaLog, numGen);
+
+		assertFalse(ecosystem.getAll("").contains(food));
+		assertTrue(ecosystem.getAll("").contains(foodPellet2));
+	}
+
+	@Test
+	public void removesDeadThingsThatWereInsertedAllAtOnce() {
+		FoodPellet eatenFood = new FoodPellet(Vector.cartesian(5000, 5000));
+		eatenFood.getEaten(narjillo1);
+		ecosystem.insertAll(Arrays.asList(eatenFood));
+
+		ecosystem.tick(new VolatileDNALog(), numGen);
+
+		assertFalse(ecosystem.getAll("").contains(eatenFood));
+		assertEquals(3, ecosystem.getCount(FoodPellet.LABEL));
+	}
+
+	@Test
+	public void movesTheThingsToAReconfiguredEcosystem() {
+		Configuration configuration = Configuration.DEFAULT.with("ecosystem:catalyst_level", 42);
+
+		Ecosystem reconfigured = ecosystem.reconfigure(configuration);
+
+		assertEquals(configuration, reconfigured.getConfiguration());
+		assertEquals(ecosystem.getAll(""), reconfigured.getAll(""));
+		assertEquals(2, reconfigured.getCount(Narjillo.LABEL));
+		assertEquals(42, reconfigured.getAtmosphere().getCatalystLevel());
+		assertEquals(ecosystem.getAtmosphere().getAmountOf(Element.OXYGEN), reconfigured.getAtmosphere().getAmountOf(Element.OXYGEN), 0.0);
+	}
+
 	@Test
 	public void findsTheClosestFoodToAGivenNarjillo() {
 		assertEquals(foodPellet1.getPosition(), ecosystem.findClosestFoodTo(narjillo1));
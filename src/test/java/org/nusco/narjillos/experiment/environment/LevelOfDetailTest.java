@@ -0,0 +1,81 @@
+package org.nusco.narjillos.experiment.environment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.core.geometry.Segment;
+import org.nusco.narjillos.core.geometry.Vector;
+import org.nusco.narjillos.core.things.LifeFormEnergy;
+import org.nusco.narjillos.core.things.Space;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.creature.Narjillo;
+import org.nusco.narjillos.genomics.DNA;
+
+public class LevelOfDetailTest {
+
+	private final NumGen numGen = new NumGen(1234);
+
+	private final Space space = new Space();
+
+	private final LevelOfDetail levelOfDetail = new LevelOfDetail();
+
+	@Before
+	public void enableLevelOfDetail() {
+		levelOfDetail.enable();
+	}
+
+	@Test
+	public void reducesTheDetailOfIsolatedNarjillos() {
+		Narjillo isolated = createNarjillo(Vector.cartesian(100_000, 100_000));
+		Narjillo nearFood = createNarjillo(Vector.cartesian(0, 0));
+		space.add(new FoodPellet(Vector.cartesian(500, 500)));
+
+		levelOfDetail.update(Arrays.asList(isolated, nearFood), space);
+
+		assertEquals(50, levelOfDetail.getPercentOfReducedDetail());
+		assertEquals(50, levelOfDetail.getPercentOfFullDetail());
+	}
+
+	@Test
+	public void keepsFullDetailForNarjillosThatAreCloseToEachOther() {
+		Narjillo narjillo1 = createNarjillo(Vector.cartesian(10_000, 10_000));
+		Narjillo narjillo2 = createNarjillo(Vector.cartesian(10_500, 10_000));
+
+		levelOfDetail.update(Arrays.asList(narjillo1, narjillo2), space);
+
+		assertEquals(0, levelOfDetail.getPercentOfReducedDetail());
+	}
+
+	@Test
+	public void keepsFullDetailWhenDisabled() {
+		LevelOfDetail disabledLevelOfDetail = new LevelOfDetail();
+		Narjillo isolated = createNarjillo(Vector.cartesian(100_000, 100_000));
+
+		disabledLevelOfDetail.update(Arrays.asList(isolated), space);
+
+		assertEquals(100, disabledLevelOfDetail.getPercentOfFullDetail());
+	}
+
+	@Test
+	public void extrapolatesTheMovementOfIsolatedNarjillos() {
+		Narjillo isolated = createNarjillo(Vector.cartesian(100_000, 100_000));
+		for (int i = 0; i < 100; i++)
+			isolated.tick();
+		levelOfDetail.update(Arrays.asList(isolated), space);
+
+		Segment lastFullMovement = isolated.tick();
+		assertNotEquals(0, isolated.getAge() % Configuration.ECOSYSTEM_LOD_REDUCED_TICK_INTERVAL);
+		Segment extrapolatedMovement = levelOfDetail.tick(isolated);
+
+		assertEquals(lastFullMovement.getVector(), extrapolatedMovement.getVector());
+	}
+
+	private Narjillo createNarjillo(Vector position) {
+		return new Narjillo(DNA.random(numGen.nextSerial(), numGen), position, 90, new LifeFormEnergy(10_000, Double.MAX_VALUE));
+	}
+}
@@ -13,6 +13,13 @@ public class ChromosomeTest {
 		assertEquals(4, chromosome.getGene(3));
 	}
 
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void chokesOnGenesPastTheEndOfTheChromosome() {
+		DNA dna = new DNA(1, "{1_2_3_4_5_6_7_8_9_10_11_12_13_14_15_16}");
+
+		dna.iterator().next().getGene(Chromosome.SIZE);
+	}
+
 	@Test
 	public void padsMissingGenesWithZeroes() {
 		Chromosome chromosome = new Chromosome(1, 2, 3, 4);
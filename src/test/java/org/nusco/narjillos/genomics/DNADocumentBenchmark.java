@@ -0,0 +1,92 @@
+package org.nusco.narjillos.genomics;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nusco.narjillos.core.utilities.NumGen;
+
+/**
+ * Compares the speed of DNADocument with the regular expression-based
+ * implementation that it replaced. Run it with "gradle benchmarkDNADocument".
+ */
+public class DNADocumentBenchmark {
+
+	private static final int NUMBER_OF_DNAS = 10_000;
+
+	private static final int ROUNDS = 20;
+
+	private static final int WARMUP_ROUNDS = 5;
+
+	private static volatile long sink;
+
+	public static void main(String[] args) {
+		NumGen numGen = new NumGen(1234);
+		List<DNA> dnas = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_DNAS; i++)
+			dnas.add(DNA.random(i, numGen));
+		List<String> documents = new ArrayList<>();
+		for (DNA dna : dnas)
+			documents.add(dna.toString());
+
+		report("parse (regular expressions)", measure(() -> {
+			for (String document : documents)
+				sink += LegacyDNADocument.toGenes(document).length;
+		}));
+		report("parse (DNADocument)", measure(() -> {
+			for (String document : documents)
+				sink += new DNADocument(document).toGeneBytes().length;
+		}));
+		report("format (DecimalFormat)", measure(() -> {
+			for (DNA dna : dnas)
+				sink += LegacyDNADocument.toString(dna).length();
+		}));
+		report("format (DNADocument)", measure(() -> {
+			for (DNA dna : dnas)
+				sink += DNADocument.toString(dna).length();
+		}));
+	}
+
+	private static double measure(Runnable round) {
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+			round.run();
+		long startTime = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			round.run();
+		return (System.nanoTime() - startTime) / (double) (ROUNDS * NUMBER_OF_DNAS);
+	}
+
+	private static void report(String name, double nanosPerDna) {
+		System.out.println(String.format("%-30s %10.0f ns/DNA", name, nanosPerDna));
+	}
+
+	// The original implementation, for comparison.
+	private static class LegacyDNADocument {
+
+		static int[] toGenes(String document) {
+			for (String line : document.split("\n")) {
+				String cleanedUpLine = line.trim().replaceAll("[{}]", "_");
+				if (cleanedUpLine.matches("_*\\d.*")) {
+					List<Integer> result = new ArrayList<>();
+					for (String number : cleanedUpLine.split("_"))
+						if (!number.isEmpty())
+							result.add(Integer.parseInt(number));
+					return result.stream().mapToInt(Integer::intValue).toArray();
+				}
+			}
+			return new int[] { 0 };
+		}
+
+		static String toString(DNA dna) {
+			StringBuilder result = new StringBuilder();
+			for (Chromosome chromosome : dna) {
+				DecimalFormat threeDigits = new DecimalFormat("000");
+				result.append("{");
+				for (int i = 0; i < Chromosome.SIZE - 1; i++)
+					result.append(threeDigits.format(chromosome.getGene(i)) + "_");
+				result.append(threeDigits.format(chromosome.getGene(Chromosome.SIZE - 1)) + "}");
+			}
+			return result.toString();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package org.nusco.narjillos.genomics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class DNADocumentReaderTest {
+
+	@Test
+	public void readsOneDocumentPerLine() {
+		DNADocumentReader reader = new DNADocumentReader(new StringReader("{1_2}\n3_4_5\r\n\ncomment\n{6}"));
+
+		assertArrayEquals(new byte[] { 1, 2 }, reader.readGenes());
+		assertArrayEquals(new byte[] { 3, 4, 5 }, reader.readGenes());
+		assertArrayEquals(new byte[] { 0 }, reader.readGenes());
+		assertArrayEquals(new byte[] { 0 }, reader.readGenes());
+		assertArrayEquals(new byte[] { 6 }, reader.readGenes());
+		assertNull(reader.readGenes());
+		reader.close();
+	}
+
+	@Test
+	public void readsLinesLongerThanItsBuffer() {
+		StringBuilder document = new StringBuilder();
+		byte[] expected = new byte[100_000];
+		for (int i = 0; i < expected.length; i++) {
+			document.append(i % 256).append("_");
+			expected[i] = (byte) (i % 256);
+		}
+		document.append("\n1\n");
+		DNADocumentReader reader = new DNADocumentReader(new StringReader(document.toString()));
+
+		byte[] genes = reader.readGenes();
+		assertArrayEquals(new byte[] { 1 }, reader.readGenes());
+		assertNull(reader.readGenes());
+		assertArrayEquals(expected, genes);
+	}
+}
@@ -12,14 +12,14 @@ public class DNADocumentTest {
 		String dnaString = "1_022_255";
 		DNADocument dnaDocument = new DNADocument(dnaString);
 
-		assertArrayEquals(new Integer[] { 1, 22, 255 }, dnaDocument.toGenes());
+		assertArrayEquals(new int[] { 1, 22, 255 }, dnaDocument.toGenes());
 	}
 
 	@Test
 	public void ignoresSign() {
 		DNADocument dnaDocument = new DNADocument("1_0__2");
 
-		assertArrayEquals(new Integer[] { 1, 0, 2 }, dnaDocument.toGenes());
+		assertArrayEquals(new int[] { 1, 0, 2 }, dnaDocument.toGenes());
 	}
 
 	@Test
@@ -31,7 +31,7 @@ public class DNADocumentTest {
 			"\n";
 		DNADocument dnaDocument = new DNADocument(dnaString);
 
-		assertArrayEquals(new Integer[] { 1, 0, 255 }, dnaDocument.toGenes());
+		assertArrayEquals(new int[] { 1, 0, 255 }, dnaDocument.toGenes());
 	}
 
 	@Test
@@ -39,7 +39,7 @@ public class DNADocumentTest {
 		String dnaString = " {1_0}{255}{}";
 		DNADocument dnaDocument = new DNADocument(dnaString);
 
-		assertArrayEquals(new Integer[] { 1, 0, 255 }, dnaDocument.toGenes());
+		assertArrayEquals(new int[] { 1, 0, 255 }, dnaDocument.toGenes());
 	}
 
 	@Test
@@ -47,7 +47,7 @@ public class DNADocumentTest {
 		String dnaString = "comment\n";
 		DNADocument dnaDocument = new DNADocument(dnaString);
 
-		assertArrayEquals(new Integer[] { 0 }, dnaDocument.toGenes());
+		assertArrayEquals(new int[] { 0 }, dnaDocument.toGenes());
 	}
 
 	@Test(expected = IllegalArgumentException.class)
@@ -55,7 +55,7 @@ public class DNADocumentTest {
 		String dnaString = "12-34";
 		DNADocument dnaDocument = new DNADocument(dnaString);
 
-		assertArrayEquals(new Integer[0], dnaDocument.toGenes());
+		assertArrayEquals(new int[0], dnaDocument.toGenes());
 	}
 
 	@Test
@@ -65,7 +65,7 @@ public class DNADocumentTest {
 			"4_5_6_7_ignored_anyway";
 		DNADocument dnaDocument = new DNADocument(dnaString);
 
-		assertArrayEquals(new Integer[] { 1, 2, 3 }, dnaDocument.toGenes());
+		assertArrayEquals(new int[] { 1, 2, 3 }, dnaDocument.toGenes());
 	}
 
 	@Test
@@ -76,4 +76,47 @@ public class DNADocumentTest {
 			"{001_002_003_004_005_006_007_008_009_010_011_012_013_014}{015_016_017_018_019_020_021_022_023_024_025_026_027_028}{255_000_000_000_000_000_000_000_000_000_000_000_000_000}",
 			dna.toString());
 	}
+
+	@Test
+	public void acceptsSignsLikeIntegerParsing() {
+		DNADocument dnaDocument = new DNADocument("1_-2_+3");
+
+		assertArrayEquals(new int[] { 1, -2, 3 }, dnaDocument.toGenes());
+	}
+
+	@Test
+	public void clipsGeneBytes() {
+		DNADocument dnaDocument = new DNADocument("{1_-2_256}");
+
+		assertArrayEquals(new byte[] { 1, 0, (byte) 255 }, dnaDocument.toGeneBytes());
+	}
+
+	@Test
+	public void ignoresCarriageReturns() {
+		DNADocument dnaDocument = new DNADocument("comment\r\n1_2\r\n");
+
+		assertArrayEquals(new int[] { 1, 2 }, dnaDocument.toGenes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void throwsAnExceptionIfAGeneOverflows() {
+		new DNADocument("1_2147483648").toGenes();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void throwsAnExceptionIfAGeneIsJustASign() {
+		new DNADocument("1_-_2").toGenes();
+	}
+
+	@Test
+	public void parsesAnyCharSequence() {
+		DNADocument dnaDocument = new DNADocument(new StringBuilder("{1_2}{3}"));
+
+		assertArrayEquals(new int[] { 1, 2, 3 }, dnaDocument.toGenes());
+	}
+
+	@Test
+	public void convertsAChromosomeToADocumentString() {
+		assertEquals("{001_022_255_000_000_000_000_000_000_000_000_000_000_000}", new Chromosome(1, 22, 255).toString());
+	}
 }
@@ -55,4 +55,15 @@ public class DNAIterationTest {
 		assertEquals(new Chromosome(new int[] { 0, 0, 0, 0, 0, 0, 0 }), iterator.next());
 		assertFalse(iterator.hasNext());
 	}
+
+	@Test
+	public void returnsChromosomesThatShareTheDNAGenes() {
+		DNA dna = new DNA(1, "{1_2_3}");
+
+		Chromosome chromosome = dna.iterator().next();
+
+		assertEquals(2, chromosome.getGene(1));
+		assertEquals(0, chromosome.getGene(Chromosome.SIZE - 1));
+		assertEquals("{001_002_003_000_000_000_000_000_000_000_000_000_000_000}", chromosome.toString());
+	}
 }
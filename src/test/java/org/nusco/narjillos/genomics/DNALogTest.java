@@ -44,6 +44,21 @@ public abstract class DNALogTest {
 		assertEquals(retrieved.getParentId(), dna.getParentId());
 	}
 
+	@Test
+	public void returnsBatchesOfDnaInTheOrderOfTheIds() {
+		DNA dna1 = new DNA(1, "{1}", 0);
+		dnaLog.save(dna1);
+		dnaLog.save(new DNA(2, "{2}", 1));
+		DNA dna3 = new DNA(3, "{3}", 1);
+		dnaLog.save(dna3);
+
+		List<DNA> batch = dnaLog.getDnaBatch(new long[] { 3, 7, 1 });
+
+		assertEquals(2, batch.size());
+		assertEquals(dna3, batch.get(0));
+		assertEquals(dna1, batch.get(1));
+	}
+
 	@Test
 	public void returnsNullIfTheDnaIsNotInTheLog() {
 		assertNull(dnaLog.getDna(42));
@@ -87,5 +102,44 @@ public abstract class DNALogTest {
 		assertEquals(dna2, dnaLog.getLiveDna().get(1));
 	}
 
+	@Test
+	public void returnsThePhylogeny() {
+		dnaLog.save(new DNA(1, "{1}", 0));
+		dnaLog.save(new DNA(2, "{2}", 1));
+		dnaLog.save(new DNA(3, "{3}", 1));
+		dnaLog.save(new DNA(5, "{4}", 3));
+		dnaLog.markAsDead(1);
+		dnaLog.markAsDead(3);
+
+		Phylogeny phylogeny = dnaLog.getPhylogeny();
+
+		assertEquals(4, phylogeny.size());
+		assertEquals(3, phylogeny.getParentId(5));
+		assertEquals(1, phylogeny.getLowestCommonAncestor(2, 5));
+		assertEquals(2, phylogeny.getNumberOfLiveDescendants(1));
+		assertEquals(1, phylogeny.getNumberOfLivingGermlines());
+	}
+
+	@Test
+	public void removesDna() {
+		dnaLog.save(new DNA(1, "{1}", 0));
+		dnaLog.save(new DNA(2, "{2}", 1));
+		dnaLog.save(new DNA(3, "{3}", 1));
+		dnaLog.save(new DNA(4, "{4}", 3));
+		dnaLog.markAsDead(1);
+		dnaLog.markAsDead(3);
+		dnaLog.markAsDead(4);
+
+		dnaLog.remove(new long[] { 4, 3 });
+		dnaLog.compact();
+
+		assertNull(dnaLog.getDna(3));
+		assertNull(dnaLog.getDna(4));
+		assertEquals(1, dnaLog.getDna(1).getGenes()[0]);
+		assertEquals(2, dnaLog.getDna(2).getGenes()[0]);
+		assertEquals(2, dnaLog.getAllDna().size());
+		assertEquals(1, dnaLog.getLiveDna().size());
+	}
+
 	protected abstract DNALog createNewInstance();
 }
\ No newline at end of file
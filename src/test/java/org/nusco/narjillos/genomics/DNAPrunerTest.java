@@ -0,0 +1,151 @@
+package org.nusco.narjillos.genomics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DNAPrunerTest {
+
+	private final List<long[]> removedBatches = new ArrayList<>();
+
+	// Runs before each batch that the pruner removes
+	private Runnable beforeRemoving = () -> {
+	};
+
+	private final TieredDNALog dnaLog = new TieredDNALog(1024, 4) {
+
+		@Override
+		public void remove(long[] ids) {
+			beforeRemoving.run();
+			removedBatches.add(ids);
+			super.remove(ids);
+		}
+	};
+
+	// 1 -> 2 -> 4 -> 6 (live)
+	//        -> 5 -> 7
+	//   -> 3 -> 8
+	// 9 -> 10
+	@Before
+	public void createGenealogy() {
+		long[][] parentsAndChildren = { { 0, 1 }, { 1, 2 }, { 1, 3 }, { 2, 4 }, { 2, 5 }, { 4, 6 }, { 5, 7 }, { 3, 8 }, { 0, 9 }, { 9, 10 } };
+		for (long[] parentAndChild : parentsAndChildren)
+			dnaLog.save(new DNA(parentAndChild[1], "{" + parentAndChild[1] + "}", parentAndChild[0]));
+		for (long id = 1; id <= 10; id++)
+			if (id != 6)
+				dnaLog.markAsDead(id);
+	}
+
+	@After
+	public void deleteLog() {
+		dnaLog.delete();
+	}
+
+	@Test
+	public void removesTheDnaWithNoLiveDescendants() {
+		DNAPruner dnaPruner = new DNAPruner(dnaLog, 100);
+
+		dnaPruner.pruneAll();
+
+		assertEquals(4, dnaLog.getAllDna().size());
+		for (long id : new long[] { 1, 2, 4, 6 })
+			assertNotNull(dnaLog.getDna(id));
+		for (long id : new long[] { 3, 5, 7, 8, 9, 10 })
+			assertNull(dnaLog.getDna(id));
+		assertEquals(6, dnaPruner.getNumberOfPrunedDna());
+		assertEquals(4, dnaLog.getDna(4).getGenes()[0]);
+	}
+
+	@Test
+	public void removesABatchAtATimeYoungestFirst() {
+		DNAPruner dnaPruner = new DNAPruner(dnaLog, 4);
+
+		dnaPruner.pruneAll();
+
+		assertEquals(2, removedBatches.size());
+		assertArrayEquals(new long[] { 10, 9, 8, 7 }, removedBatches.get(0));
+		assertArrayEquals(new long[] { 5, 3 }, removedBatches.get(1));
+	}
+
+	@Test
+	public void prunesInTheBackground() throws InterruptedException {
+		CountDownLatch canRemove = new CountDownLatch(1);
+		beforeRemoving = () -> await(canRemove);
+		DNAPruner dnaPruner = new DNAPruner(dnaLog, 4);
+
+		dnaPruner.start();
+		assertTrue(dnaPruner.isPruning());
+		assertEquals(10, dnaLog.getAllDna().size());
+
+		canRemove.countDown();
+		dnaPruner.waitForPruning();
+		assertFalse(dnaPruner.isPruning());
+		assertEquals(6, dnaPruner.getNumberOfPrunedDna());
+	}
+
+	@Test
+	public void stopsAfterTheCurrentBatch() throws InterruptedException {
+		CountDownLatch isRemoving = new CountDownLatch(1);
+		CountDownLatch canRemove = new CountDownLatch(1);
+		beforeRemoving = () -> {
+			isRemoving.countDown();
+			await(canRemove);
+		};
+		DNAPruner dnaPruner = new DNAPruner(dnaLog, 1);
+
+		dnaPruner.start();
+		isRemoving.await();
+		new Thread(() -> {
+			sleep(200);
+			canRemove.countDown();
+		}).start();
+		dnaPruner.stop();
+
+		assertFalse(dnaPruner.isPruning());
+		assertEquals(1, dnaPruner.getNumberOfPrunedDna());
+		assertNull(dnaLog.getDna(10));
+		assertNotNull(dnaLog.getDna(9));
+	}
+
+	@Test
+	public void keepsNewDnaThatIsSavedWhilePruning() {
+		beforeRemoving = () -> {
+			if (dnaLog.getDna(11) == null) {
+				dnaLog.save(new DNA(11, "{11}", 6));
+				dnaLog.markAsDead(11);
+			}
+		};
+		DNAPruner dnaPruner = new DNAPruner(dnaLog, 1);
+
+		dnaPruner.pruneAll();
+
+		assertNotNull(dnaLog.getDna(11));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -22,7 +22,25 @@ public class DNATest {
 	public void hasAnArrayOfGenes() {
 		DNA dna = new DNA(1, "{1_2_255}");
 
-		assertArrayEquals(new Integer[] { 1, 2, 255 }, dna.getGenes());
+		assertArrayEquals(new int[] { 1, 2, 255 }, dna.getGenes());
+	}
+
+	@Test
+	public void storesGenesAsBytes() {
+		DNA dna = new DNA(1, "{1_2_255}");
+
+		assertArrayEquals(new byte[] { 1, 2, (byte) 255 }, dna.getGenesAsBytes());
+		assertEquals(255, dna.getGene(2));
+		assertEquals(3, dna.getLength());
+	}
+
+	@Test
+	public void mutatesIntoADNAOfTheSameLength() {
+		DNA parent = DNA.random(1, new NumGen(42));
+
+		DNA child = parent.mutate(2, new NumGen(43));
+
+		assertEquals(parent.getLength(), child.getLength());
 	}
 
 	@Test
@@ -43,14 +61,14 @@ public class DNATest {
 	public void clipsGenesToByteSizeWhenCreatedWithAnArray() {
 		DNA dna = new DNA(1, "1_-1_256");
 
-		assertArrayEquals(new Integer[] { 1, 0, 255 }, dna.getGenes());
+		assertArrayEquals(new int[] { 1, 0, 255 }, dna.getGenes());
 	}
 
 	@Test
 	public void clipsGenesToByteSizeWhenCreatedWithAString() {
 		DNA dna = new DNA(1, "1_0_256");
 
-		assertArrayEquals(new Integer[] { 1, 0, 255 }, dna.getGenes());
+		assertArrayEquals(new int[] { 1, 0, 255 }, dna.getGenes());
 	}
 
 	@Test
@@ -59,7 +77,7 @@ public class DNATest {
 			"1_022_255";
 		DNA dna = new DNA(1, dnaString);
 
-		assertArrayEquals(new Integer[] { 1, 22, 255 }, dna.getGenes());
+		assertArrayEquals(new int[] { 1, 22, 255 }, dna.getGenes());
 	}
 
 	@Test
@@ -0,0 +1,70 @@
+package org.nusco.narjillos.genomics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.nusco.narjillos.core.utilities.NumGen;
+
+public class LevenshteinDistanceTest {
+
+	@Test
+	public void givesTheSameResultsAsTheClassicAlgorithm() {
+		NumGen numGen = new NumGen(1234);
+		for (int i = 0; i < 200; i++) {
+			DNA dna1 = randomDna(numGen, 1 + numGen.nextByte(), 1 + i % 8);
+			DNA dna2 = randomDna(numGen, 1 + numGen.nextByte(), 1 + i % 8);
+
+			assertEquals(classicLevenshteinDistance(dna1, dna2), new LevenshteinDistance(dna1).from(dna2));
+		}
+	}
+
+	@Test
+	public void canBeReusedForManyDNAs() {
+		NumGen numGen = new NumGen(4321);
+		DNA pattern = randomDna(numGen, 224, 4);
+		LevenshteinDistance distance = new LevenshteinDistance(pattern);
+
+		for (int i = 0; i < 20; i++) {
+			DNA text = pattern.mutate(i + 2, numGen);
+			assertEquals(classicLevenshteinDistance(pattern, text), distance.from(text));
+		}
+	}
+
+	@Test
+	public void measuresDistancesAcrossMultipleWords() {
+		DNA dna1 = new DNA(1, new int[130], DNA.NO_PARENT);
+		int[] genes = new int[130];
+		genes[0] = 1;
+		genes[64] = 1;
+		genes[129] = 1;
+		DNA dna2 = new DNA(2, genes, DNA.NO_PARENT);
+
+		assertEquals(3, new LevenshteinDistance(dna1).from(dna2));
+	}
+
+	// A small alphabet makes for more interesting alignments.
+	private DNA randomDna(NumGen numGen, int length, int alphabetSize) {
+		int[] genes = new int[length];
+		for (int i = 0; i < genes.length; i++)
+			genes[i] = numGen.nextByte() % alphabetSize;
+		return new DNA(1, genes, DNA.NO_PARENT);
+	}
+
+	private int classicLevenshteinDistance(DNA dna1, DNA dna2) {
+		int[] these = dna1.getGenes();
+		int[] others = dna2.getGenes();
+		int[] costs = new int[others.length + 1];
+		for (int i = 0; i < costs.length; i++)
+			costs[i] = i;
+		for (int i = 1; i <= these.length; i++) {
+			costs[0] = i;
+			int nw = i - 1;
+			for (int j = 1; j <= others.length; j++) {
+				int cj = Math.min(1 + Math.min(costs[j], costs[j - 1]), these[i - 1] == others[j - 1] ? nw : nw + 1);
+				nw = costs[j];
+				costs[j] = cj;
+			}
+		}
+		return costs[others.length];
+	}
+}
@@ -0,0 +1,148 @@
+package org.nusco.narjillos.genomics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PhylogenyTest {
+
+	// 1 -> 2 -> 4 -> 6
+	//   -> 3
+	// 5 (dead) -> 7
+	private static final long X = Phylogeny.NOT_IN_LOG;
+
+	private final Phylogeny phylogeny = new Phylogeny(new long[] { X, 0, 1, 1, 2, 0, 4, 5 }, bits(3, 6, 7));
+
+	@Test
+	public void knowsWhichDnaItContains() {
+		assertEquals(7, phylogeny.size());
+		assertArrayEquals(new long[] { 1, 2, 3, 4, 5, 6, 7 }, phylogeny.getIds());
+		assertTrue(phylogeny.contains(7));
+		assertFalse(phylogeny.contains(0));
+		assertFalse(phylogeny.contains(8));
+	}
+
+	@Test
+	public void knowsParentsAndChildren() {
+		assertEquals(4, phylogeny.getParentId(6));
+		assertEquals(DNA.NO_PARENT, phylogeny.getParentId(1));
+		assertArrayEquals(new long[] { 2, 3 }, phylogeny.getChildrenIds(1));
+		assertArrayEquals(new long[] { 1, 5 }, phylogeny.getChildrenIds(0));
+		assertArrayEquals(new long[0], phylogeny.getChildrenIds(3));
+	}
+
+	@Test
+	public void getsGermlines() {
+		assertArrayEquals(new long[] { 1, 2, 4, 6 }, phylogeny.getGermline(6));
+		assertArrayEquals(new long[] { 1 }, phylogeny.getGermline(1));
+		assertEquals(3, phylogeny.getDepth(6));
+		assertEquals(0, phylogeny.getDepth(5));
+	}
+
+	@Test
+	public void getsLowestCommonAncestors() {
+		assertEquals(1, phylogeny.getLowestCommonAncestor(6, 3));
+		assertEquals(2, phylogeny.getLowestCommonAncestor(2, 6));
+		assertEquals(4, phylogeny.getLowestCommonAncestor(4, 4));
+		assertEquals(DNA.NO_PARENT, phylogeny.getLowestCommonAncestor(6, 7));
+		assertTrue(phylogeny.isAncestor(2, 6));
+		assertFalse(phylogeny.isAncestor(6, 2));
+		assertFalse(phylogeny.isAncestor(3, 6));
+	}
+
+	@Test
+	public void countsDescendants() {
+		assertEquals(5, phylogeny.getSubtreeSize(1));
+		assertEquals(1, phylogeny.getSubtreeSize(6));
+		assertEquals(2, phylogeny.getNumberOfLiveDescendants(1));
+		assertEquals(1, phylogeny.getNumberOfLiveDescendants(5));
+		assertEquals(1, phylogeny.getNumberOfLiveDescendants(2));
+	}
+
+	@Test
+	public void countsLivingGermlines() {
+		assertEquals(2, phylogeny.getNumberOfLivingGermlines());
+		assertEquals(1, new Phylogeny(new long[] { X, 0, 1, 1, 2, 0, 4, 5 }, bits(3)).getNumberOfLivingGermlines());
+	}
+
+	@Test
+	public void treatsDnaWithMissingParentsAsOriginalAncestors() {
+		Phylogeny phylogeny = new Phylogeny(new long[] { X, X, 1, 42 }, bits(2, 3));
+
+		assertFalse(phylogeny.contains(1));
+		assertEquals(DNA.NO_PARENT, phylogeny.getParentId(2));
+		assertEquals(DNA.NO_PARENT, phylogeny.getParentId(3));
+		assertEquals(1, phylogeny.getSavedParentId(2));
+		assertEquals(42, phylogeny.getSavedParentId(3));
+		assertEquals(2, phylogeny.getNumberOfLivingGermlines());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void throwsAnExceptionOnMissingDna() {
+		phylogeny.getGermline(8);
+	}
+
+	@Test
+	public void handlesVeryDeepTrees() {
+		long[] parentIds = new long[500_001];
+		parentIds[0] = X;
+		for (int id = 1; id < parentIds.length; id++)
+			parentIds[id] = id - 1;
+		Phylogeny deepPhylogeny = new Phylogeny(parentIds, bits(500_000));
+
+		assertEquals(499_999, deepPhylogeny.getDepth(500_000));
+		assertEquals(1000, deepPhylogeny.getLowestCommonAncestor(1000, 400_000));
+		assertEquals(1, deepPhylogeny.getNumberOfLiveDescendants(1));
+	}
+
+	@Test
+	public void findsTheSameCommonAncestorsAsWalkingUpTheTree() {
+		Random random = new Random(42);
+		long[] parentIds = new long[5000];
+		parentIds[0] = X;
+		for (int id = 1; id < parentIds.length; id++)
+			parentIds[id] = (id < 10) ? DNA.NO_PARENT : 1 + random.nextInt(id - 1);
+		Phylogeny randomPhylogeny = new Phylogeny(parentIds, new BitSet());
+
+		for (int i = 0; i < 2000; i++) {
+			long id1 = 1 + random.nextInt(parentIds.length - 1);
+			long id2 = 1 + random.nextInt(parentIds.length - 1);
+			assertEquals(findCommonAncestorByWalking(parentIds, id1, id2), randomPhylogeny.getLowestCommonAncestor(id1, id2));
+		}
+	}
+
+	private static long findCommonAncestorByWalking(long[] parentIds, long id1, long id2) {
+		long[] germline1 = germline(parentIds, id1);
+		long[] germline2 = germline(parentIds, id2);
+		long result = DNA.NO_PARENT;
+		for (int i = 0; i < Math.min(germline1.length, germline2.length) && germline1[i] == germline2[i]; i++)
+			result = germline1[i];
+		return result;
+	}
+
+	private static long[] germline(long[] parentIds, long id) {
+		long[] result = new long[0];
+		for (long ancestor = id; ancestor != DNA.NO_PARENT; ancestor = parentIds[(int) ancestor]) {
+			result = Arrays.copyOf(result, result.length + 1);
+			result[result.length - 1] = ancestor;
+		}
+		long[] reversed = new long[result.length];
+		for (int i = 0; i < result.length; i++)
+			reversed[i] = result[result.length - 1 - i];
+		return reversed;
+	}
+
+	private static BitSet bits(int... ids) {
+		BitSet result = new BitSet();
+		for (int id : ids)
+			result.set(id);
+		return result;
+	}
+}
@@ -0,0 +1,66 @@
+package org.nusco.narjillos.genomics;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.nusco.narjillos.core.utilities.NumGen;
+
+public class SimHashIndexTest {
+
+	private final SimHashIndex index = new SimHashIndex(3);
+
+	@Test
+	public void findsDNAsWithinADistance() {
+		DNA dna1 = new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT);
+		DNA dna2 = new DNA(2, new int[] { 0, 0, 1 }, DNA.NO_PARENT);
+		DNA dna3 = new DNA(3, new int[] { 255, 255, 255 }, DNA.NO_PARENT);
+		index.add(dna3);
+		index.add(dna2);
+		index.add(dna1);
+
+		assertThat(index.findWithinDistance(dna1, 1), contains(dna1, dna2));
+		assertThat(index.findWithinDistance(dna1, 0), contains(dna1));
+		assertThat(index.findWithinDistance(dna3, 3), contains(dna3));
+	}
+
+	@Test
+	public void removesDNAs() {
+		DNA dna = new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT);
+		index.add(dna);
+		index.remove(dna);
+
+		assertEquals(0, index.size());
+		assertThat(index.findWithinDistance(dna, 3), empty());
+	}
+
+	@Test
+	public void findsTheSameDNAsAsAFullScan() {
+		NumGen numGen = new NumGen(1234);
+		List<DNA> pool = new LinkedList<>();
+		DNA ancestor = DNA.random(1, numGen);
+		for (int i = 0; i < 500; i++) {
+			DNA dna = ancestor.mutate(i + 2, numGen);
+			pool.add(dna);
+			index.add(dna);
+		}
+
+		for (DNA dna : pool) {
+			List<DNA> expected = new LinkedList<>();
+			for (DNA other : pool)
+				if (dna.getSimHashedDistanceFrom(other) <= 3)
+					expected.add(other);
+			assertEquals(expected, index.findWithinDistance(dna, 3));
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void doesNotSupportDistancesLargerThanTheMaximum() {
+		index.findWithinDistance(new DNA(1, "{0}"), 4);
+	}
+}
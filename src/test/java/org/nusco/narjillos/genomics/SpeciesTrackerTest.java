@@ -0,0 +1,77 @@
+package org.nusco.narjillos.genomics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class SpeciesTrackerTest {
+
+	private final SpeciesTracker speciesTracker = new SpeciesTracker(2);
+
+	@Test
+	public void putsSimilarDNAsInTheSameSpecies() {
+		DNA founder = new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT);
+		DNA child = new DNA(2, new int[] { 0, 0, 1 }, 1);
+		DNA stranger = new DNA(3, new int[] { 255, 255, 255 }, DNA.NO_PARENT);
+
+		speciesTracker.add(founder);
+		speciesTracker.add(child);
+		speciesTracker.add(stranger);
+
+		assertEquals(2, speciesTracker.getNumberOfSpecies());
+		assertEquals(1, speciesTracker.getSpeciesId(2));
+		assertEquals(3, speciesTracker.getSpeciesId(3));
+	}
+
+	@Test
+	public void joinsTheClosestSpeciesEvenWithoutALiveParent() {
+		speciesTracker.add(new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT));
+		speciesTracker.add(new DNA(2, new int[] { 255, 255, 255 }, DNA.NO_PARENT));
+
+		speciesTracker.add(new DNA(3, new int[] { 255, 255, 254 }, 42));
+
+		assertEquals(2, speciesTracker.getSpeciesId(3));
+	}
+
+	@Test
+	public void dropsSpeciesWhenTheirLastMemberDies() {
+		speciesTracker.add(new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT));
+		speciesTracker.add(new DNA(2, new int[] { 0, 0, 1 }, 1));
+
+		speciesTracker.remove(1);
+		assertEquals(1, speciesTracker.getNumberOfSpecies());
+
+		speciesTracker.remove(2);
+		assertEquals(0, speciesTracker.getNumberOfSpecies());
+		assertEquals(0, speciesTracker.getSpeciesId(2));
+	}
+
+	@Test
+	public void keepsTrackOfSpeciesSizesAndCentroids() {
+		speciesTracker.add(new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT));
+		speciesTracker.add(new DNA(2, new int[] { 0, 0, 1 }, 1));
+		speciesTracker.add(new DNA(3, new int[] { 0, 0, 0 }, 1));
+
+		List<SpeciesTracker.Species> species = speciesTracker.getSpecies();
+
+		assertEquals(1, species.size());
+		assertEquals(3, species.get(0).getSize());
+		assertEquals(0, species.get(0).getCentroid());
+	}
+
+	@Test
+	public void tracksTheLiveDNAOfAWrappedLog() {
+		DNALog dnaLog = new VolatileDNALog();
+		dnaLog.save(new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT));
+		SpeciesTrackingDNALog trackingDnaLog = new SpeciesTrackingDNALog(dnaLog, speciesTracker);
+
+		trackingDnaLog.save(new DNA(2, new int[] { 255, 255, 255 }, DNA.NO_PARENT));
+		assertEquals(2, speciesTracker.getNumberOfSpecies());
+
+		trackingDnaLog.markAsDead(2);
+		assertEquals(1, speciesTracker.getNumberOfSpecies());
+		assertEquals(1, dnaLog.getLiveDna().size());
+	}
+}
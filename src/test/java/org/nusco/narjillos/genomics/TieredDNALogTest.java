@@ -0,0 +1,92 @@
+package org.nusco.narjillos.genomics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class TieredDNALogTest extends DNALogTest {
+
+	@Override
+	protected DNALog createNewInstance() {
+		return new TieredDNALog();
+	}
+
+	@Test
+	public void readsDeadDnaBackFromTheArchive() {
+		TieredDNALog dnaLog = new TieredDNALog(64, 2);
+		try {
+			for (int id = 1; id <= 100; id++)
+				dnaLog.save(new DNA(id, new int[] { id, id + 1, 255, id % 7 }, id - 1));
+			for (int id = 1; id <= 100; id += 2)
+				dnaLog.markAsDead(id);
+
+			assertEquals(50, dnaLog.getLiveDna().size());
+			assertEquals(100, dnaLog.getAllDna().size());
+			assertEquals(99, dnaLog.getAllDna().get(98).getId());
+
+			for (int id = 100; id >= 1; id--) {
+				DNA dna = dnaLog.getDna(id);
+				assertEquals(id, dna.getId());
+				assertEquals(id - 1, dna.getParentId());
+				assertArrayEquals(new int[] { id, id + 1, 255, id % 7 }, dna.getGenes());
+			}
+			assertNull(dnaLog.getDna(101));
+		} finally {
+			dnaLog.delete();
+		}
+	}
+
+	@Test
+	public void keepsDeadDnaDeadWhenItIsSavedAgain() {
+		TieredDNALog dnaLog = new TieredDNALog();
+		try {
+			DNA dna = new DNA(1, "{1_2_3}", 0);
+			dnaLog.save(dna);
+			dnaLog.markAsDead(1);
+			dnaLog.save(dna);
+
+			assertEquals(0, dnaLog.getLiveDna().size());
+			assertEquals(1, dnaLog.getAllDna().size());
+		} finally {
+			dnaLog.delete();
+		}
+	}
+
+	@Test
+	public void archivesDnaThatDiesInAnyOrder() {
+		TieredDNALog dnaLog = new TieredDNALog(64, 2);
+		try {
+			for (int id = 1; id <= 3000; id++)
+				dnaLog.save(new DNA(id, new int[] { id % 256 }, id - 1));
+			for (int id = 3000; id >= 1; id -= 2)
+				dnaLog.markAsDead(id);
+			for (int id = 1; id <= 3000; id += 2)
+				dnaLog.markAsDead(id);
+
+			dnaLog.remove(new long[] { 2999, 1500, 7 });
+			dnaLog.compact();
+
+			assertEquals(2997, dnaLog.getAllDna().size());
+			assertEquals(0, dnaLog.getLiveDna().size());
+			assertNull(dnaLog.getDna(1500));
+			assertEquals(1500, dnaLog.getDna(1501).getParentId());
+			assertArrayEquals(new int[] { 3000 % 256 }, dnaLog.getDna(3000).getGenes());
+			assertEquals(2997, dnaLog.getPhylogeny().size());
+		} finally {
+			dnaLog.delete();
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void refusesToArchiveDnaThatDoesNotFitInASegment() {
+		TieredDNALog dnaLog = new TieredDNALog(16, 2);
+		try {
+			dnaLog.save(new DNA(1, new int[] { 1, 2, 3, 4, 5 }, 0));
+			dnaLog.markAsDead(1);
+		} finally {
+			dnaLog.delete();
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package org.nusco.narjillos.genomics;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
 import org.nusco.narjillos.genomics.DNALog;
 
 public class VolatileDNALogTest extends DNALogTest {
@@ -8,4 +12,20 @@ public class VolatileDNALogTest extends DNALogTest {
 	protected DNALog createNewInstance() {
 		return new VolatileDNALog();
 	}
+
+	@Test
+	public void growsWithTheNumberOfDNAs() {
+		VolatileDNALog dnaLog = new VolatileDNALog();
+		for (int id = 1; id <= 5000; id++)
+			dnaLog.save(new DNA(id, "{1_2_3}", id - 1));
+		for (int id = 1; id <= 5000; id += 2)
+			dnaLog.markAsDead(id);
+
+		assertEquals(5000, dnaLog.getAllDna().size());
+		assertEquals(2500, dnaLog.getLiveDna().size());
+		assertEquals(2, dnaLog.getLiveDna().get(0).getId());
+		assertEquals(5000, dnaLog.getDna(5000).getId());
+		assertNull(dnaLog.getDna(5001));
+		assertNull(dnaLog.getDna(-1));
+	}
 }
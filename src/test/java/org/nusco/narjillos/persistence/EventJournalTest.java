@@ -0,0 +1,120 @@
+package org.nusco.narjillos.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nusco.narjillos.core.geometry.Vector;
+import org.nusco.narjillos.core.utilities.Chronometer;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.creature.Egg;
+import org.nusco.narjillos.experiment.environment.FoodPellet;
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.persistence.JournalEvent.Type;
+
+public class EventJournalTest {
+
+	private static final String NAME = "123-TESTING";
+
+	private final Chronometer chronometer = new Chronometer();
+
+	@After
+	public void deleteJournal() {
+		EventJournal.delete(NAME);
+	}
+
+	@Test
+	public void readsTheEventsBetweenTwoTicks() {
+		EventJournal journal = new EventJournal(NAME, chronometer, 4);
+		List<JournalEvent> expected = writeEvents(journal, 10);
+		journal.close();
+
+		assertEquals(expected, EventJournal.read(NAME, 0, 9));
+		assertEquals(expected.subList(6, 12), EventJournal.read(NAME, 3, 5));
+		assertEquals(expected.subList(18, 20), EventJournal.read(NAME, 9, 100));
+		assertEquals(0, EventJournal.read(NAME, 10, 100).size());
+	}
+
+	@Test
+	public void recordsEggsWithTheirDnaIds() {
+		EventJournal journal = new EventJournal(NAME, chronometer, 4);
+		DNA dna = new DNA(42, "{1_2_3}");
+		Egg egg = new Egg(dna, Vector.cartesian(10, 20), Vector.ZERO, 100, new NumGen(1));
+		journal.added(egg);
+		journal.removed(egg);
+		journal.close();
+
+		List<JournalEvent> events = EventJournal.read(NAME, 0, 0);
+		assertEquals(new JournalEvent(0, Type.EGG_LAID, 42, 10, 20), events.get(0));
+		assertEquals(new JournalEvent(0, Type.EGG_REMOVED, 42, 10, 20), events.get(1));
+	}
+
+	@Test
+	public void appendsToAnExistingJournal() {
+		EventJournal journal = new EventJournal(NAME, chronometer, 4);
+		List<JournalEvent> expected = writeEvents(journal, 5);
+		journal.close();
+
+		journal = new EventJournal(NAME, chronometer, 4);
+		expected.addAll(writeEvents(journal, 3));
+		journal.close();
+
+		assertEquals(expected, EventJournal.read(NAME, 0, 100));
+	}
+
+	@Test
+	public void dropsTheEventsAfterTheCurrentTickWhenReopened() {
+		EventJournal journal = new EventJournal(NAME, chronometer, 4);
+		List<JournalEvent> expected = writeEvents(journal, 10);
+		journal.close();
+
+		Chronometer rewoundChronometer = new Chronometer();
+		for (int i = 0; i < 4; i++)
+			rewoundChronometer.tick();
+		journal = new EventJournal(NAME, rewoundChronometer, 4);
+		assertEquals(8, journal.getNumberOfEvents());
+		journal.close();
+
+		assertEquals(expected.subList(0, 8), EventJournal.read(NAME, 0, 100));
+	}
+
+	// Writes two events per tick.
+	@Test
+	public void queuesEventsWithoutWaitingForTheWriter() throws Exception {
+		EventJournal journal = new EventJournal(NAME, chronometer, 4);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// Hold the lock that the writer takes to write the events
+			synchronized (journal) {
+				Future<List<JournalEvent>> events = executor.submit(() -> writeEvents(journal, 10));
+				events.get(2, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		journal.close();
+
+		assertEquals(20, EventJournal.read(NAME, 0, 9).size());
+	}
+
+	private List<JournalEvent> writeEvents(EventJournal journal, int ticks) {
+		List<JournalEvent> result = new ArrayList<>();
+		for (int i = 0; i < ticks; i++) {
+			long tick = chronometer.getTotalTicks();
+			FoodPellet food = new FoodPellet(Vector.cartesian(tick, -tick));
+			journal.added(food);
+			journal.removed(food);
+			result.add(new JournalEvent(tick, Type.FOOD_SPAWNED, 0, tick, -tick));
+			result.add(new JournalEvent(tick, Type.FOOD_EATEN, 0, tick, -tick));
+			chronometer.tick();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,123 @@
+package org.nusco.narjillos.persistence;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.nusco.narjillos.analysis.DNAAnalyzer;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.genomics.DNA;
+
+/**
+ * Times the queries behind the "lab" program's commands on a large
+ * experiment database, both on the database and on an ExperimentReplica. Run it with "gradle benchmarkExperimentDatabase".
+ */
+public class ExperimentDatabaseBenchmark {
+
+	private static final String DATABASE_NAME = "benchmark-experiment-database";
+
+	private static final int NUMBER_OF_DNAS = 200_000;
+
+	private static final int NUMBER_OF_LIVE_DNAS = 2_000;
+
+	private static final int NUMBER_OF_HISTORY_ENTRIES = 20_000;
+
+	private static final int NUMBER_OF_LOOKUPS = 2_000;
+
+	private static volatile long sink;
+
+	public static void main(String[] args) throws SQLException {
+		createDatabase();
+
+		PersistentDNALog dnaLog = new PersistentDNALog(DATABASE_NAME);
+		PersistentHistoryLog historyLog = new PersistentHistoryLog(DATABASE_NAME);
+		DNAAnalyzer dnaAnalyzer = new DNAAnalyzer(dnaLog);
+		Random random = new Random(4321);
+		try {
+			report("--dna (single DNAs)", NUMBER_OF_LOOKUPS, () -> {
+				for (int i = 0; i < NUMBER_OF_LOOKUPS; i++)
+					sink += dnaAnalyzer.getDna(1L + random.nextInt(NUMBER_OF_DNAS)).getId();
+			});
+			report("--dna (one batch)", NUMBER_OF_LOOKUPS, () -> {
+				long[] ids = new long[NUMBER_OF_LOOKUPS];
+				for (int i = 0; i < ids.length; i++)
+					ids[i] = 1L + random.nextInt(NUMBER_OF_DNAS);
+				sink += dnaAnalyzer.getDna(ids).size();
+			});
+			report("--germline", 10, () -> {
+				for (int i = 0; i < 10; i++)
+					sink += dnaAnalyzer.getGermline(dnaLog.getDna(NUMBER_OF_DNAS - i)).size();
+			});
+			report("--stats", NUMBER_OF_LOOKUPS, () -> {
+				for (int i = 0; i < NUMBER_OF_LOOKUPS; i++)
+					sink += historyLog.getLatestEntry().ticks;
+			});
+			report("--history", 1, () -> sink += historyLog.getEntries().size());
+			report("live DNA (--primary, --similar)", 1, () -> sink += dnaLog.getLiveDna().size());
+			report("phylogeny (--ancestor, --subtree)", 1, () -> sink += dnaAnalyzer.getPhylogeny().size());
+
+			ExperimentReplica[] replica = new ExperimentReplica[1];
+			report("replica (first refresh)", 1, () -> replica[0] = new ExperimentReplica(DATABASE_NAME));
+			DNAAnalyzer replicaAnalyzer = new DNAAnalyzer(replica[0].getDnaLog());
+			report("replica (refresh)", NUMBER_OF_LOOKUPS, () -> {
+				for (int i = 0; i < NUMBER_OF_LOOKUPS; i++)
+					replica[0].refresh();
+			});
+			report("--germline (replica)", 10, () -> {
+				for (int i = 0; i < 10; i++)
+					sink += replicaAnalyzer.getGermline(replica[0].getDnaLog().getDna(NUMBER_OF_DNAS - i)).size();
+			});
+			report("--stats (replica)", NUMBER_OF_LOOKUPS, () -> {
+				for (int i = 0; i < NUMBER_OF_LOOKUPS; i++)
+					sink += replica[0].getHistoryLog().getLatestEntry().ticks;
+			});
+			replica[0].close();
+		} finally {
+			historyLog.close();
+			dnaLog.delete();
+		}
+	}
+
+	// Builds a deep family tree, where each DNA descends from one of the
+	// most recent DNAs, and a long history.
+	private static void createDatabase() throws SQLException {
+		new PersistentDNALog(DATABASE_NAME).delete();
+
+		long startTime = System.nanoTime();
+		PersistentDNALog dnaLog = new PersistentDNALog(DATABASE_NAME);
+		NumGen numGen = new NumGen(1234);
+		Random random = new Random(1234);
+		DNA[] recentDnas = new DNA[64];
+		for (int id = 1; id <= NUMBER_OF_DNAS; id++) {
+			DNA parent = recentDnas[random.nextInt(recentDnas.length)];
+			DNA dna = (parent == null) ? DNA.random(id, numGen) : parent.mutate(id, numGen);
+			dnaLog.save(dna);
+			recentDnas[id % recentDnas.length] = dna;
+			if (id <= NUMBER_OF_DNAS - NUMBER_OF_LIVE_DNAS)
+				dnaLog.markAsDead(id);
+		}
+		dnaLog.close();
+
+		PersistentHistoryLog historyLog = new PersistentHistoryLog(DATABASE_NAME);
+		historyLog.executeInTransaction(() -> {
+			Statement statement = historyLog.createStatement();
+			try {
+				for (int i = 1; i <= NUMBER_OF_HISTORY_ENTRIES; i++)
+					statement.executeUpdate("INSERT INTO HISTORY_ENTRIES VALUES (" + i * 1000 + ", " + i + ", 100, 200, 0.1, 0.2, 0.3, 1, 1, 0, 0, 0, 0, 0, 0, 0, 10);");
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			} finally {
+				historyLog.close(statement);
+			}
+		});
+		historyLog.close();
+		System.out.println(String.format("Created database in %.1f s", (System.nanoTime() - startTime) / 1e9));
+	}
+
+	private static void report(String name, int operations, Runnable benchmark) {
+		long startTime = System.nanoTime();
+		benchmark.run();
+		double totalMillis = (System.nanoTime() - startTime) / 1e6;
+		System.out.println(String.format("%-35s %10.1f ms (%.3f ms/operation)", name, totalMillis, totalMillis / operations));
+	}
+}
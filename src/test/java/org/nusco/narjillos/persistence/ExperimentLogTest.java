@@ -1,6 +1,13 @@
 package org.nusco.narjillos.persistence;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.Before;
@@ -8,6 +15,8 @@ import org.junit.Test;
 import org.nusco.narjillos.core.utilities.Version;
 import org.nusco.narjillos.experiment.Experiment;
 import org.nusco.narjillos.experiment.SimpleExperiment;
+import org.nusco.narjillos.persistence.serialization.JSON;
+import org.nusco.narjillos.persistence.serialization.SnapshotFormat;
 
 public class ExperimentLogTest {
 
@@ -30,4 +39,129 @@ public class ExperimentLogTest {
 
 		assertEquals(experiment.getId(), experimentLog.load().getId());
 	}
+
+	@Test
+	public void savesAndLoadsExperimentsInManyChunks() throws SQLException {
+		ExperimentLog smallChunksLog = new ExperimentLog("test-" + Version.read() + "-chunks", SnapshotFormat.BINARY, 1, 1000);
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		try {
+			smallChunksLog.save(experiment);
+
+			Experiment loaded = smallChunksLog.load();
+			assertEquals(JSON.toJson(experiment, Experiment.class), JSON.toJson(loaded, Experiment.class));
+			assertTrue(countRows(smallChunksLog, "EXPERIMENT_CHUNKS") > 10);
+		} finally {
+			smallChunksLog.delete();
+		}
+	}
+
+	@Test
+	public void savesSnapshotsTakenEarlier() throws InterruptedException {
+		Experiment experiment = new SimpleExperiment();
+		experiment.tick();
+		byte[] snapshot = experimentLog.takeSnapshot(experiment);
+		String expectedJson = JSON.toJson(experiment, Experiment.class);
+		experiment.tick();
+
+		Thread saver = new Thread(() -> experimentLog.save(snapshot, 1));
+		saver.start();
+		saver.join();
+
+		assertEquals(expectedJson, JSON.toJson(experimentLog.load(), Experiment.class));
+	}
+
+	@Test
+	public void loadsExperimentsSavedInAnyFormat() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		String expectedJson = JSON.toJson(experiment, Experiment.class);
+
+		for (SnapshotFormat format : SnapshotFormat.values()) {
+			new ExperimentLog("test-" + Version.read(), format).save(experiment);
+
+			assertEquals(expectedJson, JSON.toJson(experimentLog.load(), Experiment.class));
+		}
+	}
+
+	@Test
+	public void loadsExperimentsStoredAsASingleString() throws SQLException {
+		Experiment experiment = new SimpleExperiment();
+		PreparedStatement statement = experimentLog.getCachedStatement("INSERT INTO EXPERIMENT (JSON) VALUES (?);");
+		statement.setString(1, JSON.toJson(experiment, Experiment.class));
+		statement.executeUpdate();
+
+		assertEquals(experiment.getId(), experimentLog.load().getId());
+	}
+
+	@Test
+	public void keepsOnlyTheLatestExperiment() throws SQLException {
+		Experiment experiment = new SimpleExperiment();
+		experimentLog.save(experiment);
+		experiment.tick();
+		experimentLog.save(experiment);
+
+		assertEquals(1, countRows(experimentLog, "EXPERIMENT"));
+		assertEquals(1, countRows(experimentLog, "EXPERIMENT_CHUNKS"));
+		assertEquals(1, experimentLog.load().getTicksChronometer().getTotalTicks());
+	}
+
+	@Test
+	public void keepsTheLatestCheckpoints() throws SQLException {
+		ExperimentLog checkpointsLog = new ExperimentLog("test-" + Version.read() + "-checkpoints", 3);
+		Experiment experiment = new SimpleExperiment();
+		try {
+			for (int i = 0; i < 5; i++) {
+				experiment.tick();
+				checkpointsLog.save(experiment);
+			}
+
+			assertEquals(Arrays.asList(3L, 4L, 5L), checkpointsLog.getCheckpoints());
+			assertEquals(3, countRows(checkpointsLog, "EXPERIMENT_CHUNKS"));
+			assertEquals(5, checkpointsLog.load().getTicksChronometer().getTotalTicks());
+		} finally {
+			checkpointsLog.delete();
+		}
+	}
+
+	@Test
+	public void loadsTheLatestCheckpointBeforeATick() {
+		ExperimentLog checkpointsLog = new ExperimentLog("test-" + Version.read() + "-checkpoints", 3);
+		Experiment experiment = new SimpleExperiment();
+		try {
+			for (int i = 0; i < 3; i++) {
+				experiment.tick();
+				experiment.tick();
+				checkpointsLog.save(experiment);
+			}
+
+			assertEquals(2, checkpointsLog.loadCheckpoint(3).getTicksChronometer().getTotalTicks());
+			assertEquals(4, checkpointsLog.loadCheckpoint(4).getTicksChronometer().getTotalTicks());
+			assertEquals(6, checkpointsLog.loadCheckpoint(100).getTicksChronometer().getTotalTicks());
+		} finally {
+			checkpointsLog.delete();
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void failsIfThereIsNoCheckpointBeforeATick() {
+		Experiment experiment = new SimpleExperiment();
+		experiment.tick();
+		experimentLog.save(experiment);
+
+		experimentLog.loadCheckpoint(0);
+	}
+
+	private int countRows(ExperimentLog log, String table) throws SQLException {
+		Statement statement = log.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table + ";");
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			log.close(statement);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package org.nusco.narjillos.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
+import org.nusco.narjillos.experiment.SimpleExperiment;
+import org.nusco.narjillos.genomics.DNA;
+
+public class ExperimentReplicaTest {
+
+	private PersistentDNALog dnaLog;
+
+	private PersistentHistoryLog historyLog;
+
+	private ExperimentReplica replica;
+
+	@Before
+	public void createDatabaseAndReplica() {
+		dnaLog = new PersistentDNALog("123-TESTING");
+		historyLog = new PersistentHistoryLog("123-TESTING");
+		dnaLog.save(new DNA(1, "{1_2_3}", 0));
+		dnaLog.save(new DNA(2, "{1_2_4}", 1));
+		dnaLog.flush();
+		replica = new ExperimentReplica("123-TESTING");
+	}
+
+	@After
+	public void deleteDatabase() {
+		replica.close();
+		historyLog.close();
+		dnaLog.delete();
+	}
+
+	@Test
+	public void copiesTheDatabaseWhenItsCreated() {
+		assertEquals(2, replica.getDnaLog().getLiveDna().size());
+		assertEquals(1, replica.getDnaLog().getDna(2).getParentId());
+		assertNull(replica.getHistoryLog().getLatestEntry());
+	}
+
+	@Test
+	public void copiesTheChangesOnRefresh() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		historyLog.saveEntry(experiment);
+		dnaLog.save(new DNA(3, "{1_2_5}", 2));
+		dnaLog.markAsDead(1);
+		dnaLog.flush();
+
+		assertEquals(2, replica.getDnaLog().getLiveDna().size());
+
+		replica.refresh();
+
+		assertEquals(3, replica.getDnaLog().getAllDna().size());
+		assertEquals(2, replica.getDnaLog().getLiveDna().size());
+		assertEquals(3, replica.getDnaLog().getLiveDna().get(1).getId());
+		assertEquals(new ExperimentHistoryEntry(experiment), replica.getHistoryLog().getLatestEntry());
+	}
+
+	@Test
+	public void doesNotCopyTheSameEntriesTwice() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		historyLog.saveEntry(experiment);
+		replica.refresh();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		historyLog.saveEntry(experiment);
+		replica.refresh();
+		replica.refresh();
+
+		assertEquals(2, replica.getHistoryLog().getEntries().size());
+		assertEquals(2, replica.getDnaLog().getAllDna().size());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void isReadOnly() {
+		replica.getDnaLog().save(new DNA(4, "{1_2_6}", 0));
+	}
+}
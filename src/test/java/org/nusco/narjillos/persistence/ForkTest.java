@@ -0,0 +1,157 @@
+package org.nusco.narjillos.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.nusco.narjillos.core.configuration.Configuration;
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.ExperimentHistoryEntry;
+import org.nusco.narjillos.experiment.SimpleExperiment;
+import org.nusco.narjillos.experiment.VolatileHistoryLog;
+import org.nusco.narjillos.experiment.environment.Ecosystem;
+import org.nusco.narjillos.genomics.VolatileDNALog;
+
+public class ForkTest {
+
+	@Test
+	public void runsOneBranchPerSeedFromTheStateOfTheExperiment() {
+		Experiment experiment = tickedExperiment(20);
+		Fork fork = new Fork(experiment, Arrays.asList(1L, 2L, 3L), 30, "fork_test", 2, false);
+
+		Map<Long, ExperimentHistoryEntry> results = fork.run().get(0);
+
+		assertEquals(Arrays.asList(1L, 2L, 3L), Arrays.asList(results.keySet().toArray()));
+		for (ExperimentHistoryEntry entry : results.values())
+			assertEquals(50, entry.ticks);
+		assertEquals(20, experiment.getTicksChronometer().getTotalTicks());
+	}
+
+	@Test
+	public void branchesWithTheSameSeedGiveTheSameResults() {
+		Experiment experiment = tickedExperiment(20);
+		Fork fork = new Fork(experiment, Arrays.asList(42L, 43L), 500, "fork_test", 2, false);
+		Fork otherFork = new Fork(experiment, Collections.singletonList(42L), 500, "fork_test", 1, false);
+
+		ExperimentHistoryEntry entry = fork.run().get(0).get(42L);
+		ExperimentHistoryEntry otherEntry = otherFork.run().get(0).get(42L);
+
+		assertEquals(entry.numberOfNarjillos, otherEntry.numberOfNarjillos);
+		assertEquals(entry.numberOfFoodPellets, otherEntry.numberOfFoodPellets);
+		assertEquals(entry.oxygen, otherEntry.oxygen, 0.0);
+		assertEquals(entry.hydrogen, otherEntry.hydrogen, 0.0);
+		assertEquals(entry.nitrogen, otherEntry.nitrogen, 0.0);
+	}
+
+	@Test
+	public void savesPersistentBranches() {
+		Experiment experiment = tickedExperiment(20);
+		Fork fork = new Fork(experiment, Collections.singletonList(7L), 10, "fork_test", 1, true);
+		ExperimentLog experimentLog = new ExperimentLog("7-fork_test");
+		try {
+			fork.run();
+
+			assertTrue(new File("7-fork_test.exp").exists());
+			Experiment branch = experimentLog.load();
+			assertEquals("7-fork_test", branch.getId());
+			assertEquals(30, branch.getTicksChronometer().getTotalTicks());
+		} finally {
+			experimentLog.delete();
+		}
+	}
+
+	@Test
+	public void branchesKeepTheConfigurationOfTheExperiment() {
+		Configuration configuration = Configuration.DEFAULT.with("ecosystem:catalyst_level", 42);
+		Experiment experiment = tickedExperiment(20, configuration);
+		Fork fork = new Fork(experiment, Collections.singletonList(7L), 10, "fork_test", 1, true);
+		ExperimentLog experimentLog = new ExperimentLog("7-fork_test");
+		try {
+			fork.run();
+
+			Experiment branch = experimentLog.load();
+			assertEquals(configuration, branch.getEcosystem().getConfiguration());
+			assertEquals(42, branch.getEcosystem().getAtmosphere().getCatalystLevel());
+		} finally {
+			experimentLog.delete();
+		}
+	}
+
+	@Test
+	public void runsEachSeedWithEachConfiguration() {
+		Experiment experiment = tickedExperiment(20);
+		Configuration moreFood = Configuration.DEFAULT.with("ecosystem:max_food_density_per_1000_blocks",
+			Configuration.ECOSYSTEM_MAX_FOOD_DENSITY_PER_1000_BLOCK * 10);
+		Configuration noFood = Configuration.DEFAULT.with("ecosystem:max_food_density_per_1000_blocks", 0);
+		Fork fork = new Fork(experiment, Arrays.asList(1L, 2L), Arrays.asList(moreFood, noFood), 500, "fork_test", 2, false);
+
+		List<Map<Long, ExperimentHistoryEntry>> results = fork.run();
+
+		assertEquals(2, results.size());
+		assertEquals(Arrays.asList(1L, 2L), Arrays.asList(results.get(1).keySet().toArray()));
+		for (long seed : new long[] { 1, 2 })
+			assertTrue(results.get(0).get(seed).numberOfFoodPellets > results.get(1).get(seed).numberOfFoodPellets);
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void cannotSaveBranchesWithDifferentConfigurations() {
+		Experiment experiment = tickedExperiment(0);
+		Configuration moreFood = Configuration.DEFAULT.with("ecosystem:food_density_per_block", Configuration.ECOSYSTEM_FOOD_DENSITY_PER_BLOCK + 1);
+
+		new Fork(experiment, Collections.singletonList(7L), Arrays.asList(Configuration.DEFAULT, moreFood), 10, "fork_test", 1, true);
+	}
+
+	@Test
+	public void reportsTheVariedParameters() {
+		Experiment experiment = tickedExperiment(20);
+		Configuration lessCatalyst = Configuration.DEFAULT.with("ecosystem:catalyst_level", 42);
+		Fork fork = new Fork(experiment, Collections.singletonList(1L), Arrays.asList(Configuration.DEFAULT, lessCatalyst), 10, "fork_test", 2,
+			false);
+
+		String[] report = fork.getReport(fork.run(), Collections.singletonList("ecosystem:catalyst_level")).split("\n");
+
+		assertEquals(4, report.length);
+		assertTrue(report[0].startsWith("Seed,ecosystem:catalyst_level,Ticks,"));
+		assertTrue(report[1].startsWith("fork," + (double) Configuration.ECOSYSTEM_CATALYST_LEVEL + ",20,"));
+		assertTrue(report[2].startsWith("1," + (double) Configuration.ECOSYSTEM_CATALYST_LEVEL + ",30,"));
+		assertTrue(report[3].startsWith("1,42.0,30,"));
+	}
+
+	@Test
+	public void reportsTheForkAndTheBranches() {
+		Experiment experiment = tickedExperiment(20);
+		Fork fork = new Fork(experiment, Arrays.asList(1L, 2L), 10, "fork_test", 2, false);
+
+		String[] report = fork.getReport(fork.run()).split("\n");
+
+		assertEquals(4, report.length);
+		assertTrue(report[0].startsWith("Seed,Ticks,"));
+		assertTrue(report[1].startsWith("fork,20,"));
+		assertTrue(report[2].startsWith("1,30,"));
+		assertTrue(report[3].startsWith("2,30,"));
+	}
+
+	private Experiment tickedExperiment(int ticks) {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < ticks; i++)
+			experiment.tick();
+		return experiment;
+	}
+
+	private Experiment tickedExperiment(int ticks, Configuration configuration) {
+		Ecosystem ecosystem = new Ecosystem(Configuration.ECOSYSTEM_BLOCKS_PER_EDGE_IN_APP * 1000, false, null, configuration);
+		Experiment experiment = new Experiment(1234, ecosystem, "fork_test");
+		experiment.setDnaLog(new VolatileDNALog());
+		experiment.setHistoryLog(new VolatileHistoryLog());
+		experiment.populate();
+		for (int i = 0; i < ticks; i++)
+			experiment.tick();
+		return experiment;
+	}
+}
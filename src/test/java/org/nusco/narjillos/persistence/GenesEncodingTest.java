@@ -0,0 +1,62 @@
+package org.nusco.narjillos.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class GenesEncodingTest {
+
+	private final byte[] parentGenes = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 };
+
+	@Test
+	public void encodesKeyframes() {
+		byte[] encoding = GenesEncoding.encodeKeyframe(parentGenes);
+
+		assertTrue(GenesEncoding.isKeyframe(encoding));
+		assertEquals(0, GenesEncoding.getDepth(encoding));
+		assertArrayEquals(parentGenes, GenesEncoding.decodeKeyframe(encoding));
+	}
+
+	@Test
+	public void encodesSmallChangesAsDeltas() {
+		byte[] genes = parentGenes.clone();
+		genes[3] = 42;
+		genes[19] = (byte) 200;
+
+		byte[] encoding = GenesEncoding.encode(genes, parentGenes, 2);
+
+		assertFalse(GenesEncoding.isKeyframe(encoding));
+		assertTrue(encoding.length < genes.length);
+		assertEquals(3, GenesEncoding.getDepth(encoding));
+		assertArrayEquals(genes, GenesEncoding.decodeDelta(encoding, parentGenes));
+	}
+
+	@Test
+	public void encodesGenesOfADifferentLengthThanTheParent() {
+		byte[] genes = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 };
+
+		byte[] encoding = GenesEncoding.encode(genes, parentGenes, 0);
+
+		assertFalse(GenesEncoding.isKeyframe(encoding));
+		assertArrayEquals(genes, GenesEncoding.decodeDelta(encoding, parentGenes));
+	}
+
+	@Test
+	public void fallsBackToAKeyframeIfTheDeltaIsTooLarge() {
+		byte[] genes = new byte[parentGenes.length];
+
+		assertTrue(GenesEncoding.isKeyframe(GenesEncoding.encode(genes, parentGenes, 0)));
+	}
+
+	@Test
+	public void insertsAKeyframeEverySoManyGenerations() {
+		byte[] genes = parentGenes.clone();
+		genes[0] = 0;
+
+		assertFalse(GenesEncoding.isKeyframe(GenesEncoding.encode(genes, parentGenes, GenesEncoding.KEYFRAME_INTERVAL - 2)));
+		assertTrue(GenesEncoding.isKeyframe(GenesEncoding.encode(genes, parentGenes, GenesEncoding.KEYFRAME_INTERVAL - 1)));
+	}
+}
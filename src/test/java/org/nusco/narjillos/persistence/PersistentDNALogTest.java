@@ -1,6 +1,25 @@
 package org.nusco.narjillos.persistence;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.genomics.DNA;
 import org.nusco.narjillos.genomics.DNALog;
 import org.nusco.narjillos.genomics.DNALogTest;
 
@@ -15,4 +34,239 @@ public class PersistentDNALogTest extends DNALogTest {
 		PersistentDNALog anotherConnectionToTheSameDb = new PersistentDNALog("123-TESTING");
 		anotherConnectionToTheSameDb.close();
 	}
+
+	@Test
+	public void readsGenesStoredAsStrings() throws SQLException {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		Statement statement = dnaLog.createStatement();
+		statement.executeUpdate("INSERT INTO DNA (ID, GENES, PARENT_ID, IS_DEAD) VALUES (7, '{001_002_255}', 0, 0);");
+		dnaLog.close(statement);
+
+		DNA dna = dnaLog.getDna(7);
+		dnaLog.close();
+
+		assertArrayEquals(new int[] { 1, 2, 255 }, dna.getGenes());
+	}
+
+	@Test
+	public void rebuildsLongGermlinesFromDeltas() {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		NumGen numGen = new NumGen(1234);
+		DNA dna = DNA.random(1, numGen);
+		dnaLog.save(dna);
+		List<DNA> germline = new LinkedList<>();
+		germline.add(dna);
+		for (int i = 2; i < 50; i++) {
+			dna = dna.mutate(i, numGen);
+			dnaLog.save(dna);
+			germline.add(dna);
+		}
+		dnaLog.close();
+
+		PersistentDNALog reopenedDnaLog = new PersistentDNALog("123-TESTING");
+		for (DNA expected : germline)
+			assertArrayEquals(expected.getGenes(), reopenedDnaLog.getDna(expected.getId()).getGenes());
+		reopenedDnaLog.close();
+	}
+
+	@Test
+	public void returnsBatchesLargerThanASingleQuery() {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		NumGen numGen = new NumGen(1234);
+		DNA dna = DNA.random(1, numGen);
+		dnaLog.save(dna);
+		for (int id = 2; id <= 1000; id++) {
+			dna = dna.mutate(id, numGen);
+			dnaLog.save(dna);
+		}
+		long[] ids = new long[600];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = 1000 - i;
+
+		List<DNA> batch = dnaLog.getDnaBatch(ids);
+		dnaLog.close();
+
+		assertEquals(600, batch.size());
+		for (int i = 0; i < ids.length; i++)
+			assertEquals(ids[i], batch.get(i).getId());
+		assertArrayEquals(dna.getGenes(), batch.get(0).getGenes());
+	}
+
+	@Test
+	public void usesAWriteAheadLog() throws SQLException {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		Statement statement = dnaLog.createStatement();
+		ResultSet rs = statement.executeQuery("PRAGMA journal_mode;");
+		rs.next();
+		String journalMode = rs.getString(1);
+		dnaLog.close(statement);
+		dnaLog.close();
+
+		assertEquals("wal", journalMode);
+	}
+
+	@Test
+	public void addsTheLiveDnaIndexToOlderDatabases() throws SQLException {
+		PersistentDNALog olderLog = new PersistentDNALog("123-TESTING-OLDER");
+		olderLog.delete();
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:123-TESTING-OLDER.exp");
+			 Statement statement = connection.createStatement()) {
+			statement.executeUpdate("CREATE TABLE DNA (ID INT PRIMARY KEY NOT NULL, GENES BLOB NOT NULL, PARENT_ID INT NOT NULL, IS_DEAD INT NOT NULL)");
+			statement.executeUpdate("INSERT INTO DNA VALUES (1, '{001_002_003}', 0, 0)");
+			statement.executeUpdate("INSERT INTO DNA VALUES (2, '{001_002_004}', 1, 1)");
+		}
+
+		olderLog = new PersistentDNALog("123-TESTING-OLDER");
+		Statement statement = olderLog.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name = 'DNA_LIVE_ID';");
+			rs.next();
+			assertEquals(1, rs.getInt(1));
+			assertEquals(1, olderLog.getLiveDna().size());
+		} finally {
+			olderLog.close(statement);
+			olderLog.close();
+			olderLog.delete();
+		}
+	}
+
+	@Test
+	public void storesQueuedWritesOnFlush() {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		NumGen numGen = new NumGen(1234);
+		DNA dna = DNA.random(1, numGen);
+		dnaLog.save(dna);
+		for (int id = 2; id <= 3000; id++) {
+			dna = dna.mutate(id, numGen);
+			dnaLog.save(dna);
+			assertEquals(id, dnaLog.getDna(id).getId());
+			if (id % 3 == 0)
+				dnaLog.markAsDead(id);
+		}
+		dnaLog.flush();
+
+		PersistentDNALog anotherConnectionToTheSameDb = new PersistentDNALog("123-TESTING");
+		assertEquals(3000, anotherConnectionToTheSameDb.getAllDna().size());
+		assertEquals(2000, anotherConnectionToTheSameDb.getLiveDna().size());
+		assertArrayEquals(dna.getGenes(), anotherConnectionToTheSameDb.getDna(3000).getGenes());
+		anotherConnectionToTheSameDb.close();
+		dnaLog.close();
+	}
+
+	@Test(timeout = 10000)
+	public void reportsErrorsThatStopTheWriter() {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		dnaLog.save(new DNA(1, "{1_2_3}", 0) {
+			@Override
+			public long getParentId() {
+				throw new OutOfMemoryError("testing");
+			}
+		});
+
+		try {
+			dnaLog.flush();
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause().getCause() instanceof OutOfMemoryError);
+		}
+		try {
+			dnaLog.close();
+			fail();
+		} catch (RuntimeException e) {
+			// The writer is stopped anyway
+		}
+	}
+
+	@Test
+	public void storesQueuedWritesOnClose() {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		dnaLog.save(new DNA(1, "{1_2_3}", 0));
+		dnaLog.markAsDead(1);
+		dnaLog.close();
+
+		PersistentDNALog reopenedDnaLog = new PersistentDNALog("123-TESTING");
+		assertEquals(1, reopenedDnaLog.getAllDna().size());
+		assertEquals(0, reopenedDnaLog.getLiveDna().size());
+		reopenedDnaLog.close();
+	}
+
+	@Test
+	public void readsWhileAnotherConnectionWrites() {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		dnaLog.save(new DNA(1, "{1_2_3}", 0));
+		dnaLog.flush();
+
+		PersistentDNALog readOnlyDnaLog = new PersistentDNALog("123-TESTING", true);
+		assertEquals(1, readOnlyDnaLog.getPhylogeny().getSubtreeSize(1));
+		dnaLog.save(new DNA(2, "{1_2_4}", 1));
+		dnaLog.markAsDead(1);
+		dnaLog.flush();
+
+		assertEquals(2, readOnlyDnaLog.getPhylogeny().getSubtreeSize(1));
+		assertEquals(1, readOnlyDnaLog.getLiveDna().size());
+		readOnlyDnaLog.close();
+		dnaLog.close();
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void readOnlyLogsCannotWrite() {
+		PersistentDNALog readOnlyDnaLog = new PersistentDNALog("123-TESTING", true);
+		try {
+			readOnlyDnaLog.save(new DNA(1, "{1_2_3}", 0));
+		} finally {
+			readOnlyDnaLog.close();
+		}
+	}
+
+	@Test
+	public void savesWithoutWaitingForTheWriter() throws Exception {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (Connection anotherConnection = DriverManager.getConnection("jdbc:sqlite:123-TESTING.exp");
+			 Statement statement = anotherConnection.createStatement()) {
+			// Keep the writer stuck in its transaction, holding the log's monitor
+			statement.execute("BEGIN IMMEDIATE;");
+			dnaLog.save(new DNA(1, "{1_2_3}", 0));
+			Thread.sleep(200);
+
+			Future<?> save = executor.submit(() -> {
+				dnaLog.save(new DNA(2, "{1_2_4}", 1));
+				dnaLog.markAsDead(1);
+			});
+			save.get(2, TimeUnit.SECONDS);
+
+			statement.execute("ROLLBACK;");
+		} finally {
+			executor.shutdown();
+		}
+		dnaLog.flush();
+
+		assertEquals(2, dnaLog.getAllDna().size());
+		assertEquals(1, dnaLog.getLiveDna().size());
+		dnaLog.close();
+	}
+
+	@Test
+	public void givesBackTheSpaceOfRemovedDna() throws SQLException {
+		PersistentDNALog dnaLog = new PersistentDNALog("123-TESTING");
+		NumGen numGen = new NumGen(1234);
+		long[] ids = new long[3000];
+		for (int id = 1; id <= ids.length; id++) {
+			dnaLog.save(DNA.random(id, numGen));
+			ids[id - 1] = id;
+		}
+		dnaLog.flush();
+		dnaLog.remove(ids);
+
+		dnaLog.compact();
+
+		Statement statement = dnaLog.createStatement();
+		ResultSet rs = statement.executeQuery("PRAGMA freelist_count;");
+		rs.next();
+		int freePages = rs.getInt(1);
+		dnaLog.close(statement);
+		dnaLog.close();
+
+		assertEquals(0, freePages);
+	}
 }
@@ -3,7 +3,13 @@ package org.nusco.narjillos.persistence;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
 
 import org.junit.After;
@@ -53,6 +59,32 @@ public class PersistentHistoryLogTest {
 		assertEquals(new ExperimentHistoryEntry(experiment), latestStats);
 	}
 
+	@Test
+	public void addsTheSpeciesColumnToOlderDatabases() throws SQLException {
+		PersistentHistoryLog olderLog = new PersistentHistoryLog("123-TESTING-OLDER");
+		olderLog.close();
+		olderLog.delete();
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:123-TESTING-OLDER.exp");
+			 Statement statement = connection.createStatement()) {
+			statement.executeUpdate("CREATE TABLE HISTORY_ENTRIES (TICKS INT PRIMARY KEY NOT NULL, RUNNING_TIME INT NOT NULL, " +
+				"NUMBER_OF_NARJILLOS INT NOT NULL, NUMBER_OF_FOOD_PELLETS INT NOT NULL, " +
+				"OXYGEN DOUBLE NOT NULL, HYDROGEN DOUBLE NOT NULL, NITROGEN DOUBLE NOT NULL, " +
+				"O2H INT NOT NULL, O2N INT NOT NULL, H2O INT NOT NULL, H2N INT NOT NULL, N2O INT NOT NULL, " +
+				"N2H INT NOT NULL, Z2O INT NOT NULL, Z2H INT NOT NULL, Z2N INT NOT NULL)");
+			statement.executeUpdate("INSERT INTO HISTORY_ENTRIES VALUES (10, 1, 2, 3, 0.1, 0.2, 0.3, 1, 1, 0, 0, 0, 0, 0, 0, 0)");
+		}
+
+		olderLog = new PersistentHistoryLog("123-TESTING-OLDER");
+		try {
+			ExperimentHistoryEntry entry = olderLog.getLatestEntry();
+			assertEquals(10, entry.ticks);
+			assertEquals(0, entry.numberOfSpecies);
+		} finally {
+			olderLog.close();
+			olderLog.delete();
+		}
+	}
+
 	@Test
 	public void silentlySkipsWritingIfAnEntryIsAlreadyInTheDatabase() {
 		PersistentHistoryLog historyLog = new PersistentHistoryLog("123-TESTING");
@@ -82,4 +114,25 @@ public class PersistentHistoryLogTest {
 			unknownDatabaseNameLog.delete();
 		}
 	}
+
+	@Test
+	public void readOnlyLogsReadButDoNotWrite() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		historyLog.saveEntry(experiment);
+
+		PersistentHistoryLog readOnlyLog = new PersistentHistoryLog("123-TESTING", true);
+		try {
+			assertTrue(readOnlyLog.isReadOnly());
+			assertEquals(new ExperimentHistoryEntry(experiment), readOnlyLog.getLatestEntry());
+			experiment.tick();
+			readOnlyLog.saveEntry(experiment);
+			fail();
+		} catch (RuntimeException e) {
+			assertEquals(1, historyLog.getEntries().size());
+		} finally {
+			readOnlyLog.close();
+		}
+	}
 }
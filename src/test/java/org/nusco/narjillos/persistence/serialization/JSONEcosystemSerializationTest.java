@@ -1,6 +1,7 @@
 package org.nusco.narjillos.persistence.serialization;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.nusco.narjillos.core.chemistry.Element.HYDROGEN;
 import static org.nusco.narjillos.core.chemistry.Element.NITROGEN;
 import static org.nusco.narjillos.core.chemistry.Element.OXYGEN;
@@ -8,6 +9,7 @@ import static org.nusco.narjillos.core.chemistry.Element.OXYGEN;
 import java.util.Iterator;
 
 import org.junit.Test;
+import org.nusco.narjillos.core.configuration.Configuration;
 import org.nusco.narjillos.core.geometry.Vector;
 import org.nusco.narjillos.core.things.Energy;
 import org.nusco.narjillos.core.things.Thing;
@@ -52,4 +54,25 @@ public class JSONEcosystemSerializationTest {
 		assertEquals(egg.getPosition(), thingsIterator.next().getPosition());
 		assertEquals(narjillo.getPosition(), thingsIterator.next().getPosition());
 	}
+
+	@Test
+	public void serializesAndDeserializesTheConfigurationOfTheEcosystem() {
+		Configuration configuration = Configuration.DEFAULT.with("ecosystem:food_density_per_block", 42);
+		Ecosystem ecosystem = new Ecosystem(123, false, null, configuration);
+
+		String json = JSON.toJson(ecosystem, Ecosystem.class);
+		Ecosystem deserialized = JSON.fromJson(json, Ecosystem.class);
+
+		assertEquals(configuration, deserialized.getConfiguration());
+	}
+
+	@Test
+	public void doesntSerializeTheDefaultConfiguration() {
+		Ecosystem ecosystem = new Ecosystem(123, false);
+
+		String json = JSON.toJson(ecosystem, Ecosystem.class);
+
+		assertFalse(json.contains("configuration"));
+		assertEquals(Configuration.DEFAULT, JSON.fromJson(json, Ecosystem.class).getConfiguration());
+	}
 }
@@ -2,12 +2,22 @@ package org.nusco.narjillos.persistence.serialization;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+
 import org.junit.Test;
+import org.nusco.narjillos.core.geometry.Vector;
+import org.nusco.narjillos.core.things.LifeFormEnergy;
 import org.nusco.narjillos.creature.Egg;
 import org.nusco.narjillos.creature.Narjillo;
 import org.nusco.narjillos.experiment.Experiment;
 import org.nusco.narjillos.experiment.SimpleExperiment;
+import org.nusco.narjillos.experiment.VolatileHistoryLog;
+import org.nusco.narjillos.experiment.environment.Ecosystem;
 import org.nusco.narjillos.experiment.environment.FoodPellet;
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.DNALog;
+import org.nusco.narjillos.genomics.VolatileDNALog;
 
 public class JSONExperimentSerializationTest {
 
@@ -30,4 +40,44 @@ public class JSONExperimentSerializationTest {
 		assertEquals(experiment.getEcosystem().getCount(Narjillo.LABEL), deserialized.getEcosystem().getCount(Narjillo.LABEL));
 		assertEquals(10, deserialized.getTicksChronometer().getTotalTicks());
 	}
+
+	@Test
+	public void streamsTheSameJsonAsItBuildsInMemory() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+
+		StringWriter writer = new StringWriter();
+		JSON.toJson(experiment, Experiment.class, writer);
+		String json = JSON.toJson(experiment, Experiment.class);
+		Experiment deserialized = JSON.fromJson(new StringReader(json), Experiment.class);
+
+		assertEquals(json, writer.toString());
+		assertEquals(json, JSON.toJson(deserialized, Experiment.class));
+	}
+
+	@Test
+	public void resumesWithTheSameSpecies() {
+		// With the species_max_distance in config.yaml, both members are
+		// close enough to the founder, but not to each other
+		DNA founder = new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT);
+		DNALog dnaLog = new VolatileDNALog();
+		dnaLog.save(founder);
+		dnaLog.save(new DNA(2, new int[] { 0, 1, 0 }, 1));
+		dnaLog.save(new DNA(3, new int[] { 0, 30, 0 }, 1));
+		Experiment experiment = new Experiment(1234, new Ecosystem(1000, false), "species_test");
+		experiment.setDnaLog(dnaLog);
+		experiment.setHistoryLog(new VolatileHistoryLog());
+
+		Narjillo deadFounder = new Narjillo(founder, Vector.ZERO, 90, new LifeFormEnergy(10, Double.MAX_VALUE));
+		deadFounder.getEnergy().dropToZero();
+		experiment.getEcosystem().insert(deadFounder);
+		experiment.tick();
+
+		Experiment resumed = JSON.fromJson(JSON.toJson(experiment, Experiment.class), Experiment.class);
+		resumed.setDnaLog(dnaLog);
+
+		assertEquals(1, experiment.getNumberOfSpecies());
+		assertEquals(experiment.getNumberOfSpecies(), resumed.getNumberOfSpecies());
+	}
 }
@@ -0,0 +1,45 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.nusco.narjillos.genomics.DNA;
+import org.nusco.narjillos.genomics.SpeciesTracker;
+
+public class JSONSpeciesTrackerSerializationTest {
+
+	@Test
+	public void serializesAndDeserializesSpeciesTracker() {
+		SpeciesTracker speciesTracker = new SpeciesTracker(2);
+		speciesTracker.add(new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT));
+		speciesTracker.add(new DNA(2, new int[] { 0, 0, 1 }, 1));
+		speciesTracker.add(new DNA(3, new int[] { 255, 255, 255 }, DNA.NO_PARENT));
+
+		String json = JSON.toJson(speciesTracker, SpeciesTracker.class);
+		SpeciesTracker deserialized = JSON.fromJson(json, SpeciesTracker.class);
+
+		assertEquals(2, deserialized.getMaxDistance());
+		assertEquals(2, deserialized.getNumberOfSpecies());
+		assertEquals(1, deserialized.getSpeciesId(2));
+		assertEquals(3, deserialized.getSpeciesId(3));
+		assertEquals(json, JSON.toJson(deserialized, SpeciesTracker.class));
+	}
+
+	@Test
+	public void keepsTheSpeciesOfDeadFounders() {
+		// Both members are close enough to the founder, but not to each other
+		SpeciesTracker speciesTracker = new SpeciesTracker(2);
+		speciesTracker.add(new DNA(1, new int[] { 0, 0, 0 }, DNA.NO_PARENT));
+		speciesTracker.add(new DNA(2, new int[] { 0, 1, 0 }, 1));
+		speciesTracker.add(new DNA(3, new int[] { 0, 2, 1 }, 1));
+		speciesTracker.remove(1);
+
+		SpeciesTracker deserialized = JSON.fromJson(JSON.toJson(speciesTracker, SpeciesTracker.class), SpeciesTracker.class);
+		deserialized.add(new DNA(4, new int[] { 0, 1, 0 }, 2));
+
+		assertEquals(1, deserialized.getNumberOfSpecies());
+		assertEquals(1, deserialized.getSpeciesId(3));
+		assertEquals(1, deserialized.getSpeciesId(4));
+		assertEquals(3, deserialized.getSpecies().get(0).getSize());
+	}
+}
@@ -0,0 +1,57 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.SimpleExperiment;
+
+/**
+ * Times saving and loading a grown-up experiment in each snapshot format.
+ * Run it with "gradle benchmarkSnapshots".
+ */
+public class SnapshotBenchmark {
+
+	private static final int TICKS = 3000;
+
+	private static final int ROUNDS = 41;
+
+	public static void main(String[] args) throws IOException {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < TICKS; i++)
+			experiment.tick();
+
+		// The first pass warms up the JIT
+		for (int pass = 0; pass < 2; pass++)
+			for (SnapshotFormat format : SnapshotFormat.values())
+				benchmark(experiment, format, pass > 0);
+		System.exit(0);
+	}
+
+	private static void benchmark(Experiment experiment, SnapshotFormat format, boolean report) throws IOException {
+		long[] writeTimes = new long[ROUNDS];
+		long[] readTimes = new long[ROUNDS];
+		byte[] snapshot = null;
+		for (int i = 0; i < ROUNDS; i++) {
+			long startTime = System.nanoTime();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Snapshot.write(experiment, Experiment.class, out, format);
+			writeTimes[i] = System.nanoTime() - startTime;
+
+			snapshot = out.toByteArray();
+			startTime = System.nanoTime();
+			Snapshot.read(new ByteArrayInputStream(snapshot), Experiment.class);
+			readTimes[i] = System.nanoTime() - startTime;
+		}
+		if (report)
+			System.out.println(String.format("%-18s %10d bytes   write %6.1f ms   read %6.1f ms", format, snapshot.length, median(writeTimes) / 1e6, median(readTimes) / 1e6));
+	}
+
+	private static long median(long[] times) {
+		long[] sorted = Arrays.copyOf(times, times.length);
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
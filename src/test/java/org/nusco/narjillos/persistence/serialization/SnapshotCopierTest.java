@@ -0,0 +1,78 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.nusco.narjillos.core.geometry.Vector;
+import org.nusco.narjillos.core.things.Energy;
+import org.nusco.narjillos.core.things.Thing;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.creature.Egg;
+import org.nusco.narjillos.creature.Narjillo;
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.SimpleExperiment;
+import org.nusco.narjillos.experiment.environment.Ecosystem;
+import org.nusco.narjillos.genomics.DNA;
+
+public class SnapshotCopierTest {
+
+	@Test
+	public void copiesObjects() {
+		Experiment experiment = tickedExperiment();
+
+		Experiment copy = new SnapshotCopier<>(experiment, Experiment.class).copy();
+
+		assertNotSame(experiment, copy);
+		assertEquals(JSON.toJson(experiment, Experiment.class), JSON.toJson(copy, Experiment.class));
+	}
+
+	@Test
+	public void copiesShareTheDNA() {
+		Experiment experiment = tickedExperiment();
+
+		Experiment copy = new SnapshotCopier<>(experiment, Experiment.class).copy();
+
+		List<Thing> eggs = experiment.getEcosystem().getAll(Egg.LABEL);
+		List<Thing> copiedEggs = copy.getEcosystem().getAll(Egg.LABEL);
+		assertNotSame(eggs.get(0), copiedEggs.get(0));
+		assertSame(((Egg) eggs.get(0)).getDNA(), ((Egg) copiedEggs.get(0)).getDNA());
+	}
+
+	@Test
+	public void copiesOfNarjillosShareTheirDNA() {
+		Ecosystem ecosystem = new Ecosystem(10_000, false);
+		Narjillo narjillo = new Narjillo(DNA.random(1, new NumGen(1234)), Vector.cartesian(100, 200), 90, Energy.INFINITE);
+		ecosystem.insert(narjillo);
+
+		Ecosystem copy = new SnapshotCopier<>(ecosystem, Ecosystem.class).copy();
+
+		Narjillo copiedNarjillo = (Narjillo) copy.getAll(Narjillo.LABEL).get(0);
+		assertNotSame(narjillo, copiedNarjillo);
+		assertSame(narjillo.getDNA(), copiedNarjillo.getDNA());
+		assertEquals(JSON.toJson(ecosystem, Ecosystem.class), JSON.toJson(copy, Ecosystem.class));
+	}
+
+	@Test
+	public void copiesDontChangeWithTheOriginal() {
+		Experiment experiment = tickedExperiment();
+		SnapshotCopier<Experiment> copier = new SnapshotCopier<>(experiment, Experiment.class);
+		String expectedJson = JSON.toJson(experiment, Experiment.class);
+
+		experiment.tick();
+
+		assertNotEquals(expectedJson, JSON.toJson(experiment, Experiment.class));
+		assertEquals(expectedJson, JSON.toJson(copier.copy(), Experiment.class));
+	}
+
+	private Experiment tickedExperiment() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		return experiment;
+	}
+}
@@ -0,0 +1,132 @@
+package org.nusco.narjillos.persistence.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.nusco.narjillos.core.chemistry.Atmosphere;
+import org.nusco.narjillos.core.chemistry.Element;
+import org.nusco.narjillos.core.geometry.Vector;
+import org.nusco.narjillos.core.things.Energy;
+import org.nusco.narjillos.core.utilities.NumGen;
+import org.nusco.narjillos.creature.Narjillo;
+import org.nusco.narjillos.experiment.Experiment;
+import org.nusco.narjillos.experiment.SimpleExperiment;
+import org.nusco.narjillos.experiment.environment.Ecosystem;
+import org.nusco.narjillos.genomics.DNA;
+
+public class SnapshotTest {
+
+	@Test
+	public void writesJsonSnapshots() throws IOException {
+		Experiment experiment = tickedExperiment();
+
+		byte[] snapshot = write(experiment, SnapshotFormat.JSON);
+
+		assertEquals(JSON.toJson(experiment, Experiment.class), new String(snapshot, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void readsBinarySnapshots() throws IOException {
+		Experiment experiment = tickedExperiment();
+
+		Experiment deserialized = read(write(experiment, SnapshotFormat.BINARY), Experiment.class);
+
+		assertEquals(JSON.toJson(experiment, Experiment.class), JSON.toJson(deserialized, Experiment.class));
+	}
+
+	@Test
+	public void readsCompressedBinarySnapshots() throws IOException {
+		Experiment experiment = tickedExperiment();
+
+		Experiment deserialized = read(write(experiment, SnapshotFormat.COMPRESSED_BINARY), Experiment.class);
+
+		assertEquals(JSON.toJson(experiment, Experiment.class), JSON.toJson(deserialized, Experiment.class));
+	}
+
+	@Test
+	public void binarySnapshotsAreSmallerThanJson() throws IOException {
+		Experiment experiment = tickedExperiment();
+
+		int jsonSize = write(experiment, SnapshotFormat.JSON).length;
+		int binarySize = write(experiment, SnapshotFormat.BINARY).length;
+		int compressedSize = write(experiment, SnapshotFormat.COMPRESSED_BINARY).length;
+
+		assertTrue(binarySize < jsonSize / 2);
+		assertTrue(compressedSize < binarySize);
+	}
+
+	@Test
+	public void convertsSnapshotsToAnyFormat() throws IOException {
+		Experiment experiment = tickedExperiment();
+		String expectedJson = JSON.toJson(experiment, Experiment.class);
+		byte[] binarySnapshot = write(experiment, SnapshotFormat.BINARY);
+
+		for (SnapshotFormat format : SnapshotFormat.values()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Snapshot.convert(binarySnapshot, Experiment.class, out, format);
+
+			assertArrayEquals(write(experiment, format), out.toByteArray());
+			assertEquals(expectedJson, JSON.toJson(read(out.toByteArray(), Experiment.class), Experiment.class));
+		}
+	}
+
+	@Test
+	public void keepsExactDoublesAndNegativeNumbers() throws IOException {
+		Vector vector = Vector.cartesian(-0.1, Double.MAX_VALUE);
+
+		Vector deserialized = read(write(vector, SnapshotFormat.BINARY), Vector.class);
+
+		assertEquals(vector.x, deserialized.x, 0.0);
+		assertEquals(vector.y, deserialized.y, 0.0);
+	}
+
+	@Test
+	public void keepsTheAtmosphere() throws IOException {
+		Atmosphere atmosphere = new Atmosphere(10, 3);
+		atmosphere.convert(Element.OXYGEN, Element.NITROGEN);
+
+		Atmosphere deserialized = read(write(atmosphere, SnapshotFormat.BINARY), Atmosphere.class);
+
+		assertEquals(JSON.toJson(atmosphere, Atmosphere.class), JSON.toJson(deserialized, Atmosphere.class));
+	}
+
+	@Test
+	public void readsNarjillosInTheirOriginalOrder() throws IOException {
+		Ecosystem ecosystem = new Ecosystem(10_000, false);
+		NumGen numGen = new NumGen(1234);
+		for (int i = 0; i < 20; i++)
+			ecosystem.insert(new Narjillo(DNA.random(i + 1, numGen), Vector.cartesian(i * 400, i * 300), i * 10, Energy.INFINITE));
+		String expectedJson = JSON.toJson(ecosystem, Ecosystem.class);
+
+		for (SnapshotFormat format : SnapshotFormat.values()) {
+			Ecosystem deserialized = read(write(ecosystem, format), Ecosystem.class);
+
+			assertEquals(expectedJson, JSON.toJson(deserialized, Ecosystem.class));
+			assertEquals(20, deserialized.getCount(Narjillo.LABEL));
+		}
+	}
+
+	private Experiment tickedExperiment() {
+		Experiment experiment = new SimpleExperiment();
+		for (int i = 0; i < 10; i++)
+			experiment.tick();
+		return experiment;
+	}
+
+	private byte[] write(Object obj, SnapshotFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Snapshot.write(obj, obj.getClass(), out, format);
+		return out.toByteArray();
+	}
+
+	private <T> T read(byte[] snapshot, Class<T> clazz) throws IOException {
+		return Snapshot.read(new ByteArrayInputStream(snapshot), clazz);
+	}
+}